@@ -0,0 +1,37 @@
+% Example file for two class problem
+
+% Load the parameters from training
+load const
+load linear
+
+% The file "test.format" contains the format of the instances
+fileHandle = fopen('test.format');
+format = fgetl(fileHandle);
+fclose(fileHandle);
+
+% The file "test.csv" contains all instances for classification
+% One header line with the name of the attributes is written
+fileHandle = fopen('test.csv');
+rawInstances = textscan(fileHandle, format, 'delimiter', ',', 'headerlines', 1);
+fclose(fileHandle);
+
+noInstances = length(rawInstances{end});
+noFeatures = length(rawInstances) - 1;
+
+% No features (just class label)?
+if noFeatures == 0
+	classes = zeros(noInstances, 1);
+else
+	instances = cell2mat(rawInstances(1:noFeatures));
+
+	% if > 0 then WEKA class 0 -> return 0
+	% if <= 0 then WEKA class 1 -> return 1
+	classes = instances * linear + const <= 0;
+end
+
+% The ECST expects the class number of every instance as a line of "predictions.csv"
+fileHandle = fopen('predictions.csv', 'w');
+fprintf(fileHandle, '%d\n', classes);
+fclose(fileHandle);
+
+exit
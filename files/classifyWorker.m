@@ -0,0 +1,31 @@
+% Example file for two class problem
+
+% Load the parameters from training
+load const
+load linear
+
+% The ECST writes one instance per line to the standard input
+% (comma-separated, the class is '?') and the line 'exit' at the end
+while true
+	line = input('', 's');
+	if strcmp(line, 'exit') == 1
+		break
+	end
+
+	values = str2double(regexp(line, ',', 'split'));
+	instance = values(1:end - 1);
+
+	% No features (just class label)?
+	if isempty(instance)
+		class = 0;
+	else
+		% if > 0 then WEKA class 0 -> return 0
+		% if <= 0 then WEKA class 1 -> return 1
+		class = instance * linear + const <= 0;
+	end
+
+	% The ECST expects the class number as a line of the standard output
+	fprintf(1, '%d\n', class);
+end
+
+exit
@@ -1,5 +1,7 @@
 package ecst.algorithm;
 
+import java.util.Map;
+
 import weka.classifiers.Classifier;
 import weka.classifiers.meta.GridSearch;
 import ecst.algorithm.classification.GridSearchManager;
@@ -193,6 +195,16 @@ public abstract class ClassificationAlgorithm extends WorkPhaseAlgorithm {
 		return gridSearchManager.getGridSearchYValue();
 	}
 
+	/**
+	 * Returns the results of the further parameters of the Bayesian
+	 * optimization (name and value).
+	 * 
+	 * @return
+	 */
+	public Map<String, Object> getGridSearchDimensionValues() {
+		return gridSearchManager.getDimensionValues();
+	}
+
 	/**
 	 * Returns a string that describes the trained classifier.
 	 * 
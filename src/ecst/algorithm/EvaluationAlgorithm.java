@@ -3,6 +3,7 @@ package ecst.algorithm;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import ecst.combiner.PipelineData;
+import ecst.utilities.FoldEvaluation;
 
 /**
  * This is the basis class that all evaluation algorithms have to extend.
@@ -25,4 +26,25 @@ public abstract class EvaluationAlgorithm extends Algorithm {
 	public abstract Evaluation evaluate(PipelineData data, Classifier classifier, FeatureSelectionAlgorithm featureSelection)
 			throws Exception;
 
+	/**
+	 * Creates an evaluation whose folds can be evaluated one after another
+	 * (racing mode of the Combiner). The folds have to be the same for all
+	 * classification systems that are evaluated on the same data. Returns null
+	 * if the algorithm does not support this; these classification systems
+	 * are evaluated completely.
+	 * 
+	 * @param data
+	 *            the data for the pattern recognition pipeline
+	 * @param classifier
+	 *            the trained classifier
+	 * @param featureSelection
+	 *            the employed feature selection algorithm
+	 * @return
+	 * @throws Exception
+	 */
+	public FoldEvaluation createFoldEvaluation(PipelineData data, Classifier classifier, FeatureSelectionAlgorithm featureSelection)
+			throws Exception {
+		return null;
+	}
+
 }
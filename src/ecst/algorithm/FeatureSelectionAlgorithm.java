@@ -3,13 +3,20 @@ package ecst.algorithm;
 import weka.attributeSelection.ASEvaluation;
 import weka.attributeSelection.ASSearch;
 import weka.attributeSelection.AttributeSelection;
+import weka.attributeSelection.SubsetEvaluator;
+import weka.attributeSelection.UnsupervisedSubsetEvaluator;
 import weka.classifiers.Classifier;
+import weka.classifiers.meta.AttributeSelectedClassifier;
 import weka.core.Instances;
 import weka.core.OptionHandler;
 import weka.core.Utils;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Remove;
+import ecst.algorithm.featureselection.CachedAttributeSelectedClassifier;
+import ecst.algorithm.featureselection.evaluator.CachedSubsetEvaluator;
+import ecst.algorithm.featureselection.search.SearchProgressListener;
 import ecst.algorithm.parameter.Parameter;
+import ecst.algorithm.parameter.SelectedParameter;
 import ecst.combiner.PipelineData;
 import ecst.utilities.ParameterUtilities;
 
@@ -22,6 +29,7 @@ import ecst.utilities.ParameterUtilities;
 public abstract class FeatureSelectionAlgorithm extends Algorithm {
 
 	private String additionalInfo;
+	private SearchProgressListener searchProgressListener;
 
 	/**
 	 * This method has to initialize the parameters that belong to the search
@@ -76,6 +84,21 @@ public abstract class FeatureSelectionAlgorithm extends Algorithm {
 		return additionalInfo;
 	}
 
+	/**
+	 * Sets a listener for the progress of the search. Search methods that
+	 * support it report their progress to this listener; null removes the
+	 * listener.
+	 * 
+	 * @param listener
+	 */
+	public void setSearchProgressListener(SearchProgressListener listener) {
+		searchProgressListener = listener;
+	}
+
+	public SearchProgressListener getSearchProgressListener() {
+		return searchProgressListener;
+	}
+
 	/**
 	 * Initializes the parameters of this algorithm.
 	 */
@@ -93,6 +116,67 @@ public abstract class FeatureSelectionAlgorithm extends Algorithm {
 		return ParameterUtilities.mergeParameters(getEvaluatorParameters(), getSearchMethodParameters());
 	}
 
+	/**
+	 * Returns true if the selected features do not depend on the classifier
+	 * (filter methods). The selections of these algorithms are reused for all
+	 * classifiers that are evaluated on the same folds.
+	 * 
+	 * @return
+	 */
+	public boolean isClassifierIndependent() {
+		return false;
+	}
+
+	/**
+	 * Returns a string that identifies this algorithm and the values of its
+	 * parameters.
+	 * 
+	 * @return
+	 */
+	public String getConfigurationKey() {
+		StringBuilder key = new StringBuilder(getClass().getName());
+		Parameter[] parameters = getParameters();
+
+		if (parameters != null) {
+			for (Parameter parameter : parameters) {
+				key.append('\n').append(parameter.getName()).append('=');
+				if (parameter.getValue() instanceof SelectedParameter) {
+					key.append(((SelectedParameter) parameter.getValue()).getSelectedIndex());
+				} else {
+					key.append(parameter.getValue());
+				}
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Creates a classifier that performs this feature selection on its
+	 * training data (e.g. in every fold of an evaluation) before it trains the
+	 * given classifier. If this algorithm does not depend on the classifier,
+	 * the selections are cached.
+	 * 
+	 * @param classifier
+	 *            the untrained classifier
+	 * @param data
+	 *            the data of the pattern recognition pipeline
+	 * @return
+	 * @throws Exception
+	 */
+	public AttributeSelectedClassifier createAttributeSelectedClassifier(Classifier classifier, PipelineData data) throws Exception {
+		AttributeSelectedClassifier metaClassifier = null;
+
+		if (isClassifierIndependent()) {
+			metaClassifier = new CachedAttributeSelectedClassifier(getConfigurationKey());
+		} else {
+			metaClassifier = new AttributeSelectedClassifier();
+		}
+		metaClassifier.setEvaluator(createEvaluator(classifier, data));
+		metaClassifier.setSearch(createSearchMethod());
+		metaClassifier.setClassifier(classifier);
+		return metaClassifier;
+	}
+
 	/**
 	 * Creates a new instance of the search algorithm.
 	 * 
@@ -121,15 +205,27 @@ public abstract class FeatureSelectionAlgorithm extends Algorithm {
 	 */
 	public Instances selectFeatures(PipelineData data, Classifier classifier) throws Exception {
 		ASEvaluation evaluator = null;
+		CachedSubsetEvaluator cachedEvaluator = null;
 		Remove removeFilter = new Remove();
 		ASSearch search = createSearchMethod();
 		AttributeSelection attributeSelection = new AttributeSelection();
 
 		attributeSelection.setSearch(search);
 		evaluator = createEvaluator(classifier, data);
-		attributeSelection.setEvaluator(evaluator);
+		if (evaluator instanceof SubsetEvaluator && !(evaluator instanceof UnsupervisedSubsetEvaluator)) {
+			// search methods may evaluate the same subset several times; the
+			// cache would hide UnsupervisedSubsetEvaluator from WEKA's checks
+			cachedEvaluator = new CachedSubsetEvaluator(evaluator, CachedSubsetEvaluator.DEFAULT_CAPACITY);
+			attributeSelection.setEvaluator(cachedEvaluator);
+		} else {
+			attributeSelection.setEvaluator(evaluator);
+		}
 		attributeSelection.SelectAttributes(data.getPreprocessedInstances());
 		additionalInfo = getAdditionalInformationAboutSearchProcess(search, evaluator);
+		if (cachedEvaluator != null) {
+			additionalInfo = (additionalInfo != null ? additionalInfo + "\n" : "") + "Evaluation cache: " + cachedEvaluator.getHits() + " hits, "
+					+ cachedEvaluator.getMisses() + " misses";
+		}
 
 		removeFilter.setAttributeIndicesArray(attributeSelection.selectedAttributes());
 		removeFilter.setInvertSelection(true);
@@ -0,0 +1,26 @@
+package ecst.algorithm.classification;
+
+import weka.core.Instances;
+
+/**
+ * This interface is implemented by classifiers that classify a set of
+ * instances faster than each instance on its own (e.g. classifiers that call
+ * an external program). The evaluations of the ECST use this method for the
+ * complete test set.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public interface BatchClassifier {
+
+	/**
+	 * Returns the class distributions for all given instances in the order of
+	 * the instances.
+	 * 
+	 * @param instances
+	 * @return
+	 * @throws Exception
+	 */
+	public double[][] distributionsForInstances(Instances instances) throws Exception;
+
+}
@@ -1,12 +1,27 @@
 package ecst.algorithm.classification;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 import weka.classifiers.Classifier;
@@ -17,20 +32,54 @@ import ecst.utilities.FileUtilities;
 
 /**
  * This class implements the integration of external programs as classification
- * algorithms.
+ * algorithms. Every training creates a temporary workspace for the files of
+ * the external program, so that several external classifiers can be trained
+ * and evaluated at the same time. The files of the workspace are serialized
+ * with the classifier (e.g. for copies or saved pipelines) and written into a
+ * new workspace when the copy classifies the first time. Closing the
+ * classifier keeps the files in memory and deletes the workspace. The number of
+ * external processes that run at the same time (including the worker
+ * processes) is limited by the ExternalProcessPool. A worker process keeps
+ * its slot between two classifications until the classifier is closed (see
+ * InstanceUtilities.closeClassifier) or the pool needs the slot for another
+ * process.
  * 
  * @author Matthias Ring
  * 
  */
-public class ExternalClassifier extends Classifier {
+public class ExternalClassifier extends Classifier implements BatchClassifier, Closeable {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final File FILES_DIRECTORY = new File("./files/").getAbsoluteFile();
+	private static final String LOG_FILE = "output.log";
+	private static final Set<File> WORKSPACES = Collections.synchronizedSet(new HashSet<File>());
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				synchronized (WORKSPACES) {
+					for (File workspace : WORKSPACES) {
+						FileUtilities.deleteDirectory(workspace);
+					}
+				}
+			}
+		});
+	}
+
 	private String command;
 	private String classifyScript;
 	private String trainScript;
+	private String batchScript;
+	private String workerScript;
 	private Instances emptyInstances;
 	private Map<String, Integer> externalMultiplier;
+	private transient File workspace;
+	private transient Map<String, byte[]> workspaceFiles;
+	private transient Process worker;
+	private transient BufferedWriter workerInput;
+	private transient BufferedReader workerOutput;
 
 	/**
 	 * Constructor.
@@ -45,11 +94,22 @@ public class ExternalClassifier extends Classifier {
 	 */
 	public String globalInfo() {
 		return "Class for calling an external classifier. " + "The scripts have to be in the subfolder 'files' of the program.\n\n"
+				+ "The scripts are copied into a temporary workspace for every training and executed in this "
+				+ "workspace. All files are read and written in the workspace; the environment variable "
+				+ "'ECST_FILES' contains the path of the subfolder 'files' (which is added to the 'MATLABPATH', too). "
+				+ "The output of the scripts is written to the file '" + LOG_FILE + "' of the workspace.\n\n"
 				+ "The generated file 'classes.csv' will contain the assignment of the class names and class indices. "
 				+ "The two generated files 'instance.format' and 'instances.format' contain format strings "
 				+ "for the data files 'instance.csv' and 'instances.csv'. "
 				+ "The external classifier can write a file named 'multiplier.csv' that contains the values for "
-				+ "algorithm-specific multipliers.";
+				+ "algorithm-specific multipliers.\n\n"
+				+ "If a batch script is given, test sets are written to 'test.csv' (format in 'test.format') and "
+				+ "the batch script is executed once per test set. It has to write the class index of every "
+				+ "instance as a line of the file 'predictions.csv'.\n\n"
+				+ "If a worker script is given, it is started once after training and has to read instances "
+				+ "(one comma-separated line per instance, format in 'instance.format') from the standard input "
+				+ "until the line 'exit' is read. For every instance, it has to write the class index as a line "
+				+ "to the standard output. Lines that are not numbers are ignored.";
 	}
 
 	/**
@@ -59,6 +119,8 @@ public class ExternalClassifier extends Classifier {
 		command = Utils.getOption('E', options);
 		classifyScript = Utils.getOption('C', options);
 		trainScript = Utils.getOption('T', options);
+		batchScript = Utils.getOption('B', options);
+		workerScript = Utils.getOption('W', options);
 	}
 
 	/**
@@ -66,14 +128,16 @@ public class ExternalClassifier extends Classifier {
 	 */
 	@SuppressWarnings("unchecked")
 	@Override
-	public void buildClassifier(Instances data) throws Exception {
+	public synchronized void buildClassifier(Instances data) throws Exception {
 		int i = 0;
-		Process process = null;
 		FileWriter writer = null;
 		Enumeration<String> enumeration = null;
-		ProcessBuilder builder = null;
 
-		writer = new FileWriter("./files/classes.csv");
+		// the worker classifies with the old model
+		stopWorker();
+		createWorkspace();
+
+		writer = new FileWriter(new File(workspace, "classes.csv"));
 		enumeration = data.classAttribute().enumerateValues();
 		while (enumeration.hasMoreElements()) {
 			writer.write(i + "," + enumeration.nextElement() + "\n");
@@ -84,42 +148,454 @@ public class ExternalClassifier extends Classifier {
 		emptyInstances = new Instances(data);
 		emptyInstances.delete();
 
-		FileUtilities.saveInstancesCSV(data, new File("./files/instances.csv"), new File("./files/instances.format"));
+		FileUtilities.saveInstancesCSV(data, new File(workspace, "instances.csv"), new File(workspace, "instances.format"));
 
-		builder = new ProcessBuilder(buildCommand(trainScript));
-		builder.directory(new File("./files/").getAbsoluteFile());
-		process = builder.start();
-		process.waitFor();
+		execute(trainScript, false);
 
-		externalMultiplier = FileUtilities.loadStringIntegerMap(new File("./files/multiplier.csv"));
+		externalMultiplier = FileUtilities.loadStringIntegerMap(new File(workspace, "multiplier.csv"));
 	}
 
 	/**
 	 * Classifies an instances with the external classifier.
 	 */
 	@Override
-	public double classifyInstance(Instance instance) throws Exception {
-		Process process = null;
-		ProcessBuilder builder = null;
-		Scanner scanner = null;
-		String lastLine = null;
+	public synchronized double classifyInstance(Instance instance) throws Exception {
+		restoreWorkspace();
+		if (isSet(workerScript)) {
+			return classifyWithWorker(instance);
+		}
 
 		emptyInstances.add(instance);
-		FileUtilities.saveInstancesCSV(emptyInstances, new File("./files/instance.csv"), new File("./files/instance.format"));
+		FileUtilities.saveInstancesCSV(emptyInstances, new File(workspace, "instance.csv"), new File(workspace, "instance.format"));
 		emptyInstances.delete();
 
-		builder = new ProcessBuilder(buildCommand(classifyScript));
-		builder.directory(new File("./files/").getAbsoluteFile());
-		process = builder.start();
+		return Double.parseDouble(execute(classifyScript, true));
+	}
 
-		scanner = new Scanner(process.getInputStream());
-		while (scanner.hasNextLine()) {
-			lastLine = scanner.nextLine();
+	/**
+	 * Classifies all instances with one execution of the batch script. If no
+	 * batch script is given, the instances are classified one after another
+	 * (by the worker process, which is stopped afterwards).
+	 */
+	@Override
+	public synchronized double[][] distributionsForInstances(Instances instances) throws Exception {
+		int i = 0;
+		double[][] distributions = new double[instances.numInstances()][];
+		Instances testInstances = null;
+		File predictions = null;
+		Scanner scanner = null;
+		String line = null;
 
+		restoreWorkspace();
+		predictions = new File(workspace, "predictions.csv");
+		if (!isSet(batchScript)) {
+			for (i = 0; i < instances.numInstances(); i++) {
+				distributions[i] = toDistribution(classifyInstance(instances.instance(i)));
+			}
+			return distributions;
+		}
+
+		// the external program must not see the labels of the test set
+		testInstances = new Instances(instances);
+		for (i = 0; i < testInstances.numInstances(); i++) {
+			testInstances.instance(i).setClassMissing();
+		}
+		FileUtilities.saveInstancesCSV(testInstances, new File(workspace, "test.csv"), new File(workspace, "test.format"));
+		predictions.delete();
+
+		execute(batchScript, false);
+
+		i = 0;
+		scanner = new Scanner(predictions);
+		while (scanner.hasNextLine()) {
+			line = scanner.nextLine().trim();
+			if (line.length() == 0) {
+				continue;
+			}
+			if (i == distributions.length) {
+				scanner.close();
+				throw new Exception("The batch script has written more predictions than test instances.");
+			}
+			distributions[i++] = toDistribution(Double.parseDouble(line));
 		}
 		scanner.close();
 
-		return Double.parseDouble(lastLine);
+		if (i != distributions.length) {
+			throw new Exception("The batch script has written " + i + " predictions for " + distributions.length + " test instances.");
+		}
+		return distributions;
+	}
+
+	/**
+	 * Stops the worker process (if it is running) and releases its slot of
+	 * the process pool. The files of the workspace are kept in memory and the
+	 * workspace is deleted. The workspace and the worker are restored if
+	 * another instance is classified.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		stopWorker();
+		if (workspace != null) {
+			workspaceFiles = readWorkspace();
+			FileUtilities.deleteDirectory(workspace);
+			WORKSPACES.remove(workspace);
+			workspace = null;
+		}
+	}
+
+	/**
+	 * Stops the worker process (if it is running) and releases its slot of
+	 * the process pool. This method is called by the pool to stop an idle
+	 * worker, too.
+	 */
+	synchronized void stopWorker() {
+		if (worker == null) {
+			return;
+		}
+		ExternalProcessPool.getSharedPool().removeIdleWorker(this);
+		try {
+			workerInput.write("exit\n");
+			workerInput.close();
+		} catch (Exception e) {
+			// the worker has already terminated
+		}
+		worker.destroy();
+		worker = null;
+		workerInput = null;
+		workerOutput = null;
+		ExternalProcessPool.getSharedPool().release();
+	}
+
+	/**
+	 * Internal method to classify an instance with the worker process. The
+	 * worker is started if it is not running. While the worker classifies, it
+	 * is not idle and cannot be stopped by the pool.
+	 * 
+	 * @param instance
+	 * @return
+	 * @throws Exception
+	 */
+	private synchronized double classifyWithWorker(Instance instance) throws Exception {
+		String line = null;
+
+		if (worker == null) {
+			startWorker();
+		} else {
+			ExternalProcessPool.getSharedPool().removeIdleWorker(this);
+		}
+		try {
+			workerInput.write(toCSVLine(instance));
+			workerInput.newLine();
+			workerInput.flush();
+
+			while ((line = workerOutput.readLine()) != null) {
+				try {
+					return Double.parseDouble(line.trim());
+				} catch (NumberFormatException e) {
+					// output of the external program that is not a prediction
+				}
+			}
+		} finally {
+			if (worker != null) {
+				ExternalProcessPool.getSharedPool().addIdleWorker(this);
+			}
+		}
+		stopWorker();
+		throw new Exception("The worker process has terminated.");
+	}
+
+	/**
+	 * Internal method to start the worker process. The files 'instance.csv'
+	 * and 'instance.format' contain the header and the format of the
+	 * instances. The worker takes a slot of the process pool until it is
+	 * stopped.
+	 * 
+	 * @throws Exception
+	 */
+	private void startWorker() throws Exception {
+		ProcessBuilder builder = null;
+
+		FileUtilities.saveInstancesCSV(emptyInstances, new File(workspace, "instance.csv"), new File(workspace, "instance.format"));
+
+		builder = createProcessBuilder(workerScript);
+		builder.redirectError(Redirect.appendTo(new File(workspace, LOG_FILE)));
+		ExternalProcessPool.getSharedPool().acquire();
+		try {
+			worker = builder.start();
+		} catch (IOException e) {
+			ExternalProcessPool.getSharedPool().release();
+			throw e;
+		}
+		workerInput = new BufferedWriter(new OutputStreamWriter(worker.getOutputStream()));
+		workerOutput = new BufferedReader(new InputStreamReader(worker.getInputStream()));
+	}
+
+	/**
+	 * Internal method to write an instance (without its class) as line in the
+	 * format of the CSV files.
+	 * 
+	 * @param instance
+	 * @return
+	 */
+	private String toCSVLine(Instance instance) {
+		StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i < instance.numAttributes(); i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			if (i == instance.classIndex() || instance.isMissing(i)) {
+				builder.append('?');
+			} else {
+				builder.append(instance.toString(i));
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Internal method to convert a prediction of the external program into a
+	 * class distribution (like Classifier.distributionForInstance).
+	 * 
+	 * @param prediction
+	 * @return
+	 */
+	private double[] toDistribution(double prediction) {
+		double[] distribution = new double[emptyInstances.numClasses()];
+
+		if (emptyInstances.classAttribute().isNumeric()) {
+			distribution[0] = prediction;
+		} else if (!Instance.isMissingValue(prediction)) {
+			distribution[(int) prediction] = 1.0;
+		}
+		return distribution;
+	}
+
+	/**
+	 * Internal method to check if an optional script is given.
+	 * 
+	 * @param script
+	 * @return
+	 */
+	private boolean isSet(String script) {
+		return script != null && !"".equals(script);
+	}
+
+	/**
+	 * Internal method to execute a script in the workspace. The process is
+	 * started when the process pool has a free slot. The worker of this
+	 * classifier is stopped before, since the pool cannot stop it while this
+	 * thread holds the lock of the classifier. The output of the
+	 * process is appended to the log file of the workspace, so that no thread
+	 * has to read it; only if the output is needed, it is read by the calling
+	 * thread.
+	 * 
+	 * @param script
+	 * @param readOutput
+	 *            true to return the last line of the standard output
+	 * @return
+	 * @throws Exception
+	 */
+	private String execute(String script, boolean readOutput) throws Exception {
+		String line = null;
+		String lastLine = null;
+		Process process = null;
+		BufferedReader reader = null;
+		ProcessBuilder builder = createProcessBuilder(script);
+		File log = new File(workspace, LOG_FILE);
+
+		stopWorker();
+		builder.redirectError(Redirect.appendTo(log));
+		if (!readOutput) {
+			builder.redirectOutput(Redirect.appendTo(log));
+		}
+
+		ExternalProcessPool.getSharedPool().acquire();
+		try {
+			process = builder.start();
+			if (readOutput) {
+				reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+				while ((line = reader.readLine()) != null) {
+					lastLine = line;
+				}
+				reader.close();
+			}
+			process.waitFor();
+		} finally {
+			ExternalProcessPool.getSharedPool().release();
+		}
+		return lastLine;
+	}
+
+	/**
+	 * Internal method to create the ProcessBuilder object that executes a
+	 * script in the workspace.
+	 * 
+	 * @param script
+	 * @return
+	 */
+	private ProcessBuilder createProcessBuilder(String script) {
+		String matlabPath = null;
+		ProcessBuilder builder = new ProcessBuilder(buildCommand(script));
+
+		builder.directory(workspace);
+		matlabPath = builder.environment().get("MATLABPATH");
+		builder.environment().put("MATLABPATH",
+				matlabPath == null ? FILES_DIRECTORY.getPath() : FILES_DIRECTORY.getPath() + File.pathSeparator + matlabPath);
+		builder.environment().put("ECST_FILES", FILES_DIRECTORY.getPath());
+
+		return builder;
+	}
+
+	/**
+	 * Internal method to replace the workspace by a new temporary directory
+	 * and to copy the scripts (all files in the subfolder 'files' whose name
+	 * with or without extension is the name of a script) into it.
+	 * 
+	 * @throws IOException
+	 */
+	private void createWorkspace() throws IOException {
+		String name = null;
+		String baseName = null;
+		File[] files = FILES_DIRECTORY.listFiles();
+
+		deleteWorkspace();
+		workspace = Files.createTempDirectory("ecst-external-").toFile();
+		WORKSPACES.add(workspace);
+
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			name = file.getName();
+			baseName = name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name;
+			if (file.isFile() && (isScript(name) || isScript(baseName))) {
+				Files.copy(file.toPath(), new File(workspace, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	/**
+	 * Internal method to check if the given name is the name of a script.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	private boolean isScript(String name) {
+		return name.equals(trainScript) || name.equals(classifyScript) || name.equals(batchScript) || name.equals(workerScript);
+	}
+
+	/**
+	 * Internal method to write the files of the workspace that are kept in
+	 * memory (after close() or deserialization) into a new temporary
+	 * directory.
+	 * 
+	 * @throws IOException
+	 */
+	private void restoreWorkspace() throws IOException {
+		File file = null;
+
+		if (workspace != null || workspaceFiles == null) {
+			return;
+		}
+		workspace = Files.createTempDirectory("ecst-external-").toFile();
+		WORKSPACES.add(workspace);
+		for (Map.Entry<String, byte[]> entry : workspaceFiles.entrySet()) {
+			file = new File(workspace, entry.getKey());
+			if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+				throw new IOException("Cannot create the directory " + file.getParentFile());
+			}
+			Files.write(file.toPath(), entry.getValue());
+		}
+		workspaceFiles = null;
+	}
+
+	/**
+	 * Internal method to read the files of the workspace. The keys of the map
+	 * are the paths relative to the workspace.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private Map<String, byte[]> readWorkspace() throws IOException {
+		Map<String, byte[]> files = new HashMap<String, byte[]>();
+
+		readFiles(workspace, "", files);
+		return files;
+	}
+
+	/**
+	 * Internal method to read the files of a directory and its
+	 * subdirectories.
+	 * 
+	 * @param directory
+	 * @param prefix
+	 *            the path of the directory relative to the workspace
+	 * @param files
+	 * @throws IOException
+	 */
+	private void readFiles(File directory, String prefix, Map<String, byte[]> files) throws IOException {
+		File[] list = directory.listFiles();
+
+		if (list == null) {
+			return;
+		}
+		for (File file : list) {
+			if (file.isDirectory()) {
+				readFiles(file, prefix + file.getName() + "/", files);
+			} else {
+				files.put(prefix + file.getName(), Files.readAllBytes(file.toPath()));
+			}
+		}
+	}
+
+	/**
+	 * Internal method to delete the workspace.
+	 */
+	private void deleteWorkspace() {
+		if (workspace != null) {
+			FileUtilities.deleteDirectory(workspace);
+			WORKSPACES.remove(workspace);
+		}
+		workspace = null;
+		workspaceFiles = null;
+	}
+
+	/**
+	 * Returns the workspace of the trained classifier.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized File getWorkspace() throws IOException {
+		restoreWorkspace();
+		return workspace;
+	}
+
+	/**
+	 * Internal method to serialize the classifier. The files of the workspace
+	 * are written, so that a copy (even in another run of the program) can
+	 * restore the workspace when it is used.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject(workspace != null ? readWorkspace() : workspaceFiles);
+	}
+
+	/**
+	 * Internal method to deserialize the classifier.
+	 * 
+	 * @param in
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		workspaceFiles = (Map<String, byte[]>) in.readObject();
 	}
 
 	/**
@@ -20,6 +20,8 @@ public class ExternalClassifierAdapter extends ClassificationAlgorithm {
 	private Parameter command;
 	private Parameter trainScript;
 	private Parameter classifyScript;
+	private Parameter batchScript;
+	private Parameter workerScript;
 	private Map<String, Integer> externalMultiplier;
 
 	/**
@@ -33,6 +35,9 @@ public class ExternalClassifierAdapter extends ClassificationAlgorithm {
 				Parameter.TYPE.STRING, "-T");
 		classifyScript = new Parameter("classifyClassification", "Script to classify the instance in 'instance.csv'",
 				Parameter.TYPE.STRING, "-C");
+		batchScript = new Parameter("", "Script to classify all instances in 'test.csv' at once (optional)", Parameter.TYPE.STRING, "-B");
+		workerScript = new Parameter("", "Script that classifies the instances from the standard input until 'exit' (optional)",
+				Parameter.TYPE.STRING, "-W");
 	}
 
 	/**
@@ -40,7 +45,7 @@ public class ExternalClassifierAdapter extends ClassificationAlgorithm {
 	 */
 	@Override
 	public Parameter[] getParameters() {
-		return new Parameter[] { command, classifyScript, trainScript };
+		return new Parameter[] { command, classifyScript, trainScript, batchScript, workerScript };
 	}
 
 	/**
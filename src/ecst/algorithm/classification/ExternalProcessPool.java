@@ -0,0 +1,134 @@
+package ecst.algorithm.classification;
+
+import java.util.LinkedList;
+import java.util.Properties;
+
+/**
+ * This class limits the number of external processes (e.g. MATLAB instances)
+ * that run at the same time. Before a process is started, a slot has to be
+ * acquired; the slot has to be released after the process has terminated.
+ * The worker processes of external classifiers keep their slots between two
+ * classifications, but a worker that does not classify is stopped if another
+ * process needs its slot (it is started again when it is needed). Therefore, a
+ * thread never waits for the workers it has started itself (e.g. the workers
+ * of the members of an ensemble). All external classifiers share one pool; its size is read from the
+ * properties of the program (MAXIMUM_PROCESSES_PROPERTY).
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class ExternalProcessPool {
+
+	public static final String MAXIMUM_PROCESSES_PROPERTY = "ecst.algorithm.classification.ExternalProcessPool.maximumNumberOfProcesses";
+
+	private static final ExternalProcessPool SHARED_POOL = new ExternalProcessPool(Runtime.getRuntime().availableProcessors());
+
+	private int maximumNumberOfProcesses;
+	private int numberOfRunningProcesses;
+	private LinkedList<ExternalClassifier> idleWorkers;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maximumNumberOfProcesses
+	 */
+	public ExternalProcessPool(int maximumNumberOfProcesses) {
+		idleWorkers = new LinkedList<ExternalClassifier>();
+		setMaximumNumberOfProcesses(maximumNumberOfProcesses);
+	}
+
+	/**
+	 * Returns the pool that is shared by all external classifiers.
+	 * 
+	 * @return
+	 */
+	public static ExternalProcessPool getSharedPool() {
+		return SHARED_POOL;
+	}
+
+	/**
+	 * Sets the maximum number of processes that run at the same time (at
+	 * least one). Running processes are not affected if the maximum is
+	 * decreased.
+	 * 
+	 * @param maximumNumberOfProcesses
+	 */
+	public synchronized void setMaximumNumberOfProcesses(int maximumNumberOfProcesses) {
+		this.maximumNumberOfProcesses = Math.max(1, maximumNumberOfProcesses);
+		notifyAll();
+	}
+
+	public synchronized int getMaximumNumberOfProcesses() {
+		return maximumNumberOfProcesses;
+	}
+
+	/**
+	 * Sets the maximum number of processes from the given properties if they
+	 * contain MAXIMUM_PROCESSES_PROPERTY.
+	 * 
+	 * @param properties
+	 */
+	public void loadSettings(Properties properties) {
+		String value = properties.getProperty(MAXIMUM_PROCESSES_PROPERTY);
+
+		if (value != null && !"".equals(value.trim())) {
+			setMaximumNumberOfProcesses(Integer.parseInt(value.trim()));
+		}
+	}
+
+	/**
+	 * Waits until less than the maximum number of processes are running and
+	 * acquires a slot. If no slot is free, idle workers are stopped (the
+	 * longest idle first) until a slot is free.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void acquire() throws InterruptedException {
+		ExternalClassifier idleWorker = null;
+
+		while (true) {
+			synchronized (this) {
+				while (numberOfRunningProcesses >= maximumNumberOfProcesses && idleWorkers.isEmpty()) {
+					wait();
+				}
+				if (numberOfRunningProcesses < maximumNumberOfProcesses) {
+					numberOfRunningProcesses++;
+					return;
+				}
+				idleWorker = idleWorkers.removeFirst();
+			}
+			// the worker is stopped without the lock of the pool, since
+			// stopping it locks its classifier
+			idleWorker.stopWorker();
+		}
+	}
+
+	/**
+	 * Marks the worker of the given classifier as idle, so that it can be
+	 * stopped if another process needs its slot.
+	 * 
+	 * @param classifier
+	 */
+	synchronized void addIdleWorker(ExternalClassifier classifier) {
+		idleWorkers.add(classifier);
+		notifyAll();
+	}
+
+	/**
+	 * Removes the mark of an idle worker (e.g. while it classifies).
+	 * 
+	 * @param classifier
+	 */
+	synchronized void removeIdleWorker(ExternalClassifier classifier) {
+		idleWorkers.remove(classifier);
+	}
+
+	/**
+	 * Releases a slot that was acquired before.
+	 */
+	public synchronized void release() {
+		numberOfRunningProcesses--;
+		notifyAll();
+	}
+
+}
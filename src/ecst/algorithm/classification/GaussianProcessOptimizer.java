@@ -0,0 +1,427 @@
+package ecst.algorithm.classification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.special.Erf;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * This class proposes the next points of a sequential model-based
+ * optimization (Bayesian optimization). The observed scores are modeled by a
+ * Gaussian process with a Matern 5/2 kernel; the next point maximizes the
+ * expected improvement over the best score. Several points (a batch that is
+ * evaluated in parallel) are proposed by the kriging believer heuristic: each
+ * proposed point is added with its predicted mean as a pseudo observation
+ * before the next point is proposed.
+ * 
+ * The points are vectors in the unit cube [0, 1]^d; higher scores are better.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class GaussianProcessOptimizer {
+
+	public static final double[] LENGTH_SCALES = new double[] { 0.05, 0.1, 0.2, 0.35, 0.5, 1.0 };
+	public static final double[] NOISE_VARIANCES = new double[] { 1e-6, 1e-3, 1e-2, 1e-1 };
+	public static final int RANDOM_CANDIDATES = 1000;
+	public static final int LOCAL_CANDIDATES = 50;
+	public static final double EXPLORATION = 0.01;
+
+	private int dimensions;
+	private Random random;
+	private List<double[]> points;
+	private List<Double> scores;
+
+	// the fitted model
+	private double lengthScale;
+	private double mean;
+	private double deviation;
+	private double[][] cholesky;
+	private double[] alpha;
+	private double[][] modelPoints;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param dimensions
+	 * @param random
+	 */
+	public GaussianProcessOptimizer(int dimensions, Random random) {
+		this.dimensions = dimensions;
+		this.random = random;
+		this.points = new ArrayList<double[]>();
+		this.scores = new ArrayList<Double>();
+	}
+
+	/**
+	 * Adds an evaluated point. A score that is not a number (e.g. if the
+	 * evaluation failed) is treated as the worst score observed.
+	 * 
+	 * @param point
+	 * @param score
+	 */
+	public void addObservation(double[] point, double score) {
+		points.add(point.clone());
+		scores.add(score);
+	}
+
+	/**
+	 * Returns the number of observations.
+	 * 
+	 * @return
+	 */
+	public int getNumberOfObservations() {
+		return points.size();
+	}
+
+	/**
+	 * Returns points of a Latin hypercube design for the initial evaluations.
+	 * 
+	 * @param number
+	 * @return
+	 */
+	public List<double[]> createInitialDesign(int number) {
+		int[] permutation = null;
+		List<double[]> result = new ArrayList<double[]>(number);
+
+		for (int i = 0; i < number; i++) {
+			result.add(new double[dimensions]);
+		}
+		for (int d = 0; d < dimensions; d++) {
+			permutation = new int[number];
+			for (int i = 0; i < number; i++) {
+				permutation[i] = i;
+			}
+			for (int i = number - 1; i > 0; i--) {
+				swap(permutation, i, random.nextInt(i + 1));
+			}
+			for (int i = 0; i < number; i++) {
+				result.get(i)[d] = (permutation[i] + random.nextDouble()) / number;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Proposes the given number of points that are evaluated next. At least one
+	 * observation is necessary.
+	 * 
+	 * @param number
+	 * @return
+	 */
+	public List<double[]> propose(int number) {
+		double[] point = null;
+		List<double[]> result = new ArrayList<double[]>(number);
+		List<double[]> believedPoints = new ArrayList<double[]>(points);
+		List<Double> believedScores = new ArrayList<Double>(getCleanedScores());
+
+		for (int i = 0; i < number; i++) {
+			fit(believedPoints, believedScores);
+			point = maximizeExpectedImprovement(believedScores);
+			result.add(point);
+			believedPoints.add(point);
+			believedScores.add(predictMean(point));
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to replace scores that are not a number by the worst
+	 * score.
+	 * 
+	 * @return
+	 */
+	private List<Double> getCleanedScores() {
+		double worst = Double.POSITIVE_INFINITY;
+		List<Double> result = new ArrayList<Double>(scores.size());
+
+		for (double score : scores) {
+			if (!Double.isNaN(score) && !Double.isInfinite(score)) {
+				worst = Math.min(worst, score);
+			}
+		}
+		if (Double.isInfinite(worst)) {
+			worst = 0;
+		}
+		for (double score : scores) {
+			result.add(Double.isNaN(score) || Double.isInfinite(score) ? worst : score);
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to fit the Gaussian process. The scores are standardized;
+	 * the length scale and the noise variance are selected by the marginal
+	 * likelihood.
+	 * 
+	 * @param fitPoints
+	 * @param fitScores
+	 */
+	private void fit(List<double[]> fitPoints, List<Double> fitScores) {
+		int n = fitPoints.size();
+		double sum = 0;
+		double likelihood;
+		double bestLikelihood = Double.NEGATIVE_INFINITY;
+		double[] y = new double[n];
+		double[] candidateAlpha = null;
+		double[][] matrix = null;
+		double[][] factor = null;
+
+		modelPoints = fitPoints.toArray(new double[n][]);
+		for (double score : fitScores) {
+			sum += score;
+		}
+		mean = sum / n;
+		sum = 0;
+		for (double score : fitScores) {
+			sum += (score - mean) * (score - mean);
+		}
+		deviation = n > 1 ? Math.sqrt(sum / (n - 1)) : 0;
+		if (deviation < 1e-12) {
+			deviation = 1;
+		}
+		for (int i = 0; i < n; i++) {
+			y[i] = (fitScores.get(i) - mean) / deviation;
+		}
+
+		for (double scale : LENGTH_SCALES) {
+			for (double noise : NOISE_VARIANCES) {
+				matrix = new double[n][n];
+				for (int i = 0; i < n; i++) {
+					for (int j = 0; j <= i; j++) {
+						matrix[i][j] = kernel(modelPoints[i], modelPoints[j], scale);
+						matrix[j][i] = matrix[i][j];
+					}
+					matrix[i][i] += noise;
+				}
+				factor = decompose(matrix);
+				if (factor == null) {
+					continue;
+				}
+				candidateAlpha = solve(factor, y);
+				likelihood = 0;
+				for (int i = 0; i < n; i++) {
+					likelihood -= 0.5 * y[i] * candidateAlpha[i] + Math.log(factor[i][i]);
+				}
+				if (likelihood > bestLikelihood) {
+					bestLikelihood = likelihood;
+					lengthScale = scale;
+					cholesky = factor;
+					alpha = candidateAlpha;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Internal method to search the point with the maximum expected
+	 * improvement among random points and points near the best observations.
+	 * 
+	 * @param fitScores
+	 *            the scores of the model points
+	 * @return
+	 */
+	private double[] maximizeExpectedImprovement(final List<Double> fitScores) {
+		double improvement;
+		double best = Collections.max(fitScores);
+		double bestImprovement = Double.NEGATIVE_INFINITY;
+		double[] candidate = null;
+		double[] result = null;
+		List<Integer> order = new ArrayList<Integer>();
+
+		for (int i = 0; i < modelPoints.length; i++) {
+			order.add(i);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(fitScores.get(o2), fitScores.get(o1));
+			}
+		});
+
+		for (int i = 0; i < RANDOM_CANDIDATES + LOCAL_CANDIDATES * Math.min(5, order.size()); i++) {
+			candidate = new double[dimensions];
+			for (int d = 0; d < dimensions; d++) {
+				if (i < RANDOM_CANDIDATES) {
+					candidate[d] = random.nextDouble();
+				} else {
+					candidate[d] = modelPoints[order.get((i - RANDOM_CANDIDATES) / LOCAL_CANDIDATES)][d] + random.nextGaussian() * lengthScale
+							/ 2;
+					candidate[d] = Math.min(1, Math.max(0, candidate[d]));
+				}
+			}
+			improvement = expectedImprovement(candidate, best);
+			if (improvement > bestImprovement) {
+				bestImprovement = improvement;
+				result = candidate;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to compute the expected improvement of a point.
+	 * 
+	 * @param point
+	 * @param best
+	 * @return
+	 */
+	private double expectedImprovement(double[] point, double best) {
+		double[] k = kernelVector(point);
+		double[] v = forwardSubstitution(cholesky, k);
+		double variance = 1;
+		double predicted = 0;
+		double sigma;
+		double z;
+		double target = (best - mean) / deviation + EXPLORATION;
+
+		for (int i = 0; i < k.length; i++) {
+			predicted += k[i] * alpha[i];
+			variance -= v[i] * v[i];
+		}
+		sigma = Math.sqrt(Math.max(variance, 1e-12));
+		z = (predicted - target) / sigma;
+		return (predicted - target) * 0.5 * (1 + Erf.erf(z / Math.sqrt(2))) + sigma * FastMath.exp(-0.5 * z * z) / Math.sqrt(2 * Math.PI);
+	}
+
+	/**
+	 * Internal method to predict the score of a point.
+	 * 
+	 * @param point
+	 * @return
+	 */
+	private double predictMean(double[] point) {
+		double result = 0;
+		double[] k = kernelVector(point);
+
+		for (int i = 0; i < k.length; i++) {
+			result += k[i] * alpha[i];
+		}
+		return mean + deviation * result;
+	}
+
+	/**
+	 * Internal method to compute the kernel values of a point with all points
+	 * of the model.
+	 * 
+	 * @param point
+	 * @return
+	 */
+	private double[] kernelVector(double[] point) {
+		double[] result = new double[modelPoints.length];
+
+		for (int i = 0; i < modelPoints.length; i++) {
+			result[i] = kernel(point, modelPoints[i], lengthScale);
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to compute the Matern 5/2 kernel.
+	 * 
+	 * @param first
+	 * @param second
+	 * @param scale
+	 * @return
+	 */
+	private static double kernel(double[] first, double[] second, double scale) {
+		double distance = 0;
+
+		for (int d = 0; d < first.length; d++) {
+			distance += (first[d] - second[d]) * (first[d] - second[d]);
+		}
+		distance = Math.sqrt(5 * distance) / scale;
+		return (1 + distance + distance * distance / 3) * FastMath.exp(-distance);
+	}
+
+	/**
+	 * Internal method to compute the Cholesky decomposition (lower triangular
+	 * matrix).
+	 * 
+	 * @param matrix
+	 * @return null if the matrix is not positive definite
+	 */
+	private static double[][] decompose(double[][] matrix) {
+		int n = matrix.length;
+		double sum;
+		double[][] result = new double[n][n];
+
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j <= i; j++) {
+				sum = matrix[i][j];
+				for (int k = 0; k < j; k++) {
+					sum -= result[i][k] * result[j][k];
+				}
+				if (i == j) {
+					if (sum <= 0) {
+						return null;
+					}
+					result[i][i] = Math.sqrt(sum);
+				} else {
+					result[i][j] = sum / result[j][j];
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to solve L * x = b.
+	 * 
+	 * @param factor
+	 * @param b
+	 * @return
+	 */
+	private static double[] forwardSubstitution(double[][] factor, double[] b) {
+		int n = b.length;
+		double[] result = new double[n];
+
+		for (int i = 0; i < n; i++) {
+			result[i] = b[i];
+			for (int k = 0; k < i; k++) {
+				result[i] -= factor[i][k] * result[k];
+			}
+			result[i] /= factor[i][i];
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to solve L * L^T * x = b.
+	 * 
+	 * @param factor
+	 * @param b
+	 * @return
+	 */
+	private static double[] solve(double[][] factor, double[] b) {
+		int n = b.length;
+		double[] result = forwardSubstitution(factor, b);
+
+		for (int i = n - 1; i >= 0; i--) {
+			for (int k = i + 1; k < n; k++) {
+				result[i] -= factor[k][i] * result[k];
+			}
+			result[i] /= factor[i][i];
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to swap two elements of an array.
+	 * 
+	 * @param array
+	 * @param i
+	 * @param j
+	 */
+	private static void swap(int[] array, int i, int j) {
+		int tmp = array[i];
+
+		array[i] = array[j];
+		array[j] = tmp;
+	}
+
+}
@@ -1,12 +1,13 @@
 package ecst.algorithm.classification;
 
 import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import weka.classifiers.Classifier;
 import weka.classifiers.functions.LibSVM;
-import weka.classifiers.meta.GridSearch;
 import weka.core.Utils;
 import weka.filters.AllFilter;
 import ecst.algorithm.parameter.Parameter;
@@ -40,10 +41,23 @@ public class GridSearchManager {
 	private Parameter sampleSize;
 	private Parameter expandableGrid;
 	private Parameter traversal;
+	private Parameter numberOfThreads;
+	private Parameter searchMethod;
+	private Parameter halvingFactor;
+	private Parameter refinements;
+	private Parameter budget;
+	private Parameter initialPoints;
+	private Parameter batchSize;
+	private Parameter[] dimensions;
+	private Parameter[] algorithmParameters;
+	private SelectedParameterItem exhaustiveGrid;
+	private SelectedParameterItem successiveHalving;
+	private SelectedParameterItem bayesianOptimization;
 	private SelectedParameterItem rowWise;
 	private SelectedParameterItem columnWise;
 	private Object gridSearchXValue;
 	private Object gridSearchYValue;
+	private Map<String, Object> dimensionValues;
 	private Parameter evaluation;
 	private SelectedParameterItem correlationCoefficient;
 	private SelectedParameterItem rootMeanSquaredError;
@@ -63,6 +77,9 @@ public class GridSearchManager {
 	public GridSearchManager(Parameter[] algorithmParameters) {
 		List<SelectedParameterItem> list = null;
 
+		exhaustiveGrid = new SelectedParameterItem("Exhaustive grid", "-search-method GRID");
+		successiveHalving = new SelectedParameterItem("Successive halving", "-search-method HALVING");
+		bayesianOptimization = new SelectedParameterItem("Bayesian optimization", "-search-method BAYES");
 		rowWise = new SelectedParameterItem("Row wise", "-traversal ROW-WISE");
 		columnWise = new SelectedParameterItem("Column wise", "-traversal COLUMN-WISE");
 		correlationCoefficient = new SelectedParameterItem("Correlation coefficient", "-E CC");
@@ -92,6 +109,13 @@ public class GridSearchManager {
 		baseY = new Parameter(10.0, "Base y", Parameter.TYPE.DOUBLE, "-y-base");
 		expressionY = new Parameter("I", "Expression y", Parameter.TYPE.STRING, "-y-expression");
 		traversal = ParameterUtilities.createSelectedParameter("Grid traversal", columnWise, rowWise);
+		searchMethod = ParameterUtilities.createSelectedParameter("Search method", exhaustiveGrid, successiveHalving, bayesianOptimization);
+		halvingFactor = new Parameter(3, "Successive halving: reduction factor per round", Parameter.TYPE.INTEGER, "-halving-factor");
+		refinements = new Parameter(1, "Successive halving: coarse-to-fine refinements", Parameter.TYPE.INTEGER, "-refinements");
+		budget = new Parameter(30, "Bayesian optimization: number of evaluations", Parameter.TYPE.INTEGER, "-bayes-budget");
+		initialPoints = new Parameter(10, "Bayesian optimization: number of random initial points", Parameter.TYPE.INTEGER, "-bayes-initial");
+		batchSize = new Parameter(4, "Bayesian optimization: points evaluated at once", Parameter.TYPE.INTEGER, "-bayes-batch");
+		numberOfThreads = new Parameter(Runtime.getRuntime().availableProcessors(), "Number of threads", Parameter.TYPE.INTEGER, "-num-threads");
 		evaluation = ParameterUtilities.createSelectedParameter("Evaluation method", accuracy, correlationCoefficient,
 				rootMeanSquaredError, rootRelativeSquaredError, meanAbsoluteError, rootAbsoluteError, combined, kappa);
 
@@ -106,6 +130,15 @@ public class GridSearchManager {
 			list.add(new SelectedParameterItem(parameter.getName(), "-y-property " + parameter.getGridSearchString()));
 		}
 		gridY = new Parameter(new SelectedParameter(list, 0), "Parameter y", Parameter.TYPE.SELECTED_PARAMETER, null);
+
+		// further parameters of the Bayesian optimization: empty if not
+		// optimized, otherwise "min max [step [base [expression]]]"
+		this.algorithmParameters = algorithmParameters;
+		dimensions = new Parameter[algorithmParameters.length];
+		for (int i = 0; i < algorithmParameters.length; i++) {
+			dimensions[i] = new Parameter("", "Bayesian optimization: range of " + algorithmParameters[i].getName()
+					+ " (min max [step [base [expression]]])", Parameter.TYPE.STRING, null);
+		}
 	}
 
 	/**
@@ -114,7 +147,7 @@ public class GridSearchManager {
 	 * @return
 	 */
 	public Class<? extends Object> getImplementingClass() {
-		return GridSearch.class;
+		return ParallelGridSearch.class;
 	}
 
 	/**
@@ -129,8 +162,15 @@ public class GridSearchManager {
 		String options = null;
 		Classifier classifier = null;
 
-		classifier = new GridSearch();
+		classifier = new ParallelGridSearch();
 		options = ParameterUtilities.buildOptionsString(getParameters());
+		if (isBayesianOptimization()) {
+			for (int i = 0; i < dimensions.length; i++) {
+				if (!isEmpty(dimensions[i])) {
+					options += " -bayes-property \"" + algorithmParameters[i].getGridSearchString() + " " + dimensions[i].getValue() + "\" ";
+				}
+			}
+		}
 		options += " -filter " + AllFilter.class.getCanonicalName() + " ";
 		options += " -W " + algorithmClassName + " -- ";
 		options += ParameterUtilities.buildOptionsString(algorithmParameters);
@@ -148,6 +188,14 @@ public class GridSearchManager {
 	public void saveResult(Classifier classifier, Class<? extends Object> clazz) throws Exception {
 		gridSearchXValue = getResult(gridX, classifier, clazz);
 		gridSearchYValue = getResult(gridY, classifier, clazz);
+		dimensionValues = new LinkedHashMap<String, Object>();
+		if (isBayesianOptimization()) {
+			for (int i = 0; i < dimensions.length; i++) {
+				if (!isEmpty(dimensions[i])) {
+					dimensionValues.put(algorithmParameters[i].getName(), getResult(algorithmParameters[i].getGridSearchString(), classifier, clazz));
+				}
+			}
+		}
 	}
 
 	/**
@@ -194,14 +242,46 @@ public class GridSearchManager {
 		return gridSearchYValue;
 	}
 
+	/**
+	 * Returns the results of the further parameters of the Bayesian
+	 * optimization (name and value).
+	 * 
+	 * @return
+	 */
+	public Map<String, Object> getDimensionValues() {
+		return dimensionValues;
+	}
+
 	/**
 	 * Returns the parameters that are necessary to perform a grid search.
 	 * 
 	 * @return
 	 */
 	public Parameter[] getParameters() {
-		return new Parameter[] { gridX, gridY, expandableGrid, evaluation, minX, maxX, stepX, baseX, expressionX, minY,
-				maxY, stepY, baseY, expressionY, seed, maxGridExtensions, sampleSize, traversal };
+		return ParameterUtilities.mergeParameters(new Parameter[] { gridX, gridY, expandableGrid, evaluation, minX, maxX, stepX, baseX, expressionX,
+				minY, maxY, stepY, baseY, expressionY, seed, maxGridExtensions, sampleSize, traversal, numberOfThreads, searchMethod, halvingFactor,
+				refinements, budget, initialPoints, batchSize }, dimensions);
+	}
+
+	/**
+	 * Internal method to check if the Bayesian optimization is selected.
+	 * 
+	 * @return
+	 */
+	private boolean isBayesianOptimization() {
+		SelectedParameter item = (SelectedParameter) searchMethod.getValue();
+
+		return item.getItems().get(item.getSelectedIndex()).equals(bayesianOptimization);
+	}
+
+	/**
+	 * Internal method to check if the value of a string parameter is empty.
+	 * 
+	 * @param parameter
+	 * @return
+	 */
+	private static boolean isEmpty(Parameter parameter) {
+		return parameter.getValue() == null || ((String) parameter.getValue()).trim().isEmpty();
 	}
 
 	/**
@@ -215,13 +295,27 @@ public class GridSearchManager {
 	private Object getResult(Parameter parameter, Classifier classifier, Class<? extends Object> clazz)
 			throws Exception {
 		SelectedParameter item = null;
+
+		item = (SelectedParameter) parameter.getValue();
+		return getResult(item.getItems().get(item.getSelectedIndex()).getOptionString(), classifier, clazz);
+	}
+
+	/**
+	 * Internal method to read out the result of a grid search property (e.g.
+	 * "classifier.cost").
+	 * 
+	 * @param property
+	 * @param classifier
+	 * @param clazz
+	 * @return
+	 * @throws Exception
+	 */
+	private Object getResult(String property, Classifier classifier, Class<? extends Object> clazz) throws Exception {
 		String field = null;
 		Method method = null;
 		Object result = null;
 
-		item = (SelectedParameter) parameter.getValue();
-		field = item.getItems().get(item.getSelectedIndex()).getOptionString();
-		field = field.substring(field.indexOf(".") + 1);
+		field = property.substring(property.indexOf(".") + 1);
 		field = "get" + field.substring(0, 1).toUpperCase() + field.substring(1);
 
 		try {
@@ -0,0 +1,996 @@
+package ecst.algorithm.classification;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.classifiers.functions.LibSVM;
+import weka.classifiers.meta.GridSearch;
+import weka.core.Instances;
+import weka.core.MathematicalExpression;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.NumericCleaner;
+import weka.filters.unsupervised.instance.Resample;
+import ecst.utilities.ParallelFoldEvaluator;
+import ecst.utilities.ThreadUtilities;
+
+/**
+ * This class extends WEKA's grid search by an evaluation of the grid points on
+ * several threads (one thread if the grid search is trained inside another
+ * parallel evaluation, e.g. in a fold of a parallel cross-validation; see
+ * ThreadUtilities). The folds of the cross-validations are created once per
+ * number of folds and are reused for all grid points; they are the same as in
+ * WEKA's grid search, so that the result is the same, too. The search itself
+ * (initial grid, expandable grid, traversal and evaluation method) is the one
+ * of WEKA's grid search.
+ * 
+ * Alternatively, the grid points can be searched by successive halving: all
+ * grid points are evaluated on a small part of the data, and only the best
+ * points (1 / halving factor) are evaluated again on a part that is larger by
+ * the halving factor, until the best point is determined on all data. Then
+ * the neighborhood of the best point can be refined with half the step sizes
+ * (coarse-to-fine).
+ * 
+ * The third search method is a Bayesian optimization: a Gaussian process
+ * models the performance, and the points with the maximum expected
+ * improvement are evaluated in batches on several threads until the budget of
+ * evaluations is spent. Besides x and y, any number of further classifier
+ * properties can be optimized. The points are not restricted to the grid,
+ * but are rounded to the step size if it is greater than zero.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class ParallelGridSearch extends GridSearch {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int SEARCH_GRID = 0;
+	public static final int SEARCH_HALVING = 1;
+	public static final int SEARCH_BAYES = 2;
+	public static final int MINIMUM_HALVING_INSTANCES = 30;
+	public static final int MAXIMUM_RANDOM_ATTEMPTS = 1000;
+
+	private int numberOfThreads;
+	private int searchMethod;
+	private int halvingFactor;
+	private int refinements;
+	private int budget;
+	private int initialPoints;
+	private int batchSize;
+	private List<Dimension> dimensions;
+	private double[] dimensionValues;
+	private transient Instances foldsInstances;
+	private transient Instances filteredInstances;
+	private transient Map<Integer, List<List<Instances>>> folds;
+
+	/**
+	 * Constructor.
+	 */
+	public ParallelGridSearch() {
+		super();
+
+		numberOfThreads = Runtime.getRuntime().availableProcessors();
+		searchMethod = SEARCH_GRID;
+		halvingFactor = 3;
+		refinements = 1;
+		budget = 30;
+		initialPoints = 10;
+		batchSize = 4;
+		dimensions = new ArrayList<Dimension>();
+	}
+
+	/**
+	 * Returns an enumeration describing the available options.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public Enumeration listOptions() {
+		Vector result = new Vector();
+		Enumeration enumeration = super.listOptions();
+
+		result.addElement(new Option("\tNumber of threads that evaluate the grid points.\n"
+				+ "\t(default: number of processors; one thread inside another parallel evaluation)", "num-threads", 1, "-num-threads <num>"));
+		result.addElement(new Option("\tSearch method: exhaustive grid (GRID), successive halving (HALVING)\n" + "\tor Bayesian optimization (BAYES).\n"
+				+ "\t(default: GRID)", "search-method", 1, "-search-method <GRID|HALVING|BAYES>"));
+		result.addElement(new Option("\tSuccessive halving: factor by which the number of grid points is reduced\n"
+				+ "\tand the number of instances is increased in each round.\n" + "\t(default: 3)", "halving-factor", 1, "-halving-factor <num>"));
+		result.addElement(new Option("\tSuccessive halving: number of coarse-to-fine refinements around the best point.\n" + "\t(default: 1)",
+				"refinements", 1, "-refinements <num>"));
+		result.addElement(new Option("\tBayesian optimization: number of evaluated points.\n" + "\t(default: 30)", "bayes-budget", 1, "-bayes-budget <num>"));
+		result.addElement(new Option("\tBayesian optimization: number of random points before the model is used.\n" + "\t(default: 10)",
+				"bayes-initial", 1, "-bayes-initial <num>"));
+		result.addElement(new Option("\tBayesian optimization: number of points that are proposed and evaluated at once.\n" + "\t(default: 4)",
+				"bayes-batch", 1, "-bayes-batch <num>"));
+		result.addElement(new Option("\tBayesian optimization: further classifier property that is optimized,\n"
+				+ "\te.g. \"classifier.gamma -5 2 1 10 pow(BASE,I)\" (step, base and expression are optional).\n"
+				+ "\tThe option can be given several times.", "bayes-property", 1, "-bayes-property \"<property> <min> <max> [<step> [<base> [<expression>]]]\""));
+		while (enumeration.hasMoreElements()) {
+			result.addElement(enumeration.nextElement());
+		}
+		return result.elements();
+	}
+
+	/**
+	 * Parses the options in WEKA format.
+	 */
+	@Override
+	public void setOptions(String[] options) throws Exception {
+		String tmp = Utils.getOption("num-threads", options);
+
+		if (!"".equals(tmp)) {
+			numberOfThreads = Integer.parseInt(tmp);
+		}
+		tmp = Utils.getOption("search-method", options);
+		if ("HALVING".equalsIgnoreCase(tmp)) {
+			searchMethod = SEARCH_HALVING;
+		} else if ("BAYES".equalsIgnoreCase(tmp)) {
+			searchMethod = SEARCH_BAYES;
+		} else if ("".equals(tmp) || "GRID".equalsIgnoreCase(tmp)) {
+			searchMethod = SEARCH_GRID;
+		} else {
+			throw new IllegalArgumentException("Unknown search method: " + tmp);
+		}
+		tmp = Utils.getOption("halving-factor", options);
+		if (!"".equals(tmp)) {
+			halvingFactor = Math.max(2, Integer.parseInt(tmp));
+		}
+		tmp = Utils.getOption("refinements", options);
+		if (!"".equals(tmp)) {
+			refinements = Integer.parseInt(tmp);
+		}
+		tmp = Utils.getOption("bayes-budget", options);
+		if (!"".equals(tmp)) {
+			budget = Math.max(1, Integer.parseInt(tmp));
+		}
+		tmp = Utils.getOption("bayes-initial", options);
+		if (!"".equals(tmp)) {
+			initialPoints = Math.max(1, Integer.parseInt(tmp));
+		}
+		tmp = Utils.getOption("bayes-batch", options);
+		if (!"".equals(tmp)) {
+			batchSize = Math.max(1, Integer.parseInt(tmp));
+		}
+		dimensions = new ArrayList<Dimension>();
+		tmp = Utils.getOption("bayes-property", options);
+		while (!"".equals(tmp)) {
+			dimensions.add(new Dimension(tmp));
+			tmp = Utils.getOption("bayes-property", options);
+		}
+		super.setOptions(options);
+	}
+
+	/**
+	 * Returns the options in WEKA format.
+	 */
+	@Override
+	public String[] getOptions() {
+		String[] options = super.getOptions();
+		String[] result = new String[options.length + 14 + 2 * dimensions.size()];
+
+		result[0] = "-num-threads";
+		result[1] = "" + numberOfThreads;
+		result[2] = "-search-method";
+		result[3] = searchMethod == SEARCH_HALVING ? "HALVING" : searchMethod == SEARCH_BAYES ? "BAYES" : "GRID";
+		result[4] = "-halving-factor";
+		result[5] = "" + halvingFactor;
+		result[6] = "-refinements";
+		result[7] = "" + refinements;
+		result[8] = "-bayes-budget";
+		result[9] = "" + budget;
+		result[10] = "-bayes-initial";
+		result[11] = "" + initialPoints;
+		result[12] = "-bayes-batch";
+		result[13] = "" + batchSize;
+		for (int i = 0; i < dimensions.size(); i++) {
+			result[14 + 2 * i] = "-bayes-property";
+			result[15 + 2 * i] = dimensions.get(i).toString();
+		}
+		System.arraycopy(options, 0, result, 14 + 2 * dimensions.size(), options.length);
+		return result;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	public void setNumberOfThreads(int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public int getSearchMethod() {
+		return searchMethod;
+	}
+
+	public void setSearchMethod(int searchMethod) {
+		this.searchMethod = searchMethod;
+	}
+
+	public int getHalvingFactor() {
+		return halvingFactor;
+	}
+
+	public void setHalvingFactor(int halvingFactor) {
+		this.halvingFactor = halvingFactor;
+	}
+
+	public int getRefinements() {
+		return refinements;
+	}
+
+	public void setRefinements(int refinements) {
+		this.refinements = refinements;
+	}
+
+	public int getBudget() {
+		return budget;
+	}
+
+	public void setBudget(int budget) {
+		this.budget = budget;
+	}
+
+	public int getInitialPoints() {
+		return initialPoints;
+	}
+
+	public void setInitialPoints(int initialPoints) {
+		this.initialPoints = initialPoints;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Returns the best values of the further properties of the Bayesian
+	 * optimization (after the expressions are applied), or null if no further
+	 * properties were optimized.
+	 * 
+	 * @return
+	 */
+	public double[] getDimensionValues() {
+		double[] result = null;
+
+		if (dimensionValues == null) {
+			return null;
+		}
+		result = new double[dimensionValues.length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = evaluate(dimensions.get(i), dimensionValues[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Performs the grid search and builds the best classifier.
+	 */
+	@Override
+	public void buildClassifier(Instances data) throws Exception {
+		dimensionValues = null;
+		folds = new HashMap<Integer, List<List<Instances>>>();
+		try {
+			super.buildClassifier(data);
+		} finally {
+			folds = null;
+			foldsInstances = null;
+			filteredInstances = null;
+		}
+	}
+
+	/**
+	 * Returns the best grid point of WEKA's grid search, of the successive
+	 * halving or of the Bayesian optimization.
+	 */
+	@Override
+	protected PointDouble findBest() throws Exception {
+		if (searchMethod == SEARCH_GRID || getXProperty().startsWith(PREFIX_FILTER) || getYProperty().startsWith(PREFIX_FILTER)) {
+			return super.findBest();
+		}
+		if (searchMethod == SEARCH_BAYES) {
+			return bayesianOptimization();
+		}
+		return successiveHalving();
+	}
+
+	/**
+	 * Sets up the classifier or filter like WEKA's grid search and
+	 * additionally sets the best values of the further properties of the
+	 * Bayesian optimization.
+	 */
+	@Override
+	protected Object setup(Object original, double valueX, double valueY) throws Exception {
+		return setup(original, valueX, valueY, dimensionValues);
+	}
+
+	/**
+	 * Determines the best grid point like WEKA's grid search, but evaluates
+	 * the grid points that are not cached on several threads with shared
+	 * folds. If the grid search parameters are filter properties, the data
+	 * depend on the grid point and WEKA's implementation is used.
+	 */
+	@Override
+	protected PointDouble determineBestInGrid(Grid grid, Instances inst, int cv) throws Exception {
+		boolean allCached = true;
+		List<PointDouble> points = null;
+		List<PointDouble> uncachedPoints = new ArrayList<PointDouble>();
+		List<Performance> uncachedPerformances = null;
+		Vector<Performance> performances = new Vector<Performance>();
+		Performance performance = null;
+		PointDouble result = null;
+
+		if (getXProperty().startsWith(PREFIX_FILTER) || getYProperty().startsWith(PREFIX_FILTER)) {
+			return super.determineBestInGrid(grid, inst, cv);
+		}
+
+		log("Determining best pair with " + cv + "-fold CV in Grid:\n" + grid + "\n");
+
+		points = getPoints(grid);
+		for (PointDouble point : points) {
+			if (!m_Cache.isCached(cv, point)) {
+				uncachedPoints.add(point);
+			}
+		}
+		if (!uncachedPoints.isEmpty()) {
+			allCached = false;
+			uncachedPerformances = evaluatePoints(uncachedPoints, null, inst, cv);
+		}
+
+		// the performances are collected in the order of the traversal (ties
+		// are resolved like in WEKA's grid search)
+		for (PointDouble point : points) {
+			if (uncachedPoints.contains(point)) {
+				performance = uncachedPerformances.get(uncachedPoints.indexOf(point));
+				performances.add(performance);
+				m_Cache.add(cv, performance);
+				log("" + performance + ": cached=false");
+			} else {
+				performances.add(m_Cache.get(cv, point));
+				log("" + performances.lastElement() + ": cached=true");
+			}
+		}
+
+		if (allCached) {
+			log("All points were already cached - abnormal state!");
+			throw new IllegalStateException("All points were already cached - abnormal state!");
+		}
+
+		Collections.sort(performances, new PerformanceComparator(m_Evaluation));
+		result = performances.lastElement().getValues();
+
+		m_UniformPerformance = true;
+		for (int i = 1; i < performances.size(); i++) {
+			if (performances.get(i).getPerformance(m_Evaluation) != performances.get(0).getPerformance(m_Evaluation)) {
+				m_UniformPerformance = false;
+				break;
+			}
+		}
+		if (m_UniformPerformance) {
+			log("All performances are the same!");
+		}
+
+		logPerformances(grid, performances);
+		log("\nBest performance:\n" + performances.lastElement());
+
+		return result;
+	}
+
+	/**
+	 * Internal method to search the best grid point by successive halving and
+	 * to refine it afterwards. The rounds before the last one use a 2-fold
+	 * cross-validation on nested parts of the (stratified) data, the last
+	 * round and the refinements use a 10-fold cross-validation on all data
+	 * (like the initial grid and the neighborhood search of WEKA's grid
+	 * search).
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private PointDouble successiveHalving() throws Exception {
+		int rounds = 0;
+		int size;
+		int remaining;
+		double stepX;
+		double stepY;
+		PointDouble best = null;
+		Instances data = null;
+		Instances shuffled = null;
+		List<PointDouble> candidates = getPoints(m_Grid);
+		Grid grid = null;
+
+		m_GridExtensionsPerformed = 0;
+		m_UniformPerformance = false;
+
+		shuffled = new Instances(getSample());
+		shuffled.randomize(new Random(getSeed()));
+		if (shuffled.classAttribute().isNominal()) {
+			shuffled.stratify(10);
+		}
+
+		for (remaining = candidates.size(); remaining > 1; remaining = (remaining + halvingFactor - 1) / halvingFactor) {
+			rounds++;
+		}
+		if (rounds == 0) {
+			return candidates.get(0);
+		}
+
+		for (int round = 0; round < rounds; round++) {
+			if (round == rounds - 1) {
+				data = shuffled;
+			} else {
+				size = (int) Math.round(shuffled.numInstances() * Math.pow(halvingFactor, round - rounds + 1));
+				size = Math.min(shuffled.numInstances(), Math.max(MINIMUM_HALVING_INSTANCES, size));
+				data = new Instances(shuffled, 0, size);
+			}
+			log("Successive halving, round " + (round + 1) + "/" + rounds + ": " + candidates.size() + " points, " + data.numInstances()
+					+ " instances\n");
+			candidates = selectBest(candidates, data, round == rounds - 1 ? 10 : 2, (candidates.size() + halvingFactor - 1) / halvingFactor);
+		}
+		best = candidates.get(0);
+
+		stepX = getXStep();
+		stepY = getYStep();
+		for (int i = 0; i < refinements; i++) {
+			stepX /= 2;
+			stepY /= 2;
+			grid = new Grid(Math.max(getXMin(), best.getX() - stepX), Math.min(getXMax(), best.getX() + stepX), stepX, m_Grid.getLabelX(), Math.max(
+					getYMin(), best.getY() - stepY), Math.min(getYMax(), best.getY() + stepY), stepY, m_Grid.getLabelY());
+			log("Refinement " + (i + 1) + "/" + refinements + ":\n" + grid + "\n");
+			best = selectBest(getPoints(grid), shuffled, 10, 1).get(0);
+		}
+
+		log("\nFinal result: " + best);
+		return best;
+	}
+
+	/**
+	 * Internal method to search the best point by Bayesian optimization. The
+	 * points are evaluated with a 10-fold cross-validation (like the
+	 * neighborhood search of WEKA's grid search). The x and y values and the
+	 * values of the further properties are mapped to the unit cube for the
+	 * Gaussian process.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private PointDouble bayesianOptimization() throws Exception {
+		int evaluations = 0;
+		int attempts;
+		int dimension = 2 + dimensions.size();
+		double score;
+		double[] values = null;
+		double[] unit = null;
+		Random random = new Random(getSeed());
+		Instances data = getSample();
+		GaussianProcessOptimizer optimizer = new GaussianProcessOptimizer(dimension, random);
+		PerformanceComparator comparator = new PerformanceComparator(m_Evaluation);
+		Set<String> evaluated = new HashSet<String>();
+		List<double[]> proposals = optimizer.createInitialDesign(Math.min(initialPoints, budget));
+		List<double[]> batch = null;
+		List<PointDouble> points = null;
+		List<double[]> pointDimensions = null;
+		List<Performance> performances = null;
+		Performance best = null;
+		double[] bestDimensions = null;
+
+		m_GridExtensionsPerformed = 0;
+		m_UniformPerformance = false;
+
+		for (Dimension property : dimensions) {
+			if (!property.getProperty().startsWith(PREFIX_CLASSIFIER)) {
+				throw new IllegalArgumentException("Only classifier properties can be optimized: " + property.getProperty());
+			}
+		}
+
+		while (evaluations < budget) {
+			// the proposals are rounded to the steps; points that were
+			// already evaluated are replaced by random points
+			batch = new ArrayList<double[]>();
+			for (int i = 0; i < proposals.size() && evaluations + batch.size() < budget; i++) {
+				values = toValues(proposals.get(i));
+				if (evaluated.add(Arrays.toString(values))) {
+					batch.add(values);
+				}
+			}
+			for (attempts = 0; batch.size() < proposals.size() && evaluations + batch.size() < budget && attempts < MAXIMUM_RANDOM_ATTEMPTS; attempts++) {
+				unit = new double[dimension];
+				for (int i = 0; i < dimension; i++) {
+					unit[i] = random.nextDouble();
+				}
+				values = toValues(unit);
+				if (evaluated.add(Arrays.toString(values))) {
+					batch.add(values);
+				}
+			}
+			if (batch.isEmpty()) {
+				log("All points were evaluated");
+				break;
+			}
+
+			log("Bayesian optimization, evaluations " + (evaluations + 1) + "-" + (evaluations + batch.size()) + "/" + budget + "\n");
+			points = new ArrayList<PointDouble>(batch.size());
+			pointDimensions = new ArrayList<double[]>(batch.size());
+			for (double[] point : batch) {
+				points.add(new PointDouble(point[0], point[1]));
+				pointDimensions.add(Arrays.copyOfRange(point, 2, dimension));
+			}
+			performances = evaluatePoints(points, pointDimensions, data, 10);
+
+			for (int i = 0; i < batch.size(); i++) {
+				score = performances.get(i).getPerformance(m_Evaluation);
+				if (m_Evaluation != EVALUATION_CC && m_Evaluation != EVALUATION_ACC && m_Evaluation != EVALUATION_KAPPA) {
+					score = -score;
+				}
+				optimizer.addObservation(toUnit(batch.get(i)), score);
+				log("" + performances.get(i) + (dimensions.isEmpty() ? "" : ", " + Arrays.toString(pointDimensions.get(i))));
+				if (best == null || comparator.compare(performances.get(i), best) > 0) {
+					best = performances.get(i);
+					bestDimensions = pointDimensions.get(i);
+				}
+			}
+			evaluations += batch.size();
+
+			if (evaluations < budget) {
+				proposals = optimizer.propose(Math.min(batchSize, budget - evaluations));
+			}
+		}
+
+		dimensionValues = dimensions.isEmpty() ? null : bestDimensions;
+		log("\nFinal result: " + best + (dimensions.isEmpty() ? "" : ", " + Arrays.toString(bestDimensions)));
+		return best.getValues();
+	}
+
+	/**
+	 * Internal method to map a point of the unit cube to the values of x, y
+	 * and the further properties. The values are rounded to the steps.
+	 * 
+	 * @param unit
+	 * @return
+	 */
+	private double[] toValues(double[] unit) {
+		double[] result = new double[unit.length];
+
+		result[0] = toValue(unit[0], getXMin(), getXMax(), getXStep());
+		result[1] = toValue(unit[1], getYMin(), getYMax(), getYStep());
+		for (int i = 2; i < unit.length; i++) {
+			result[i] = toValue(unit[i], dimensions.get(i - 2).getMin(), dimensions.get(i - 2).getMax(), dimensions.get(i - 2).getStep());
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to map one coordinate of the unit cube to a value.
+	 * 
+	 * @param unit
+	 * @param min
+	 * @param max
+	 * @param step
+	 * @return
+	 */
+	private static double toValue(double unit, double min, double max, double step) {
+		double result = min + unit * (max - min);
+
+		if (step > 0) {
+			result = min + Math.round((result - min) / step) * step;
+			if (result > max) {
+				result -= step;
+			}
+		}
+		return Math.max(min, Math.min(max, result));
+	}
+
+	/**
+	 * Internal method to map the values of x, y and the further properties to
+	 * the unit cube.
+	 * 
+	 * @param values
+	 * @return
+	 */
+	private double[] toUnit(double[] values) {
+		double[] result = new double[values.length];
+
+		result[0] = toUnit(values[0], getXMin(), getXMax());
+		result[1] = toUnit(values[1], getYMin(), getYMax());
+		for (int i = 2; i < values.length; i++) {
+			result[i] = toUnit(values[i], dimensions.get(i - 2).getMin(), dimensions.get(i - 2).getMax());
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to map one value to a coordinate of the unit cube.
+	 * 
+	 * @param value
+	 * @param min
+	 * @param max
+	 * @return
+	 */
+	private static double toUnit(double value, double min, double max) {
+		return max > min ? (value - min) / (max - min) : 0;
+	}
+
+	/**
+	 * Internal method to set up the classifier or filter with the values of x
+	 * and y and the values of the further properties of the Bayesian
+	 * optimization.
+	 * 
+	 * @param original
+	 * @param valueX
+	 * @param valueY
+	 * @param values
+	 *            the values of the further properties (before the expressions
+	 *            are applied); null if there are none
+	 * @return
+	 * @throws Exception
+	 */
+	private Object setup(Object original, double valueX, double valueY, double[] values) throws Exception {
+		Object result = super.setup(original, valueX, valueY);
+
+		if (values != null && original instanceof Classifier) {
+			for (int i = 0; i < values.length; i++) {
+				setValue(result, dimensions.get(i).getProperty().substring(PREFIX_CLASSIFIER.length()), evaluate(dimensions.get(i), values[i]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Applies the expression of a further property of the Bayesian
+	 * optimization to a value (like WEKA's grid search for x and y).
+	 * 
+	 * @param dimension
+	 * @param value
+	 * @return
+	 */
+	protected double evaluate(Dimension dimension, double value) {
+		HashMap<String, Double> symbols = new HashMap<String, Double>();
+
+		try {
+			symbols.put("BASE", dimension.getBase());
+			symbols.put("FROM", dimension.getMin());
+			symbols.put("TO", dimension.getMax());
+			symbols.put("STEP", dimension.getStep());
+			symbols.put("I", value);
+			return MathematicalExpression.evaluate(dimension.getExpression(), symbols);
+		} catch (Exception e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Internal method to evaluate the given grid points and to return the
+	 * best ones in the order of the given points.
+	 * 
+	 * @param points
+	 * @param data
+	 * @param cv
+	 * @param number
+	 *            the number of points to return
+	 * @return
+	 * @throws Exception
+	 */
+	private List<PointDouble> selectBest(List<PointDouble> points, Instances data, int cv, int number) throws Exception {
+		List<PointDouble> result = new ArrayList<PointDouble>();
+		List<Performance> performances = evaluatePoints(points, null, data, cv);
+		List<Performance> sorted = new ArrayList<Performance>(performances);
+
+		Collections.sort(sorted, new PerformanceComparator(m_Evaluation));
+		for (Performance performance : performances) {
+			log("" + performance);
+		}
+		if (number == 1) {
+			// ties are resolved like in WEKA's grid search
+			result.add(sorted.get(sorted.size() - 1).getValues());
+			return result;
+		}
+
+		sorted = sorted.subList(Math.max(0, sorted.size() - number), sorted.size());
+		for (Performance performance : performances) {
+			if (sorted.contains(performance)) {
+				result.add(performance.getValues());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to return the sample of the data for the search (like
+	 * WEKA's grid search).
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private Instances getSample() throws Exception {
+		Resample resample = null;
+
+		if (getSampleSizePercent() == 100) {
+			return m_Data;
+		}
+		log("Generating sample (" + getSampleSizePercent() + "%)");
+		resample = new Resample();
+		resample.setRandomSeed(getSeed());
+		resample.setSampleSizePercent(getSampleSizePercent());
+		resample.setInputFormat(m_Data);
+		return Filter.useFilter(m_Data, resample);
+	}
+
+	/**
+	 * Internal method to return the points of the grid in the order of the
+	 * traversal.
+	 * 
+	 * @param grid
+	 * @return
+	 */
+	private List<PointDouble> getPoints(Grid grid) {
+		int size = m_Traversal == TRAVERSAL_BY_COLUMN ? grid.width() : grid.height();
+		Enumeration<PointDouble> enumeration = null;
+		List<PointDouble> points = new ArrayList<PointDouble>();
+
+		for (int i = 0; i < size; i++) {
+			enumeration = m_Traversal == TRAVERSAL_BY_COLUMN ? grid.column(i) : grid.row(i);
+			while (enumeration.hasMoreElements()) {
+				points.add(enumeration.nextElement());
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * Internal method to evaluate the given grid points with a
+	 * cross-validation on several threads. The grid points of LibSVM with the
+	 * same kernel parameters are evaluated one after another and share the
+	 * kernel values of the folds (see PrecomputedKernel).
+	 * 
+	 * @param points
+	 * @param pointDimensions
+	 *            the values of the further properties of the Bayesian
+	 *            optimization for each point; null if there are none
+	 * @param inst
+	 * @param cv
+	 * @return the performances in the order of the points
+	 * @throws Exception
+	 */
+	private List<Performance> evaluatePoints(List<PointDouble> points, List<double[]> pointDimensions, Instances inst, int cv) throws Exception {
+		ExecutorService executor = null;
+		List<Future<Performance>> futures = new ArrayList<Future<Performance>>(Collections.<Future<Performance>> nCopies(points.size(), null));
+		List<Performance> performances = new ArrayList<Performance>(points.size());
+		List<Classifier> classifiers = new ArrayList<Classifier>(points.size());
+		final Instances data = getFilteredInstances(inst, points.get(0));
+		final List<List<Instances>> cvFolds = getFolds(data, cv);
+		final PrecomputedKernel.Cache kernels;
+
+		for (int i = 0; i < points.size(); i++) {
+			classifiers.add((Classifier) setup(getClassifier(), evaluate(points.get(i).getX(), true), evaluate(points.get(i).getY(), false),
+					pointDimensions == null ? null : pointDimensions.get(i)));
+		}
+		kernels = new PrecomputedKernel.Cache(classifiers, cvFolds);
+
+		executor = ThreadUtilities.newFixedThreadPool(Math.max(1, Math.min(ThreadUtilities.getNumberOfThreads(numberOfThreads), points.size())));
+		try {
+			for (final int i : kernels.getOrder()) {
+				final PointDouble point = points.get(i);
+				final Classifier classifier = classifiers.get(i);
+
+				futures.set(i, executor.submit(new Callable<Performance>() {
+					@Override
+					public Performance call() throws Exception {
+						return evaluatePoint(point, classifier, data, cvFolds, kernels, i);
+					}
+				}));
+			}
+			for (Future<Performance> future : futures) {
+				performances.add(future.get());
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw new Exception(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return performances;
+	}
+
+	/**
+	 * Internal method to evaluate one grid point on the given folds. The
+	 * evaluation is the same as WEKA's cross-validation.
+	 * 
+	 * @param point
+	 * @param classifier
+	 *            the untrained classifier of the grid point
+	 * @param data
+	 * @param cvFolds
+	 *            the training sets (index 0) and the test sets (index 1)
+	 * @param kernels
+	 * @param index
+	 *            the index of the classifier in the kernel cache
+	 * @return
+	 * @throws Exception
+	 */
+	private Performance evaluatePoint(PointDouble point, Classifier classifier, Instances data, List<List<Instances>> cvFolds,
+			PrecomputedKernel.Cache kernels, int index) throws Exception {
+		int fold;
+		int numberOfFolds = cvFolds.get(0).size();
+		double[][][] distributions = new double[numberOfFolds][][];
+		List<Instances> trainingSets = new ArrayList<Instances>();
+		Evaluation evaluation = new Evaluation(data);
+		ParallelFoldEvaluator evaluator = new ParallelFoldEvaluator(1);
+
+		if (kernels.isPrecomputed(index)) {
+			// the points start at different folds, so that the kernels of
+			// the folds are computed by several threads at the same time;
+			// the predictions are added in the order of the folds
+			try {
+				for (int i = 0; i < numberOfFolds; i++) {
+					fold = (index + i) % numberOfFolds;
+					distributions[fold] = kernels.get(index, (LibSVM) classifier, fold).distributionsForInstances((LibSVM) classifier);
+				}
+			} finally {
+				kernels.release(index);
+			}
+			for (fold = 0; fold < numberOfFolds; fold++) {
+				evaluation.setPriors(cvFolds.get(0).get(fold));
+				for (int i = 0; i < distributions[fold].length; i++) {
+					evaluation.evaluateModelOnceAndRecordPrediction(distributions[fold][i], cvFolds.get(1).get(fold).instance(i));
+				}
+			}
+			return new Performance(point, evaluation);
+		}
+
+		// the classifiers of other grid points are trained on the same
+		// training sets at the same time
+		for (Instances training : cvFolds.get(0)) {
+			trainingSets.add(new Instances(training));
+		}
+		evaluator.setUpdatePriors(true);
+		evaluator.evaluate(classifier, trainingSets, cvFolds.get(1), evaluation);
+
+		return new Performance(point, evaluation);
+	}
+
+	/**
+	 * Internal method to return the instances after the filter of the grid
+	 * search (and WEKA's numeric cleaner). Since the grid search parameters
+	 * are no filter properties, the result is the same for all grid points.
+	 * 
+	 * @param inst
+	 * @param point
+	 * @return
+	 * @throws Exception
+	 */
+	private Instances getFilteredInstances(Instances inst, PointDouble point) throws Exception {
+		Filter filter = null;
+		Filter cleaner = null;
+		Instances data = null;
+
+		if (inst == foldsInstances) {
+			return filteredInstances;
+		}
+
+		filter = (Filter) setup(getFilter(), evaluate(point.getX(), true), evaluate(point.getY(), false));
+		filter.setInputFormat(inst);
+		data = Filter.useFilter(inst, filter);
+		// make sure that the numbers don't get too small - otherwise NaNs!
+		cleaner = new NumericCleaner();
+		cleaner.setInputFormat(data);
+		data = Filter.useFilter(data, cleaner);
+
+		foldsInstances = inst;
+		filteredInstances = data;
+		folds.clear();
+		return data;
+	}
+
+	/**
+	 * Internal method to return the folds of a cross-validation of the
+	 * filtered instances. The folds are created once per number of folds.
+	 * 
+	 * @param data
+	 * @param cv
+	 * @return the training sets (index 0) and the test sets (index 1)
+	 */
+	private List<List<Instances>> getFolds(Instances data, int cv) {
+		List<Instances> trainingSets = null;
+		List<Instances> testSets = null;
+		List<List<Instances>> cvFolds = folds.get(cv);
+
+		if (cvFolds == null) {
+			trainingSets = new ArrayList<Instances>(cv);
+			testSets = new ArrayList<Instances>(cv);
+			ParallelFoldEvaluator.createCrossValidationFolds(data, cv, new Random(getSeed()), trainingSets, testSets);
+			cvFolds = new ArrayList<List<Instances>>(2);
+			cvFolds.add(trainingSets);
+			cvFolds.add(testSets);
+			folds.put(cv, cvFolds);
+		}
+		return cvFolds;
+	}
+
+	/**
+	 * A further classifier property of the Bayesian optimization with its
+	 * range, step, base and expression (like x and y of the grid search).
+	 */
+	protected static class Dimension implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private String property;
+		private double min;
+		private double max;
+		private double step;
+		private double base;
+		private String expression;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param definition
+		 *            "property min max [step [base [expression]]]"
+		 */
+		public Dimension(String definition) {
+			String[] parts = definition.trim().split("\\s+", 6);
+
+			if (parts.length < 3) {
+				throw new IllegalArgumentException("Property, minimum and maximum expected: " + definition);
+			}
+			property = parts[0];
+			min = Double.parseDouble(parts[1]);
+			max = Double.parseDouble(parts[2]);
+			step = parts.length > 3 ? Double.parseDouble(parts[3]) : 1;
+			base = parts.length > 4 ? Double.parseDouble(parts[4]) : 10;
+			expression = parts.length > 5 ? parts[5] : "I";
+		}
+
+		public String getProperty() {
+			return property;
+		}
+
+		public double getMin() {
+			return min;
+		}
+
+		public double getMax() {
+			return max;
+		}
+
+		public double getStep() {
+			return step;
+		}
+
+		public double getBase() {
+			return base;
+		}
+
+		public String getExpression() {
+			return expression;
+		}
+
+		@Override
+		public String toString() {
+			return property + " " + min + " " + max + " " + step + " " + base + " " + expression;
+		}
+	}
+
+}
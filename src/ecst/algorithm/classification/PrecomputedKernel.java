@@ -0,0 +1,534 @@
+package ecst.algorithm.classification;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+import weka.classifiers.Classifier;
+import weka.classifiers.functions.LibSVM;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.Normalize;
+import weka.filters.unsupervised.attribute.ReplaceMissingValues;
+
+/**
+ * This class stores the kernel values of LibSVM for one fold of a
+ * cross-validation: the Gram matrix of the training set and the kernel values
+ * of the test instances with the training instances. The kernel values depend
+ * on the kernel parameters, but not on the parameters of the SVM (e.g. C or
+ * nu), so that the grid search trains all grid points with the same kernel
+ * parameters on the same matrix (libsvm's precomputed kernel). The instances
+ * are preprocessed like in LibSVM and the kernel values are computed like in
+ * libsvm, so that the predictions are the same as those of LibSVM. The
+ * precomputed models are used to evaluate grid points only; the best
+ * classifier of the grid search is trained normally.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+class PrecomputedKernel {
+
+	public static final long MAXIMUM_KERNEL_VALUES = 1L << 22;
+
+	private int numClasses;
+	private boolean nominal;
+	private double[] labels;
+	private svm_node[][] trainingRows;
+	private svm_node[][] testRows;
+
+	/**
+	 * Constructor. The training instances are preprocessed like in
+	 * LibSVM.buildClassifier(), the test instances like in
+	 * LibSVM.distributionForInstance().
+	 * 
+	 * @param libsvm
+	 *            the untrained classifier with the kernel parameters
+	 * @param training
+	 * @param test
+	 * @throws Exception
+	 */
+	public PrecomputedKernel(LibSVM libsvm, Instances training, Instances test) throws Exception {
+		int maximumIndex = 0;
+		double value;
+		double[] squares = null;
+		svm_node[] vector = null;
+		svm_node[][] vectors = null;
+		Instance instance = null;
+		Filter replaceMissingValues = null;
+		Filter normalize = null;
+		Instances data = new Instances(training);
+		svm_parameter parameter = new svm_parameter();
+
+		data.deleteWithMissingClass();
+		if (!libsvm.getDoNotReplaceMissingValues()) {
+			replaceMissingValues = new ReplaceMissingValues();
+			replaceMissingValues.setInputFormat(data);
+			data = Filter.useFilter(data, replaceMissingValues);
+		}
+		libsvm.getCapabilities().testWithFail(data);
+		if (libsvm.getNormalize()) {
+			normalize = new Normalize();
+			normalize.setInputFormat(data);
+			data = Filter.useFilter(data, normalize);
+		}
+
+		numClasses = data.numClasses();
+		nominal = data.classAttribute().isNominal();
+		labels = new double[data.numInstances()];
+		vectors = new svm_node[data.numInstances()][];
+		for (int i = 0; i < vectors.length; i++) {
+			vectors[i] = toNodes(data.instance(i));
+			labels[i] = data.instance(i).classValue();
+			if (vectors[i].length > 0) {
+				maximumIndex = Math.max(maximumIndex, vectors[i][vectors[i].length - 1].index);
+			}
+		}
+
+		parameter.kernel_type = libsvm.getKernelType().getSelectedTag().getID();
+		parameter.degree = libsvm.getDegree();
+		parameter.gamma = libsvm.getGamma() == 0 ? 1.0 / maximumIndex : libsvm.getGamma();
+		parameter.coef0 = libsvm.getCoef0();
+
+		// the training rows are the matrix of libsvm's training (index 0
+		// contains the number of the row)
+		if (parameter.kernel_type == svm_parameter.RBF) {
+			squares = new double[vectors.length];
+			for (int i = 0; i < vectors.length; i++) {
+				squares[i] = dot(vectors[i], vectors[i]);
+			}
+		}
+		trainingRows = new svm_node[vectors.length][vectors.length + 1];
+		for (int i = 0; i < vectors.length; i++) {
+			trainingRows[i][0] = createNode(0, i + 1);
+			for (int j = 0; j <= i; j++) {
+				value = trainingKernel(vectors[i], vectors[j], squares == null ? 0 : squares[i], squares == null ? 0 : squares[j], parameter);
+				trainingRows[i][j + 1] = createNode(j + 1, value);
+				trainingRows[j][i + 1] = createNode(i + 1, value);
+			}
+		}
+
+		testRows = new svm_node[test.numInstances()][vectors.length + 1];
+		for (int i = 0; i < testRows.length; i++) {
+			instance = test.instance(i);
+			if (replaceMissingValues != null) {
+				replaceMissingValues.input(instance);
+				replaceMissingValues.batchFinished();
+				instance = replaceMissingValues.output();
+			}
+			if (normalize != null) {
+				normalize.input(instance);
+				normalize.batchFinished();
+				instance = normalize.output();
+			}
+			vector = toNodes(instance);
+			testRows[i][0] = createNode(0, 0);
+			for (int j = 0; j < vectors.length; j++) {
+				testRows[i][j + 1] = createNode(j + 1, predictionKernel(vector, vectors[j], parameter));
+			}
+		}
+	}
+
+	/**
+	 * Trains LibSVM with the parameters of the given classifier on the
+	 * training rows and returns the distributions of the test instances (like
+	 * LibSVM.distributionForInstance()).
+	 * 
+	 * @param libsvm
+	 *            the untrained classifier with the SVM parameters
+	 * @return
+	 * @throws Exception
+	 */
+	public double[][] distributionsForInstances(LibSVM libsvm) throws Exception {
+		double prediction;
+		double[][] distributions = new double[testRows.length][numClasses];
+		String error = null;
+		svm_model model = null;
+		svm_problem problem = new svm_problem();
+		svm_parameter parameter = getParameters(libsvm);
+
+		parameter.kernel_type = svm_parameter.PRECOMPUTED;
+		problem.l = labels.length;
+		problem.y = labels;
+		problem.x = trainingRows;
+		error = svm.svm_check_parameter(problem, parameter);
+		if (error != null) {
+			throw new Exception("Error: " + error);
+		}
+		model = svm.svm_train(problem, parameter);
+
+		for (int i = 0; i < testRows.length; i++) {
+			prediction = svm.svm_predict(model, testRows[i]);
+			if (!nominal) {
+				distributions[i][0] = prediction;
+			} else if (parameter.svm_type == svm_parameter.ONE_CLASS) {
+				distributions[i][0] = prediction > 0 ? 1 : 0;
+			} else {
+				distributions[i][(int) prediction] = 1;
+			}
+		}
+		return distributions;
+	}
+
+	/**
+	 * Returns the key of the kernel parameters of the given classifier or
+	 * null if the classifier is not a LibSVM whose kernel can be precomputed
+	 * (probability estimates need a cross-validation with random folds inside
+	 * the training).
+	 * 
+	 * @param classifier
+	 * @return
+	 */
+	public static String getKey(Classifier classifier) {
+		LibSVM libsvm = null;
+		int kernelType;
+		StringBuilder key = new StringBuilder();
+
+		if (classifier == null || classifier.getClass() != LibSVM.class) {
+			return null;
+		}
+		libsvm = (LibSVM) classifier;
+		kernelType = libsvm.getKernelType().getSelectedTag().getID();
+		if (libsvm.getProbabilityEstimates() || kernelType == svm_parameter.PRECOMPUTED) {
+			return null;
+		}
+
+		key.append(kernelType).append(' ').append(libsvm.getNormalize()).append(' ').append(libsvm.getDoNotReplaceMissingValues());
+		if (kernelType != svm_parameter.LINEAR) {
+			key.append(' ').append(libsvm.getGamma());
+		}
+		if (kernelType == svm_parameter.POLY || kernelType == svm_parameter.SIGMOID) {
+			key.append(' ').append(libsvm.getCoef0());
+		}
+		if (kernelType == svm_parameter.POLY) {
+			key.append(' ').append(libsvm.getDegree());
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Internal method to return the parameters of libsvm like LibSVM does.
+	 * 
+	 * @param libsvm
+	 * @return
+	 * @throws Exception
+	 */
+	private static svm_parameter getParameters(LibSVM libsvm) throws Exception {
+		Method method = LibSVM.class.getDeclaredMethod("getParameters");
+
+		method.setAccessible(true);
+		return (svm_parameter) method.invoke(libsvm);
+	}
+
+	/**
+	 * Internal method to convert an instance into the sparse vector of libsvm
+	 * (like LibSVM.instanceToArray()).
+	 * 
+	 * @param instance
+	 * @return
+	 */
+	private static svm_node[] toNodes(Instance instance) {
+		int index = 0;
+		List<svm_node> nodes = new ArrayList<svm_node>();
+
+		for (int i = 0; i < instance.numValues(); i++) {
+			index = instance.index(i);
+			if (index != instance.classIndex() && instance.valueSparse(i) != 0) {
+				nodes.add(createNode(index + 1, instance.valueSparse(i)));
+			}
+		}
+		return nodes.toArray(new svm_node[nodes.size()]);
+	}
+
+	/**
+	 * Internal method to create a node of a vector.
+	 * 
+	 * @param index
+	 * @param value
+	 * @return
+	 */
+	private static svm_node createNode(int index, double value) {
+		svm_node node = new svm_node();
+
+		node.index = index;
+		node.value = value;
+		return node;
+	}
+
+	/**
+	 * Internal method to compute a kernel value like libsvm during training
+	 * (Kernel.kernel_function()).
+	 * 
+	 * @param x
+	 * @param y
+	 * @param xSquare
+	 *            the dot product of x with itself (RBF kernel only)
+	 * @param ySquare
+	 *            the dot product of y with itself (RBF kernel only)
+	 * @param parameter
+	 * @return
+	 */
+	private static double trainingKernel(svm_node[] x, svm_node[] y, double xSquare, double ySquare, svm_parameter parameter) {
+		switch (parameter.kernel_type) {
+		case svm_parameter.POLY:
+			return powi(parameter.gamma * dot(x, y) + parameter.coef0, parameter.degree);
+		case svm_parameter.RBF:
+			return Math.exp(-parameter.gamma * (xSquare + ySquare - 2 * dot(x, y)));
+		case svm_parameter.SIGMOID:
+			return Math.tanh(parameter.gamma * dot(x, y) + parameter.coef0);
+		default:
+			return dot(x, y);
+		}
+	}
+
+	/**
+	 * Internal method to compute a kernel value like libsvm during prediction
+	 * (Kernel.k_function()).
+	 * 
+	 * @param x
+	 * @param y
+	 * @param parameter
+	 * @return
+	 */
+	private static double predictionKernel(svm_node[] x, svm_node[] y, svm_parameter parameter) {
+		int i = 0;
+		int j = 0;
+		double sum = 0;
+		double difference;
+
+		if (parameter.kernel_type != svm_parameter.RBF) {
+			return trainingKernel(x, y, 0, 0, parameter);
+		}
+		while (i < x.length && j < y.length) {
+			if (x[i].index == y[j].index) {
+				difference = x[i++].value - y[j++].value;
+				sum += difference * difference;
+			} else if (x[i].index > y[j].index) {
+				sum += y[j].value * y[j].value;
+				j++;
+			} else {
+				sum += x[i].value * x[i].value;
+				i++;
+			}
+		}
+		for (; i < x.length; i++) {
+			sum += x[i].value * x[i].value;
+		}
+		for (; j < y.length; j++) {
+			sum += y[j].value * y[j].value;
+		}
+		return Math.exp(-parameter.gamma * sum);
+	}
+
+	/**
+	 * Internal method to compute the dot product of two sparse vectors (like
+	 * Kernel.dot() of libsvm).
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	private static double dot(svm_node[] x, svm_node[] y) {
+		int i = 0;
+		int j = 0;
+		double sum = 0;
+
+		while (i < x.length && j < y.length) {
+			if (x[i].index == y[j].index) {
+				sum += x[i++].value * y[j++].value;
+			} else if (x[i].index > y[j].index) {
+				j++;
+			} else {
+				i++;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Internal method to compute an integer power (like Kernel.powi() of
+	 * libsvm).
+	 * 
+	 * @param base
+	 * @param times
+	 * @return
+	 */
+	private static double powi(double base, int times) {
+		double power = base;
+		double result = 1.0;
+
+		for (int t = times; t > 0; t /= 2) {
+			if (t % 2 == 1) {
+				result *= power;
+			}
+			power = power * power;
+		}
+		return result;
+	}
+
+	/**
+	 * This class shares the kernels of the folds between the classifiers of
+	 * the grid points that are evaluated together. The kernels of a fold are
+	 * computed by the first thread that needs them; the kernels of a group of
+	 * classifiers with the same kernel parameters are deleted after the last
+	 * classifier of the group is evaluated. The kernels are not precomputed
+	 * if they have more than MAXIMUM_KERNEL_VALUES values.
+	 */
+	static class Cache {
+
+		private List<List<Instances>> cvFolds;
+		private List<String> keys;
+		private Map<String, Integer> remaining;
+		private Map<String, FutureTask<PrecomputedKernel>> kernels;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param classifiers
+		 *            the untrained classifiers of the grid points
+		 * @param cvFolds
+		 *            the training sets (index 0) and the test sets (index 1)
+		 */
+		public Cache(List<Classifier> classifiers, List<List<Instances>> cvFolds) {
+			long values = 0;
+			int training;
+			String key = null;
+
+			this.cvFolds = cvFolds;
+			this.keys = new ArrayList<String>(classifiers.size());
+			this.remaining = new LinkedHashMap<String, Integer>();
+			this.kernels = new HashMap<String, FutureTask<PrecomputedKernel>>();
+
+			for (int fold = 0; fold < cvFolds.get(0).size(); fold++) {
+				training = cvFolds.get(0).get(fold).numInstances();
+				values += (long) training * (training + cvFolds.get(1).get(fold).numInstances());
+			}
+			for (Classifier classifier : classifiers) {
+				key = values <= MAXIMUM_KERNEL_VALUES ? getKey(classifier) : null;
+				keys.add(key);
+				if (key != null) {
+					remaining.put(key, remaining.containsKey(key) ? remaining.get(key) + 1 : 1);
+				}
+			}
+			// kernels that only one classifier would use are not shared
+			for (int i = 0; i < keys.size(); i++) {
+				if (keys.get(i) != null && remaining.get(keys.get(i)) < 2) {
+					remaining.remove(keys.get(i));
+					keys.set(i, null);
+				}
+			}
+		}
+
+		/**
+		 * Returns the indices of the classifiers grouped by their kernel
+		 * parameters (in the order of the first classifier of each group;
+		 * classifiers without precomputed kernels first), so that the kernels
+		 * of a group can be deleted before the next group is evaluated.
+		 * 
+		 * @return
+		 */
+		public List<Integer> getOrder() {
+			List<Integer> order = new ArrayList<Integer>(keys.size());
+
+			for (int i = 0; i < keys.size(); i++) {
+				if (keys.get(i) == null) {
+					order.add(i);
+				}
+			}
+			for (String key : remaining.keySet()) {
+				for (int i = 0; i < keys.size(); i++) {
+					if (key.equals(keys.get(i))) {
+						order.add(i);
+					}
+				}
+			}
+			return order;
+		}
+
+		/**
+		 * Returns true if the classifier with the given index is evaluated on
+		 * precomputed kernels.
+		 * 
+		 * @param index
+		 * @return
+		 */
+		public boolean isPrecomputed(int index) {
+			return keys.get(index) != null;
+		}
+
+		/**
+		 * Returns the kernel of the given fold for the classifier with the
+		 * given index. The kernel is computed if no other classifier has
+		 * computed it.
+		 * 
+		 * @param index
+		 * @param classifier
+		 * @param fold
+		 * @return
+		 * @throws Exception
+		 */
+		public PrecomputedKernel get(int index, final LibSVM classifier, final int fold) throws Exception {
+			boolean compute = false;
+			String key = keys.get(index) + "\n" + fold;
+			FutureTask<PrecomputedKernel> task = null;
+
+			synchronized (this) {
+				task = kernels.get(key);
+				if (task == null) {
+					task = new FutureTask<PrecomputedKernel>(new Callable<PrecomputedKernel>() {
+						@Override
+						public PrecomputedKernel call() throws Exception {
+							return new PrecomputedKernel(classifier, cvFolds.get(0).get(fold), cvFolds.get(1).get(fold));
+						}
+					});
+					kernels.put(key, task);
+					compute = true;
+				}
+			}
+			if (compute) {
+				task.run();
+			}
+			try {
+				return task.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception) e.getCause();
+				}
+				throw new Exception(e.getCause());
+			}
+		}
+
+		/**
+		 * Marks the classifier with the given index as evaluated. The kernels
+		 * are deleted after the last classifier with the same kernel
+		 * parameters.
+		 * 
+		 * @param index
+		 */
+		public synchronized void release(int index) {
+			String key = keys.get(index);
+
+			if (key == null) {
+				return;
+			}
+			remaining.put(key, remaining.get(key) - 1);
+			if (remaining.get(key) == 0) {
+				for (int fold = 0; fold < cvFolds.get(0).size(); fold++) {
+					kernels.remove(key + "\n" + fold);
+				}
+			}
+		}
+	}
+
+}
@@ -4,6 +4,7 @@ import weka.classifiers.Classifier;
 import weka.classifiers.functions.SMO;
 import ecst.algorithm.ClassificationAlgorithm;
 import ecst.algorithm.analysis.DynamicMultiplier;
+import ecst.algorithm.classification.kernel.MercerSigmoidKernel;
 import ecst.algorithm.parameter.Parameter;
 import ecst.algorithm.parameter.SelectedParameterItem;
 import ecst.combiner.PipelineData;
@@ -23,6 +24,7 @@ public class SMOAdapter extends ClassificationAlgorithm {
 	private Parameter polyKernelLowerOrder;
 	private Parameter mercerSigmoidKernelB;
 	private Parameter mercerSigmoidKernelD;
+	private Parameter mercerSigmoidKernelCacheSize;
 	private SelectedParameterItem mercerSigmoidSelectedItem;
 	private SelectedParameterItem polySelectedItem;
 	private SelectedParameterItem normalizeSelectedItem;
@@ -52,6 +54,8 @@ public class SMOAdapter extends ClassificationAlgorithm {
 
 		mercerSigmoidKernelB = new Parameter(1.0, "Sigmoid Mercer kernel: b", Parameter.TYPE.DOUBLE, "-B", null, mercerSigmoidSelectedItem);
 		mercerSigmoidKernelD = new Parameter(0.0, "Sigmoid Mercer kernel: d", Parameter.TYPE.DOUBLE, "-D", null, mercerSigmoidSelectedItem);
+		mercerSigmoidKernelCacheSize = new Parameter(MercerSigmoidKernel.DEFAULT_CACHE_SIZE, "Sigmoid Mercer kernel: cache size (MB)", Parameter.TYPE.DOUBLE, "-M", null,
+				mercerSigmoidSelectedItem);
 
 		normalizeSelectedItem = new SelectedParameterItem("Normalize", "-N 0");
 		standardizeSelectedItem = new SelectedParameterItem("Standardize", "-N 1");
@@ -62,7 +66,7 @@ public class SMOAdapter extends ClassificationAlgorithm {
 	@Override
 	public Parameter[] getParameters() {
 		return new Parameter[] { parameterC, tolerance, normalize, epsilon, logisticModel, folds, random, kernel, polyKernelLowerOrder, polyKernelExponent,
-				mercerSigmoidKernelB, mercerSigmoidKernelD };
+				mercerSigmoidKernelB, mercerSigmoidKernelD, mercerSigmoidKernelCacheSize };
 	}
 
 	@Override
@@ -1,14 +1,23 @@
 package ecst.algorithm.classification.kernel;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.apache.commons.math3.util.FastMath;
 
 import weka.classifiers.functions.supportVector.Kernel;
 import weka.core.Instance;
+import weka.core.Instances;
 import weka.core.Utils;
 
 /**
  * Implementation according to: Carrington et al., A New Mercer Sigmoid Kernel for Clinical Data Classification, EMBC 2014.
  * 
+ * The kernel is the (scaled) dot product of the vectors tanh((x - d) / b) of
+ * both instances. These vectors are computed once per training instance; the
+ * rows of the kernel matrix are cached in a least recently used cache whose
+ * memory is bounded.
+ * 
  * @author Matthias Ring
  * 
  */
@@ -16,16 +25,24 @@ public class MercerSigmoidKernel extends Kernel {
 
 	private static final long serialVersionUID = 1L;
 
+	public static final double DEFAULT_CACHE_SIZE = 256;
+
 	private double b;
 	private double d;
+	private double cacheSize;
 	private int evaluations;
 	private int cacheHits;
-	private double[][] kernelMatrix;
+	private int numFeatures;
+	private transient double[] features;
+	private transient double[] diagonal;
+	private transient ThreadLocal<FeatureBuffer> featureBuffer;
+	private transient LinkedHashMap<Integer, double[]> rowCache;
 
 	public MercerSigmoidKernel() {
 		super();
 
 		this.evaluations = 0;
+		this.cacheSize = DEFAULT_CACHE_SIZE;
 	}
 
 	@Override
@@ -33,45 +50,174 @@ public class MercerSigmoidKernel extends Kernel {
 		return "Implementation according to: Carrington et al., A New Mercer Sigmoid Kernel for Clinical Data Classification, EMBC 2014.";
 	}
 
+	@Override
+	public void buildKernel(Instances data) throws Exception {
+		super.buildKernel(data);
+
+		features = null;
+		rowCache = null;
+		featureBuffer = null;
+		computeFeatures();
+	}
+
 	@Override
 	public double eval(int id1, int id2, Instance useIfID1isMinus1) throws Exception {
-		// cache everything...
-		if (kernelMatrix == null) {
-			kernelMatrix = new double[m_data.numInstances()][];
-			for (int i = 0; i < m_data.numInstances(); i++) {
-				kernelMatrix[i] = new double[i + 1];
-				for (int j = 0; j <= i; j++) {
-					evaluations++;
-					kernelMatrix[i][j] = computeKernel(m_data.instance(i), m_data.instance(j));
-				}
-			}
+		double[] row = null;
+
+		if (features == null) {
+			computeFeatures();
+		}
+
+		if (id1 == -1) {
+			evaluations++;
+			return dotProduct(getFeatures(useIfID1isMinus1), 0, id2 * numFeatures) / numFeatures;
+		}
+		if (id1 == id2) {
+			cacheHits++;
+			return diagonal[id1];
 		}
 
-		if (id1 != -1) {
+		if (rowCache == null) {
+			rowCache = createRowCache();
+		}
+		row = rowCache.get(id1);
+		if (row != null) {
+			cacheHits++;
+			return row[id2];
+		}
+		row = rowCache.get(id2);
+		if (row != null) {
 			cacheHits++;
-			if (id1 > id2) {
-				return kernelMatrix[id1][id2];
-			} else {
-				return kernelMatrix[id2][id1];
+			return row[id1];
+		}
+		row = computeRow(id1);
+		rowCache.put(id1, row);
+		return row[id2];
+	}
+
+	/**
+	 * Internal method to compute the vectors tanh((x - d) / b) of all training
+	 * instances (stored one after another in one array) and the diagonal of
+	 * the kernel matrix.
+	 */
+	private void computeFeatures() {
+		int n = m_data.numInstances();
+
+		numFeatures = m_data.numAttributes() - 1;
+		features = new double[n * numFeatures];
+		diagonal = new double[n];
+		for (int i = 0; i < n; i++) {
+			computeFeatures(m_data.instance(i), features, i * numFeatures);
+			diagonal[i] = dotProduct(features, i * numFeatures, i * numFeatures) / numFeatures;
+		}
+	}
+
+	/**
+	 * Internal method to compute the vector tanh((x - d) / b) of an instance.
+	 * 
+	 * @param instance
+	 * @param result
+	 * @param offset
+	 *            position of the vector in the result array
+	 */
+	private void computeFeatures(Instance instance, double[] result, int offset) {
+		for (int i = 0; i < numFeatures; i++) {
+			result[offset + i] = FastMath.tanh((instance.value(i) - d) / b);
+		}
+	}
+
+	/**
+	 * Internal method to return the vector tanh((x - d) / b) of an instance
+	 * that is not a training instance. The vector of the last instance of the
+	 * calling thread is reused, since the instance is evaluated with all
+	 * support vectors.
+	 * 
+	 * @param instance
+	 * @return
+	 */
+	private double[] getFeatures(Instance instance) {
+		FeatureBuffer buffer = null;
+		boolean equal;
+
+		synchronized (this) {
+			if (featureBuffer == null) {
+				featureBuffer = new ThreadLocal<FeatureBuffer>();
 			}
-		} else {
-			evaluations++;
-			return computeKernel(useIfID1isMinus1, m_data.instance(id2));
 		}
+		buffer = featureBuffer.get();
+		equal = buffer != null && buffer.values.length == numFeatures;
+		for (int i = 0; equal && i < numFeatures; i++) {
+			equal = Double.doubleToLongBits(buffer.values[i]) == Double.doubleToLongBits(instance.value(i));
+		}
+		if (!equal) {
+			buffer = new FeatureBuffer(numFeatures);
+			for (int i = 0; i < numFeatures; i++) {
+				buffer.values[i] = instance.value(i);
+			}
+			computeFeatures(instance, buffer.features, 0);
+			featureBuffer.set(buffer);
+		}
+		return buffer.features;
 	}
 
-	private double computeKernel(Instance instance1, Instance instance2) {
-		double result = 0.0;
-		double p = instance1.numAttributes() - 1;
+	/**
+	 * Internal method to compute a row of the kernel matrix.
+	 * 
+	 * @param id
+	 * @return
+	 */
+	private double[] computeRow(int id) {
+		double[] row = new double[diagonal.length];
+		int offset = id * numFeatures;
+
+		for (int j = 0; j < row.length; j++) {
+			row[j] = dotProduct(features, offset, j * numFeatures) / numFeatures;
+		}
+		evaluations += row.length;
+		return row;
+	}
 
-		for (int i = 0; i < p; i++) {
-			result += FastMath.tanh((instance1.value(i) - d) / b) * FastMath.tanh((instance2.value(i) - d) / b);
-		}		
-		result = result / p;
+	/**
+	 * Internal method to compute the dot product of a vector and a vector of
+	 * the features array. The products are summed in the order of the
+	 * attributes.
+	 * 
+	 * @param first
+	 *            array of the first vector
+	 * @param firstOffset
+	 * @param secondOffset
+	 *            position of the second vector in the features array
+	 * @return
+	 */
+	private double dotProduct(double[] first, int firstOffset, int secondOffset) {
+		double result = 0.0;
 
+		for (int i = 0; i < numFeatures; i++) {
+			result += first[firstOffset + i] * features[secondOffset + i];
+		}
 		return result;
 	}
 
+	/**
+	 * Internal method to create the cache of the rows of the kernel matrix.
+	 * The number of rows is limited by the cache size (in megabytes).
+	 * 
+	 * @return
+	 */
+	private LinkedHashMap<Integer, double[]> createRowCache() {
+		final long maximumRows = Math.max(2, (long) (cacheSize * 1024 * 1024) / (8L * Math.max(1, diagonal.length)));
+
+		return new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest) {
+				return size() > maximumRows;
+			}
+		};
+	}
+
 	public void setOptions(String[] options) throws Exception {
 		String tmp;
 
@@ -83,6 +229,10 @@ public class MercerSigmoidKernel extends Kernel {
 		if (!"".equals(tmp)) {
 			this.b = Double.parseDouble(tmp);
 		}
+		tmp = Utils.getOption('M', options);
+		if (!"".equals(tmp)) {
+			this.cacheSize = Double.parseDouble(tmp);
+		}
 
 	}
 
@@ -90,9 +240,13 @@ public class MercerSigmoidKernel extends Kernel {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Releases the cached rows. The vectors of the training instances are
+	 * kept, since they are needed for the classification.
+	 */
 	@Override
 	public void clean() {
-		kernelMatrix = null;
+		rowCache = null;
 		evaluations = 0;
 		cacheHits = 0;
 	}
@@ -123,4 +277,34 @@ public class MercerSigmoidKernel extends Kernel {
 		this.d = d;
 	}
 
+	/**
+	 * Returns the maximum memory (in megabytes) of the cached rows of the
+	 * kernel matrix.
+	 * 
+	 * @return
+	 */
+	public double getCacheSize() {
+		return cacheSize;
+	}
+
+	public void setCacheSize(double cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * The values of the last instance that a thread has classified and its
+	 * vector tanh((x - d) / b).
+	 */
+	private static class FeatureBuffer {
+
+		private double[] values;
+		private double[] features;
+
+		public FeatureBuffer(int numFeatures) {
+			values = new double[numFeatures];
+			features = new double[numFeatures];
+		}
+
+	}
+
 }
@@ -1,8 +1,10 @@
 package ecst.algorithm.evaluation;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
-import weka.classifiers.meta.AttributeSelectedClassifier;
 import weka.core.Instances;
 import weka.filters.Filter;
 import weka.filters.supervised.instance.Resample;
@@ -13,12 +15,14 @@ import ecst.algorithm.parameter.SelectedParameter;
 import ecst.algorithm.parameter.SelectedParameterItem;
 import ecst.combiner.PipelineData;
 import ecst.utilities.InstanceUtilities;
+import ecst.utilities.ParallelFoldEvaluator;
 import ecst.utilities.ParameterUtilities;
 
 /**
  * This class implements the bootstrapping evaluation algorithm according to R.
  * Polikar, Bootstrap Inspired Techniques in Computational Intelligence, IEEE
- * Signal Processing Magazine 24(4):56-72, 2007.
+ * Signal Processing Magazine 24(4):56-72, 2007. The resampled data sets are
+ * drawn serially, the classifiers of the iterations are trained in parallel.
  * 
  * @author Matthias Ring
  * 
@@ -28,6 +32,7 @@ public class BootstrappingAdapter extends EvaluationAlgorithm {
 	private Parameter bias;
 	private Parameter sizeOfResamplingData;
 	private Parameter numberOfResampleIterations;
+	private Parameter numberOfThreads;
 	private SelectedParameterItem inputDataDistribution;
 	private SelectedParameterItem uniformDistribution;
 
@@ -61,6 +66,8 @@ public class BootstrappingAdapter extends EvaluationAlgorithm {
 				uniformDistribution);
 		numberOfResampleIterations = new Parameter(10, "Number of resampling iterations", Parameter.TYPE.INTEGER, null);
 		sizeOfResamplingData = new Parameter(100.0, "Size of the resampled data set (percent of input set)", Parameter.TYPE.DOUBLE, null);
+		numberOfThreads = new Parameter(Runtime.getRuntime().availableProcessors(), "Number of iterations trained in parallel", Parameter.TYPE.INTEGER,
+				null);
 	}
 
 	/**
@@ -68,7 +75,7 @@ public class BootstrappingAdapter extends EvaluationAlgorithm {
 	 */
 	@Override
 	public Parameter[] getParameters() {
-		return new Parameter[] { bias, sizeOfResamplingData, numberOfResampleIterations };
+		return new Parameter[] { bias, sizeOfResamplingData, numberOfResampleIterations, numberOfThreads };
 	}
 
 	/**
@@ -77,14 +84,14 @@ public class BootstrappingAdapter extends EvaluationAlgorithm {
 	 */
 	@Override
 	public Evaluation evaluate(PipelineData data, Classifier classifier, FeatureSelectionAlgorithm featureSelection) throws Exception {
-		Classifier classifierCopy = null;
 		Resample resampleFilter = null;
-		Instances testInstances = null;
 		Instances trainingInstances = null;
 		Evaluation evaluation = null;
+		ParallelFoldEvaluator foldEvaluator = null;
+		List<Instances> testSets = new ArrayList<Instances>();
+		List<Instances> trainingSets = new ArrayList<Instances>();
 		SelectedParameter item = (SelectedParameter) bias.getValue();
 		SelectedParameterItem entry = item.getItems().get(item.getSelectedIndex());
-		AttributeSelectedClassifier metaClassifier = new AttributeSelectedClassifier();
 
 		if (numberOfResampleIterations.getValue() == null || (Integer) numberOfResampleIterations.getValue() <= 0) {
 			throw new IllegalArgumentException("Number of resampling iterations must be greater than zero!");
@@ -106,19 +113,17 @@ public class BootstrappingAdapter extends EvaluationAlgorithm {
 			}
 
 			trainingInstances = Filter.useFilter(data.getPreprocessedInstances(), resampleFilter);
-			testInstances = InstanceUtilities.difference(data.getPreprocessedInstances(), trainingInstances);
+			trainingSets.add(trainingInstances);
+			testSets.add(InstanceUtilities.difference(data.getPreprocessedInstances(), trainingInstances));
+		}
 
-			if (featureSelection != null) {
-				metaClassifier.setEvaluator(featureSelection.createEvaluator(classifier, data));
-				metaClassifier.setSearch(featureSelection.createSearchMethod());
-				metaClassifier.setClassifier(classifier);
-				metaClassifier.buildClassifier(trainingInstances);
-				InstanceUtilities.evaluateWithTestInstances(trainingInstances, testInstances, metaClassifier, evaluation);
-			} else {
-				classifierCopy = Classifier.makeCopy(classifier);
-				classifierCopy.buildClassifier(trainingInstances);
-				InstanceUtilities.evaluateWithTestInstances(trainingInstances, testInstances, classifierCopy, evaluation);
-			}
+		// the training and test sets have the same attributes, the feature
+		// selection is part of the meta classifier
+		foldEvaluator = new ParallelFoldEvaluator((Integer) numberOfThreads.getValue());
+		if (featureSelection != null) {
+			foldEvaluator.evaluate(featureSelection.createAttributeSelectedClassifier(classifier, data), trainingSets, testSets, evaluation);
+		} else {
+			foldEvaluator.evaluate(classifier, trainingSets, testSets, evaluation);
 		}
 
 		return evaluation;
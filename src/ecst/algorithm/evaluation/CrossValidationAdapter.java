@@ -4,14 +4,17 @@ import java.util.Random;
 
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
-import weka.classifiers.meta.AttributeSelectedClassifier;
 import ecst.algorithm.EvaluationAlgorithm;
 import ecst.algorithm.FeatureSelectionAlgorithm;
 import ecst.algorithm.parameter.Parameter;
 import ecst.combiner.PipelineData;
+import ecst.utilities.FoldEvaluation;
+import ecst.utilities.ParallelFoldEvaluator;
 
 /**
  * This class is a adapter for the WEKA implementation of a cross-validation.
+ * The folds are trained in parallel; the result is the same as the result of
+ * WEKA's cross-validation with the same random number seed.
  * 
  * @author Matthias Ring
  * 
@@ -20,6 +23,7 @@ public class CrossValidationAdapter extends EvaluationAlgorithm {
 
 	private Parameter folds;
 	private Parameter randomNumberSeed;
+	private Parameter numberOfThreads;
 
 	/**
 	 * Returns the class implementing the cross-validation.
@@ -46,6 +50,8 @@ public class CrossValidationAdapter extends EvaluationAlgorithm {
 	public void initParameters() {
 		randomNumberSeed = new Parameter(1L, "Random number seed", Parameter.TYPE.LONG, null);
 		folds = new Parameter(10, "Folds", Parameter.TYPE.INTEGER, null);
+		numberOfThreads = new Parameter(Runtime.getRuntime().availableProcessors(), "Number of folds trained in parallel", Parameter.TYPE.INTEGER,
+				null);
 	}
 
 	/**
@@ -53,7 +59,7 @@ public class CrossValidationAdapter extends EvaluationAlgorithm {
 	 */
 	@Override
 	public Parameter[] getParameters() {
-		return new Parameter[] { folds, randomNumberSeed };
+		return new Parameter[] { folds, randomNumberSeed, numberOfThreads };
 	}
 
 	/**
@@ -62,21 +68,30 @@ public class CrossValidationAdapter extends EvaluationAlgorithm {
 	 */
 	@Override
 	public Evaluation evaluate(PipelineData data, Classifier classifier, FeatureSelectionAlgorithm featureSelection) throws Exception {
-		AttributeSelectedClassifier metaClassifier = null;
 		Evaluation evaluation = new Evaluation(data.getPreprocessedInstances());
+		ParallelFoldEvaluator foldEvaluator = new ParallelFoldEvaluator((Integer) numberOfThreads.getValue());
 
 		if (featureSelection != null) {
-			metaClassifier = new AttributeSelectedClassifier();
-			metaClassifier.setEvaluator(featureSelection.createEvaluator(classifier, data));
-			metaClassifier.setSearch(featureSelection.createSearchMethod());
-			metaClassifier.setClassifier(classifier);
-			evaluation.crossValidateModel(metaClassifier, data.getPreprocessedInstances(), (Integer) folds.getValue(), new Random(
-					(Long) randomNumberSeed.getValue()));
+			foldEvaluator.crossValidateModel(featureSelection.createAttributeSelectedClassifier(classifier, data), data.getPreprocessedInstances(),
+					(Integer) folds.getValue(), new Random((Long) randomNumberSeed.getValue()), evaluation);
 		} else {
-			evaluation.crossValidateModel(classifier, data.getPreprocessedInstances(), (Integer) folds.getValue(), new Random(
-					(Long) randomNumberSeed.getValue()));
+			foldEvaluator.crossValidateModel(classifier, data.getPreprocessedInstances(), (Integer) folds.getValue(), new Random(
+					(Long) randomNumberSeed.getValue()), evaluation);
 		}
 		return evaluation;
 	}
 
+	/**
+	 * Creates a cross-validation that can be evaluated fold by fold. The folds
+	 * are the same as in the evaluate method.
+	 */
+	@Override
+	public FoldEvaluation createFoldEvaluation(PipelineData data, Classifier classifier, FeatureSelectionAlgorithm featureSelection) throws Exception {
+		if (featureSelection != null) {
+			classifier = featureSelection.createAttributeSelectedClassifier(classifier, data);
+		}
+		return FoldEvaluation.createCrossValidation(classifier, data.getPreprocessedInstances(), (Integer) folds.getValue(), new Random(
+				(Long) randomNumberSeed.getValue()));
+	}
+
 }
@@ -2,11 +2,11 @@ package ecst.algorithm.evaluation;
 
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
-import weka.classifiers.meta.AttributeSelectedClassifier;
 import ecst.algorithm.EvaluationAlgorithm;
 import ecst.algorithm.FeatureSelectionAlgorithm;
 import ecst.algorithm.parameter.Parameter;
 import ecst.combiner.PipelineData;
+import ecst.utilities.FoldEvaluation;
 import ecst.utilities.InstanceUtilities;
 
 /**
@@ -18,6 +18,7 @@ import ecst.utilities.InstanceUtilities;
 public class LeaveSubjectOutAdapter extends EvaluationAlgorithm {
 
 	private Parameter subjectsPerLeaveOut;
+	private Parameter numberOfThreads;
 
 	/**
 	 * Returns a string describing this algorithm.
@@ -36,6 +37,8 @@ public class LeaveSubjectOutAdapter extends EvaluationAlgorithm {
 	public void initParameters() {
 		subjectsPerLeaveOut = new Parameter(1, "Number of subjects to leave out (set to 1 for 'leave one subject out' validation)",
 				Parameter.TYPE.INTEGER, null);
+		numberOfThreads = new Parameter(Runtime.getRuntime().availableProcessors(), "Number of folds trained in parallel", Parameter.TYPE.INTEGER,
+				null);
 	}
 
 	/**
@@ -43,7 +46,7 @@ public class LeaveSubjectOutAdapter extends EvaluationAlgorithm {
 	 */
 	@Override
 	public Parameter[] getParameters() {
-		return new Parameter[] { subjectsPerLeaveOut };
+		return new Parameter[] { subjectsPerLeaveOut, numberOfThreads };
 	}
 
 	/**
@@ -61,8 +64,41 @@ public class LeaveSubjectOutAdapter extends EvaluationAlgorithm {
 	@Override
 	public Evaluation evaluate(PipelineData data, Classifier classifier, FeatureSelectionAlgorithm featureSelection) throws Exception {
 		Classifier classifierCopy = Classifier.makeCopy(classifier);
-		AttributeSelectedClassifier metaClassifier = new AttributeSelectedClassifier();
 
+		checkSettings(data);
+
+		if (featureSelection != null) {
+			return InstanceUtilities.evaluateLeaveSubjectOut(featureSelection.createAttributeSelectedClassifier(classifierCopy, data),
+					data.getPreprocessedInstances(), data.getPreprocessedSubjectIDs(), (Integer) subjectsPerLeaveOut.getValue(),
+					(Integer) numberOfThreads.getValue());
+		} else {
+			return InstanceUtilities.evaluateLeaveSubjectOut(classifierCopy, data.getPreprocessedInstances(),
+					data.getPreprocessedSubjectIDs(), (Integer) subjectsPerLeaveOut.getValue(), (Integer) numberOfThreads.getValue());
+		}
+	}
+
+	/**
+	 * Creates a leave-subject-out validation that can be evaluated fold by
+	 * fold.
+	 */
+	@Override
+	public FoldEvaluation createFoldEvaluation(PipelineData data, Classifier classifier, FeatureSelectionAlgorithm featureSelection) throws Exception {
+		Classifier classifierCopy = Classifier.makeCopy(classifier);
+
+		checkSettings(data);
+		if (featureSelection != null) {
+			classifierCopy = featureSelection.createAttributeSelectedClassifier(classifierCopy, data);
+		}
+		return FoldEvaluation.createLeaveSubjectOut(classifierCopy, data.getPreprocessedInstances(), data.getPreprocessedSubjectIDs(),
+				(Integer) subjectsPerLeaveOut.getValue());
+	}
+
+	/**
+	 * Internal method to check the subject IDs and the parameters.
+	 * 
+	 * @param data
+	 */
+	private void checkSettings(PipelineData data) {
 		if (data.getPreprocessedSubjectIDs() == null) {
 			throw new IllegalArgumentException("No subject IDs available!");
 		}
@@ -70,17 +106,6 @@ public class LeaveSubjectOutAdapter extends EvaluationAlgorithm {
 		if (subjectsPerLeaveOut.getValue() == null || ((Integer) subjectsPerLeaveOut.getValue()) < 1) {
 			throw new IllegalArgumentException("Subjects per leave has to be greater than one!");
 		}
-
-		if (featureSelection != null) {
-			metaClassifier.setEvaluator(featureSelection.createEvaluator(classifier, data));
-			metaClassifier.setSearch(featureSelection.createSearchMethod());
-			metaClassifier.setClassifier(classifierCopy);
-			return InstanceUtilities.evaluateLeaveSubjectOut(metaClassifier, data.getPreprocessedInstances(),
-					data.getPreprocessedSubjectIDs(), (Integer) subjectsPerLeaveOut.getValue());
-		} else {
-			return InstanceUtilities.evaluateLeaveSubjectOut(classifierCopy, data.getPreprocessedInstances(),
-					data.getPreprocessedSubjectIDs(), (Integer) subjectsPerLeaveOut.getValue());
-		}
 	}
 
 }
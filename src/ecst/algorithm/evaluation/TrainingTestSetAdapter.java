@@ -60,15 +60,9 @@ public class TrainingTestSetAdapter extends EvaluationAlgorithm {
 	 */
 	@Override
 	public Evaluation evaluate(PipelineData data, Classifier classifier, FeatureSelectionAlgorithm featureSelection) throws Exception {
-		DataSource source = null;
 		Evaluation evaluation = null;
-		Instances testInstances = null;
+		Instances testInstances = loadTestInstances();
 
-		if (testFile.getValue() == null || testFile.getValue().equals("")) {
-			throw new IllegalArgumentException("Please specify a test file");
-		}
-		source = new DataSource((String) testFile.getValue());
-		testInstances = source.getDataSet();
 		evaluation = new Evaluation(data.getFeatureSelectedInstances());
 		
 		InstanceUtilities.evaluateWithTestInstances(data.getFeatureSelectedInstances(), testInstances, classifier, evaluation);
@@ -76,4 +70,20 @@ public class TrainingTestSetAdapter extends EvaluationAlgorithm {
 		return evaluation;
 	}
 
+	/**
+	 * Loads the instances of the test file.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public Instances loadTestInstances() throws Exception {
+		DataSource source = null;
+
+		if (testFile.getValue() == null || testFile.getValue().equals("")) {
+			throw new IllegalArgumentException("Please specify a test file");
+		}
+		source = new DataSource((String) testFile.getValue());
+		return source.getDataSet();
+	}
+
 }
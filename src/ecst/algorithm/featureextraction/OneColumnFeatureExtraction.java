@@ -37,6 +37,16 @@ public abstract class OneColumnFeatureExtraction extends FeatureExtractionAlgori
 		return getNumberOfFeatures(linesOfData);
 	}
 
+	/**
+	 * Returns the index of the input column (starting at 0). The column is
+	 * known after getNumberOfFeatures() was called.
+	 * 
+	 * @return
+	 */
+	public int getColumn() {
+		return column;
+	}
+
 	/**
 	 * Computes the features.
 	 */
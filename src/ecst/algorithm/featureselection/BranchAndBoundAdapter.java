@@ -28,9 +28,16 @@ public class BranchAndBoundAdapter extends FeatureSelectionAlgorithm {
 	public static enum DISTANCE_MEASURE {
 		BHATTACHARYYA, KL_DIVERGENCE, BETWEEN_CLASS_SCATTER_MATRIX
 	}
+
+	public static enum KERNEL_APPROXIMATION {
+		EXACT, NYSTROEM_RANDOM, NYSTROEM_KMEANS_PLUS_PLUS
+	}
 	
 
 	private Parameter subsetSize;
+	private Parameter numberOfThreads;
+	private Parameter timeBudget;
+	private Parameter evaluationBudget;
 	private Parameter distanceMeasure;
 	private Parameter kernel;
 	private Parameter numberOfEigenvectors;
@@ -41,6 +48,12 @@ public class BranchAndBoundAdapter extends FeatureSelectionAlgorithm {
 	private SelectedParameterItem bhattacharyya;
 	private SelectedParameterItem divergence;
 	private SelectedParameterItem betweenClassScatterMatrix;
+	private Parameter approximation;
+	private Parameter landmarksPerClass;
+	private Parameter approximationSubsampleSize;
+	private SelectedParameterItem exactApproximation;
+	private SelectedParameterItem nystroemRandomApproximation;
+	private SelectedParameterItem nystroemKMeansApproximation;
 	
 	private Parameter computation;
 	private SelectedParameterItem chen_algorithm;
@@ -61,6 +74,9 @@ public class BranchAndBoundAdapter extends FeatureSelectionAlgorithm {
 	@Override
 	protected void initSearchMethodParameters() {
 		subsetSize = new Parameter(3, "Size of feature subset", Parameter.TYPE.INTEGER, "-S");
+		numberOfThreads = new Parameter(Runtime.getRuntime().availableProcessors(), "Number of threads", Parameter.TYPE.INTEGER, "-P");
+		timeBudget = new Parameter(0.0, "Time budget in seconds (0 for no limit)", Parameter.TYPE.DOUBLE, "-M");
+		evaluationBudget = new Parameter(0L, "Maximum number of evaluations (0 for no limit)", Parameter.TYPE.LONG, "-E");
 	}
 
 	/**
@@ -68,7 +84,20 @@ public class BranchAndBoundAdapter extends FeatureSelectionAlgorithm {
 	 */
 	@Override
 	protected Parameter[] getSearchMethodParameters() {
-		return new Parameter[] { subsetSize,computation,critFunctionMethod };
+		return new Parameter[] { subsetSize,computation,critFunctionMethod, numberOfThreads, timeBudget, evaluationBudget };
+	}
+
+	/**
+	 * Creates the search and registers the search progress listener.
+	 */
+	@Override
+	public ASSearch createSearchMethod() throws Exception {
+		BranchAndBound search = (BranchAndBound) super.createSearchMethod();
+
+		if (getSearchProgressListener() != null) {
+			search.addSearchProgressListener(getSearchProgressListener());
+		}
+		return search;
 	}
 
 	/**
@@ -96,6 +125,14 @@ public class BranchAndBoundAdapter extends FeatureSelectionAlgorithm {
 
 		numberOfEigenvectors = new Parameter(3, "Number of eigenvectors/-values", Parameter.TYPE.INTEGER, null);
 		kernelParameter = new Parameter(0.5, "Kernel parameter (gamma for RBF kernel; exponent for polynomial kernel)", Parameter.TYPE.DOUBLE, null);
+
+		exactApproximation = new SelectedParameterItem("None (exact)", "-A 0");
+		nystroemRandomApproximation = new SelectedParameterItem("Nyström (random landmarks)", "-A 1");
+		nystroemKMeansApproximation = new SelectedParameterItem("Nyström (k-means++ landmarks)", "-A 2");
+		approximation = ParameterUtilities.createSelectedParameter("Kernel approximation", exactApproximation, nystroemRandomApproximation,
+				nystroemKMeansApproximation);
+		landmarksPerClass = new Parameter(100, "Number of landmarks per class (Nyström)", Parameter.TYPE.INTEGER, null);
+		approximationSubsampleSize = new Parameter(500, "Subsample size for approximation error (Nyström)", Parameter.TYPE.INTEGER, null);
 		
 		chen_algorithm = new SelectedParameterItem("Chen, Pattern Recogn Lett, 24(12):1925-1933, 2003", "-T 1");
 		narendraFukunaga_algorithm = new SelectedParameterItem("Narendra and Fukunaga, IEEE T Comput, C-26(9):917-922, 1977", "-T 2");
@@ -117,7 +154,16 @@ public class BranchAndBoundAdapter extends FeatureSelectionAlgorithm {
 	 */
 	@Override
 	protected Parameter[] getEvaluatorParameters() {
-		return new Parameter[] { distanceMeasure, kernel, computation, numberOfEigenvectors, kernelParameter };
+		return new Parameter[] { distanceMeasure, kernel, computation, numberOfEigenvectors, kernelParameter, approximation, landmarksPerClass,
+				approximationSubsampleSize };
+	}
+
+	/**
+	 * The selection does not depend on the classifier.
+	 */
+	@Override
+	public boolean isClassifierIndependent() {
+		return true;
 	}
 
 	/**
@@ -127,6 +173,7 @@ public class BranchAndBoundAdapter extends FeatureSelectionAlgorithm {
 	public ASEvaluation createEvaluator(Classifier classifier, PipelineData data) {		
 		
 		DISTANCE_MEASURE distanceMeasureType = null;
+		KERNEL_APPROXIMATION approximationType = null;
 		SelectedParameter selectedParameter = (SelectedParameter) distanceMeasure.getValue();
 		SelectedParameterItem item = selectedParameter.getItems().get(selectedParameter.getSelectedIndex()); 
 		
@@ -140,14 +187,26 @@ public class BranchAndBoundAdapter extends FeatureSelectionAlgorithm {
 			return null;
 		}
 
+		selectedParameter = (SelectedParameter) approximation.getValue();
+		item = selectedParameter.getItems().get(selectedParameter.getSelectedIndex());
+		if (nystroemRandomApproximation.equals(item)) {
+			approximationType = KERNEL_APPROXIMATION.NYSTROEM_RANDOM;
+		} else if (nystroemKMeansApproximation.equals(item)) {
+			approximationType = KERNEL_APPROXIMATION.NYSTROEM_KMEANS_PLUS_PLUS;
+		} else {
+			approximationType = KERNEL_APPROXIMATION.EXACT;
+		}
+
 		selectedParameter = (SelectedParameter) kernel.getValue();
 		item = selectedParameter.getItems().get(selectedParameter.getSelectedIndex());
 		if (rbfKernel.equals(item)) {
 			return new ReproducingKernelHilbertSpaceEvaluator(KERNEL.RBF, distanceMeasureType, (Integer) numberOfEigenvectors.getValue(),
-					(Double) kernelParameter.getValue());
+					(Double) kernelParameter.getValue(), approximationType, (Integer) landmarksPerClass.getValue(),
+					(Integer) approximationSubsampleSize.getValue());
 		} else if (polynomialKernel.equals(item)) {
 			return new ReproducingKernelHilbertSpaceEvaluator(KERNEL.POLYNOMIAL, distanceMeasureType, (Integer) numberOfEigenvectors.getValue(),
-					(Double) kernelParameter.getValue());
+					(Double) kernelParameter.getValue(), approximationType, (Integer) landmarksPerClass.getValue(),
+					(Integer) approximationSubsampleSize.getValue());
 		} else if (linearKernel.equals(item)) {
 			return new ProbabilisticDistanceEvaluator(distanceMeasureType);
 		}
@@ -156,13 +215,40 @@ public class BranchAndBoundAdapter extends FeatureSelectionAlgorithm {
 
 	@Override
 	protected String getAdditionalInformationAboutSearchProcess(ASSearch search, ASEvaluation evaluator) {
+		String approximationError = null;
+		String searchInfo = getSearchInformation((BranchAndBound) search);
+
 		if (evaluator instanceof ReproducingKernelHilbertSpaceEvaluator) {
-			
+			approximationError = ((ReproducingKernelHilbertSpaceEvaluator) evaluator).getApproximationError();
 			return "Final bound: " + ((BranchAndBound) search).getFinalBound() + "\nSearch time: " + ((BranchAndBound) search).getExecutionTime()
-					+ " ms\nNumber of evaluations: " + ((ReproducingKernelHilbertSpaceEvaluator) evaluator).getNumberOfEvaluations();
+					+ " ms\nNumber of evaluations: " + ((ReproducingKernelHilbertSpaceEvaluator) evaluator).getNumberOfEvaluations()
+					+ (approximationError != null ? "\n" + approximationError : "") + searchInfo;
 		} else {
-			return "Final bound: " + ((BranchAndBound) search).getFinalBound() + "\nSearch time: " + ((BranchAndBound) search).getExecutionTime();
+			return "Final bound: " + ((BranchAndBound) search).getFinalBound() + "\nSearch time: " + ((BranchAndBound) search).getExecutionTime() + searchInfo;
 		}
 
 	}
+
+	/**
+	 * Internal method to describe the search tree, the bound trajectory and,
+	 * if the search was stopped, the optimality gap.
+	 * 
+	 * @param search
+	 * @return
+	 */
+	private String getSearchInformation(BranchAndBound search) {
+		StringBuilder builder = new StringBuilder();
+
+		if (search.wasStopped()) {
+			builder.append("\nSearch stopped (budget exhausted or canceled), upper bound: " + search.getUpperBound() + ", optimality gap: "
+					+ search.getOptimalityGap() + " (valid for monotone criteria), evaluations after the stop: "
+					+ search.getEvaluationsAfterStop());
+		}
+		builder.append("\nNodes: " + search.getNodesExpanded() + " expanded, " + search.getNodesPruned() + " pruned");
+		builder.append("\nBound trajectory (ms: bound):");
+		for (double[] point : search.getBoundTrajectory()) {
+			builder.append(" " + (long) point[0] + ": " + point[1]);
+		}
+		return builder.toString();
+	}
 }
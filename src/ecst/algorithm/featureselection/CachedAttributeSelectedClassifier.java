@@ -0,0 +1,141 @@
+package ecst.algorithm.featureselection;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+
+import weka.attributeSelection.ASEvaluation;
+import weka.attributeSelection.ASSearch;
+import weka.attributeSelection.SubsetEvaluator;
+import weka.classifiers.meta.AttributeSelectedClassifier;
+import weka.core.Instances;
+
+/**
+ * This class extends WEKA's AttributeSelectedClassifier by a cache of the
+ * selected attributes. It may only be used with feature selection algorithms
+ * that do not depend on the classifier: if the same training set was already
+ * reduced by the same configuration (e.g. in the same fold for another
+ * classifier), the cached attributes are selected again without a search.
+ * Otherwise the search is performed and its result is cached; classifiers
+ * that are trained concurrently on the same training set wait for this
+ * search.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class CachedAttributeSelectedClassifier extends AttributeSelectedClassifier {
+
+	private static final long serialVersionUID = 1L;
+
+	private String configuration;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param configuration
+	 *            identifies the configuration of the feature selection
+	 *            algorithm
+	 */
+	public CachedAttributeSelectedClassifier(String configuration) {
+		this.configuration = configuration;
+	}
+
+	/**
+	 * Selects the attributes (or reuses the cached selection) and builds the
+	 * classifier on the reduced training set.
+	 */
+	@Override
+	public void buildClassifier(final Instances data) throws Exception {
+		int[] selectedAttributes = null;
+		ASSearch search = getSearch();
+		ASEvaluation evaluator = getEvaluator();
+		final boolean[] searched = new boolean[1];
+
+		selectedAttributes = SelectionCache.getSharedCache().getOrSelect(configuration, data, new Callable<int[]>() {
+			@Override
+			public int[] call() throws Exception {
+				CachedAttributeSelectedClassifier.super.buildClassifier(data);
+				searched[0] = true;
+				if (m_AttributeSelection == null) {
+					return null;
+				}
+				return withoutClass(m_AttributeSelection.selectedAttributes(), data.classIndex());
+			}
+		});
+		if (searched[0]) {
+			return;
+		}
+		if (selectedAttributes == null) {
+			// no selection was performed (no training instances)
+			super.buildClassifier(data);
+			return;
+		}
+
+		// replays the cached selection, so that the reduction of the training
+		// and test instances is the same as after a search
+		setEvaluator(new SelectedSubsetEvaluator());
+		setSearch(new SelectedSubsetSearch(selectedAttributes));
+		try {
+			super.buildClassifier(data);
+		} finally {
+			setEvaluator(evaluator);
+			setSearch(search);
+		}
+	}
+
+	/**
+	 * Internal method to remove the class index from the selected attributes.
+	 * 
+	 * @param selectedAttributes
+	 * @param classIndex
+	 * @return
+	 */
+	private int[] withoutClass(int[] selectedAttributes, int classIndex) {
+		int j = 0;
+		int[] result = new int[selectedAttributes.length];
+
+		for (int attribute : selectedAttributes) {
+			if (attribute != classIndex) {
+				result[j++] = attribute;
+			}
+		}
+		return Arrays.copyOf(result, j);
+	}
+
+	/**
+	 * Search method that returns the cached attributes.
+	 */
+	private static class SelectedSubsetSearch extends ASSearch {
+
+		private static final long serialVersionUID = 1L;
+
+		private int[] selectedAttributes;
+
+		public SelectedSubsetSearch(int[] selectedAttributes) {
+			this.selectedAttributes = selectedAttributes;
+		}
+
+		@Override
+		public int[] search(ASEvaluation ASEvaluator, Instances data) throws Exception {
+			return selectedAttributes.clone();
+		}
+	}
+
+	/**
+	 * Subset evaluator without computations for the cached search.
+	 */
+	private static class SelectedSubsetEvaluator extends ASEvaluation implements SubsetEvaluator {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void buildEvaluator(Instances data) throws Exception {
+		}
+
+		@Override
+		public double evaluateSubset(BitSet subset) throws Exception {
+			return 0;
+		}
+	}
+
+}
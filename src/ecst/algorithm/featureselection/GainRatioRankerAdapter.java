@@ -46,6 +46,14 @@ public class GainRatioRankerAdapter extends FeatureSelectionAlgorithm {
 		return new Parameter[] { missingMerge };
 	}
 
+	/**
+	 * The selection does not depend on the classifier.
+	 */
+	@Override
+	public boolean isClassifierIndependent() {
+		return true;
+	}
+
 	@Override
 	public ASEvaluation createEvaluator(Classifier classifier, PipelineData data) {
 		GainRatioAttributeEval evaluator = new GainRatioAttributeEval();
@@ -48,6 +48,14 @@ public class InfoGainRankerAdapter extends FeatureSelectionAlgorithm {
 		return new Parameter[] { binarize, missingMerge };
 	}
 
+	/**
+	 * The selection does not depend on the classifier.
+	 */
+	@Override
+	public boolean isClassifierIndependent() {
+		return true;
+	}
+
 	@Override
 	public ASEvaluation createEvaluator(Classifier classifier, PipelineData data) {
 		InfoGainAttributeEval evaluator = new InfoGainAttributeEval();
@@ -17,17 +17,20 @@ public class KFeatureSelectionAdapter extends WrapperFeatureSelection {
 
 	private Parameter searchMethod;
 	private Parameter numberOfFeatures;
+	private Parameter numberOfThreads;
 
 	@Override
 	protected void initSearchMethodParameters() {
 		numberOfFeatures = new Parameter(1, "Number of features to select", Parameter.TYPE.INTEGER, "-N");
 		searchMethod = ParameterUtilities.createSelectedParameter("Search method", new SelectedParameterItem("Sequential forward", "-F"),
 				new SelectedParameterItem("Sequential backward", "-B"), new SelectedParameterItem("Exhaustive", "-E"));
+		numberOfThreads = new Parameter(Runtime.getRuntime().availableProcessors(), "Number of threads (sequential search)",
+				Parameter.TYPE.INTEGER, "-T");
 	}
 
 	@Override
 	protected Parameter[] getSearchMethodParameters() {
-		return new Parameter[] { searchMethod, numberOfFeatures };
+		return new Parameter[] { searchMethod, numberOfFeatures, numberOfThreads };
 	}
 
 	@Override
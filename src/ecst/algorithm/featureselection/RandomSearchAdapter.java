@@ -2,11 +2,12 @@ package ecst.algorithm.featureselection;
 
 import weka.attributeSelection.ASEvaluation;
 import weka.attributeSelection.ASSearch;
-import weka.attributeSelection.RandomSearch;
+import ecst.algorithm.featureselection.search.ParallelRandomSearch;
 import ecst.algorithm.parameter.Parameter;
 
 /**
- * This class is an adapter for the random search implementation in WEKA.
+ * This class is an adapter for the random search implementation of WEKA.
+ * The search evaluates the random subsets in parallel.
  * 
  * @author Matthias Ring
  *
@@ -15,6 +16,7 @@ public class RandomSearchAdapter extends WrapperFeatureSelection {
 	
 	private Parameter percent;
 	private Parameter startSet;
+	private Parameter numberOfThreads;
 	
 	/**
 	 * Initializes the algorithm parameters.
@@ -23,6 +25,7 @@ public class RandomSearchAdapter extends WrapperFeatureSelection {
 	protected void initSearchMethodParameters() {
 		startSet = new Parameter("", "Start set", Parameter.TYPE.STRING, "-P");
 		percent = new Parameter(25.0, "Percent of search space to consider", Parameter.TYPE.DOUBLE, "-F");
+		numberOfThreads = new Parameter(Runtime.getRuntime().availableProcessors(), "Number of threads", Parameter.TYPE.INTEGER, "-T");
 	}
 	
 	/**
@@ -30,7 +33,7 @@ public class RandomSearchAdapter extends WrapperFeatureSelection {
 	 */
 	@Override
 	protected Parameter[] getSearchMethodParameters() {
-		return new Parameter[] { percent, startSet };
+		return new Parameter[] { percent, startSet, numberOfThreads };
 	}
 
 	/**
@@ -38,7 +41,7 @@ public class RandomSearchAdapter extends WrapperFeatureSelection {
 	 */
 	@Override
 	public Class<? extends Object> getImplementingClass() {
-		return RandomSearch.class;
+		return ParallelRandomSearch.class;
 	}
 	
 	@Override
@@ -0,0 +1,131 @@
+package ecst.algorithm.featureselection;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import weka.core.Instances;
+import ecst.utilities.InstancesKey;
+
+/**
+ * This class stores the attributes that a feature selection algorithm has
+ * selected on a training set. The entries are keyed by the configuration of
+ * the feature selection algorithm and by the content of the training set (and
+ * thus by the preprocessing and the fold definition), so that all classifiers
+ * that are evaluated on the same folds can reuse the selection. Concurrent
+ * requests for the same entry wait for a single selection. The keys store a
+ * digest of the training set, not the training set itself. If the number of
+ * entries exceeds the capacity, the least recently used entries are removed.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class SelectionCache {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private static final SelectionCache SHARED_CACHE = new SelectionCache(DEFAULT_CAPACITY);
+
+	private long hits;
+	private long misses;
+	private LinkedHashMap<InstancesKey, FutureTask<int[]>> cache;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *            the maximum number of cached selections
+	 */
+	public SelectionCache(final int capacity) {
+		cache = new LinkedHashMap<InstancesKey, FutureTask<int[]>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<InstancesKey, FutureTask<int[]>> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cache that is shared by all evaluations. The classifiers of
+	 * an evaluation are copied by serialization, so that they cannot reference
+	 * a cache of their own.
+	 * 
+	 * @return
+	 */
+	public static SelectionCache getSharedCache() {
+		return SHARED_CACHE;
+	}
+
+	/**
+	 * Returns the selected attributes (without the class) for the given
+	 * configuration and training set. If they are not cached, the selection is
+	 * performed on the calling thread and its result is cached. If the
+	 * selection returns null, null is returned.
+	 * 
+	 * @param configuration
+	 * @param training
+	 * @param selection
+	 *            performs the selection
+	 * @return
+	 * @throws Exception
+	 */
+	public int[] getOrSelect(String configuration, Instances training, Callable<int[]> selection) throws Exception {
+		int[] selectedAttributes = null;
+		boolean owner = false;
+		FutureTask<int[]> task = null;
+		InstancesKey key = new InstancesKey(configuration, training);
+
+		synchronized (this) {
+			task = cache.get(key);
+			if (task == null) {
+				task = new FutureTask<int[]>(selection);
+				cache.put(key, task);
+				owner = true;
+				misses++;
+			} else {
+				hits++;
+			}
+		}
+		if (owner) {
+			task.run();
+		}
+
+		try {
+			selectedAttributes = task.get();
+		} catch (ExecutionException e) {
+			synchronized (this) {
+				if (cache.get(key) == task) {
+					cache.remove(key);
+				}
+			}
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw new Exception(e.getCause());
+		}
+		return selectedAttributes == null ? null : selectedAttributes.clone();
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+}
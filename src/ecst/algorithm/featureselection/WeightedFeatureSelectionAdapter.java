@@ -19,6 +19,7 @@ public class WeightedFeatureSelectionAdapter extends WrapperFeatureSelection {
 	private Parameter maxWeight;
 	private Parameter weights;
 	private Parameter searchMethod;
+	private Parameter numberOfThreads;
 
 	/**
 	 * Initializes the algorithm parameters.
@@ -31,6 +32,8 @@ public class WeightedFeatureSelectionAdapter extends WrapperFeatureSelection {
 				"-W");
 		searchMethod = ParameterUtilities.createSelectedParameter("Search method", new SelectedParameterItem("Exhaustive", "-E"),
 				new SelectedParameterItem("Sequential forward", "-F"), new SelectedParameterItem("Sequential backward", "-B"));
+		numberOfThreads = new Parameter(Runtime.getRuntime().availableProcessors(), "Number of threads (sequential search)",
+				Parameter.TYPE.INTEGER, "-T");
 	}
 
 	/**
@@ -38,7 +41,7 @@ public class WeightedFeatureSelectionAdapter extends WrapperFeatureSelection {
 	 */
 	@Override
 	protected Parameter[] getSearchMethodParameters() {
-		return new Parameter[] { minWeight, maxWeight, weights, searchMethod };
+		return new Parameter[] { minWeight, maxWeight, weights, searchMethod, numberOfThreads };
 	}
 	
 	/**
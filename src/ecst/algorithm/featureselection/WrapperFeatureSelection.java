@@ -24,6 +24,7 @@ public abstract class WrapperFeatureSelection extends FeatureSelectionAlgorithm
 	private Parameter crossValidationFolds;
 	private Parameter crossValidationThreshold;
 	private Parameter subjectsPerLeaveOut;
+	private Parameter foldThreads;
 	private Parameter validationMethod;
 	private SelectedParameterItem crossValidationEvaluation;
 	private SelectedParameterItem leaveSubjectOutEvaluation;
@@ -41,6 +42,7 @@ public abstract class WrapperFeatureSelection extends FeatureSelectionAlgorithm
 		// LeaveSubjectOut parameter
 		subjectsPerLeaveOut = new Parameter(1, "Number of subjects to leave out (set to 1 for 'leave one subject out' validation)",
 				Parameter.TYPE.INTEGER, null);
+		foldThreads = new Parameter(1, "Number of folds trained in parallel (leave-subject-out validation)", Parameter.TYPE.INTEGER, null);
 		leaveSubjectOutEvaluation = new SelectedParameterItem("Leave subject out validation", "");
 		crossValidationEvaluation = new SelectedParameterItem("Cross validation", "");
 		validationMethod = ParameterUtilities.createSelectedParameter(
@@ -53,7 +55,7 @@ public abstract class WrapperFeatureSelection extends FeatureSelectionAlgorithm
 	 */
 	@Override
 	protected Parameter[] getEvaluatorParameters() {
-		return new Parameter[] { crossValidationThreshold, seed, crossValidationFolds, validationMethod, subjectsPerLeaveOut };
+		return new Parameter[] { crossValidationThreshold, seed, crossValidationFolds, validationMethod, subjectsPerLeaveOut, foldThreads };
 	}
 
 	/**
@@ -66,7 +68,8 @@ public abstract class WrapperFeatureSelection extends FeatureSelectionAlgorithm
 		SelectedParameterItem item = selectedParameter.getItems().get(selectedParameter.getSelectedIndex());
 
 		if (leaveSubjectOutEvaluation.equals(item)) {
-			evaluator = new LeaveSubjectOutEvaluator(classifier, (Integer) subjectsPerLeaveOut.getValue(), data.getPreprocessedSubjectIDs());
+			evaluator = new LeaveSubjectOutEvaluator(classifier, (Integer) subjectsPerLeaveOut.getValue(), data.getPreprocessedSubjectIDs(),
+					foldThreads.getValue() != null ? (Integer) foldThreads.getValue() : 1);
 		} else {
 			evaluator = new WrapperSubsetEval();
 			if (crossValidationFolds.getValue() != null) {
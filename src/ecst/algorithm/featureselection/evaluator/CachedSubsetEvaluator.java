@@ -0,0 +1,244 @@
+package ecst.algorithm.featureselection.evaluator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import weka.attributeSelection.ASEvaluation;
+import weka.attributeSelection.SubsetEvaluator;
+import weka.core.Capabilities;
+import weka.core.Instances;
+
+/**
+ * This class decorates a subset evaluator with a memo cache, so that search
+ * methods which evaluate the same subset several times do not repeat the
+ * (possibly expensive) evaluation. The cache can be used by several threads;
+ * concurrent requests for the same subset wait for a single evaluation. If
+ * the number of cached subsets exceeds the capacity, the oldest entries are
+ * removed.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class CachedSubsetEvaluator extends ASEvaluation implements SubsetEvaluator {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int DEFAULT_CAPACITY = 100000;
+
+	private int capacity;
+	private ASEvaluation evaluator;
+	private AtomicLong hits;
+	private AtomicLong misses;
+	private transient AtomicInteger size;
+	private transient ConcurrentHashMap<SubsetKey, FutureTask<Double>> cache;
+	private transient ConcurrentLinkedQueue<SubsetKey> insertionOrder;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param evaluator
+	 *            the evaluator to decorate, must implement SubsetEvaluator
+	 * @param capacity
+	 *            the maximum number of cached subsets
+	 */
+	public CachedSubsetEvaluator(ASEvaluation evaluator, int capacity) {
+		if (!(evaluator instanceof SubsetEvaluator)) {
+			throw new IllegalArgumentException("The evaluator has to be a subset evaluator!");
+		}
+		this.evaluator = evaluator;
+		this.capacity = capacity;
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		clearCache();
+	}
+
+	/**
+	 * Builds the decorated evaluator and clears the cache.
+	 */
+	@Override
+	public void buildEvaluator(Instances data) throws Exception {
+		evaluator.buildEvaluator(data);
+		clearCache();
+	}
+
+	/**
+	 * Returns the cached merit of the subset or evaluates it with the decorated
+	 * evaluator.
+	 */
+	@Override
+	public double evaluateSubset(BitSet subset) throws Exception {
+		return evaluateSubset(subset, (SubsetEvaluator) evaluator);
+	}
+
+	/**
+	 * Returns the cached merit of the subset or evaluates it with the given
+	 * evaluator. This allows threads to share the cache while each thread
+	 * evaluates with its own copy of the decorated evaluator.
+	 * 
+	 * @param subset
+	 * @param delegate
+	 *            a built copy of the decorated evaluator
+	 * @return
+	 * @throws Exception
+	 */
+	public double evaluateSubset(BitSet subset, final SubsetEvaluator delegate) throws Exception {
+		SubsetKey key = new SubsetKey(subset);
+		FutureTask<Double> task = null;
+		FutureTask<Double> newTask = null;
+		final BitSet copy = (BitSet) subset.clone();
+
+		task = cache.get(key);
+		if (task == null) {
+			newTask = new FutureTask<Double>(new Callable<Double>() {
+				@Override
+				public Double call() throws Exception {
+					return delegate.evaluateSubset(copy);
+				}
+			});
+			task = cache.putIfAbsent(key, newTask);
+			if (task == null) {
+				task = newTask;
+				misses.incrementAndGet();
+				insertionOrder.add(key);
+				if (size.incrementAndGet() > capacity) {
+					evictOldest();
+				}
+				newTask.run();
+			} else {
+				hits.incrementAndGet();
+			}
+		} else {
+			hits.incrementAndGet();
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw e;
+		} catch (ExecutionException e) {
+			// do not cache failed evaluations
+			if (cache.remove(key, task)) {
+				insertionOrder.remove(key);
+				size.decrementAndGet();
+			}
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw new Exception(e.getCause());
+		}
+	}
+
+	/**
+	 * Internal method to remove the oldest entries until the capacity is
+	 * fulfilled.
+	 */
+	private void evictOldest() {
+		SubsetKey oldest = null;
+
+		while (size.get() > capacity) {
+			oldest = insertionOrder.poll();
+			if (oldest == null) {
+				return;
+			}
+			// the entry may have been removed after a failed evaluation
+			if (cache.remove(oldest) != null) {
+				size.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Internal method to reset the cache.
+	 */
+	private void clearCache() {
+		size = new AtomicInteger();
+		cache = new ConcurrentHashMap<SubsetKey, FutureTask<Double>>();
+		insertionOrder = new ConcurrentLinkedQueue<SubsetKey>();
+	}
+
+	@Override
+	public int[] postProcess(int[] attributeSet) throws Exception {
+		return evaluator.postProcess(attributeSet);
+	}
+
+	@Override
+	public Capabilities getCapabilities() {
+		return evaluator.getCapabilities();
+	}
+
+	@Override
+	public String toString() {
+		return evaluator.toString();
+	}
+
+	/**
+	 * Returns the decorated evaluator.
+	 * 
+	 * @return
+	 */
+	public ASEvaluation getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Returns the number of evaluations that were answered by the cache.
+	 * 
+	 * @return
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of evaluations that were passed to the decorated
+	 * evaluator.
+	 * 
+	 * @return
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Immutable and compact key of a subset: the words of the bitset without
+	 * trailing zeros.
+	 */
+	private static class SubsetKey {
+
+		private final long[] words;
+		private final int hashCode;
+
+		public SubsetKey(BitSet subset) {
+			int length = subset.length();
+			long[] tmp = new long[(length + 63) / 64];
+
+			for (int i = subset.nextSetBit(0); i >= 0; i = subset.nextSetBit(i + 1)) {
+				tmp[i / 64] |= 1L << (i % 64);
+			}
+			words = tmp;
+			hashCode = Arrays.hashCode(words);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof SubsetKey)) {
+				return false;
+			}
+			return Arrays.equals(words, ((SubsetKey) object).words);
+		}
+	}
+
+}
@@ -1,20 +1,30 @@
 package ecst.algorithm.featureselection.evaluator;
 
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.List;
 
 import weka.attributeSelection.ASEvaluation;
 import weka.attributeSelection.SubsetEvaluator;
 import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Remove;
 import ecst.combiner.SubjectIDList;
 import ecst.utilities.CommonUtilities;
+import ecst.utilities.FoldCreator;
 import ecst.utilities.InstanceUtilities;
+import ecst.utilities.ParallelFoldEvaluator;
 
 /**
  * This class evaluates feature subsets in feature selection algorithms that
- * evaluate with respect to subject IDs.
+ * evaluate with respect to subject IDs. The test instances of the folds are
+ * computed once when the evaluator is built. For every subset, the selected
+ * attributes of all instances are copied once; the training and test sets of
+ * a fold share these values and are created when the fold is trained. The
+ * folds can be trained in parallel.
  * 
  * @author Matthias Ring
  * 
@@ -26,7 +36,9 @@ public class LeaveSubjectOutEvaluator extends ASEvaluation implements SubsetEval
 	private Instances instances;
 	private Classifier classifier;
 	private int subjectsPerHoldOut;
+	private int numberOfThreads;
 	private SubjectIDList subjectIDs;
+	private List<int[]> testIndices;
 
 	/**
 	 * Constructor.
@@ -36,6 +48,19 @@ public class LeaveSubjectOutEvaluator extends ASEvaluation implements SubsetEval
 	 * @param subjectIDs
 	 */
 	public LeaveSubjectOutEvaluator(Classifier classifier, int subjectsPerHoldOut, SubjectIDList subjectIDs) {
+		this(classifier, subjectsPerHoldOut, subjectIDs, 1);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param classifier
+	 * @param subjectsPerHoldOut
+	 * @param subjectIDs
+	 * @param numberOfThreads
+	 *            number of folds that are trained in parallel
+	 */
+	public LeaveSubjectOutEvaluator(Classifier classifier, int subjectsPerHoldOut, SubjectIDList subjectIDs, int numberOfThreads) {
 		if (subjectIDs == null) {
 			throw new IllegalArgumentException("No subject IDs available!");
 		}
@@ -43,14 +68,26 @@ public class LeaveSubjectOutEvaluator extends ASEvaluation implements SubsetEval
 		this.classifier = classifier;
 		this.subjectIDs = subjectIDs;
 		this.subjectsPerHoldOut = subjectsPerHoldOut;
+		this.numberOfThreads = numberOfThreads;
 	}
 
 	/**
-	 * Nothing to do here, just save the data.
+	 * Saves the data and computes the indices of the test instances of every
+	 * fold.
 	 */
 	@Override
 	public void buildEvaluator(Instances data) throws Exception {
+		int[] test = null;
+
 		this.instances = data;
+		testIndices = new ArrayList<int[]>();
+		for (List<Integer> fold : InstanceUtilities.getLeaveSubjectOutFolds(subjectIDs, subjectsPerHoldOut)) {
+			test = new int[fold.size()];
+			for (int i = 0; i < test.length; i++) {
+				test[i] = fold.get(i);
+			}
+			testIndices.add(test);
+		}
 	}
 
 	/**
@@ -58,11 +95,97 @@ public class LeaveSubjectOutEvaluator extends ASEvaluation implements SubsetEval
 	 */
 	@Override
 	public double evaluateSubset(BitSet subset) throws Exception {
-		Instances copy = null;
+		Instances projection = null;
+		Evaluation evaluation = null;
+
+		if (instances.checkForStringAttributes()) {
+			// string values have to be mapped by the filter
+			projection = Filter.useFilter(new Instances(instances), initAttributesFilter(subset));
+		} else {
+			projection = project(subset);
+		}
+
+		evaluation = new Evaluation(projection);
+		new ParallelFoldEvaluator(numberOfThreads).evaluate(classifier, testIndices.size(), createFolds(projection), evaluation);
+		return evaluation.pctCorrect();
+	}
+
+	/**
+	 * Internal method to create the training and test sets of the folds from
+	 * the given projection.
+	 * 
+	 * @param projection
+	 * @return
+	 */
+	private FoldCreator createFolds(final Instances projection) {
+		return new FoldCreator() {
+
+			@Override
+			public Instances[] createFold(int fold) {
+				return new Instances[] { selectInstances(projection, testIndices.get(fold), true),
+						selectInstances(projection, testIndices.get(fold), false) };
+			}
+		};
+	}
+
+	/**
+	 * Internal method to copy the values of the selected attributes and the
+	 * class of all instances.
+	 * 
+	 * @param subset
+	 * @return
+	 * @throws Exception
+	 */
+	private Instances project(BitSet subset) throws Exception {
+		int j;
+		int[] attributes = null;
+		double[] values = null;
+		BitSet withClass = null;
+		Instance instance = null;
+		Instances projection = null;
 
-		copy = new Instances(instances);
-		copy = Filter.useFilter(copy, initAttributesFilter(subset));
-		return InstanceUtilities.evaluateLeaveSubjectOut(classifier, copy, subjectIDs, subjectsPerHoldOut).pctCorrect();
+		projection = new Instances(initAttributesFilter(subset).getOutputFormat(), instances.numInstances());
+		withClass = (BitSet) subset.clone();
+		withClass.set(instances.classIndex());
+		attributes = CommonUtilities.bitsetToIntegerArray(withClass, false);
+		for (int i = 0; i < instances.numInstances(); i++) {
+			instance = instances.instance(i);
+			values = new double[attributes.length];
+			j = 0;
+			for (int attribute : attributes) {
+				values[j++] = instance.value(attribute);
+			}
+			projection.add(new Instance(instance.weight(), values));
+		}
+		return projection;
+	}
+
+	/**
+	 * Internal method to build a set of the given instances (or of all other
+	 * instances if complement is true). The instances share their values with
+	 * the given set.
+	 * 
+	 * @param all
+	 * @param indices
+	 *            the sorted indices
+	 * @param complement
+	 * @return
+	 */
+	private Instances selectInstances(Instances all, int[] indices, boolean complement) {
+		int next = 0;
+		Instances selection = new Instances(all, complement ? all.numInstances() - indices.length : indices.length);
+
+		for (int i = 0; i < all.numInstances(); i++) {
+			if (next < indices.length && indices[next] == i) {
+				next++;
+				if (!complement) {
+					selection.add(all.instance(i));
+				}
+			} else if (complement) {
+				selection.add(all.instance(i));
+			}
+		}
+		return selection;
 	}
 
 	/**
@@ -0,0 +1,229 @@
+package ecst.algorithm.featureselection.evaluator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ecst.algorithm.featureselection.BranchAndBoundAdapter.KERNEL;
+import ecst.utilities.MathUtilities;
+import weka.core.matrix.EigenvalueDecomposition;
+import weka.core.matrix.Matrix;
+
+/**
+ * This class computes low-rank Nyström feature maps for the kernel space
+ * feature selection. A set of landmark instances is selected per class; the
+ * feature vector of an instance x is then k(x, Z) * U * D^(-1/2), where U * D
+ * * U' is the eigendecomposition of the kernel matrix of the landmarks Z. The
+ * dot products of the feature vectors approximate the kernel function.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class NystroemApproximation {
+
+	private static final double RELATIVE_EIGENVALUE_THRESHOLD = 1e-10;
+
+	private boolean kMeansPlusPlus;
+	private double kernelParameter;
+	private double[][] landmarks;
+	private KERNEL kernelType;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param kernelType
+	 * @param kernelParameter
+	 * @param kMeansPlusPlus
+	 *            true to select the landmarks by the k-means++ seeding, false
+	 *            to select them randomly
+	 */
+	public NystroemApproximation(KERNEL kernelType, double kernelParameter, boolean kMeansPlusPlus) {
+		this.kernelType = kernelType;
+		this.kernelParameter = kernelParameter;
+		this.kMeansPlusPlus = kMeansPlusPlus;
+	}
+
+	/**
+	 * Evaluates the kernel function on the given attributes.
+	 * 
+	 * @param kernelType
+	 * @param kernelParameter
+	 * @param x
+	 * @param y
+	 * @param attributes
+	 * @return
+	 */
+	public static double kernel(KERNEL kernelType, double kernelParameter, double[] x, double[] y, int[] attributes) {
+		double sum = 0.0;
+
+		if (KERNEL.RBF.equals(kernelType)) {
+			for (int attribute : attributes) {
+				sum += (x[attribute] - y[attribute]) * (x[attribute] - y[attribute]);
+			}
+			return Math.exp(-kernelParameter * sum);
+		} else {
+			// polynomial kernel with lower order terms
+			for (int attribute : attributes) {
+				sum += x[attribute] * y[attribute];
+			}
+			return Math.pow(sum + 1.0, kernelParameter);
+		}
+	}
+
+	/**
+	 * Selects the landmarks for both classes. The instances must be sorted
+	 * according to their class membership.
+	 * 
+	 * @param instances
+	 * @param sizeClassOne
+	 * @param landmarksPerClass
+	 */
+	public void selectLandmarks(double[][] instances, int sizeClassOne, int landmarksPerClass) {
+		int m1 = Math.min(landmarksPerClass, sizeClassOne);
+		int m2 = Math.min(landmarksPerClass, instances.length - sizeClassOne);
+		Random random = new Random(1);
+
+		landmarks = new double[m1 + m2][];
+		selectLandmarks(instances, 0, sizeClassOne, m1, 0, random);
+		selectLandmarks(instances, sizeClassOne, instances.length, m2, m1, random);
+	}
+
+	/**
+	 * Internal method to select the landmarks of one class, i.e. of the
+	 * instances in the range [from, to).
+	 * 
+	 * @param instances
+	 * @param from
+	 * @param to
+	 * @param count
+	 * @param offset
+	 * @param random
+	 */
+	private void selectLandmarks(double[][] instances, int from, int to, int count, int offset, Random random) {
+		int tmp;
+		int selected;
+		double sum;
+		double threshold;
+		double distance;
+		int[] indices = null;
+		double[] minDistances = null;
+
+		if (!kMeansPlusPlus) {
+			// partial Fisher-Yates shuffle
+			indices = new int[to - from];
+			for (int i = 0; i < indices.length; i++) {
+				indices[i] = from + i;
+			}
+			for (int i = 0; i < count; i++) {
+				tmp = i + random.nextInt(indices.length - i);
+				landmarks[offset + i] = instances[indices[tmp]];
+				indices[tmp] = indices[i];
+			}
+		} else {
+			// k-means++ seeding: the next landmark is drawn with probability
+			// proportional to the squared distance to the nearest landmark
+			minDistances = new double[to - from];
+			Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+			selected = from + random.nextInt(to - from);
+			for (int i = 0; i < count; i++) {
+				landmarks[offset + i] = instances[selected];
+				sum = 0.0;
+				for (int j = from; j < to; j++) {
+					distance = squaredDistance(instances[j], instances[selected]);
+					if (distance < minDistances[j - from]) {
+						minDistances[j - from] = distance;
+					}
+					sum += minDistances[j - from];
+				}
+				if (sum <= 0.0) {
+					// all remaining instances coincide with landmarks
+					selected = from + random.nextInt(to - from);
+					continue;
+				}
+				threshold = random.nextDouble() * sum;
+				selected = to - 1;
+				for (int j = from; j < to; j++) {
+					threshold -= minDistances[j - from];
+					if (threshold < 0.0) {
+						selected = j;
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Internal method for the k-means++ seeding. The class value is part of
+	 * the vectors, but it is constant within one class.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	private double squaredDistance(double[] x, double[] y) {
+		double sum = 0.0;
+
+		for (int i = 0; i < x.length; i++) {
+			sum += (x[i] - y[i]) * (x[i] - y[i]);
+		}
+		return sum;
+	}
+
+	/**
+	 * Computes the Nyström feature vectors of the given instances for the
+	 * given attributes. The instances must be sorted according to their class
+	 * membership. Returns the feature vectors of class one and two (one row
+	 * per instance).
+	 * 
+	 * @param instances
+	 * @param sizeClassOne
+	 * @param attributes
+	 * @return
+	 */
+	public Matrix[] featureMap(double[][] instances, int sizeClassOne, int[] attributes) {
+		int rank = 0;
+		double maxEigenvalue;
+		double[] eigenvalues = null;
+		Matrix landmarkKernel = null;
+		Matrix eigenvectors = null;
+		Matrix projection = null;
+		Matrix kernelRows = null;
+		Matrix features = null;
+		EigenvalueDecomposition decomposition = null;
+
+		landmarkKernel = new Matrix(landmarks.length, landmarks.length);
+		for (int i = 0; i < landmarks.length; i++) {
+			for (int j = i; j < landmarks.length; j++) {
+				landmarkKernel.set(i, j, kernel(kernelType, kernelParameter, landmarks[i], landmarks[j], attributes));
+				landmarkKernel.set(j, i, landmarkKernel.get(i, j));
+			}
+		}
+
+		decomposition = new EigenvalueDecomposition(landmarkKernel);
+		eigenvectors = MathUtilities.getSortedEigenvectors(decomposition.getV(), decomposition.getD());
+		eigenvalues = MathUtilities.diagMatrix(MathUtilities.getSortedEigenvalues(decomposition.getD())).getRowPackedCopy();
+
+		// drop the directions of (numerically) singular eigenvalues
+		maxEigenvalue = eigenvalues[0];
+		while (rank < eigenvalues.length && eigenvalues[rank] > RELATIVE_EIGENVALUE_THRESHOLD * maxEigenvalue) {
+			rank++;
+		}
+		projection = new Matrix(landmarks.length, rank);
+		for (int j = 0; j < rank; j++) {
+			for (int i = 0; i < landmarks.length; i++) {
+				projection.set(i, j, eigenvectors.get(i, j) / Math.sqrt(eigenvalues[j]));
+			}
+		}
+
+		kernelRows = new Matrix(instances.length, landmarks.length);
+		for (int i = 0; i < instances.length; i++) {
+			for (int j = 0; j < landmarks.length; j++) {
+				kernelRows.set(i, j, kernel(kernelType, kernelParameter, instances[i], landmarks[j], attributes));
+			}
+		}
+		features = kernelRows.times(projection);
+
+		return new Matrix[] { features.getMatrix(0, sizeClassOne - 1, 0, rank - 1), features.getMatrix(sizeClassOne, instances.length - 1, 0, rank - 1) };
+	}
+
+}
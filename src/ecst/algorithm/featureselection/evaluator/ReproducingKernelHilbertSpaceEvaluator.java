@@ -1,17 +1,17 @@
 package ecst.algorithm.featureselection.evaluator;
 
 import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ecst.algorithm.featureselection.BranchAndBoundAdapter.DISTANCE_MEASURE;
 import ecst.algorithm.featureselection.BranchAndBoundAdapter.KERNEL;
+import ecst.algorithm.featureselection.BranchAndBoundAdapter.KERNEL_APPROXIMATION;
 import ecst.utilities.CommonUtilities;
 import ecst.utilities.InstanceUtilities;
 import ecst.utilities.MathUtilities;
 import weka.attributeSelection.ASEvaluation;
 import weka.attributeSelection.SubsetEvaluator;
-import weka.classifiers.functions.supportVector.CachedKernel;
-import weka.classifiers.functions.supportVector.PolyKernel;
-import weka.classifiers.functions.supportVector.RBFKernel;
 import weka.core.Instances;
 import weka.core.matrix.EigenvalueDecomposition;
 import weka.core.matrix.Matrix;
@@ -24,6 +24,13 @@ import weka.core.matrix.Matrix;
  * Transactions on Pattern Analysis and Machine Intelligence, 28(6):917-929,
  * 2006.
  * 
+ * Optionally, the kernel matrix is replaced by a Nyström approximation
+ * according to
+ * 
+ * C.K.I. Williams and M. Seeger. Using the Nyström method to speed up kernel
+ * machines. Advances in Neural Information Processing Systems 13, pp.
+ * 682-688, 2001.
+ * 
  * @author Matthias Ring
  * 
  */
@@ -33,95 +40,326 @@ public class ReproducingKernelHilbertSpaceEvaluator extends ASEvaluation impleme
 
 	private static final double ALPHA_FOR_BHATTACHARYYA_DISTANCE = 0.5;
 
-	private static long numberOfEvaluations;
+	private final AtomicLong numberOfEvaluations = new AtomicLong();
 	private int numEigs;
-	private Instances data;
+	private int n1;
+	private int n2;
+	private int landmarksPerClass;
+	private int approximationSubsampleSize;
 	private double kernelParameter;
+	private double[][] kernelComponents;
+	private double[][] sortedInstances;
 	private KERNEL kernelType;
 	private DISTANCE_MEASURE distanceMeasure;
+	private KERNEL_APPROXIMATION approximation;
+	private NystroemApproximation nystroem;
+	private String approximationError;
 
 	public ReproducingKernelHilbertSpaceEvaluator(KERNEL kernel, DISTANCE_MEASURE distanceMeasure, int numberOfEigenvectors, double kernelParameter) {
+		this(kernel, distanceMeasure, numberOfEigenvectors, kernelParameter, KERNEL_APPROXIMATION.EXACT, 0, 0);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param kernel
+	 * @param distanceMeasure
+	 * @param numberOfEigenvectors
+	 * @param kernelParameter
+	 * @param approximation
+	 *            exact evaluation or Nyström approximation
+	 * @param landmarksPerClass
+	 *            number of landmark instances per class for the Nyström
+	 *            approximation
+	 * @param approximationSubsampleSize
+	 *            number of instances used to compare the Nyström approximation
+	 *            with the exact evaluation
+	 */
+	public ReproducingKernelHilbertSpaceEvaluator(KERNEL kernel, DISTANCE_MEASURE distanceMeasure, int numberOfEigenvectors, double kernelParameter,
+			KERNEL_APPROXIMATION approximation, int landmarksPerClass, int approximationSubsampleSize) {
 		this.kernelType = kernel;
 		this.numEigs = numberOfEigenvectors;
 		this.distanceMeasure = distanceMeasure;
 		this.kernelParameter = kernelParameter;
+		this.approximation = approximation;
+		this.landmarksPerClass = landmarksPerClass;
+		this.approximationSubsampleSize = approximationSubsampleSize;
 	}
 
 	@Override
 	public void buildEvaluator(Instances data) throws Exception {
+		Instances[] separatedInstances = null;
+
 		if (!(data.classAttribute().numValues() == 2 && data.classAttribute().isNominal())) {
 			throw new IllegalArgumentException("Only two class problems with nominal class attributes are supported");
 		}
-		this.data = data;
-		numberOfEvaluations = 0;
+
+		// sort the instances according to their class membership
+		separatedInstances = InstanceUtilities.separateClasses(data);
+		n1 = separatedInstances[0].numInstances();
+		n2 = separatedInstances[1].numInstances();
+		sortedInstances = new double[n1 + n2][];
+		for (int i = 0; i < n1; i++) {
+			sortedInstances[i] = separatedInstances[0].instance(i).toDoubleArray();
+		}
+		for (int i = 0; i < n2; i++) {
+			sortedInstances[n1 + i] = separatedInstances[1].instance(i).toDoubleArray();
+		}
+
+		if (KERNEL_APPROXIMATION.EXACT.equals(approximation)) {
+			nystroem = null;
+			approximationError = null;
+			precomputeKernelComponents(data.numAttributes(), data.classIndex());
+			sortedInstances = null;
+		} else {
+			if (2 * landmarksPerClass < numEigs) {
+				throw new IllegalArgumentException("At least " + numEigs + " landmarks are required for " + numEigs + " eigenvectors");
+			}
+			kernelComponents = null;
+			nystroem = new NystroemApproximation(kernelType, kernelParameter, KERNEL_APPROXIMATION.NYSTROEM_KMEANS_PLUS_PLUS.equals(approximation));
+			nystroem.selectLandmarks(sortedInstances, n1, landmarksPerClass);
+			approximationError = estimateApproximationError(data.numAttributes(), data.classIndex());
+		}
+		numberOfEvaluations.set(0);
+	}
+
+	/**
+	 * Precomputes the per-feature components of the kernel function for all
+	 * pairs of instances. The instances are sorted according to their class
+	 * membership. For the RBF kernel, a component is the squared difference
+	 * of the feature values; for the polynomial kernel, it is the product of
+	 * the feature values. Since both the squared distance and the dot product
+	 * over a subset are sums over the single features, the Gram matrix of any
+	 * subset can be assembled from these components. The components are
+	 * stored as packed upper triangular matrices.
+	 * 
+	 * @param numAttributes
+	 * @param classIndex
+	 */
+	private void precomputeKernelComponents(int numAttributes, int classIndex) {
+		int index;
+		double[] values = null;
+
+		kernelComponents = new double[numAttributes][];
+		for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+			if (attributeIndex == classIndex) {
+				continue;
+			}
+			values = new double[sortedInstances.length];
+			for (int i = 0; i < sortedInstances.length; i++) {
+				values[i] = sortedInstances[i][attributeIndex];
+			}
+			kernelComponents[attributeIndex] = new double[MathUtilities.gaussSum(sortedInstances.length)];
+			index = 0;
+			for (int i = 0; i < values.length; i++) {
+				for (int j = i; j < values.length; j++) {
+					if (kernelType.equals(KERNEL.RBF)) {
+						kernelComponents[attributeIndex][index] = (values[i] - values[j]) * (values[i] - values[j]);
+					} else {
+						kernelComponents[attributeIndex][index] = values[i] * values[j];
+					}
+					index++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Assembles the Gram matrix of the given subset from the precomputed
+	 * kernel components. The rows and columns are sorted according to the
+	 * class membership of the instances.
+	 * 
+	 * @param subset
+	 * @return
+	 */
+	private Matrix gramMatrix(BitSet subset) {
+		int index;
+		int n = n1 + n2;
+		double value;
+		double[] component = null;
+		double[] sum = new double[MathUtilities.gaussSum(n)];
+		double[][] gramMatrix = new double[n][n];
+
+		for (int attributeIndex = subset.nextSetBit(0); attributeIndex >= 0; attributeIndex = subset.nextSetBit(attributeIndex + 1)) {
+			if (attributeIndex >= kernelComponents.length || kernelComponents[attributeIndex] == null) {
+				continue;
+			}
+			component = kernelComponents[attributeIndex];
+			for (index = 0; index < sum.length; index++) {
+				sum[index] += component[index];
+			}
+		}
+
+		index = 0;
+		for (int i = 0; i < n; i++) {
+			for (int j = i; j < n; j++) {
+				if (kernelType.equals(KERNEL.RBF)) {
+					value = Math.exp(-kernelParameter * sum[index]);
+				} else {
+					// polynomial kernel with lower order terms
+					value = Math.pow(sum[index] + 1.0, kernelParameter);
+				}
+				gramMatrix[i][j] = value;
+				gramMatrix[j][i] = value;
+				index++;
+			}
+		}
+
+		return new Matrix(gramMatrix);
+	}
+
+	/**
+	 * Compares the Nyström approximation with the exact evaluation for all
+	 * features on a stratified random subsample of the instances. Returns a
+	 * description of the relative errors of the kernel matrix (Frobenius
+	 * norm) and of the distance measure (absolute errors if the exact values
+	 * are 0).
+	 * 
+	 * @param numAttributes
+	 * @param classIndex
+	 * @return
+	 * @throws Exception
+	 */
+	private String estimateApproximationError(int numAttributes, int classIndex) throws Exception {
+		int s1;
+		int s2;
+		int tmp;
+		int[] indices = null;
+		int[] attributes = null;
+		double exactDistance;
+		double approximatedDistance;
+		double difference = 0.0;
+		double norm = 0.0;
+		double[][] subsample = null;
+		Matrix exact = null;
+		Matrix approximated = null;
+		Matrix[] featureMap = null;
+		BitSet allFeatures = new BitSet(numAttributes);
+		Random random = new Random(1);
+
+		allFeatures.set(0, numAttributes);
+		allFeatures.clear(classIndex);
+		attributes = CommonUtilities.bitsetToIntegerArray(allFeatures, false);
+
+		// stratified subsample
+		s1 = Math.min(n1, Math.max(numEigs, (int) Math.round((double) approximationSubsampleSize * n1 / (n1 + n2))));
+		s2 = Math.min(n2, Math.max(numEigs, approximationSubsampleSize - s1));
+		subsample = new double[s1 + s2][];
+		indices = new int[n1 + n2];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = i;
+		}
+		for (int i = 0; i < s1; i++) {
+			tmp = i + random.nextInt(n1 - i);
+			subsample[i] = sortedInstances[indices[tmp]];
+			indices[tmp] = indices[i];
+		}
+		for (int i = 0; i < s2; i++) {
+			tmp = n1 + i + random.nextInt(n2 - i);
+			subsample[s1 + i] = sortedInstances[indices[tmp]];
+			indices[tmp] = indices[n1 + i];
+		}
+
+		exact = new Matrix(s1 + s2, s1 + s2);
+		for (int i = 0; i < s1 + s2; i++) {
+			for (int j = i; j < s1 + s2; j++) {
+				exact.set(i, j, NystroemApproximation.kernel(kernelType, kernelParameter, subsample[i], subsample[j], attributes));
+				exact.set(j, i, exact.get(i, j));
+			}
+		}
+		featureMap = nystroem.featureMap(subsample, s1, attributes);
+		approximated = MathUtilities.appendMatricesRowWise(featureMap[0], featureMap[1]);
+		approximated = approximated.times(approximated.transpose());
+		for (int i = 0; i < s1 + s2; i++) {
+			for (int j = 0; j < s1 + s2; j++) {
+				difference += (exact.get(i, j) - approximated.get(i, j)) * (exact.get(i, j) - approximated.get(i, j));
+				norm += exact.get(i, j) * exact.get(i, j);
+			}
+		}
+
+		exactDistance = computeDistance(exact, s1, s2);
+		approximatedDistance = computeDistance(featureMap[0], featureMap[1]);
+
+		return "Nyström approximation error (" + (s1 + s2) + " instances, all features): kernel matrix "
+				+ describeError(Math.sqrt(difference), Math.sqrt(norm)) + ", distance "
+				+ describeError(Math.abs(approximatedDistance - exactDistance), Math.abs(exactDistance)) + " (exact " + exactDistance
+				+ ", approximated " + approximatedDistance + ")";
+	}
+
+	/**
+	 * Internal method to describe an error relative to the exact value. If the
+	 * exact value is 0, the absolute error is described instead.
+	 * 
+	 * @param error
+	 *            the absolute error
+	 * @param exact
+	 *            the absolute exact value
+	 * @return
+	 */
+	private static String describeError(double error, double exact) {
+		if (exact == 0.0) {
+			return error + " (absolute, the exact value is 0)";
+		}
+		return String.valueOf(error / exact);
 	}
 
 	public long getNumberOfEvaluations() {
-		return numberOfEvaluations;
+		return numberOfEvaluations.get();
+	}
+
+	/**
+	 * Returns a description of the error of the Nyström approximation or null
+	 * if the exact evaluation is used.
+	 * 
+	 * @return
+	 */
+	public String getApproximationError() {
+		return approximationError;
 	}
 
 	@Override
 	public double evaluateSubset(BitSet subset) throws Exception {
-		Matrix gramMatrix = null;
-		Instances instances = null;
-		int[] subsetIntArray = null;
-		CachedKernel cachedKernel = null;
-		Instances[] separatedInstances = null;
+		Matrix[] featureMap = null;
 
-		numberOfEvaluations++;
-
-		// prepare data for computation of Gram matrix
-		subsetIntArray = CommonUtilities.bitsetToIntegerArray(subset, true);
-		subsetIntArray[subsetIntArray.length - 1] = data.classIndex();
-		instances = InstanceUtilities.attributeSubset(data, subsetIntArray);
-		separatedInstances = InstanceUtilities.separateClasses(instances);
-		instances = InstanceUtilities.concatenateInstances(separatedInstances[0], separatedInstances[1]);
+		numberOfEvaluations.incrementAndGet();
 
 		if (DISTANCE_MEASURE.BHATTACHARYYA.equals(distanceMeasure) || DISTANCE_MEASURE.KL_DIVERGENCE.equals(distanceMeasure)
 				|| DISTANCE_MEASURE.BETWEEN_CLASS_SCATTER_MATRIX.equals(distanceMeasure)) {
-			// compute Gram matrix
-			if (kernelType.equals(KERNEL.RBF)) {
-				cachedKernel = new RBFKernel(instances, 0, kernelParameter);
-			} else if (kernelType.equals(KERNEL.POLYNOMIAL)) {
-				cachedKernel = new PolyKernel(instances, 0, kernelParameter, true);
+			if (nystroem == null) {
+				return computeDistance(gramMatrix(subset), n1, n2);
+			} else {
+				featureMap = nystroem.featureMap(sortedInstances, n1, CommonUtilities.bitsetToIntegerArray(subset, false));
+				return computeDistance(featureMap[0], featureMap[1]);
 			}
-			gramMatrix = MathUtilities.gramMatrix(separatedInstances[0].numInstances(), separatedInstances[1].numInstances(), cachedKernel);
-
-			return computeDistance(gramMatrix, separatedInstances[0].numInstances(), separatedInstances[1].numInstances());
 		} else {
 			return Double.NaN;
 		}
 	}
 
+	/**
+	 * Computes the distance measure from the Gram matrix K of the instances
+	 * sorted according to their class membership.
+	 * 
+	 * @param K
+	 * @param n1
+	 * @param n2
+	 * @return
+	 * @throws Exception
+	 */
 	private double computeDistance(Matrix K, int n1, int n2) throws Exception {
 		Matrix K11 = null, K12 = null, K21 = null, K22 = null;
-		Matrix hK11 = null, hK22 = null;
 		Matrix s1 = null, s2 = null;
-		Matrix J1 = null, J2 = null;
 		Matrix Q1 = null, Q2 = null;
 		Matrix V1 = null, V2 = null;
 		Matrix JV1 = null, JV2 = null;
 		Matrix b11 = null, b12 = null, b21 = null, b22 = null;
-		Matrix P = null;
-		Matrix L12 = null, L = null;
-		Matrix B = null;
-		Matrix tmp1 = null;
-		Matrix tmp2 = null;
-		Matrix A1 = null, B2 = null;
-		EigenvalueDecomposition eigs11 = null, eigs22 = null;
+		Matrix[] eigs11 = null, eigs22 = null;
 		double a11 = Double.NaN, a12 = Double.NaN, a22 = Double.NaN;
-		double xi11 = Double.NaN, xi12 = Double.NaN, xi22 = Double.NaN;
-		double chernoffDistance = Double.NaN;
-		double kl12 = Double.NaN;
-		double a21 = Double.NaN;
-		double eta12 = Double.NaN;
-		double theta121 = Double.NaN, theta222 = Double.NaN, theta122 = Double.NaN, theta221 = Double.NaN;
-		double meanDistance = Double.NaN;
 
 		// ////////////////////////////////////////////////////////////
-		// start of common base for all distances 
+		// start of common base for all distances
 		// ////////////////////////////////////////////////////////////
-		
+
 		K11 = K.getMatrix(0, n1 - 1, 0, n1 - 1);
 		K12 = K.getMatrix(0, n1 - 1, n1, n1 + n2 - 1);
 		K21 = K.getMatrix(n1, n1 + n2 - 1, 0, n1 - 1);
@@ -131,57 +369,126 @@ public class ReproducingKernelHilbertSpaceEvaluator extends ASEvaluation impleme
 		s1 = s1.times(1.0 / ((double) n1));
 		s2 = MathUtilities.onesMatrix(n2, 1);
 		s2 = s2.times(1.0 / ((double) n2));
-		
+
 		a11 = s1.transpose().times(K11).times(s1).get(0, 0);
 		a12 = s1.transpose().times(K12).times(s2).get(0, 0);
 		a22 = s2.transpose().times(K22).times(s2).get(0, 0);
-		
+
 		if (DISTANCE_MEASURE.BETWEEN_CLASS_SCATTER_MATRIX.equals(distanceMeasure)) {
-			meanDistance = a11 - 2 * a12 + a22;
-			return meanDistance;
+			return a11 - 2 * a12 + a22;
 		}
 
 		// ////////////////////////////////////////////////////////////
 		// start of common base for Chernoff distance and KL divergence
 		// ////////////////////////////////////////////////////////////
-		
-		J1 = MathUtilities.eyeMatrix(n1, n1).minus(s1.times(MathUtilities.onesMatrix(n1, 1).transpose())).times(1.0 / Math.sqrt(n1));
-		J2 = MathUtilities.eyeMatrix(n2, n2).minus(s2.times(MathUtilities.onesMatrix(n2, 1).transpose())).times(1.0 / Math.sqrt(n2));
 
-		hK11 = J1.transpose().times(K11).times(J1);
-		hK22 = J2.transpose().times(K22).times(J2);
+		// only the leading eigenpairs of the centred matrices hK11 = J1' * K11 * J1
+		// and hK22 = J2' * K22 * J2 are required, J1 and J2 are applied implicitly
+		eigs11 = MathUtilities.leadingEigenpairsOfCenteredMatrix(K11, numEigs);
+		eigs22 = MathUtilities.leadingEigenpairsOfCenteredMatrix(K22, numEigs);
 
-		eigs11 = new EigenvalueDecomposition(hK11);
-		eigs22 = new EigenvalueDecomposition(hK22);
+		Q1 = eigs11[0];
+		V1 = eigs11[1];
 
-		Q1 = eigs11.getV();
-		V1 = eigs11.getD();
-		Q1 = MathUtilities.getSortedEigenvectors(Q1, V1).getMatrix(0, eigs11.getV().getRowDimension() - 1, 0, numEigs - 1);
-		V1 = MathUtilities.getSortedEigenvalues(V1).getMatrix(0, numEigs - 1, 0, numEigs - 1);
-
-		Q2 = eigs22.getV();
-		V2 = eigs22.getD();
-		Q2 = MathUtilities.getSortedEigenvectors(Q2, V2).getMatrix(0, eigs22.getV().getRowDimension() - 1, 0, numEigs - 1);
-		V2 = MathUtilities.getSortedEigenvalues(V2).getMatrix(0, numEigs - 1, 0, numEigs - 1);
+		Q2 = eigs22[0];
+		V2 = eigs22[1];
 
 		b11 = K11.times(s1);
 		b12 = K12.times(s2);
 		b21 = K21.times(s1);
 		b22 = K22.times(s2);
 
-		JV1 = J1.times(Q1).getMatrix(0, n1 - 1, 0, numEigs - 1);
-		JV2 = J2.times(Q2).getMatrix(0, n2 - 1, 0, numEigs - 1);
+		JV1 = MathUtilities.centeringMatrixTimes(Q1);
+		JV2 = MathUtilities.centeringMatrixTimes(Q2);
 
-		// //////////////////////////////////////////////////////////
-		// end of common base for Chernoff distance and KL divergence
-		// //////////////////////////////////////////////////////////
+		return combineDistance(a11, a12, a22, V1, V2, JV1.transpose().times(b11), JV1.transpose().times(b12), JV2.transpose().times(b21), JV2
+				.transpose().times(b22), JV1.transpose().times(K12).times(JV2));
+	}
 
-		if (DISTANCE_MEASURE.BHATTACHARYYA.equals(distanceMeasure)) {
-			P = MathUtilities.zeroMatrix(n1 + n2, 2 * numEigs);
-			P.setMatrix(0, n1 - 1, 0, numEigs - 1, JV1.times(Math.sqrt(1.0 - ALPHA_FOR_BHATTACHARYYA_DISTANCE)));
-			P.setMatrix(n1, n1 + n2 - 1, numEigs, 2 * numEigs - 1, JV2.times(Math.sqrt(ALPHA_FOR_BHATTACHARYYA_DISTANCE)));
+	/**
+	 * Computes the distance measure from the explicit feature vectors of the
+	 * Nyström approximation, i.e. the Gram matrix is K = [phi1; phi2] *
+	 * [phi1; phi2]'. All computations are done in the low dimensional feature
+	 * space: if C1 = W1 * V1 * W1' is the eigendecomposition of the
+	 * covariance matrix of class one, then the projections JV1' * phi1 equal
+	 * sqrt(V1) * W1'.
+	 * 
+	 * @param phi1
+	 *            feature vectors of class one (one row per instance)
+	 * @param phi2
+	 *            feature vectors of class two (one row per instance)
+	 * @return
+	 * @throws Exception
+	 */
+	private double computeDistance(Matrix phi1, Matrix phi2) throws Exception {
+		Matrix m1 = null, m2 = null;
+		Matrix G1 = null, G2 = null;
+		Matrix V1 = null, V2 = null;
+		Matrix[] eigs1 = null, eigs2 = null;
+		double a11 = Double.NaN, a12 = Double.NaN, a22 = Double.NaN;
+
+		m1 = columnMeans(phi1);
+		m2 = columnMeans(phi2);
+
+		a11 = m1.transpose().times(m1).get(0, 0);
+		a12 = m1.transpose().times(m2).get(0, 0);
+		a22 = m2.transpose().times(m2).get(0, 0);
+
+		if (DISTANCE_MEASURE.BETWEEN_CLASS_SCATTER_MATRIX.equals(distanceMeasure)) {
+			return a11 - 2 * a12 + a22;
+		}
+
+		eigs1 = leadingEigenpairsOfCovariance(phi1, m1);
+		eigs2 = leadingEigenpairsOfCovariance(phi2, m2);
+		V1 = eigs1[1];
+		V2 = eigs2[1];
+		G1 = eigs1[0].times(sqrtOfDiagonal(V1));
+		G2 = eigs2[0].times(sqrtOfDiagonal(V2));
 
-			L12 = JV1.transpose().times(K12).times(JV2).times(Math.sqrt(ALPHA_FOR_BHATTACHARYYA_DISTANCE * (1 - ALPHA_FOR_BHATTACHARYYA_DISTANCE)));
+		return combineDistance(a11, a12, a22, V1, V2, G1.transpose().times(m1), G1.transpose().times(m2), G2.transpose().times(m1), G2.transpose()
+				.times(m2), G1.transpose().times(G2));
+	}
+
+	/**
+	 * Computes the Bhattacharyya distance or the KL divergence from the
+	 * quantities of the numEigs dimensional eigenspaces.
+	 * 
+	 * @param a11
+	 *            s1' * K11 * s1
+	 * @param a12
+	 *            s1' * K12 * s2
+	 * @param a22
+	 *            s2' * K22 * s2
+	 * @param V1
+	 *            leading eigenvalues of hK11
+	 * @param V2
+	 *            leading eigenvalues of hK22
+	 * @param c11
+	 *            JV1' * b11
+	 * @param c12
+	 *            JV1' * b12
+	 * @param c21
+	 *            JV2' * b21
+	 * @param c22
+	 *            JV2' * b22
+	 * @param M
+	 *            JV1' * K12 * JV2
+	 * @return
+	 */
+	private double combineDistance(double a11, double a12, double a22, Matrix V1, Matrix V2, Matrix c11, Matrix c12, Matrix c21, Matrix c22, Matrix M) {
+		Matrix L12 = null, L = null;
+		Matrix Linv = null;
+		Matrix u1 = null, u2 = null;
+		Matrix V2inv = null;
+		double xi11 = Double.NaN, xi12 = Double.NaN, xi22 = Double.NaN;
+		double chernoffDistance = Double.NaN;
+		double kl12 = Double.NaN;
+		double a21 = Double.NaN;
+		double eta12 = Double.NaN;
+		double theta121 = Double.NaN, theta222 = Double.NaN, theta122 = Double.NaN, theta221 = Double.NaN;
+
+		if (DISTANCE_MEASURE.BHATTACHARYYA.equals(distanceMeasure)) {
+			L12 = M.times(Math.sqrt(ALPHA_FOR_BHATTACHARYYA_DISTANCE * (1 - ALPHA_FOR_BHATTACHARYYA_DISTANCE)));
 
 			L = MathUtilities.zeroMatrix(2 * numEigs, 2 * numEigs);
 			L.setMatrix(0, numEigs - 1, 0, numEigs - 1, V1.times(ALPHA_FOR_BHATTACHARYYA_DISTANCE));
@@ -189,35 +496,37 @@ public class ReproducingKernelHilbertSpaceEvaluator extends ASEvaluation impleme
 			L.setMatrix(0, numEigs - 1, numEigs, 2 * numEigs - 1, L12);
 			L.setMatrix(numEigs, 2 * numEigs - 1, 0, numEigs - 1, L12.transpose());
 
-			B = P.times(L.inverse()).times(P.transpose());
-
-			tmp1 = MathUtilities.appendMatricesRowWise(b11, b21);
-			xi11 = a11 - tmp1.transpose().times(B).times(tmp1).get(0, 0);
+			// B = P * inv(L) * P' with P = [sqrt(1 - alpha) * JV1, 0; 0,
+			// sqrt(alpha) * JV2] has low rank, so the quadratic forms are
+			// evaluated in the 2 * numEigs dimensional space spanned by P
+			Linv = L.inverse();
+			u1 = MathUtilities.appendMatricesRowWise(c11.times(Math.sqrt(1.0 - ALPHA_FOR_BHATTACHARYYA_DISTANCE)),
+					c21.times(Math.sqrt(ALPHA_FOR_BHATTACHARYYA_DISTANCE)));
+			u2 = MathUtilities.appendMatricesRowWise(c12.times(Math.sqrt(1.0 - ALPHA_FOR_BHATTACHARYYA_DISTANCE)),
+					c22.times(Math.sqrt(ALPHA_FOR_BHATTACHARYYA_DISTANCE)));
 
-			tmp1 = MathUtilities.appendMatricesRowWise(b11, b21);
-			tmp2 = MathUtilities.appendMatricesRowWise(b12, b22);
-			xi12 = a12 - tmp1.transpose().times(B).times(tmp2).get(0, 0);
-
-			tmp1 = MathUtilities.appendMatricesRowWise(b12, b22);
-			xi22 = a22 - tmp1.transpose().times(B).times(tmp1).get(0, 0);
+			xi11 = a11 - u1.transpose().times(Linv).times(u1).get(0, 0);
+			xi12 = a12 - u1.transpose().times(Linv).times(u2).get(0, 0);
+			xi22 = a22 - u2.transpose().times(Linv).times(u2).get(0, 0);
 
 			// Bhattacharyya distance = Chernoff distance with alpha = 0.5
 			chernoffDistance = 0.5 * ALPHA_FOR_BHATTACHARYYA_DISTANCE * (1.0 - ALPHA_FOR_BHATTACHARYYA_DISTANCE) * (xi11 + xi22 - 2.0 * xi12);
 
 			return chernoffDistance;
 		} else if (DISTANCE_MEASURE.KL_DIVERGENCE.equals(distanceMeasure)) {
-			A1 = JV1.times(JV1.transpose());
-			B2 = JV2.times(MathUtilities.diagMatrix(MathUtilities.onesMatrix(numEigs, 1).arrayRightDivide(MathUtilities.diagMatrix(V2))))
-					.times(JV2.transpose());
+			// A1 = JV1 * JV1' and B2 = JV2 * inv(V2) * JV2' have low rank, so all
+			// products are evaluated in the numEigs dimensional eigenspaces
+			V2inv = MathUtilities.diagMatrix(MathUtilities.onesMatrix(numEigs, 1).arrayRightDivide(MathUtilities.diagMatrix(V2)));
 
 			a21 = a12;
 
-			theta121 = a11 - b21.transpose().times(B2).times(b21).get(0, 0);
-			theta222 = a22 - b22.transpose().times(B2).times(b22).get(0, 0);
-			theta122 = a12 - b21.transpose().times(B2).times(b22).get(0, 0);
-			theta221 = a21 - b22.transpose().times(B2).times(b21).get(0, 0);
+			theta121 = a11 - c21.transpose().times(V2inv).times(c21).get(0, 0);
+			theta222 = a22 - c22.transpose().times(V2inv).times(c22).get(0, 0);
+			theta122 = a12 - c21.transpose().times(V2inv).times(c22).get(0, 0);
+			theta221 = a21 - c22.transpose().times(V2inv).times(c21).get(0, 0);
 
-			eta12 = A1.times(K12).times(B2).times(K21).trace();
+			// trace(A1 * K12 * B2 * K21) = trace(M * inv(V2) * M')
+			eta12 = M.times(V2inv).times(M.transpose()).trace();
 
 			kl12 = theta121 + theta222 - theta122 - theta221 + V1.trace() - eta12;
 			kl12 = 0.5 * kl12;
@@ -227,4 +536,69 @@ public class ReproducingKernelHilbertSpaceEvaluator extends ASEvaluation impleme
 			return Double.NaN;
 		}
 	}
+
+	/**
+	 * Returns the column means of the given matrix as column vector.
+	 * 
+	 * @param m
+	 * @return
+	 */
+	private Matrix columnMeans(Matrix m) {
+		Matrix means = new Matrix(m.getColumnDimension(), 1);
+
+		for (int j = 0; j < m.getColumnDimension(); j++) {
+			for (int i = 0; i < m.getRowDimension(); i++) {
+				means.set(j, 0, means.get(j, 0) + m.get(i, j));
+			}
+			means.set(j, 0, means.get(j, 0) / m.getRowDimension());
+		}
+		return means;
+	}
+
+	/**
+	 * Returns the element-wise square root of the given diagonal matrix of
+	 * eigenvalues. Negative eigenvalues due to round-off errors are treated as
+	 * zero.
+	 * 
+	 * @param eigenvalues
+	 * @return
+	 */
+	private Matrix sqrtOfDiagonal(Matrix eigenvalues) {
+		Matrix m = new Matrix(eigenvalues.getRowDimension(), eigenvalues.getColumnDimension(), 0.0);
+
+		for (int i = 0; i < m.getRowDimension(); i++) {
+			m.set(i, i, Math.sqrt(Math.max(0.0, eigenvalues.get(i, i))));
+		}
+		return m;
+	}
+
+	/**
+	 * Returns the leading numEigs eigenvectors and the diagonal matrix of
+	 * eigenvalues of the covariance matrix (normalized by n) of the given
+	 * feature vectors.
+	 * 
+	 * @param phi
+	 * @param mean
+	 * @return
+	 */
+	private Matrix[] leadingEigenpairsOfCovariance(Matrix phi, Matrix mean) {
+		int n = phi.getRowDimension();
+		int dimension = phi.getColumnDimension();
+		Matrix centered = null;
+		Matrix covariance = null;
+		Matrix eigenvalues = null;
+		Matrix eigenvectors = null;
+		EigenvalueDecomposition decomposition = null;
+
+		centered = phi.minus(MathUtilities.onesMatrix(n, 1).times(mean.transpose()));
+		covariance = centered.transpose().times(centered).times(1.0 / n);
+		decomposition = new EigenvalueDecomposition(covariance);
+		eigenvectors = MathUtilities.getSortedEigenvectors(decomposition.getV(), decomposition.getD());
+		eigenvalues = MathUtilities.getSortedEigenvalues(decomposition.getD());
+
+		if (dimension < numEigs) {
+			throw new IllegalArgumentException("The Nyström feature space has only " + dimension + " dimensions, " + numEigs + " are required");
+		}
+		return new Matrix[] { eigenvectors.getMatrix(0, dimension - 1, 0, numEigs - 1), eigenvalues.getMatrix(0, numEigs - 1, 0, numEigs - 1) };
+	}
 }
@@ -1,9 +1,16 @@
 package ecst.algorithm.featureselection.search;
 import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 import weka.attributeSelection.ASEvaluation;
 import weka.attributeSelection.ASSearch;
@@ -14,7 +21,7 @@ import weka.core.Instances;
 import weka.core.OptionHandler;
 import weka.core.Utils;
 import ecst.utilities.CommonUtilities;
-import ecst.utilities.MathUtilities;
+import ecst.utilities.ThreadUtilities;
 
 /**
  * This class implements different branch-and-bound search strategies according
@@ -62,20 +69,42 @@ import ecst.utilities.MathUtilities;
  * Branch and Bound Algorithm, 2009 Eighth International Symposium on Natural
  * Language Processing.
  * 
+ * If more than one thread is used, subtrees of the search tree are forked as
+ * tasks of a work-stealing thread pool. Every task works on private copies of
+ * the per-path state (avail, pointer, successor, ...); the bound, the best
+ * subset and the evaluated partial paths are shared by all tasks. The evaluator
+ * must be thread-safe in this case. Subsets with the same criterion value are
+ * ordered by the position of their nodes in the serial search, so that the
+ * parallel search returns the same subset as the serial search (for a
+ * monotone criterion). The algorithm of Nakariyakul and Casasent
+ * does not fork subtrees, because every subtree changes the jump levels of the
+ * subtrees that follow it; it evaluates the candidate nodes of a level
+ * concurrently instead and visits the nodes in the same order as with one
+ * thread.
+ * 
+ * The search can be limited by a time budget (-M, in seconds) or a budget of
+ * evaluations (-E), or it can be stopped by a listener. It then returns the
+ * best full subset found so far and an upper bound of the optimal criterion
+ * value, which is only valid for a monotone criterion.
+ * 
  * @author Matthias Ring, Stefan Herpich
  * 
  */
 public class BranchAndBound extends ASSearch implements OptionHandler {
 
 	private static final long serialVersionUID = 1L;
+	private static final int MAXIMUM_SURPLUS_TASKS = 3;
+	private static final long PROGRESS_INTERVAL = 500;
 
 	private long executionTime;
-	private double bound;
-	private int[] primes;
+	private volatile double bound;
 	private int subsetSize;
 	private int numAttributes;
+	private int numberOfThreads;
 	private List<Integer> ofs;
-	private List<Long> partialPaths;
+	private PartialPathIndex partialPaths;
+	private BranchAndBound root;
+	private transient ForkJoinPool pool;
 	private SubsetEvaluator evaluator;
 	private ASEvaluation asEvaluator;
 	private int[] pointer;
@@ -87,6 +116,68 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	private String[][] types;
 	private String searchType;
 	private String criterionFunctionMethod;
+	private long maximumTime;
+	private long maximumEvaluations;
+	private long startTime;
+	private volatile long lastProgressTime;
+	private volatile boolean stopped;
+	private boolean rootUnexplored;
+	private double unexploredUpperBound;
+	private double upperBound;
+	private double[] pathMerits;
+	private int[] visitOrder;
+	private int[] bestVisitOrder;
+	private double[] removalScores;
+	private long evaluationsAtStop;
+	private long evaluationsAfterStop;
+	private AtomicLong evaluations;
+	private AtomicLong nodesExpanded;
+	private AtomicLong nodesPruned;
+	private List<double[]> boundTrajectory;
+	private transient List<SearchProgressListener> listeners;
+
+	/**
+	 * Constructor.
+	 */
+	public BranchAndBound() {
+		root = this;
+		numberOfThreads = 1;
+		listeners = new LinkedList<SearchProgressListener>();
+	}
+
+	/**
+	 * Internal constructor for the task of a forked subtree: shares the
+	 * configuration and the search result with the given search, but copies
+	 * the per-path state.
+	 * 
+	 * @param parent
+	 */
+	private BranchAndBound(BranchAndBound parent) {
+		root = parent.root;
+		pool = parent.pool;
+		evaluator = parent.evaluator;
+		asEvaluator = parent.asEvaluator;
+		subsetSize = parent.subsetSize;
+		numAttributes = parent.numAttributes;
+		numberOfThreads = parent.numberOfThreads;
+		searchType = parent.searchType;
+		criterionFunctionMethod = parent.criterionFunctionMethod;
+		delta = parent.delta;
+		gamma = parent.gamma;
+
+		avail = copyFeatures(parent.avail);
+		pathMerits = parent.pathMerits.clone();
+		visitOrder = parent.visitOrder.clone();
+		pointer = parent.pointer != null ? parent.pointer.clone() : null;
+		successor = copyArray(parent.successor);
+		computations = copyArray(parent.computations);
+		if (parent.types != null) {
+			types = new String[parent.types.length][];
+			for (int i = 0; i < types.length; i++) {
+				types[i] = parent.types[i].clone();
+			}
+		}
+	}
 
 	/**
 	 * WEKA method, not implemented.
@@ -123,6 +214,8 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 		String sizeString = null;
 		String compType = null;
 		String method = null;
+		String threadsString = null;
+		String budgetString = null;
 
 		sizeString = Utils.getOption('S', options);
 		if (!"".equals(sizeString)) {
@@ -136,31 +229,123 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 		if (!"".equals(method)) {
 			criterionFunctionMethod = method;
 		}
+		threadsString = Utils.getOption('P', options);
+		if (!"".equals(threadsString)) {
+			numberOfThreads = Math.max(1, Integer.parseInt(threadsString));
+		}
+		budgetString = Utils.getOption('M', options);
+		if (!"".equals(budgetString)) {
+			maximumTime = (long) (Double.parseDouble(budgetString) * 1000.0);
+		}
+		budgetString = Utils.getOption('E', options);
+		if (!"".equals(budgetString)) {
+			maximumEvaluations = Long.parseLong(budgetString);
+		}
 	}
 
 	/**
 	 * Branch and Bound initialisation
 	 */
 	@Override
-	public int[] search(ASEvaluation ASEvaluator, Instances instances) throws Exception {
+	public int[] search(final ASEvaluation ASEvaluator, final Instances instances) throws Exception {
 		long timeStart;
 		long timeEnd;
+		Throwable cause = null;
 
 		numAttributes = instances.numAttributes() - 1;
 		evaluator = (SubsetEvaluator) ASEvaluator;
 		asEvaluator = ASEvaluator;
-		ofs = new LinkedList<Integer>();
-		primes = MathUtilities.computePrimes(numAttributes);
-		partialPaths = new LinkedList<Long>();
+		ofs = new ArrayList<Integer>();
+		partialPaths = new PartialPathIndex(PartialPathIndex.DEFAULT_MAXIMUM_NODES);
 		bound = Double.NEGATIVE_INFINITY;
-		avail = new LinkedList<Feature>();
+		upperBound = Double.NEGATIVE_INFINITY;
+		avail = new ArrayList<Feature>();
+		stopped = false;
+		rootUnexplored = false;
+		unexploredUpperBound = Double.NEGATIVE_INFINITY;
+		pathMerits = new double[numAttributes + 2];
+		Arrays.fill(pathMerits, Double.NaN);
+		visitOrder = new int[numAttributes + 2];
+		bestVisitOrder = null;
+		removalScores = new double[numAttributes + 1];
+		Arrays.fill(removalScores, Double.NEGATIVE_INFINITY);
+		evaluationsAtStop = 0;
+		evaluationsAfterStop = 0;
+		evaluations = new AtomicLong();
+		nodesExpanded = new AtomicLong();
+		nodesPruned = new AtomicLong();
+		boundTrajectory = new ArrayList<double[]>();
 
 		if (numAttributes == subsetSize) {
 			return CommonUtilities.bitsetToIntegerArray(listToBitSet(ofs), false);
 		}
 
 		timeStart = System.currentTimeMillis();
+		startTime = timeStart;
+		lastProgressTime = timeStart;
+
+		if (ThreadUtilities.getNumberOfThreads(numberOfThreads) > 1) {
+			pool = new ForkJoinPool(numberOfThreads);
+			try {
+				pool.invoke(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute() {
+						try {
+							runSearch(ASEvaluator, instances);
+						} catch (Exception e) {
+							throw new IllegalStateException(e);
+						}
+					}
+				});
+			} catch (RuntimeException e) {
+				// unwrap the exception of the failed task
+				cause = e;
+				while (cause instanceof RuntimeException && cause.getCause() != null) {
+					cause = cause.getCause();
+				}
+				if (cause instanceof Exception) {
+					throw (Exception) cause;
+				}
+				throw e;
+			} finally {
+				pool.shutdown();
+				pool = null;
+			}
+		} else {
+			runSearch(ASEvaluator, instances);
+		}
+
+		if (stopped) {
+			// anytime result: complete the subset if no leaf was reached
+			// and bound the unexplored subtrees by their parent nodes
+			if (ofs.size() != numAttributes - subsetSize) {
+				completeSubsetByRanking();
+			}
+			if (rootUnexplored) {
+				unexploredUpperBound = Math.max(unexploredUpperBound, evaluate(new ArrayList<Integer>()));
+			}
+			upperBound = Math.max(bound, unexploredUpperBound);
+			evaluationsAfterStop = evaluations.get() - evaluationsAtStop;
+		} else {
+			upperBound = bound;
+		}
+		fireSearchProgress(true);
 
+		timeEnd = System.currentTimeMillis();
+		executionTime = timeEnd - timeStart;
+		return CommonUtilities.bitsetToIntegerArray(listToBitSet(ofs), false);
+	}
+
+	/**
+	 * Internal method to start the selected search strategy.
+	 * 
+	 * @param ASEvaluator
+	 * @param instances
+	 * @throws Exception
+	 */
+	private void runSearch(ASEvaluation ASEvaluator, Instances instances) throws Exception {
 		if (searchType.equals("1")) {
 			chenSearch();
 		} else if (searchType.equals("2")) {
@@ -170,10 +355,6 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 		} else if (searchType.equals("4")) {
 			nakariyakulCasasentSearch(ASEvaluator, instances);
 		}
-
-		timeEnd = System.currentTimeMillis();
-		executionTime = timeEnd - timeStart;
-		return CommonUtilities.bitsetToIntegerArray(listToBitSet(ofs), false);
 	}
 
 
@@ -183,11 +364,11 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	 * Pattern Recognition Letters 28 (2007).
 	 */
 	private void nakariyakulCasasentSearch(ASEvaluation eva, Instances data) throws Exception {
-		avail = new LinkedList<Feature>();
+		avail = new ArrayList<Feature>();
 		// step 0: Initialization
-		List<Feature> order = new LinkedList<Feature>();
-		List<Feature> parent = new LinkedList<Feature>();
-		List<Integer> jumpLevels = new LinkedList<Integer>();
+		List<Feature> order = new ArrayList<Feature>();
+		List<Feature> parent = new ArrayList<Feature>();
+		List<Integer> jumpLevels = new ArrayList<Integer>();
 
 		for (int j = 1; j <= numAttributes; j++) {
 			Feature tmp = new Feature(j);
@@ -207,7 +388,7 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	    Arrays.sort(indices);
 
 		
-		List<Feature> opt = new LinkedList<Feature>();
+		List<Feature> opt = new ArrayList<Feature>();
 		for (int i = 0; i < order.size(); i++) {
 			boolean found = false;
 			for(int j=0; j<indices.length-1;j++){
@@ -221,35 +402,35 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 			}
 
 		}
-		List<Integer> sftr = new LinkedList<Integer>();
+		List<Integer> sftr = new ArrayList<Integer>();
 		for (int i = 0; i < opt.size(); i++) {
 			sftr.add(opt.get(i).getFeat());
 		}
 
 		// setting init bound according to the in SFFS found subset
-		bound = evaluator.evaluateSubset(listToBitSet(sftr));
-		if (Double.isNaN(bound) || Double.isInfinite(bound)) {
+		double initialBound = evaluate(sftr);
+		if (Double.isNaN(initialBound) || Double.isInfinite(initialBound)) {
 			throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
 		}
-		ofs = sftr;
+		setBound(initialBound, sftr, 0);
 
 		// ordering features in avail
-		sftr = new LinkedList<Integer>();
+		sftr = new ArrayList<Integer>();
 		for (int i = 0; i < numAttributes; i++) {
 			int pos = 0;
 			double min = Double.POSITIVE_INFINITY;
 
 			for (int j = 0; j < order.size(); j++) {
-				sftr = new LinkedList<Integer>();
+				sftr = new ArrayList<Integer>();
 				sftr.add(order.get(j).getFeat());
 				if (j == 0) {
 					pos = 0;
-					min = evaluator.evaluateSubset(listToBitSet(sftr));
+					min = evaluate(sftr);
 					if (Double.isNaN(min) || Double.isInfinite(min)) {
 						throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
 					}
 				} else {
-					double comp = evaluator.evaluateSubset(listToBitSet(sftr));
+					double comp = evaluate(sftr);
 					if (Double.isNaN(comp) || Double.isInfinite(comp)) {
 						throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
 					}
@@ -265,12 +446,12 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 
 		// start level k
 		int k = 0;
-		sftr = new LinkedList<Integer>();
+		sftr = new ArrayList<Integer>();
 
 		for (int i = 0; i < avail.size(); i++) {
 			sftr.add(avail.get(i).getFeat());
 			k++;
-			double currentBound = evaluator.evaluateSubset(listToBitSet(sftr));
+			double currentBound = evaluate(sftr);
 			if (currentBound < bound) {
 				break;
 			}
@@ -300,8 +481,8 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 		delta = 5.0;
 		gamma = 1.1;
 
-		avail = new LinkedList<Feature>();
-		List<Feature> currentPath = new LinkedList<Feature>();
+		avail = new ArrayList<Feature>();
+		List<Feature> currentPath = new ArrayList<Feature>();
 		successor = new int[numAttributes - subsetSize + 1][subsetSize + 2];
 		pointer = new int[numAttributes - subsetSize + 1];
 		computations = new double[numAttributes - subsetSize + 1][subsetSize + 2];
@@ -318,7 +499,7 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 		setSuccessor(0, 1, subsetSize + 1);
 		pointer[0] = 1;
 		currentPath.add(new Feature(0));
-		computations[0][1] = evaluator.evaluateSubset(listToBitSet(new LinkedList<Integer>()));
+		computations[0][1] = evaluate(new ArrayList<Integer>());
 		types[0][1] = "C";
 		processLevelSoPuKi(1, currentPath);
 
@@ -332,7 +513,7 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	 * Chen-algorithm.
 	 */
 	private void NarendraFukunagaSearch() throws Exception {
-		List<Feature> currentPath = new LinkedList<Feature>();
+		List<Feature> currentPath = new ArrayList<Feature>();
 		successor = new int[numAttributes - subsetSize + 1][subsetSize + 2];
 		pointer = new int[numAttributes - subsetSize + 1];
 
@@ -355,7 +536,7 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	 * pp. 1925 - 1933.
 	 */
 	private void chenSearch() throws Exception {
-		List<Feature> currentPath = new LinkedList<Feature>();
+		List<Feature> currentPath = new ArrayList<Feature>();
 		currentPath.add(new Feature(0));
 		for (int i = 0; i < numAttributes + 1; i++) {
 			avail.add(new Feature(i));
@@ -378,35 +559,45 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	 */
 	private void processLevelChen(int level, List<Feature> currentPath) throws Exception {
 		double merit = 0;
+		int visits = 0;
 		List<Integer> sftr = null;
-		List<Feature> list = new LinkedList<Feature>();
+		List<Feature> list = new ArrayList<Feature>();
+		List<SubtreeTask> forked = new LinkedList<SubtreeTask>();
 
+		root.nodesExpanded.incrementAndGet();
 		for (int j = currentPath.get(level - 1).getFeat() + 1; j <= subsetSize + level; j++) {
 			list.add(avail.get(j));
 		}
 
 		while (!list.isEmpty()) {
+			if (isStopped(pathMerits[level - 1])) {
+				break;
+			}
 			currentPath.add(list.remove(list.size() - 1));
+			visitOrder[level] = visits++;
 			sftr = expandCurrentPathFeature(level, currentPath);
 			if (!isAlreadyEvaluated(sftr)) {
-				merit = evaluator.evaluateSubset(listToBitSet(sftr));
+				merit = evaluate(sftr);
 				if (Double.isNaN(merit) || Double.isInfinite(merit)) {
 					throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
 				}
 				//System.out.println("merit: " + merit + " optimal bound: " + bound + " path: " + sftr);
-				if (merit < bound && !isFullPath(sftr)) {
+				if (merit < root.bound && !isFullPath(sftr)) {
 					addPartialPath(sftr);
-				} else if (merit > bound) {
+				} else if (merit > root.bound || (merit == root.bound && root.pool != null && isVisitedBeforeBest(level))) {
+					// the serial search has not found the bound before
+					// this node
+					pathMerits[level] = merit;
 					if (isFullPath(sftr)) {
-						bound = merit;
-						ofs = sftr;
-					} else {
+						setBound(merit, sftr, level);
+					} else if (!forkSubtree(level + 1, currentPath, forked)) {
 						processLevelChen(level + 1, currentPath);
 					}
 				}
 			}
 			currentPath.remove(currentPath.size() - 1);
 		}
+		joinSubtrees(forked);
 	}
 
 	/**************************************************************
@@ -425,18 +616,21 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	private void processLevelNaFuk(int level, List<Feature> currentPath) throws Exception {
 		double merit = 0;
 
-		List<Feature> list = new LinkedList<Feature>();
-		List<Integer> sftr = new LinkedList<Integer>();
+		List<Feature> list = new ArrayList<Feature>();
+		List<Integer> sftr = new ArrayList<Integer>();
+		List<SubtreeTask> forked = new LinkedList<SubtreeTask>();
 
 		// step 1 - Initialize list for level
 		int node = pointer[level - 1];
 
+		root.nodesExpanded.incrementAndGet();
 		computeAndSort(currentPath, level);
 
-		sftr = new LinkedList<Integer>();
+		sftr = new ArrayList<Integer>();
 
 		// smallest p
 		int p = getSuccessor(level - 1, node);
+		int visits = 0;
 		// store p features in list and remove those in avail
 		for (int f = 0; f < p; f++) {
 			list.add(avail.remove(0));
@@ -448,22 +642,27 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 
 		// step 2 - select new node
 		while (!list.isEmpty()) {
+			if (isStopped(pathMerits[level - 1])) {
+				break;
+			}
 			Feature z = list.get(list.size() - 1);
 			pointer[level] = list.size();
 			list.remove(list.size() - 1);
+			visitOrder[level] = visits++;
 
 			// step 3
 			currentPath.add(z);
 			sftr = expandCurrentPathFeature(level, currentPath);
+			pathMerits[level] = z.getJ();
 			// check single branch
 			if (p == 1 && (numAttributes - subsetSize) != level) {
-				processLevelNaFuk(level + 1, currentPath);
+				descendNaFuk(level + 1, currentPath, forked);
 			} else if (!isAlreadyEvaluated(sftr)) {
-				merit = evaluator.evaluateSubset(listToBitSet(sftr));
+				merit = evaluate(sftr);
 				if (Double.isNaN(merit) || Double.isInfinite(merit)) {
 					throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
 				}
-				if (merit < bound) {
+				if (merit < root.bound) {
 					if (!isFullPath(sftr))
 						addPartialPath(sftr);
 					avail.add(currentPath.remove(currentPath.size() - 1));
@@ -471,15 +670,15 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 				} else if (sftr.size() == (numAttributes - subsetSize)) {
 					// step 5
 					avail.add(currentPath.remove(currentPath.size() - 1));
-					ofs = sftr;
-					bound = merit;
+					setBound(merit, sftr, level);
 				} else {
-					processLevelNaFuk(level + 1, currentPath);
+					descendNaFuk(level + 1, currentPath, forked);
 				}
 			} else {
 				avail.add(currentPath.remove(currentPath.size() - 1));
 			}
 		}
+		joinSubtrees(forked);
 
 		// step 4: Backtrack
 		if (--level == 0)
@@ -495,15 +694,16 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	 * @param level
 	 */
 	private void computeAndSort(List<Feature> path, int level) throws Exception {
-		List<Integer> sftr = new LinkedList<Integer>();
+		List<Integer> sftr = new ArrayList<Integer>();
 		double[] merits = new double[avail.size()];
 
+		sortByFeatureNumber(avail);
 		// compute criterion function for all k in avail
 		for (int k = 0; k < avail.size(); k++) {
 			path.add(avail.get(k));
 			sftr = expandCurrentPathFeature(level, path);
 			// merits[k] = evaluator.evaluateSubset(listToBitSet(sftr));
-			avail.get(k).setJ(evaluator.evaluateSubset(listToBitSet(sftr)));
+			avail.get(k).setJ(evaluate(sftr));
 			if (Double.isNaN(merits[k]) || Double.isInfinite(merits[k])) {
 				throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
 			}
@@ -554,12 +754,15 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	 */
 	private void processLevelSoPuKi(int level, List<Feature> currentPath) throws Exception {
 
-		List<Feature> list = new LinkedList<Feature>();
-		List<Integer> sftr = new LinkedList<Integer>();
+		List<Feature> list = new ArrayList<Feature>();
+		List<Integer> sftr = new ArrayList<Integer>();
+		List<SubtreeTask> forked = new LinkedList<SubtreeTask>();
 		double[] sortVector = new double[avail.size()];
 
 		// step 1 - Initialize list for level
 		int node = pointer[level - 1];
+		root.nodesExpanded.incrementAndGet();
+		sortByFeatureNumber(avail);
 		for (int j = 0; j < avail.size(); j++) {
 			if (avail.get(j).getC() > delta && (numAttributes - subsetSize) > level) {
 				// predict
@@ -569,7 +772,7 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 				// compute
 				currentPath.add(avail.get(j));
 				sftr = expandCurrentPathFeature(level, currentPath);
-				sortVector[j] = evaluator.evaluateSubset(listToBitSet(sftr));
+				sortVector[j] = evaluate(sftr);
 				if (Double.isNaN(sortVector[j]) || Double.isInfinite(sortVector[j])) {
 					throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
 				}
@@ -596,10 +799,11 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 		// avail = order;
 		bubblesort(avail);
 
-		sftr = new LinkedList<Integer>();
+		sftr = new ArrayList<Integer>();
 
 		// successors p
 		int p = getSuccessor(level - 1, node);
+		int visits = 0;
 
 		// store p features in list and remove those in avail
 		for (int f = 0; f < p; f++) {
@@ -620,18 +824,23 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 
 		// step 2 - select new node
 		while (!list.isEmpty()) {
+			if (isStopped(pathMerits[level - 1])) {
+				break;
+			}
 
 			Feature z = list.get(list.size() - 1);
 			pointer[level] = list.size();
 			list.remove(list.size() - 1);
+			visitOrder[level] = visits++;
 			currentPath.add(z);
 			sftr = expandCurrentPathFeature(level, currentPath);
 
 			if (p == 1 && (numAttributes - subsetSize) != level) {
-				processLevelSoPuKi(level + 1, currentPath);
+				pathMerits[level] = pathMerits[level - 1];
+				descendSoPuKi(level + 1, currentPath, forked);
 			} else if (!isAlreadyEvaluated(sftr)) {
-				if (types[level][pointer[level]].equals("P") && computations[level][pointer[level]] < bound) {
-					double merit = evaluator.evaluateSubset(listToBitSet(sftr));
+				if (types[level][pointer[level]].equals("P") && computations[level][pointer[level]] < root.bound) {
+					double merit = evaluate(sftr);
 					if (Double.isNaN(merit) || Double.isInfinite(merit)) {
 						throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
 					}
@@ -644,24 +853,27 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 					types[level][pointer[level]] = "C";
 
 				}
-				if (types[level][pointer[level]].equals("C") && computations[level][pointer[level]] < bound) {
+				if (types[level][pointer[level]].equals("C") && computations[level][pointer[level]] < root.bound) {
 					if (!isFullPath(sftr))
 						addPartialPath(sftr);
 					avail.add(currentPath.remove(currentPath.size() - 1));
 				} else if (sftr.size() == (numAttributes - subsetSize)) {
 					// step 5
-					if (computations[level][pointer[level]] > bound) {
-						ofs = sftr;
-						bound = computations[level][pointer[level]];
+					if (computations[level][pointer[level]] > root.bound
+							|| (computations[level][pointer[level]] == root.bound && root.pool != null && isVisitedBeforeBest(level))) {
+						setBound(computations[level][pointer[level]], sftr, level);
 					}
 					avail.add(currentPath.remove(currentPath.size() - 1));
 				} else {
-					processLevelSoPuKi(level + 1, currentPath);
+					// predicted values are no bounds of the subtree
+					pathMerits[level] = types[level][pointer[level]].equals("C") ? computations[level][pointer[level]] : pathMerits[level - 1];
+					descendSoPuKi(level + 1, currentPath, forked);
 				}
 			} else {
 				avail.add(currentPath.remove(currentPath.size() - 1));
 			}
 		}
+		joinSubtrees(forked);
 
 		// step 4: Backtrack
 		if (--level == 0)
@@ -687,7 +899,7 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	 */
 	private List<List<Feature>> generateList(int level, int stop, List<Feature> parent, List<List<Feature>> list) {
 		if (level == stop) {
-			List<Feature> tmp = new LinkedList<Feature>();
+			List<Feature> tmp = new ArrayList<Feature>();
 			for (int i = 0; i < parent.size(); i++) {
 				tmp.add(parent.get(i));
 			}
@@ -724,7 +936,10 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	 */
 	private void processLevelNaCa(int level, int dest, List<Integer> jumpLevels, List<Feature> parent) throws Exception {
 
-		List<List<Feature>> list = new LinkedList<List<Feature>>();
+		List<List<Feature>> list = new ArrayList<List<Feature>>();
+		List<List<Integer>> candidates = null;
+		double[] merits = null;
+		root.nodesExpanded.incrementAndGet();
 		// step 1
 		list = generateList(parent.size(), dest + 1, parent, list);
 
@@ -736,7 +951,10 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 		// right-left strategy with partial paths
 		// single-branching nodes
 		for (int i = list.size() - 1; i >= 0; i--) {
-			sftr = new LinkedList<Integer>();
+			if (isStopped(pathMerits[level])) {
+				break;
+			}
+			sftr = new ArrayList<Integer>();
 			List<Feature> tmp = list.get(i);
 
 			sftr = expandCurrentPathFeature(tmp.size() - 1, tmp);
@@ -754,47 +972,45 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 					a++;
 				}
 
-				double merit = evaluator.evaluateSubset(listToBitSet(sftr));
+				double merit = evaluate(sftr);
 				if (Double.isNaN(merit) || Double.isInfinite(merit)) {
 					throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
 				}
 				list.remove(i);
-				if (merit > bound) {
-					bound = merit;
-					ofs = sftr;
+				if (merit > root.bound) {
+					setBound(merit, sftr, 0);
 				}
 			}
 		}
 
 		// step 4
 		while (list.size() != 0) {
+			if (isStopped(pathMerits[level])) {
+				list.clear();
+				break;
+			}
 
 			int pos = 0;
 			double max = Double.NEGATIVE_INFINITY;
 
+			candidates = new ArrayList<List<Integer>>();
 			for (int i = 0; i < list.size(); i++) {
-				sftr = new LinkedList<Integer>();
-				sftr = expandCurrentPathFeature(list.get(i).size() - 1, list.get(i));
-				if (i == 0) {
-					max = evaluator.evaluateSubset(listToBitSet(sftr));
-					if (Double.isNaN(max) || Double.isInfinite(max)) {
-						throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
-					}
-				} else {
-					double temp = evaluator.evaluateSubset(listToBitSet(sftr));
-					if (Double.isNaN(temp) || Double.isInfinite(temp)) {
-						throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
-					}
-					if (temp > max) {
-						max = temp;
-						pos = i;
-					}
+				candidates.add(expandCurrentPathFeature(list.get(i).size() - 1, list.get(i)));
+			}
+			merits = evaluateAll(candidates);
+			for (int i = 0; i < merits.length; i++) {
+				if (Double.isNaN(merits[i]) || Double.isInfinite(merits[i])) {
+					throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
+				}
+				if (i == 0 || merits[i] > max) {
+					max = merits[i];
+					pos = i;
 				}
 			}
 
 			parent = list.remove(pos);
 
-			sftr = new LinkedList<Integer>();
+			sftr = new ArrayList<Integer>();
 			double valueAllFeat = 0;
 			double beta = 0;
 			int maxK = 0;
@@ -805,7 +1021,7 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 			}
 
 			if (criterionFunctionMethod.equals("1")) {
-				valueAllFeat = evaluator.evaluateSubset(listToBitSet(sftr));
+				valueAllFeat = evaluate(sftr);
 				if (Double.isNaN(valueAllFeat) || Double.isInfinite(valueAllFeat)) {
 					throw new Exception("Bhattacharyya distance cannot be computed (very possibly: one of the covariance matrices is singular)");
 				}
@@ -815,34 +1031,34 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 			}
 
 			// step 5
-			if (max < bound) {
+			if (max < root.bound) {
 				for (int i = 0; i < list.size(); i++) {
-					sftr = new LinkedList<Integer>();
+					sftr = new ArrayList<Integer>();
 					sftr = expandCurrentPathFeature(list.get(i).size() - 1, list.get(i));
 					addPartialPath(sftr);
 				}
 				list.clear();
 			} else {
-				sftr = new LinkedList<Integer>();
+				sftr = new ArrayList<Integer>();
 				sftr = expandCurrentPathFeature(parent.size() - 1, parent);
-				if (max > bound && maxK == (numAttributes - subsetSize)) {
-					bound = max;
-					ofs = sftr;
+				if (max > root.bound && maxK == (numAttributes - subsetSize)) {
+					setBound(max, sftr, 0);
 					list.clear();
 				} else {
 					if (criterionFunctionMethod.equals("1")) {
-						dest = (int) (Math.ceil(Math.pow(numAttributes * (1 - bound / valueAllFeat), (1 / beta))));
+						dest = (int) (Math.ceil(Math.pow(numAttributes * (1 - root.bound / valueAllFeat), (1 / beta))));
 					} else if (criterionFunctionMethod.equals("2")) {
-						dest = (int) (Math.ceil(((-bound) * (numAttributes - parent.size() - 1) / valueAllFeat) + numAttributes));
+						dest = (int) (Math.ceil(((-root.bound) * (numAttributes - parent.size() - 1) / valueAllFeat) + numAttributes));
 					} else if (criterionFunctionMethod.equals("3")) {
-						dest = (int) (Math.ceil(Math.log((-bound * (Math.E - 1) / valueAllFeat) + Math.E) * (numAttributes - parent.size() - 1) + parent.size()
+						dest = (int) (Math.ceil(Math.log((-root.bound * (Math.E - 1) / valueAllFeat) + Math.E) * (numAttributes - parent.size() - 1) + parent.size()
 								- 1));
 					} else if (criterionFunctionMethod.equals("4")) {
-						dest = (int) (Math.ceil(Math.sqrt((valueAllFeat - bound) / valueAllFeat) * (numAttributes - parent.size() - 1) + parent.size() - 1));
+						dest = (int) (Math.ceil(Math.sqrt((valueAllFeat - root.bound) / valueAllFeat) * (numAttributes - parent.size() - 1) + parent.size() - 1));
 					}
 					if (dest > numAttributes - subsetSize) {
 						dest = numAttributes - subsetSize;
 					}
+					pathMerits[parent.size() - 1] = max;
 					processLevelNaCa(parent.size() - 1, dest, jumpLevels, parent);
 				}
 			}
@@ -867,20 +1083,40 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	 * 
 	 **************************************************************/
 
+	/**
+	 * Sorts the features in increasing order of their criterion values. The
+	 * sort is stable, i.e. it keeps the order of the former bubble sort for
+	 * equal values.
+	 * 
+	 * @param sortArray
+	 * @return
+	 */
 	public List<Feature> bubblesort(List<Feature> sortArray) {
-		Feature temp;
-		for (int i = 1; i < sortArray.size(); i++) {
-			for (int j = 0; j < sortArray.size() - i; j++) {
-				if (sortArray.get(j).getJ() > sortArray.get(j + 1).getJ()) {
-					temp = sortArray.get(j);
-					sortArray.set(j, sortArray.get(j + 1));
-					sortArray.set(j + 1, temp);
-				}
+		Collections.sort(sortArray, new Comparator<Feature>() {
+			@Override
+			public int compare(Feature first, Feature second) {
+				return Double.compare(first.getJ(), second.getJ());
 			}
-		}
+		});
 		return sortArray;
 	}
 
+	/**
+	 * Internal method to sort the features by their numbers, so that the
+	 * order of the children of a node does not depend on the subtrees that
+	 * were searched before (which differ if subtrees are forked).
+	 * 
+	 * @param features
+	 */
+	private void sortByFeatureNumber(List<Feature> features) {
+		Collections.sort(features, new Comparator<Feature>() {
+			@Override
+			public int compare(Feature first, Feature second) {
+				return first.getFeat() - second.getFeat();
+			}
+		});
+	}
+
 	/**
 	 * Creates a path that describes the current position.
 	 * 
@@ -889,7 +1125,7 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	 * @return
 	 */
 	private List<Integer> expandCurrentPathFeature(int level, List<Feature> currentPath) throws Exception {
-		List<Integer> sftr = new LinkedList<Integer>();
+		List<Integer> sftr = new ArrayList<Integer>();
 
 		for (int j = 1; j <= level; j++) {
 			sftr.add(currentPath.get(j).getFeat());
@@ -924,55 +1160,410 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 	}
 
 	/**
-	 * Internal method to decide if the path evaluation can be skipped.
+	 * Internal method to decide if the path evaluation can be skipped, i.e. if
+	 * the path contains a pruned partial path.
 	 * 
 	 * @param sftr
 	 * @return
 	 */
-	private long computePathProduct(List<Integer> sftr) {
-		long pathProduct = 1;
+	private boolean isAlreadyEvaluated(List<Integer> sftr) {
+		return root.partialPaths.containsSubsetOf(sftr);
+	}
 
-		for (Integer featureNumber : sftr) {
-			pathProduct *= (long) primes[featureNumber - 1];
+	/**
+	 * Decides if the path ends at a leaf.
+	 * 
+	 * @param sftr
+	 * @return
+	 */
+	private boolean isFullPath(List<Integer> sftr) {
+		return sftr.size() == (numAttributes - subsetSize);
+	}
+
+	/**
+	 * Adds the given path to the list of all evaluated paths.
+	 * 
+	 * @param sftr
+	 */
+	private void addPartialPath(List<Integer> sftr) {
+		if (!isFullPath(sftr)) {
+			root.nodesPruned.incrementAndGet();
+			root.partialPaths.add(sftr);
 		}
-		return pathProduct;
 	}
 
 	/**
-	 * Internal method to decide if the path evaluation can be skipped.
+	 * Sets the new bound and the corresponding subset and records it in the
+	 * bound trajectory. If several threads are used, the bound is only
+	 * increased; of the subsets with the same bound, the subset that the
+	 * serial search keeps is selected to make the result independent of the
+	 * scheduling: the first visited node, or the last visited node for the
+	 * algorithm of Narendra and Fukunaga, which also replaces the bound by an
+	 * equal value.
 	 * 
+	 * @param merit
 	 * @param sftr
+	 * @param level
+	 *            the level of the node in the search tree or 0 if the subset
+	 *            is not found by a forked subtree
+	 */
+	private void setBound(double merit, List<Integer> sftr, int level) {
+		int comparison;
+
+		synchronized (root) {
+			if (root.pool != null && merit == root.bound && root.bestVisitOrder != null) {
+				comparison = compareVisitOrder(level, root.bestVisitOrder);
+				if (searchType.equals("2") ? comparison <= 0 : comparison >= 0) {
+					return;
+				}
+			} else if (root.pool != null && merit <= root.bound) {
+				return;
+			}
+			root.bound = merit;
+			root.ofs = sftr;
+			root.bestVisitOrder = Arrays.copyOfRange(visitOrder, 1, level + 1);
+			root.boundTrajectory.add(new double[] { System.currentTimeMillis() - root.startTime, merit });
+		}
+	}
+
+	/**
+	 * Internal method to decide if the serial search visits the node of the
+	 * current path in the given level before the node of the current bound.
+	 * 
+	 * @param level
 	 * @return
 	 */
-	private boolean isAlreadyEvaluated(List<Integer> sftr) {
-		long pathProduct = computePathProduct(sftr);
+	private boolean isVisitedBeforeBest(int level) {
+		synchronized (root) {
+			return root.bestVisitOrder == null || compareVisitOrder(level, root.bestVisitOrder) < 0;
+		}
+	}
 
-		for (Long partialPath : partialPaths) {
-			if (pathProduct % partialPath == 0) {
-				return true;
+	/**
+	 * Internal method to compare the node of the current path in the given
+	 * level with a node given by its visit numbers in the order of the serial
+	 * (depth-first) search. A node is visited before its descendants.
+	 * 
+	 * @param level
+	 * @param other
+	 * @return
+	 */
+	private int compareVisitOrder(int level, int[] other) {
+		for (int i = 0; i < Math.min(level, other.length); i++) {
+			if (visitOrder[i + 1] != other[i]) {
+				return visitOrder[i + 1] < other[i] ? -1 : 1;
 			}
 		}
-		return false;
+		return level - other.length;
 	}
 
 	/**
-	 * Decides if the path ends at a leaf.
+	 * Descends to the next level of the Narendra and Fukunaga algorithm. If the
+	 * subtree is forked, the backtrack of the subtree is done here.
 	 * 
-	 * @param sftr
+	 * @param level
+	 * @param currentPath
+	 * @param forked
+	 * @throws Exception
+	 */
+	private void descendNaFuk(int level, List<Feature> currentPath, List<SubtreeTask> forked) throws Exception {
+		if (forkSubtree(level, currentPath, forked)) {
+			avail.add(currentPath.remove(currentPath.size() - 1));
+		} else {
+			processLevelNaFuk(level, currentPath);
+		}
+	}
+
+	/**
+	 * Descends to the next level of the Somol/Pudil/Kittler algorithm. If the
+	 * subtree is forked, the backtrack of the subtree is done here.
+	 * 
+	 * @param level
+	 * @param currentPath
+	 * @param forked
+	 * @throws Exception
+	 */
+	private void descendSoPuKi(int level, List<Feature> currentPath, List<SubtreeTask> forked) throws Exception {
+		if (forkSubtree(level, currentPath, forked)) {
+			avail.add(currentPath.remove(currentPath.size() - 1));
+		} else {
+			processLevelSoPuKi(level, currentPath);
+		}
+	}
+
+	/**
+	 * Forks the subtree below the current path as a task if the thread pool
+	 * has not enough queued tasks. Returns false if the subtree has to be
+	 * processed by the calling thread.
+	 * 
+	 * @param level
+	 * @param currentPath
+	 * @param forked
+	 *            list of the forked tasks of the calling level
 	 * @return
 	 */
-	private boolean isFullPath(List<Integer> sftr) {
-		return sftr.size() == (numAttributes - subsetSize);
+	private boolean forkSubtree(int level, List<Feature> currentPath, List<SubtreeTask> forked) {
+		SubtreeTask task = null;
+
+		if (pool == null || !ForkJoinTask.inForkJoinPool() || ForkJoinTask.getSurplusQueuedTaskCount() > MAXIMUM_SURPLUS_TASKS) {
+			return false;
+		}
+
+		task = new SubtreeTask(new BranchAndBound(this), level, copyFeatures(currentPath));
+		task.fork();
+		forked.add(task);
+		return true;
 	}
 
 	/**
-	 * Adds the given path to the list of all evaluated paths.
+	 * Evaluates the given paths. If the search runs in the thread pool, the
+	 * paths are evaluated concurrently. The merits are returned in the order
+	 * of the paths.
+	 * 
+	 * @param paths
+	 * @return
+	 * @throws Exception
+	 */
+	private double[] evaluateAll(final List<List<Integer>> paths) throws Exception {
+		final double[] merits = new double[paths.size()];
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		Throwable cause = null;
+
+		if (pool == null || !ForkJoinTask.inForkJoinPool() || paths.size() < 2) {
+			for (int i = 0; i < merits.length; i++) {
+				merits[i] = evaluate(paths.get(i));
+			}
+			return merits;
+		}
+
+		for (int i = 0; i < merits.length; i++) {
+			final int index = i;
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					try {
+						merits[index] = evaluate(paths.get(index));
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+		}
+		try {
+			ForkJoinTask.invokeAll(tasks);
+		} catch (IllegalStateException e) {
+			cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+		return merits;
+	}
+
+	/**
+	 * Waits for the forked tasks of a level.
+	 * 
+	 * @param forked
+	 */
+	private void joinSubtrees(List<SubtreeTask> forked) {
+		for (SubtreeTask task : forked) {
+			task.join();
+		}
+	}
+
+	/**
+	 * Internal method to copy a list of features.
+	 * 
+	 * @param features
+	 * @return
+	 */
+	private List<Feature> copyFeatures(List<Feature> features) {
+		List<Feature> copy = new ArrayList<Feature>();
+
+		for (Feature feature : features) {
+			copy.add(new Feature(feature));
+		}
+		return copy;
+	}
+
+	/**
+	 * Internal method to copy a two-dimensional array.
+	 * 
+	 * @param array
+	 * @return
+	 */
+	private int[][] copyArray(int[][] array) {
+		int[][] copy = null;
+
+		if (array != null) {
+			copy = new int[array.length][];
+			for (int i = 0; i < array.length; i++) {
+				copy[i] = array[i].clone();
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Internal method to copy a two-dimensional array.
+	 * 
+	 * @param array
+	 * @return
+	 */
+	private double[][] copyArray(double[][] array) {
+		double[][] copy = null;
+
+		if (array != null) {
+			copy = new double[array.length][];
+			for (int i = 0; i < array.length; i++) {
+				copy[i] = array[i].clone();
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Evaluates the path, counts the evaluation and checks the budgets.
 	 * 
 	 * @param sftr
+	 * @return
+	 * @throws Exception
 	 */
-	private void addPartialPath(List<Integer> sftr) {
-		if (!isFullPath(sftr)) {
-			partialPaths.add(computePathProduct(sftr));
+	private double evaluate(List<Integer> sftr) throws Exception {
+		double merit = evaluator.evaluateSubset(listToBitSet(sftr));
+		long count = root.evaluations.incrementAndGet();
+
+		synchronized (root.removalScores) {
+			for (Integer feature : sftr) {
+				if (feature > 0 && merit > root.removalScores[feature]) {
+					root.removalScores[feature] = merit;
+				}
+			}
+		}
+
+		if ((root.maximumEvaluations > 0 && count >= root.maximumEvaluations)
+				|| (root.maximumTime > 0 && System.currentTimeMillis() - root.startTime >= root.maximumTime)) {
+			stop(count);
+		}
+		fireSearchProgress(false);
+		return merit;
+	}
+
+	/**
+	 * Returns true if the search was stopped. In this case, the remaining
+	 * nodes of the current level are not explored and their criterion values
+	 * are bounded by the value of their parent node (monotone criterion).
+	 * 
+	 * @param parentMerit
+	 *            criterion value of the parent node, NaN for the root
+	 * @return
+	 */
+	private boolean isStopped(double parentMerit) {
+		if (!root.stopped) {
+			return false;
+		}
+		synchronized (root) {
+			if (Double.isNaN(parentMerit)) {
+				root.rootUnexplored = true;
+			} else {
+				root.unexploredUpperBound = Math.max(root.unexploredUpperBound, parentMerit);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Internal method for a stopped search that did not reach a leaf: removes
+	 * the features with the highest removal scores (the best criterion value
+	 * of an evaluated path that removes the feature) to get a subset of the
+	 * requested size. Only the completed subset is evaluated, because the
+	 * budget is already exhausted; see getEvaluationsAfterStop().
+	 * 
+	 * @throws Exception
+	 */
+	private void completeSubsetByRanking() throws Exception {
+		Integer[] ranking = new Integer[numAttributes];
+		List<Integer> removed = new ArrayList<Integer>();
+
+		for (int i = 0; i < numAttributes; i++) {
+			ranking[i] = i + 1;
+		}
+		// stable sort: unscored features are removed by their index
+		Arrays.sort(ranking, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				return Double.compare(removalScores[second], removalScores[first]);
+			}
+		});
+		for (int i = 0; i < numAttributes - subsetSize; i++) {
+			removed.add(ranking[i]);
+		}
+		setBound(evaluate(removed), removed, 0);
+	}
+
+	/**
+	 * Internal method to notify the listeners. Without force, the listeners
+	 * are notified at most every PROGRESS_INTERVAL ms.
+	 * 
+	 * @param force
+	 */
+	private void fireSearchProgress(boolean force) {
+		long now = System.currentTimeMillis();
+		SearchProgressEvent event = null;
+		List<SearchProgressListener> copy = null;
+
+		if (!force && now - root.lastProgressTime < PROGRESS_INTERVAL) {
+			return;
+		}
+		synchronized (root) {
+			if (root.listeners == null || root.listeners.isEmpty()) {
+				return;
+			}
+			root.lastProgressTime = now;
+			event = new SearchProgressEvent(root, root.nodesExpanded.get(), root.nodesPruned.get(), root.evaluations.get(), now - root.startTime, root.bound);
+			copy = new ArrayList<SearchProgressListener>(root.listeners);
+		}
+		for (SearchProgressListener listener : copy) {
+			listener.searchProgressMade(event);
+		}
+	}
+
+	/**
+	 * Asks the search to stop. The search returns the best full subset found
+	 * so far; see getOptimalityGap().
+	 */
+	public void stopSearch() {
+		stop(root.evaluations != null ? root.evaluations.get() : 0);
+	}
+
+	/**
+	 * Internal method to stop the search and to remember the number of
+	 * evaluations at the stop.
+	 * 
+	 * @param count
+	 */
+	private void stop(long count) {
+		synchronized (root) {
+			if (!root.stopped) {
+				root.evaluationsAtStop = count;
+				root.stopped = true;
+			}
+		}
+	}
+
+	public synchronized void addSearchProgressListener(SearchProgressListener listener) {
+		if (listeners == null) {
+			listeners = new LinkedList<SearchProgressListener>();
+		}
+		listeners.add(listener);
+	}
+
+	public synchronized void removeSearchProgressListener(SearchProgressListener listener) {
+		if (listeners != null) {
+			listeners.remove(listener);
 		}
 	}
 
@@ -980,8 +1571,108 @@ public class BranchAndBound extends ASSearch implements OptionHandler {
 		return bound;
 	}
 
+	/**
+	 * Returns an upper bound of the criterion value of the optimal subset. If
+	 * the search was not stopped, this is the final bound.
+	 * 
+	 * @return
+	 */
+	public double getUpperBound() {
+		return upperBound;
+	}
+
+	/**
+	 * Returns the difference between the upper bound of the optimal criterion
+	 * value and the criterion value of the returned subset. The gap is only
+	 * valid for a monotone criterion.
+	 * 
+	 * @return
+	 */
+	public double getOptimalityGap() {
+		return upperBound - bound;
+	}
+
+	/**
+	 * Returns the number of evaluations after the search was stopped, i.e.
+	 * the evaluations that exceed the budget: the evaluations that were
+	 * running or could not be interrupted at the stop, the evaluation of a
+	 * subset that was completed without reaching a leaf and the evaluation of
+	 * the root if it was not explored.
+	 * 
+	 * @return
+	 */
+	public long getEvaluationsAfterStop() {
+		return evaluationsAfterStop;
+	}
+
+	/**
+	 * Returns true if the last search was stopped because of a budget or by
+	 * stopSearch().
+	 * 
+	 * @return
+	 */
+	public boolean wasStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Returns the improvements of the bound as pairs of the time since the
+	 * start (ms) and the new bound.
+	 * 
+	 * @return
+	 */
+	public List<double[]> getBoundTrajectory() {
+		return boundTrajectory;
+	}
+
+	public long getNodesExpanded() {
+		return nodesExpanded.get();
+	}
+
+	public long getNodesPruned() {
+		return nodesPruned.get();
+	}
+
+	public long getNumberOfEvaluations() {
+		return evaluations.get();
+	}
+
 	public long getExecutionTime() {
 		return executionTime;
 	}
 
+	/**
+	 * A subtree of the search tree that is processed by the thread pool. The
+	 * task owns its search object with the copied per-path state.
+	 */
+	private class SubtreeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private int level;
+		private List<Feature> currentPath;
+		private BranchAndBound search;
+
+		public SubtreeTask(BranchAndBound search, int level, List<Feature> currentPath) {
+			this.search = search;
+			this.level = level;
+			this.currentPath = currentPath;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				if (searchType.equals("1")) {
+					search.processLevelChen(level, currentPath);
+				} else if (searchType.equals("2")) {
+					search.processLevelNaFuk(level, currentPath);
+				} else if (searchType.equals("3")) {
+					search.processLevelSoPuKi(level, currentPath);
+				}
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
 }
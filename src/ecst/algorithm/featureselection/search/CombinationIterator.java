@@ -0,0 +1,162 @@
+package ecst.algorithm.featureselection.search;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class iterates over the subsets with exactly k of n features in
+ * increasing order of their bit masks (colexicographic order), i.e. in the
+ * same order as a counter over all 2^n subsets would visit them. The subsets
+ * are numbered by the combinatorial number system, so that the iteration can
+ * start at any rank and the subsets can be split into ranges for parallel
+ * evaluation. For n <= 63, the next subset is computed by Gosper's hack on a
+ * long mask; otherwise, the feature indices are stepped in an array.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class CombinationIterator implements Iterator<BitSet> {
+
+	private static final int MAXIMUM_MASK_BITS = 63;
+
+	private int n;
+	private long mask;
+	private long remaining;
+	private int[] combination;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param n
+	 *            number of features
+	 * @param k
+	 *            number of selected features
+	 * @param fromRank
+	 *            rank of the first subset (inclusive)
+	 * @param toRank
+	 *            rank of the last subset (exclusive)
+	 */
+	public CombinationIterator(int n, int k, long fromRank, long toRank) {
+		this.n = n;
+		this.remaining = Math.max(0, toRank - fromRank);
+		if (remaining > 0) {
+			combination = unrank(fromRank, k);
+			if (n <= MAXIMUM_MASK_BITS) {
+				mask = 0L;
+				for (int element : combination) {
+					mask |= 1L << element;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of subsets with k of n features or Long.MAX_VALUE if
+	 * the number does not fit into a long.
+	 * 
+	 * @param n
+	 * @param k
+	 * @return
+	 */
+	public static long binomial(int n, int k) {
+		long result = 1;
+
+		if (k < 0 || k > n) {
+			return 0;
+		}
+		k = Math.min(k, n - k);
+		for (int i = 0; i < k; i++) {
+			// result * (n - i) is divisible by (i + 1)
+			if (result > Long.MAX_VALUE / (n - i)) {
+				return Long.MAX_VALUE;
+			}
+			result = result * (n - i) / (i + 1);
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to compute the subset with the given rank in the
+	 * combinatorial number system. Returns the features in increasing order.
+	 * 
+	 * @param rank
+	 * @param k
+	 * @return
+	 */
+	private int[] unrank(long rank, int k) {
+		int element = n;
+		long count;
+		int[] subset = new int[k];
+
+		for (int i = k; i >= 1; i--) {
+			// largest element with binomial(element, i) <= rank
+			do {
+				element--;
+				count = binomial(element, i);
+			} while (count > rank);
+			subset[i - 1] = element;
+			rank -= count;
+		}
+		return subset;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return remaining > 0;
+	}
+
+	@Override
+	public BitSet next() {
+		long lowestBit;
+		long ripple;
+		BitSet subset = new BitSet(n + 1);
+
+		if (remaining <= 0) {
+			throw new NoSuchElementException();
+		}
+		if (n <= MAXIMUM_MASK_BITS) {
+			subset.or(BitSet.valueOf(new long[] { mask }));
+			if (--remaining > 0) {
+				// Gosper's hack: next larger mask with the same number of bits
+				lowestBit = mask & -mask;
+				ripple = mask + lowestBit;
+				mask = (((ripple ^ mask) >>> 2) / lowestBit) | ripple;
+			}
+		} else {
+			for (int element : combination) {
+				subset.set(element);
+			}
+			if (--remaining > 0) {
+				nextCombination();
+			}
+		}
+		return subset;
+	}
+
+	/**
+	 * Internal method to step the feature indices to the next subset: the
+	 * lowest index that can be increased is increased and the indices below
+	 * are reset.
+	 */
+	private void nextCombination() {
+		int i = 0;
+
+		while (i < combination.length - 1 && combination[i] + 1 == combination[i + 1]) {
+			i++;
+		}
+		combination[i]++;
+		for (int j = 0; j < i; j++) {
+			combination[j] = j;
+		}
+	}
+
+	/**
+	 * Not supported.
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+}
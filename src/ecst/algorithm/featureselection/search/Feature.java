@@ -26,6 +26,20 @@ public class Feature {
 		j = Double.NEGATIVE_INFINITY;
 	}
 	
+	/**
+	 * Copy constructor.
+	 * 
+	 * @param feature
+	 */
+	public Feature(Feature feature) {
+		feat = feature.feat;
+		a = feature.a;
+		c = feature.c;
+		t = feature.t;
+		counter = feature.counter;
+		j = feature.j;
+	}
+	
 	public String toString() {
 		return "feature: " + feat + ", position: " + counter;
 	}
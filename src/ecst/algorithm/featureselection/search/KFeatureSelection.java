@@ -1,12 +1,13 @@
 package ecst.algorithm.featureselection.search;
 
-import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
 
 import weka.attributeSelection.ASEvaluation;
 import weka.attributeSelection.ASSearch;
-import weka.attributeSelection.SubsetEvaluator;
 import weka.core.Instances;
 import weka.core.OptionHandler;
 import weka.core.Utils;
@@ -21,6 +22,7 @@ import ecst.utilities.CommonUtilities;
 public class KFeatureSelection extends ASSearch implements OptionHandler {
 
 	private static final long serialVersionUID = 1L;
+	private static final int RANGES_PER_THREAD = 8;
 
 	private enum SEARCH_METHOD {
 		SEQUENTIAL_FORWARD_SELECTION, SEQUENTIAL_BACKWARD_SELECTION, EXHAUSTIVE
@@ -28,10 +30,12 @@ public class KFeatureSelection extends ASSearch implements OptionHandler {
 
 	private SEARCH_METHOD searchMethod;
 	private int numberOfFeatures;
+	private int numberOfThreads;
 	private long executionTime;
 
 	public KFeatureSelection() {
 		numberOfFeatures = 1;
+		numberOfThreads = 1;
 		searchMethod = SEARCH_METHOD.SEQUENTIAL_FORWARD_SELECTION;
 	}
 
@@ -67,48 +71,55 @@ public class KFeatureSelection extends ASSearch implements OptionHandler {
 		if (!"".equals(numberString)) {
 			numberOfFeatures = Integer.parseInt(numberString);
 		}
+
+		numberString = Utils.getOption('T', options);
+		if (!"".equals(numberString)) {
+			numberOfThreads = Math.max(1, Integer.parseInt(numberString));
+		}
 	}
 
 	@Override
 	public int[] search(ASEvaluation ASEvaluator, Instances instances) throws Exception {
-		SubsetEvaluator evaluator = (SubsetEvaluator) ASEvaluator;
-
-		if (searchMethod.equals(SEARCH_METHOD.SEQUENTIAL_FORWARD_SELECTION)) {
-			return forwardSelection(evaluator, instances);
-		} else if (searchMethod.equals(SEARCH_METHOD.SEQUENTIAL_BACKWARD_SELECTION)) {
-			return backwardSelection(evaluator, instances);
-		} else if (searchMethod.equals(SEARCH_METHOD.EXHAUSTIVE)) {
-			return exhaustive(evaluator, instances);
+		ParallelSubsetEvaluator parallelEvaluator = null;
+
+		parallelEvaluator = new ParallelSubsetEvaluator(ASEvaluator, numberOfThreads);
+		try {
+			if (searchMethod.equals(SEARCH_METHOD.SEQUENTIAL_FORWARD_SELECTION)) {
+				return forwardSelection(parallelEvaluator, instances);
+			} else if (searchMethod.equals(SEARCH_METHOD.SEQUENTIAL_BACKWARD_SELECTION)) {
+				return backwardSelection(parallelEvaluator, instances);
+			} else if (searchMethod.equals(SEARCH_METHOD.EXHAUSTIVE)) {
+				return exhaustive(parallelEvaluator, instances);
+			}
+		} finally {
+			parallelEvaluator.shutdown();
 		}
 		return null;
 	}
 
-	private int[] forwardSelection(SubsetEvaluator evaluator, Instances instances) throws Exception {
+	private int[] forwardSelection(ParallelSubsetEvaluator evaluator, Instances instances) throws Exception {
 		long timeStart;
 		long timeEnd;
-		double merit;
-		int maxPosition;
+		BitSet candidate = null;
 		BitSet bitSet = null;
-		double bestMerit;
+		int[] positions = null;
+		List<BitSet> candidates = null;
 		int numAttributes = instances.numAttributes() - 1;
 
 		timeStart = System.currentTimeMillis();
 		bitSet = new BitSet(numAttributes + 1);
 		for (int i = 0; i < numberOfFeatures; i++) {
-			maxPosition = -1;
-			bestMerit = Double.NEGATIVE_INFINITY;
+			positions = new int[numAttributes];
+			candidates = new ArrayList<BitSet>(numAttributes);
 			for (int j = 0; j < numAttributes; j++) {
 				if (!bitSet.get(j)) {
-					bitSet.set(j);
-					merit = evaluator.evaluateSubset(bitSet);
-					if (merit > bestMerit) {
-						bestMerit = merit;
-						maxPosition = j;
-					}
-					bitSet.clear(j);
+					candidate = (BitSet) bitSet.clone();
+					candidate.set(j);
+					positions[candidates.size()] = j;
+					candidates.add(candidate);
 				}
 			}
-			bitSet.set(maxPosition);
+			bitSet.set(bestPosition(evaluator.evaluateSubsets(candidates), positions));
 		}
 		timeEnd = System.currentTimeMillis();
 		executionTime = timeEnd - timeStart;
@@ -116,33 +127,30 @@ public class KFeatureSelection extends ASSearch implements OptionHandler {
 		return CommonUtilities.bitsetToIntegerArray(bitSet, false);
 	}
 
-	private int[] backwardSelection(SubsetEvaluator evaluator, Instances instances) throws Exception {
+	private int[] backwardSelection(ParallelSubsetEvaluator evaluator, Instances instances) throws Exception {
 		long timeStart;
 		long timeEnd;
-		double merit;
-		int maxPosition;
+		BitSet candidate = null;
 		BitSet bitSet = null;
-		double bestMerit;
+		int[] positions = null;
+		List<BitSet> candidates = null;
 		int numAttributes = instances.numAttributes() - 1;
 
 		timeStart = System.currentTimeMillis();
 		bitSet = new BitSet(numAttributes + 1);
 		bitSet.set(0, numAttributes);
 		for (int i = 0; i < numAttributes - numberOfFeatures; i++) {
-			maxPosition = -1;
-			bestMerit = Double.NEGATIVE_INFINITY;
+			positions = new int[numAttributes];
+			candidates = new ArrayList<BitSet>(numAttributes);
 			for (int j = 0; j < numAttributes; j++) {
 				if (bitSet.get(j)) {
-					bitSet.clear(j);
-					merit = evaluator.evaluateSubset(bitSet);
-					if (merit > bestMerit) {
-						bestMerit = merit;
-						maxPosition = j;
-					}
-					bitSet.set(j);
+					candidate = (BitSet) bitSet.clone();
+					candidate.clear(j);
+					positions[candidates.size()] = j;
+					candidates.add(candidate);
 				}
 			}
-			bitSet.clear(maxPosition);
+			bitSet.clear(bestPosition(evaluator.evaluateSubsets(candidates), positions));
 		}
 		timeEnd = System.currentTimeMillis();
 		executionTime = timeEnd - timeStart;
@@ -150,30 +158,75 @@ public class KFeatureSelection extends ASSearch implements OptionHandler {
 		return CommonUtilities.bitsetToIntegerArray(bitSet, false);
 	}
 
-	private int[] exhaustive(SubsetEvaluator evaluator, Instances instances) throws Exception {
+	/**
+	 * Returns the position of the candidate with the highest merit. Like in
+	 * the serial search, ties are broken in favor of the lowest position.
+	 * 
+	 * @param merits
+	 * @param positions
+	 * @return
+	 */
+	private int bestPosition(double[] merits, int[] positions) {
+		int maxPosition = -1;
+		double bestMerit = Double.NEGATIVE_INFINITY;
+
+		for (int i = 0; i < merits.length; i++) {
+			if (merits[i] > bestMerit) {
+				bestMerit = merits[i];
+				maxPosition = positions[i];
+			}
+		}
+		return maxPosition;
+	}
+
+	/**
+	 * Evaluates all subsets with exactly numberOfFeatures features. The
+	 * subsets are enumerated in the order of a counter over all subsets and
+	 * split into ranges of consecutive ranks that are evaluated in parallel;
+	 * the results of the ranges are merged in this order, so that ties are
+	 * broken like in the serial search.
+	 * 
+	 * @param evaluator
+	 * @param instances
+	 * @return
+	 * @throws Exception
+	 */
+	private int[] exhaustive(ParallelSubsetEvaluator evaluator, Instances instances) throws Exception {
 		long timeStart;
 		long timeEnd;
-		double merit;
+		long from;
+		long to;
+		long numberOfSubsets;
+		int numberOfRanges;
 		BitSet bitSet = null;
-		BitSet testSet = null;
-		BigInteger upperEndPlusOne = null;
-		BigInteger counter = BigInteger.ONE;
+		BitSet[] bestSubsets = null;
+		double[] merits = null;
+		List<Iterator<BitSet>> ranges = null;
 		double bestMerit = Double.NEGATIVE_INFINITY;
 		int numAttributes = instances.numAttributes() - 1;
 
 		timeStart = System.currentTimeMillis();
-		upperEndPlusOne = (new BigInteger("2")).pow(numAttributes).add(BigInteger.ONE);
-		do {
-			testSet = CommonUtilities.bigIntegerToBitset(counter, numAttributes);
-			if (testSet.cardinality() == numberOfFeatures) {
-				merit = evaluator.evaluateSubset(testSet);
-				if (merit > bestMerit) {
-					bestMerit = merit;
-					bitSet = testSet;
-				}
+		numberOfSubsets = CombinationIterator.binomial(numAttributes, numberOfFeatures);
+		if (numberOfSubsets == Long.MAX_VALUE) {
+			throw new Exception("Too many subsets for an exhaustive search!");
+		}
+		numberOfRanges = evaluator.getNumberOfThreads() > 1 ? evaluator.getNumberOfThreads() * RANGES_PER_THREAD : 1;
+		numberOfRanges = (int) Math.max(1, Math.min(numberOfSubsets, numberOfRanges));
+		ranges = new ArrayList<Iterator<BitSet>>(numberOfRanges);
+		for (int i = 0; i < numberOfRanges; i++) {
+			from = i * (numberOfSubsets / numberOfRanges) + Math.min(i, numberOfSubsets % numberOfRanges);
+			to = from + numberOfSubsets / numberOfRanges + (i < numberOfSubsets % numberOfRanges ? 1 : 0);
+			ranges.add(new CombinationIterator(numAttributes, numberOfFeatures, from, to));
+		}
+
+		merits = new double[numberOfRanges];
+		bestSubsets = evaluator.findBestSubsets(ranges, merits);
+		for (int i = 0; i < numberOfRanges; i++) {
+			if (merits[i] > bestMerit) {
+				bestMerit = merits[i];
+				bitSet = bestSubsets[i];
 			}
-			counter = counter.add(BigInteger.ONE);
-		} while (!counter.equals(upperEndPlusOne));
+		}
 		timeEnd = System.currentTimeMillis();
 		executionTime = timeEnd - timeStart;
 		
@@ -0,0 +1,209 @@
+package ecst.algorithm.featureselection.search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+
+import weka.attributeSelection.ASEvaluation;
+import weka.attributeSelection.ASSearch;
+import weka.attributeSelection.SubsetEvaluator;
+import weka.attributeSelection.UnsupervisedSubsetEvaluator;
+import weka.core.Instances;
+import weka.core.OptionHandler;
+import weka.core.Range;
+import weka.core.Utils;
+import ecst.algorithm.featureselection.evaluator.CachedSubsetEvaluator;
+import ecst.utilities.CommonUtilities;
+
+/**
+ * This class implements the random search of WEKA (Liu and Setiono's LVF
+ * algorithm), but evaluates the random subsets in batches on a thread pool.
+ * The random subsets are drawn in the same order as in WEKA and the batch
+ * results are processed in this order, so that the selected subset is the
+ * same as in the serial search.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class ParallelRandomSearch extends ASSearch implements OptionHandler {
+
+	private static final long serialVersionUID = 1L;
+	private static final int SUBSETS_PER_THREAD_AND_BATCH = 4;
+
+	private int seed;
+	private int numberOfThreads;
+	private double searchSize;
+	private Range startRange;
+
+	/**
+	 * Constructor.
+	 */
+	public ParallelRandomSearch() {
+		seed = 1;
+		numberOfThreads = 1;
+		searchSize = 0.25;
+		startRange = new Range();
+	}
+
+	/**
+	 * Returns a string describing this algorithm.
+	 * 
+	 * @return
+	 */
+	public String globalInfo() {
+		return "Random search in attribute subset space like WEKA's RandomSearch. The random subsets are evaluated in parallel. "
+				+ "Note that this is not a WEKA class.";
+	}
+
+	/**
+	 * WEKA method, not implemented.
+	 */
+	@Override
+	public String[] getOptions() {
+		return null;
+	}
+
+	/**
+	 * WEKA method, not implemented.
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public Enumeration listOptions() {
+		return null;
+	}
+
+	/**
+	 * Parses the WEKA options string.
+	 */
+	@Override
+	public void setOptions(String[] options) throws Exception {
+		double percent;
+		String startString = null;
+		String percentString = null;
+		String threadsString = null;
+
+		startString = Utils.getOption('P', options);
+		percentString = Utils.getOption('F', options);
+		threadsString = Utils.getOption('T', options);
+		if (!"".equals(startString)) {
+			startRange.setRanges(startString);
+		}
+		if (!"".equals(percentString)) {
+			// same limits as in WEKA
+			percent = Math.abs(Double.parseDouble(percentString));
+			if (percent == 0) {
+				percent = 25;
+			}
+			searchSize = Math.min(percent, 100.0) / 100.0;
+		}
+		if (!"".equals(threadsString)) {
+			numberOfThreads = Math.max(1, Integer.parseInt(threadsString));
+		}
+	}
+
+	/**
+	 * Searches the best subset.
+	 */
+	@Override
+	public int[] search(ASEvaluation ASEvaluator, Instances instances) throws Exception {
+		int iterations;
+		int[] starting = null;
+		ParallelSubsetEvaluator evaluator = null;
+		BitSet bestGroup = null;
+		List<BitSet> candidates = null;
+		Random random = new Random(seed);
+		// the cache does not forward UnsupervisedSubsetEvaluator
+		ASEvaluation decorated = ASEvaluator instanceof CachedSubsetEvaluator ? ((CachedSubsetEvaluator) ASEvaluator).getEvaluator() : ASEvaluator;
+		boolean hasClass = !(decorated instanceof UnsupervisedSubsetEvaluator);
+		int classIndex = hasClass ? instances.classIndex() : -1;
+		int numAttributes = instances.numAttributes();
+		double bestMerit;
+		int sizeOfBest = numAttributes;
+		boolean onlyConsiderBetterAndSmaller = false;
+		double[] merits = null;
+		int size;
+
+		if (!(ASEvaluator instanceof SubsetEvaluator)) {
+			throw new Exception(ASEvaluator.getClass().getName() + " is not a Subset evaluator!");
+		}
+
+		evaluator = new ParallelSubsetEvaluator(ASEvaluator, numberOfThreads);
+		try {
+			startRange.setUpper(numAttributes - 1);
+			if (!"".equals(startRange.getRanges())) {
+				starting = startRange.getSelection();
+			}
+
+			candidates = new ArrayList<BitSet>(1);
+			if (starting != null) {
+				bestGroup = new BitSet(numAttributes);
+				for (int i = 0; i < starting.length; i++) {
+					if (starting[i] != classIndex) {
+						bestGroup.set(starting[i]);
+					}
+				}
+				onlyConsiderBetterAndSmaller = true;
+				sizeOfBest = bestGroup.cardinality();
+			} else {
+				bestGroup = generateRandomSubset(random, numAttributes, classIndex);
+			}
+			candidates.add(bestGroup);
+			bestMerit = evaluator.evaluateSubsets(candidates)[0];
+
+			iterations = (int) (searchSize * Math.pow(2, hasClass ? numAttributes - 1 : numAttributes));
+			for (int i = 0; i < iterations;) {
+				// draw the next batch in the serial order; subsets larger than
+				// the current best can be skipped since its size only decreases
+				candidates = new ArrayList<BitSet>();
+				for (; i < iterations && candidates.size() < SUBSETS_PER_THREAD_AND_BATCH * numberOfThreads; i++) {
+					candidates.add(generateRandomSubset(random, numAttributes, classIndex));
+					if (onlyConsiderBetterAndSmaller && candidates.get(candidates.size() - 1).cardinality() > sizeOfBest) {
+						candidates.remove(candidates.size() - 1);
+					}
+				}
+
+				merits = evaluator.evaluateSubsets(candidates);
+				for (int j = 0; j < merits.length; j++) {
+					if (onlyConsiderBetterAndSmaller) {
+						size = candidates.get(j).cardinality();
+						if (size <= sizeOfBest && merits[j] >= bestMerit) {
+							sizeOfBest = size;
+							bestGroup = candidates.get(j);
+							bestMerit = merits[j];
+						}
+					} else if (merits[j] > bestMerit) {
+						bestGroup = candidates.get(j);
+						bestMerit = merits[j];
+					}
+				}
+			}
+		} finally {
+			evaluator.shutdown();
+		}
+
+		return CommonUtilities.bitsetToIntegerArray(bestGroup, false);
+	}
+
+	/**
+	 * Internal method to draw a random subset. Consumes the random numbers in
+	 * the same way as WEKA's RandomSearch.
+	 * 
+	 * @param random
+	 * @param numAttributes
+	 * @param classIndex
+	 * @return
+	 */
+	private BitSet generateRandomSubset(Random random, int numAttributes, int classIndex) {
+		BitSet subset = new BitSet(numAttributes);
+
+		for (int i = 0; i < numAttributes; i++) {
+			if (random.nextDouble() <= 0.5 && i != classIndex) {
+				subset.set(i);
+			}
+		}
+		return subset;
+	}
+
+}
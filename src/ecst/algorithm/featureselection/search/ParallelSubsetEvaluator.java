@@ -0,0 +1,254 @@
+package ecst.algorithm.featureselection.search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import weka.attributeSelection.ASEvaluation;
+import weka.attributeSelection.SubsetEvaluator;
+import ecst.algorithm.featureselection.evaluator.CachedSubsetEvaluator;
+import ecst.utilities.ThreadUtilities;
+
+/**
+ * This class evaluates the candidate subsets of one search step in parallel.
+ * Every thread works on its own copy of the (already built) evaluator, because
+ * wrapper evaluators share a classifier and are not thread-safe. If the
+ * evaluator is a CachedSubsetEvaluator, the copies are made of the decorated
+ * evaluator and the cache is shared by all threads. The merits are returned
+ * in the order of the candidates, so that the search methods can apply the
+ * same tie-break as the serial search.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class ParallelSubsetEvaluator {
+
+	private int numberOfThreads;
+	private SubsetEvaluator evaluator;
+	private CachedSubsetEvaluator cache;
+	private ExecutorService executor;
+	private BlockingQueue<SubsetEvaluator> copies;
+
+	/**
+	 * Constructor. The evaluator must already be built.
+	 * 
+	 * @param evaluator
+	 * @param numberOfThreads
+	 *            the size of the thread pool; with one thread (or inside
+	 *            another parallel evaluation, see ThreadUtilities) the subsets
+	 *            are evaluated serially by the given evaluator
+	 * @throws Exception
+	 */
+	public ParallelSubsetEvaluator(ASEvaluation evaluator, int numberOfThreads) throws Exception {
+		ASEvaluation[] evaluatorCopies = null;
+
+		if (!(evaluator instanceof SubsetEvaluator)) {
+			throw new IllegalArgumentException("The evaluator has to be a subset evaluator!");
+		}
+		this.evaluator = (SubsetEvaluator) evaluator;
+		this.numberOfThreads = ThreadUtilities.getNumberOfThreads(numberOfThreads);
+
+		if (this.numberOfThreads > 1) {
+			if (evaluator instanceof CachedSubsetEvaluator) {
+				cache = (CachedSubsetEvaluator) evaluator;
+				evaluatorCopies = ASEvaluation.makeCopies(cache.getEvaluator(), this.numberOfThreads);
+			} else {
+				evaluatorCopies = ASEvaluation.makeCopies(evaluator, this.numberOfThreads);
+			}
+			copies = new ArrayBlockingQueue<SubsetEvaluator>(this.numberOfThreads);
+			for (ASEvaluation copy : evaluatorCopies) {
+				copies.add((SubsetEvaluator) copy);
+			}
+			executor = ThreadUtilities.newFixedThreadPool(this.numberOfThreads);
+		}
+	}
+
+	/**
+	 * Evaluates the given subsets and returns their merits in the same order.
+	 * 
+	 * @param subsets
+	 * @return
+	 * @throws Exception
+	 */
+	public double[] evaluateSubsets(List<BitSet> subsets) throws Exception {
+		double[] merits = new double[subsets.size()];
+		List<Future<Double>> futures = null;
+
+		if (executor == null) {
+			for (int i = 0; i < merits.length; i++) {
+				merits[i] = evaluator.evaluateSubset(subsets.get(i));
+			}
+			return merits;
+		}
+
+		futures = new ArrayList<Future<Double>>(subsets.size());
+		for (final BitSet subset : subsets) {
+			futures.add(executor.submit(new Callable<Double>() {
+				@Override
+				public Double call() throws Exception {
+					return evaluateWithCopy(subset);
+				}
+			}));
+		}
+
+		try {
+			for (int i = 0; i < merits.length; i++) {
+				merits[i] = futures.get(i).get();
+			}
+		} catch (ExecutionException e) {
+			for (Future<Double> future : futures) {
+				future.cancel(true);
+			}
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw new Exception(e.getCause());
+		} catch (InterruptedException e) {
+			for (Future<Double> future : futures) {
+				future.cancel(true);
+			}
+			throw e;
+		}
+		return merits;
+	}
+
+	/**
+	 * Evaluates the subsets of every range as one task and returns the first
+	 * subset with the highest merit of every range (null if no merit is
+	 * greater than negative infinity).
+	 * The merits of these subsets are stored in bestMerits.
+	 * 
+	 * @param ranges
+	 * @param bestMerits
+	 *            array with one element per range
+	 * @return
+	 * @throws Exception
+	 */
+	public BitSet[] findBestSubsets(List<Iterator<BitSet>> ranges, double[] bestMerits) throws Exception {
+		BitSet[] bestSubsets = new BitSet[ranges.size()];
+		List<Future<BitSet>> futures = null;
+
+		if (executor == null) {
+			for (int i = 0; i < bestSubsets.length; i++) {
+				bestSubsets[i] = findBestSubset(ranges.get(i), evaluator, bestMerits, i);
+			}
+			return bestSubsets;
+		}
+
+		futures = new ArrayList<Future<BitSet>>(ranges.size());
+		for (int i = 0; i < bestSubsets.length; i++) {
+			final int index = i;
+			final Iterator<BitSet> range = ranges.get(i);
+			final double[] merits = bestMerits;
+			futures.add(executor.submit(new Callable<BitSet>() {
+				@Override
+				public BitSet call() throws Exception {
+					SubsetEvaluator copy = copies.take();
+
+					try {
+						return findBestSubset(range, copy, merits, index);
+					} finally {
+						copies.add(copy);
+					}
+				}
+			}));
+		}
+
+		try {
+			for (int i = 0; i < bestSubsets.length; i++) {
+				bestSubsets[i] = futures.get(i).get();
+			}
+		} catch (ExecutionException e) {
+			for (Future<BitSet> future : futures) {
+				future.cancel(true);
+			}
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw new Exception(e.getCause());
+		} catch (InterruptedException e) {
+			for (Future<BitSet> future : futures) {
+				future.cancel(true);
+			}
+			throw e;
+		}
+		return bestSubsets;
+	}
+
+	/**
+	 * Internal method to evaluate the subsets of a range with the given
+	 * evaluator. Like in the serial search, ties are broken in favor of the
+	 * first subset.
+	 * 
+	 * @param range
+	 * @param copy
+	 * @param bestMerits
+	 * @param index
+	 * @return
+	 * @throws Exception
+	 */
+	private BitSet findBestSubset(Iterator<BitSet> range, SubsetEvaluator copy, double[] bestMerits, int index) throws Exception {
+		double merit;
+		BitSet subset = null;
+		BitSet bestSubset = null;
+
+		bestMerits[index] = Double.NEGATIVE_INFINITY;
+		while (range.hasNext()) {
+			subset = range.next();
+			merit = cache != null ? cache.evaluateSubset(subset, copy) : copy.evaluateSubset(subset);
+			if (merit > bestMerits[index]) {
+				bestMerits[index] = merit;
+				bestSubset = subset;
+			}
+		}
+		return bestSubset;
+	}
+
+	/**
+	 * Returns the size of the thread pool.
+	 * 
+	 * @return
+	 */
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	/**
+	 * Internal method to evaluate a subset with a copy of the evaluator that is
+	 * used by no other thread at the same time.
+	 * 
+	 * @param subset
+	 * @return
+	 * @throws Exception
+	 */
+	private double evaluateWithCopy(BitSet subset) throws Exception {
+		SubsetEvaluator copy = copies.take();
+
+		try {
+			if (cache != null) {
+				return cache.evaluateSubset(subset, copy);
+			}
+			return copy.evaluateSubset(subset);
+		} finally {
+			copies.add(copy);
+		}
+	}
+
+	/**
+	 * Stops the threads of the pool. Must be called when the search is
+	 * finished.
+	 */
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+}
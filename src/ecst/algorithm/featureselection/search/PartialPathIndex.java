@@ -0,0 +1,144 @@
+package ecst.algorithm.featureselection.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class stores the partial paths that were pruned during the
+ * branch-and-bound search. A path is the set of removed features; every path
+ * that contains a pruned path can be skipped. The paths are stored in a prefix
+ * trie over their sorted feature numbers, so that the check does not depend on
+ * the number of stored paths and cannot overflow like a product of primes.
+ * The index can be used by several threads. If the maximum number of nodes is
+ * reached, no further paths are stored; this only reduces the number of
+ * skipped paths.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class PartialPathIndex {
+
+	public static final int DEFAULT_MAXIMUM_NODES = 250000;
+
+	private int maximumNodes;
+	private Node root;
+	private AtomicInteger numberOfNodes;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maximumNodes
+	 *            the maximum number of trie nodes
+	 */
+	public PartialPathIndex(int maximumNodes) {
+		this.maximumNodes = maximumNodes;
+		this.root = new Node();
+		this.numberOfNodes = new AtomicInteger(1);
+	}
+
+	/**
+	 * Adds the given path unless it already contains a stored path.
+	 * 
+	 * @param path
+	 */
+	public void add(List<Integer> path) {
+		Node node = root;
+		Node child = null;
+		Node newChild = null;
+		int[] sorted = sort(path);
+
+		if (containsSubsetOf(root, sorted, 0)) {
+			return;
+		}
+		for (int feature : sorted) {
+			child = node.children.get(feature);
+			if (child == null) {
+				if (numberOfNodes.incrementAndGet() > maximumNodes) {
+					numberOfNodes.decrementAndGet();
+					return;
+				}
+				newChild = new Node();
+				child = node.children.putIfAbsent(feature, newChild);
+				if (child == null) {
+					child = newChild;
+				} else {
+					numberOfNodes.decrementAndGet();
+				}
+			}
+			node = child;
+		}
+		node.pruned = true;
+	}
+
+	/**
+	 * Returns true if the given path contains a stored path.
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public boolean containsSubsetOf(List<Integer> path) {
+		return containsSubsetOf(root, sort(path), 0);
+	}
+
+	/**
+	 * Internal method to search a stored path that consists of features of
+	 * path[from], ..., path[path.length - 1].
+	 * 
+	 * @param node
+	 * @param path
+	 * @param from
+	 * @return
+	 */
+	private boolean containsSubsetOf(Node node, int[] path, int from) {
+		Node child = null;
+
+		if (node.pruned) {
+			return true;
+		}
+		for (int i = from; i < path.length; i++) {
+			child = node.children.get(path[i]);
+			if (child != null && containsSubsetOf(child, path, i + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Internal method to sort the feature numbers of a path.
+	 * 
+	 * @param path
+	 * @return
+	 */
+	private int[] sort(List<Integer> path) {
+		int i = 0;
+		int[] sorted = new int[path.size()];
+
+		for (Integer feature : path) {
+			sorted[i++] = feature;
+		}
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Returns the number of trie nodes.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return numberOfNodes.get();
+	}
+
+	/**
+	 * A node of the trie.
+	 */
+	private static class Node {
+
+		private volatile boolean pruned;
+		private final ConcurrentHashMap<Integer, Node> children = new ConcurrentHashMap<Integer, Node>(4);
+	}
+
+}
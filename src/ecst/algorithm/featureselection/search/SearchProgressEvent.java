@@ -0,0 +1,98 @@
+package ecst.algorithm.featureselection.search;
+
+import java.util.EventObject;
+
+/**
+ * An event fired by the branch-and-bound search to tell the listeners about
+ * the progress of the search.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class SearchProgressEvent extends EventObject {
+
+	private static final long serialVersionUID = 1L;
+
+	private long nodesExpanded;
+	private long nodesPruned;
+	private long evaluations;
+	private long elapsedTime;
+	private double bound;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param source
+	 * @param nodesExpanded
+	 * @param nodesPruned
+	 * @param evaluations
+	 * @param elapsedTime
+	 *            in ms
+	 * @param bound
+	 */
+	public SearchProgressEvent(BranchAndBound source, long nodesExpanded, long nodesPruned, long evaluations, long elapsedTime, double bound) {
+		super(source);
+		this.nodesExpanded = nodesExpanded;
+		this.nodesPruned = nodesPruned;
+		this.evaluations = evaluations;
+		this.elapsedTime = elapsedTime;
+		this.bound = bound;
+	}
+
+	/**
+	 * Asks the search to stop and to return the best subset found so far.
+	 */
+	public void stopSearch() {
+		((BranchAndBound) getSource()).stopSearch();
+	}
+
+	public long getNodesExpanded() {
+		return nodesExpanded;
+	}
+
+	public long getNodesPruned() {
+		return nodesPruned;
+	}
+
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * Returns the time since the start of the search in ms.
+	 * 
+	 * @return
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	/**
+	 * Returns the criterion value of the best full subset found so far.
+	 * 
+	 * @return
+	 */
+	public double getBound() {
+		return bound;
+	}
+
+	/**
+	 * Returns the number of evaluations per second.
+	 * 
+	 * @return
+	 */
+	public double getEvaluationsPerSecond() {
+		return elapsedTime > 0 ? evaluations * 1000.0 / elapsedTime : 0.0;
+	}
+
+	/**
+	 * Returns a short description of the progress.
+	 * 
+	 * @return
+	 */
+	public String getDescription() {
+		return String.format("Nodes: %d expanded, %d pruned | Bound: %.4f | %.0f evaluations/s", nodesExpanded, nodesPruned, bound,
+				getEvaluationsPerSecond());
+	}
+
+}
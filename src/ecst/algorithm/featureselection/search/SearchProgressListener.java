@@ -0,0 +1,21 @@
+package ecst.algorithm.featureselection.search;
+
+import java.util.EventListener;
+
+/**
+ * Interface for listeners of the progress of a feature subset search.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public interface SearchProgressListener extends EventListener {
+
+	/**
+	 * The search calls this method periodically and when it is finished. The
+	 * method may be called by several threads.
+	 * 
+	 * @param event
+	 */
+	public void searchProgressMade(SearchProgressEvent event);
+
+}
@@ -1,8 +1,9 @@
 package ecst.algorithm.featureselection.search;
 
-import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -11,7 +12,6 @@ import ecst.utilities.CommonUtilities;
 
 import weka.attributeSelection.ASEvaluation;
 import weka.attributeSelection.ASSearch;
-import weka.attributeSelection.SubsetEvaluator;
 import weka.core.Instances;
 import weka.core.OptionHandler;
 import weka.core.Utils;
@@ -25,6 +25,7 @@ import weka.core.Utils;
 public class WeightedFeatureSelection extends ASSearch implements OptionHandler {
 
 	private static final long serialVersionUID = 1L;
+	private static final int RANGES_PER_THREAD = 8;
 
 	private enum SEARCH_METHOD {
 		EXHAUSTIVE, SEQUENTIAL_FORWARD_SELECTION, SEQUENTIAL_BACKWARD_SELECTION
@@ -34,6 +35,7 @@ public class WeightedFeatureSelection extends ASSearch implements OptionHandler
 	private int[] weights;
 	private double minWeight;
 	private double maxWeight;
+	private int numberOfThreads;
 	private double bestMerit;
 	private BitSet bestBitSet;
 
@@ -43,6 +45,7 @@ public class WeightedFeatureSelection extends ASSearch implements OptionHandler
 	public WeightedFeatureSelection() {
 		minWeight = 0.0;
 		maxWeight = Double.POSITIVE_INFINITY;
+		numberOfThreads = 1;
 		bestMerit = Double.NEGATIVE_INFINITY;
 		searchMethod = SEARCH_METHOD.EXHAUSTIVE;
 	}
@@ -85,18 +88,23 @@ public class WeightedFeatureSelection extends ASSearch implements OptionHandler
 		String lowerString = null;
 		String upperString = null;
 		String weightsString = null;
+		String threadsString = null;
 		StringTokenizer tokenzier = null;
 		List<Integer> weightsList = new LinkedList<Integer>();
 
 		lowerString = Utils.getOption('L', options);
 		upperString = Utils.getOption('U', options);
 		weightsString = Utils.getOption('W', options);
+		threadsString = Utils.getOption('T', options);
 		if (!"".equals(lowerString)) {
 			minWeight = Double.parseDouble(lowerString);
 		}
 		if (!"".equals(upperString)) {
 			maxWeight = Double.parseDouble(upperString);
 		}
+		if (!"".equals(threadsString)) {
+			numberOfThreads = Math.max(1, Integer.parseInt(threadsString));
+		}
 		if (!"".equals(weightsString)) {
 			tokenzier = new StringTokenizer(weightsString, ",");
 			while (tokenzier.hasMoreTokens()) {
@@ -122,35 +130,63 @@ public class WeightedFeatureSelection extends ASSearch implements OptionHandler
 	 */
 	@Override
 	public int[] search(ASEvaluation ASEvaluator, Instances instances) throws Exception {
-		SubsetEvaluator evaluator = (SubsetEvaluator) ASEvaluator;
+		ParallelSubsetEvaluator parallelEvaluator = null;
 
 		initWeights(instances);
-		if (searchMethod.equals(SEARCH_METHOD.SEQUENTIAL_FORWARD_SELECTION)) {
-			return forwardSelection(evaluator, instances);
-		} else if (searchMethod.equals(SEARCH_METHOD.SEQUENTIAL_BACKWARD_SELECTION)) {
-			return backwardSelection(evaluator, instances);
+		parallelEvaluator = new ParallelSubsetEvaluator(ASEvaluator, numberOfThreads);
+		try {
+			if (searchMethod.equals(SEARCH_METHOD.SEQUENTIAL_FORWARD_SELECTION)) {
+				return forwardSelection(parallelEvaluator, instances);
+			} else if (searchMethod.equals(SEARCH_METHOD.SEQUENTIAL_BACKWARD_SELECTION)) {
+				return backwardSelection(parallelEvaluator, instances);
+			}
+			return exhaustiveSearch(parallelEvaluator, instances);
+		} finally {
+			parallelEvaluator.shutdown();
 		}
-		return exhaustiveSearch(evaluator, instances);
 	}
 
 	/**
 	 * Performs an exhaustive search with respect to the feature weights.
-	 * Evaluates only if lower <= weight <= upper
+	 * Evaluates only if lower <= weight <= upper; branches that cannot fulfill
+	 * the bounds are skipped. The subsets are split into ranges by the values
+	 * of the highest features and evaluated in parallel. Like the former
+	 * counter over all subsets, the ranges are merged in increasing order and
+	 * the empty subset is evaluated last.
 	 */
-	private int[] exhaustiveSearch(SubsetEvaluator evaluator, Instances instances) throws Exception {
-		BitSet bitSet = null;
-		BigInteger upperEndPlusOne = null;
-		BigInteger counter = BigInteger.ONE;
+	private int[] exhaustiveSearch(ParallelSubsetEvaluator evaluator, Instances instances) throws Exception {
+		int prefixFeatures = 0;
+		BitSet emptySet = null;
+		BitSet[] bestSubsets = null;
+		double[] merits = null;
+		List<BitSet> candidates = null;
+		List<Iterator<BitSet>> ranges = null;
 		int numAttributes = instances.numAttributes() - 1;
 
-		upperEndPlusOne = (new BigInteger("2")).pow(numAttributes).add(BigInteger.ONE);
-		do {
-			bitSet = CommonUtilities.bigIntegerToBitset(counter, numAttributes);
-			if (checkBounds(bitSet, numAttributes)) {
-				setBestSubset(evaluator.evaluateSubset(bitSet), bitSet, numAttributes);
+		if (evaluator.getNumberOfThreads() > 1) {
+			while (prefixFeatures < Math.min(numAttributes, 30) && (1 << prefixFeatures) < evaluator.getNumberOfThreads() * RANGES_PER_THREAD) {
+				prefixFeatures++;
 			}
-			counter = counter.add(BigInteger.ONE);
-		} while (!counter.equals(upperEndPlusOne));
+		}
+		ranges = new ArrayList<Iterator<BitSet>>(1 << prefixFeatures);
+		for (long prefix = 0; prefix < (1L << prefixFeatures); prefix++) {
+			ranges.add(new WeightedSubsetIterator(weights, numAttributes - prefixFeatures, prefix, minWeight, maxWeight, true));
+		}
+
+		merits = new double[ranges.size()];
+		bestSubsets = evaluator.findBestSubsets(ranges, merits);
+		for (int i = 0; i < bestSubsets.length; i++) {
+			if (bestSubsets[i] != null) {
+				setBestSubset(merits[i], bestSubsets[i], numAttributes);
+			}
+		}
+
+		emptySet = new BitSet(numAttributes);
+		if (checkBounds(emptySet, numAttributes)) {
+			candidates = new ArrayList<BitSet>(1);
+			candidates.add(emptySet);
+			setBestSubset(evaluator.evaluateSubsets(candidates)[0], emptySet, numAttributes);
+		}
 
 		return getBestIntArray(numAttributes);
 	}
@@ -163,28 +199,37 @@ public class WeightedFeatureSelection extends ASSearch implements OptionHandler
 	 * @return
 	 * @throws Exception
 	 */
-	private int[] forwardSelection(SubsetEvaluator evaluator, Instances instances) throws Exception {
-		double merit;
+	private int[] forwardSelection(ParallelSubsetEvaluator evaluator, Instances instances) throws Exception {
+		double[] merits = null;
 		int maxPosition;
 		BitSet bitSet = null;
+		BitSet candidate = null;
 		double currentBestMerit;
+		int[] positions = null;
+		List<BitSet> candidates = null;
 		int numAttributes = instances.numAttributes() - 1;
 
 		bitSet = new BitSet(numAttributes + 1);
 		for (int i = 0; i < numAttributes && checkUpperBound(bitSet, numAttributes); i++) {
-			maxPosition = -1;
-			currentBestMerit = Double.NEGATIVE_INFINITY;
+			positions = new int[numAttributes];
+			candidates = new ArrayList<BitSet>(numAttributes);
 			for (int j = 0; j < numAttributes; j++) {
 				if (!bitSet.get(j)) {
-					bitSet.set(j);
-					if (checkUpperBound(bitSet, numAttributes)) {
-						merit = evaluator.evaluateSubset(bitSet);
-						if (merit > currentBestMerit) {
-							currentBestMerit = merit;
-							maxPosition = j;
-						}
+					candidate = (BitSet) bitSet.clone();
+					candidate.set(j);
+					if (checkUpperBound(candidate, numAttributes)) {
+						positions[candidates.size()] = j;
+						candidates.add(candidate);
 					}
-					bitSet.clear(j);
+				}
+			}
+			maxPosition = -1;
+			currentBestMerit = Double.NEGATIVE_INFINITY;
+			merits = evaluator.evaluateSubsets(candidates);
+			for (int j = 0; j < merits.length; j++) {
+				if (merits[j] > currentBestMerit) {
+					currentBestMerit = merits[j];
+					maxPosition = positions[j];
 				}
 			}
 			if (maxPosition == -1) {
@@ -206,29 +251,38 @@ public class WeightedFeatureSelection extends ASSearch implements OptionHandler
 	 * @return
 	 * @throws Exception
 	 */
-	private int[] backwardSelection(SubsetEvaluator evaluator, Instances instances) throws Exception {
-		double merit;
+	private int[] backwardSelection(ParallelSubsetEvaluator evaluator, Instances instances) throws Exception {
+		double[] merits = null;
 		int maxPosition;
 		BitSet bitSet = null;
+		BitSet candidate = null;
 		double currentBestMerit;
+		int[] positions = null;
+		List<BitSet> candidates = null;
 		int numAttributes = instances.numAttributes() - 1;
 
 		bitSet = new BitSet(numAttributes + 1);
 		bitSet.set(0, numAttributes);
 		for (int i = 0; i < numAttributes && checkLowerBound(bitSet, numAttributes); i++) {
-			maxPosition = -1;
-			currentBestMerit = Double.NEGATIVE_INFINITY;
+			positions = new int[numAttributes];
+			candidates = new ArrayList<BitSet>(numAttributes);
 			for (int j = 0; j < numAttributes; j++) {
 				if (bitSet.get(j)) {
-					bitSet.clear(j);
-					if (checkLowerBound(bitSet, numAttributes)) {
-						merit = evaluator.evaluateSubset(bitSet);
-						if (merit > currentBestMerit) {
-							currentBestMerit = merit;
-							maxPosition = j;
-						}
+					candidate = (BitSet) bitSet.clone();
+					candidate.clear(j);
+					if (checkLowerBound(candidate, numAttributes)) {
+						positions[candidates.size()] = j;
+						candidates.add(candidate);
 					}
-					bitSet.set(j);
+				}
+			}
+			maxPosition = -1;
+			currentBestMerit = Double.NEGATIVE_INFINITY;
+			merits = evaluator.evaluateSubsets(candidates);
+			for (int j = 0; j < merits.length; j++) {
+				if (merits[j] > currentBestMerit) {
+					currentBestMerit = merits[j];
+					maxPosition = positions[j];
 				}
 			}
 			if (maxPosition == -1) {
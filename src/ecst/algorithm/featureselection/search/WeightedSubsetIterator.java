@@ -0,0 +1,167 @@
+package ecst.algorithm.featureselection.search;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class iterates over the subsets whose total feature weight is between
+ * a minimum and a maximum weight. The subsets are visited in increasing order
+ * of their bit masks by a depth-first search from the highest to the lowest
+ * feature, which skips whole branches whose weight cannot reach the bounds
+ * anymore. The features above freeFeatures are fixed by a prefix, so that the
+ * subsets can be split into ranges for parallel evaluation.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class WeightedSubsetIterator implements Iterator<BitSet> {
+
+	private int freeFeatures;
+	private int[] weights;
+	private double minWeight;
+	private double maxWeight;
+	private int weight;
+	private int depth;
+	private int[] choices;
+	private int[] negativeBelow;
+	private int[] positiveBelow;
+	private boolean skipEmpty;
+	private BitSet prefixSubset;
+	private BitSet nextSubset;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param weights
+	 *            weights of all features
+	 * @param freeFeatures
+	 *            the features 0, ..., freeFeatures - 1 are enumerated
+	 * @param prefix
+	 *            bit mask of the selected features above freeFeatures
+	 * @param minWeight
+	 * @param maxWeight
+	 * @param skipEmpty
+	 *            true to skip the empty subset
+	 */
+	public WeightedSubsetIterator(int[] weights, int freeFeatures, long prefix, double minWeight, double maxWeight, boolean skipEmpty) {
+		this.weights = weights;
+		this.freeFeatures = freeFeatures;
+		this.minWeight = minWeight;
+		this.maxWeight = maxWeight;
+		this.skipEmpty = skipEmpty;
+
+		prefixSubset = new BitSet(weights.length + 1);
+		for (int i = freeFeatures; i < weights.length; i++) {
+			if ((prefix & (1L << (i - freeFeatures))) != 0) {
+				prefixSubset.set(i);
+				weight += weights[i];
+			}
+		}
+
+		// the weights that the features below a feature can add at least/most
+		negativeBelow = new int[freeFeatures + 1];
+		positiveBelow = new int[freeFeatures + 1];
+		for (int i = 1; i <= freeFeatures; i++) {
+			negativeBelow[i] = negativeBelow[i - 1] + Math.min(0, weights[i - 1]);
+			positiveBelow[i] = positiveBelow[i - 1] + Math.max(0, weights[i - 1]);
+		}
+
+		choices = new int[freeFeatures];
+		depth = -1;
+		if (isFeasible(freeFeatures, weight)) {
+			depth = 0;
+			if (freeFeatures > 0) {
+				choices[0] = -1;
+			}
+		}
+		nextSubset = advance();
+	}
+
+	/**
+	 * Internal method to decide if a subset can be completed by the features
+	 * below the given feature so that its weight is between the bounds.
+	 * 
+	 * @param feature
+	 * @param currentWeight
+	 * @return
+	 */
+	private boolean isFeasible(int feature, int currentWeight) {
+		return currentWeight + negativeBelow[feature] <= maxWeight && currentWeight + positiveBelow[feature] >= minWeight;
+	}
+
+	/**
+	 * Internal method to continue the depth-first search until the next
+	 * subset is found. At depth d, the feature freeFeatures - 1 - d is
+	 * excluded (choice 0) or included (choice 1).
+	 * 
+	 * @return the next subset or null
+	 */
+	private BitSet advance() {
+		int feature;
+		BitSet subset = null;
+
+		while (depth >= 0) {
+			if (depth == freeFeatures) {
+				// leaf: the feasibility check of the last feature ensures the
+				// bounds
+				subset = (BitSet) prefixSubset.clone();
+				for (int i = 0; i < freeFeatures; i++) {
+					if (choices[i] == 1) {
+						subset.set(freeFeatures - 1 - i);
+					}
+				}
+				depth--;
+				if (!skipEmpty || !subset.isEmpty()) {
+					return subset;
+				}
+				continue;
+			}
+
+			feature = freeFeatures - 1 - depth;
+			if (choices[depth] == 1) {
+				weight -= weights[feature];
+			}
+			choices[depth]++;
+			if (choices[depth] > 1) {
+				depth--;
+				continue;
+			}
+			if (choices[depth] == 1) {
+				weight += weights[feature];
+			}
+			if (isFeasible(feature, weight)) {
+				depth++;
+				if (depth < freeFeatures) {
+					choices[depth] = -1;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return nextSubset != null;
+	}
+
+	@Override
+	public BitSet next() {
+		BitSet subset = nextSubset;
+
+		if (subset == null) {
+			throw new NoSuchElementException();
+		}
+		nextSubset = advance();
+		return subset;
+	}
+
+	/**
+	 * Not supported.
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -88,6 +88,15 @@ public class InterquartileRangeAndNormalizationAdapter extends PreprocessingAlgo
 		}
 	}
 
+	/**
+	 * Returns the normalization that is executed after the InterquartileRange.
+	 * 
+	 * @return
+	 */
+	public NormalizationAdapter getNormalizationAdapter() {
+		return normalizationAdapter;
+	}
+
 	/**
 	 * Returns the parameters of this algorithm.
 	 */
@@ -70,6 +70,44 @@ public class NormalizationAdapter extends PreprocessingAlgorithm {
 		return instances;
 	}
 
+	/**
+	 * Returns the minimum of each attribute determined in the training phase
+	 * (NaN if the attribute is not numeric).
+	 * 
+	 * @return
+	 */
+	public double[] getMinimum() {
+		return minimum;
+	}
+
+	/**
+	 * Returns the maximum of each attribute determined in the training phase
+	 * (NaN if the attribute is not numeric).
+	 * 
+	 * @return
+	 */
+	public double[] getMaximum() {
+		return maximum;
+	}
+
+	/**
+	 * Returns the factor that is applied to the normalized values.
+	 * 
+	 * @return
+	 */
+	public double getScale() {
+		return (Double) scale.getValue();
+	}
+
+	/**
+	 * Returns the value that is added to the normalized values.
+	 * 
+	 * @return
+	 */
+	public double getTranslation() {
+		return (Double) translation.getValue();
+	}
+
 	/**
 	 * Nothing to do here.
 	 */
@@ -1,8 +1,10 @@
 package ecst.combiner;
 
 import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
@@ -12,7 +14,13 @@ import ecst.algorithm.ClassificationAlgorithm;
 import ecst.algorithm.EvaluationAlgorithm;
 import ecst.algorithm.FeatureSelectionAlgorithm;
 import ecst.algorithm.PreprocessingAlgorithm;
+import ecst.algorithm.featureselection.SelectionCache;
+import ecst.algorithm.featureselection.search.SearchProgressEvent;
+import ecst.algorithm.featureselection.search.SearchProgressListener;
 import ecst.featureextraction.FeatureExtractor;
+import ecst.scoring.LatencyBenchmark;
+import ecst.utilities.FoldEvaluation;
+import ecst.utilities.InstancesKey;
 
 /**
  * This class combines the possible classification systems and trains the
@@ -82,7 +90,20 @@ public class Combiner {
 	 * @param description
 	 */
 	private void fireProgress(int counter, int numberOfCombinatinos, String description) {
-		ProgressEvent event = new ProgressEvent(this, (int) ((double) counter / (double) numberOfCombinatinos * 100.0), description);
+		fireProgress(counter, numberOfCombinatinos, description, null);
+	}
+
+	/**
+	 * Informs the progress listeners that progress has been made.
+	 * 
+	 * @param counter
+	 * @param numberOfCombinatinos
+	 * @param description
+	 * @param details
+	 *            progress of the current step or null
+	 */
+	private synchronized void fireProgress(int counter, int numberOfCombinatinos, String description, String details) {
+		ProgressEvent event = new ProgressEvent(this, (int) ((double) counter / (double) numberOfCombinatinos * 100.0), description, details);
 
 		for (ProgressListener listener : listeners) {
 			listener.progressMade(event);
@@ -132,12 +153,124 @@ public class Combiner {
 		return description.trim();
 	}
 
+	/**
+	 * Builds the description of the reused feature selections of this run.
+	 * 
+	 * @return
+	 */
+	private String buildSelectionCacheString() {
+		SelectionCache cache = SelectionCache.getSharedCache();
+
+		return "Feature selections: " + cache.getHits() + " reused, " + cache.getMisses() + " computed";
+	}
+
+	/**
+	 * Creates a listener that shows the progress of the feature subset search
+	 * and stops the search if the user pressed the cancel button.
+	 * 
+	 * @param counter
+	 * @param numberOfTasks
+	 * @param description
+	 * @return
+	 */
+	private SearchProgressListener createSearchProgressListener(final int counter, final int numberOfTasks, final String description) {
+		return new SearchProgressListener() {
+
+			@Override
+			public void searchProgressMade(SearchProgressEvent event) {
+				if (cancel) {
+					event.stopSearch();
+				}
+				fireProgress(counter, numberOfTasks, description, event.getDescription());
+			}
+		};
+	}
+
+	/**
+	 * Internal method to return the race of the classification systems that
+	 * are evaluated by the given evaluation algorithm on the given
+	 * preprocessed data. The folds depend on the preprocessed instances and
+	 * subject IDs, so only systems whose preprocessing leads to the same data
+	 * are compared fold by fold.
+	 * 
+	 * @param racingGroups
+	 * @param evaluation
+	 * @param data
+	 * @return
+	 */
+	private RacingGroup getRacingGroup(List<RacingGroup> racingGroups, EvaluationAlgorithm evaluation, PipelineData data) {
+		RacingGroup group = null;
+		InstancesKey dataKey = new InstancesKey(String.valueOf(data.getPreprocessedSubjectIDs()), data.getPreprocessedInstances());
+
+		for (RacingGroup racingGroup : racingGroups) {
+			if (racingGroup.evaluation == evaluation && racingGroup.dataKey.equals(dataKey)) {
+				return racingGroup;
+			}
+		}
+		group = new RacingGroup(evaluation, dataKey, new Race(inputModel.getRacingSignificanceLevel(), Runtime.getRuntime()
+				.availableProcessors()));
+		racingGroups.add(group);
+		return group;
+	}
+
+	/**
+	 * Internal method to race the classification systems of a group. The
+	 * systems are added to the output list afterwards; eliminated systems are
+	 * marked.
+	 * 
+	 * @param group
+	 * @param taskCounter
+	 * @param numberOfTasks
+	 * @return the new task counter
+	 * @throws Exception
+	 */
+	private int race(RacingGroup group, int taskCounter, int numberOfTasks) throws Exception {
+		int round = 0;
+		int finished = 0;
+		CombinerOutputModel outputModel = null;
+
+		while (group.race.hasNextRound()) {
+			fireProgress(taskCounter, numberOfTasks, "Racing with " + group.evaluation.getDefinition().getName() + ": fold " + (++round) + ", "
+					+ group.race.getNumberOfRemainingCandidates() + " of " + group.race.getNumberOfCandidates() + " systems remaining");
+			group.race.nextRound();
+			taskCounter += group.race.getNumberOfFinishedCandidates() - finished;
+			finished = group.race.getNumberOfFinishedCandidates();
+			if (cancel) {
+				return taskCounter;
+			}
+		}
+
+		for (Map.Entry<FoldEvaluation, CombinerOutputModel> entry : group.outputModels.entrySet()) {
+			outputModel = entry.getValue();
+			outputModel.setEliminatedAfterFold(group.race.getEliminatedAfterFold(entry.getKey()));
+			outputModel.setTime(outputModel.getTime() + entry.getKey().getTime());
+			outputModelList.add(outputModel);
+		}
+		return taskCounter;
+	}
+
 	/**
 	 * Combines all possible classification system and trains them.
 	 * 
 	 * @throws Exception
 	 */
 	public void process() throws Exception {
+		// feature selections of an earlier run cannot be reused
+		SelectionCache.getSharedCache().clear();
+		try {
+			processPipelines();
+		} finally {
+			// also after a cancel or an exception
+			SelectionCache.getSharedCache().clear();
+		}
+	}
+
+	/**
+	 * Internal method to combine and train all classification systems.
+	 * 
+	 * @throws Exception
+	 */
+	private void processPipelines() throws Exception {
 		int taskCounter;
 		int numberOfTasks;
 		boolean expection;
@@ -148,6 +281,9 @@ public class Combiner {
 		Instances instances = null;
 		Classifier classifier = null;
 		Evaluation evaluationResult = null;
+		FoldEvaluation foldEvaluation = null;
+		CombinerOutputModel outputModel = null;
+		List<RacingGroup> racingGroups = new LinkedList<RacingGroup>();
 
 		cancel = false;
 		expection = false;
@@ -195,7 +331,13 @@ public class Combiner {
 								data.setFeatureSelectedInstances(data.getPreprocessedInstances());
 							} else {
 								featureSelection.readEditorSettings();
-								data.setFeatureSelectedInstances(featureSelection.selectFeatures(data, classification.createClassifier()));
+								featureSelection.setSearchProgressListener(createSearchProgressListener(taskCounter, numberOfTasks,
+										buildStatusString(1, preprocessing, featureSelection, classification, evaluation)));
+								try {
+									data.setFeatureSelectedInstances(featureSelection.selectFeatures(data, classification.createClassifier()));
+								} finally {
+									featureSelection.setSearchProgressListener(null);
+								}
 							}
 							fireProgress(++taskCounter, numberOfTasks, buildStatusString(2, preprocessing, featureSelection, classification, evaluation));
 							if (cancel) {
@@ -212,14 +354,33 @@ public class Combiner {
 								return;
 							}
 
-							evaluationResult = evaluation.evaluate(data, classifier, featureSelection);
-							fireProgress(++taskCounter, numberOfTasks, buildStatusString(4, preprocessing, featureSelection, classification, evaluation));
+							foldEvaluation = null;
+							if (inputModel.isRacing()) {
+								foldEvaluation = evaluation.createFoldEvaluation(data, classifier, featureSelection);
+							}
+							if (foldEvaluation == null) {
+								evaluationResult = evaluation.evaluate(data, classifier, featureSelection);
+								fireProgress(++taskCounter, numberOfTasks, buildStatusString(4, preprocessing, featureSelection, classification, evaluation),
+										featureSelection != null ? buildSelectionCacheString() : null);
+							} else {
+								// the folds are evaluated by the race
+								evaluationResult = foldEvaluation.getEvaluation();
+							}
 
 							timeEnd = System.currentTimeMillis();
 
-							outputModelList.add(new CombinerOutputModel(inputModel.getInputFile(), data, evaluationResult, preprocessing, featureSelection,
+							outputModel = new CombinerOutputModel(inputModel.getInputFile(), data, classifier, evaluationResult, preprocessing, featureSelection,
 									classification, evaluation, inputModel.getFeatureExtractionAlgorithms(), inputModel.getFeatureExtractionModel(), timeEnd
-											- timeStart));
+											- timeStart);
+							if (inputModel.isMeasureLatency()) {
+								fireProgress(taskCounter, numberOfTasks, "Measuring latency of " + classification.getDefinition().getName());
+								measureLatency(outputModel);
+							}
+							if (foldEvaluation == null) {
+								outputModelList.add(outputModel);
+							} else {
+								getRacingGroup(racingGroups, evaluation, data).add(foldEvaluation, outputModel);
+							}
 
 							if (cancel) {
 								fireProgress(-1, 100, "canceling");
@@ -233,10 +394,74 @@ public class Combiner {
 				}
 			}
 		}
+		for (RacingGroup group : racingGroups) {
+			try {
+				taskCounter = race(group, taskCounter, numberOfTasks);
+			} catch (Exception e) {
+				e.printStackTrace();
+				expection = true;
+			}
+			if (cancel) {
+				fireProgress(-1, 100, "canceling");
+				return;
+			}
+		}
 		if (expection) {
 			fireProgress(-1, 100, "canceling");
 			throw new Exception("An exception occurred! See console output for details.");
 		}
 	}
 
+	/**
+	 * Internal method to measure the latency and the throughput of the trained
+	 * classifier. A failed measurement does not discard the classification
+	 * system.
+	 * 
+	 * @param outputModel
+	 */
+	private void measureLatency(CombinerOutputModel outputModel) {
+		try {
+			outputModel.setLatencyResult(new LatencyBenchmark(outputModel).run());
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * The classification systems that are raced on the same folds.
+	 */
+	private static class RacingGroup {
+
+		private InstancesKey dataKey;
+		private Race race;
+		private EvaluationAlgorithm evaluation;
+		private Map<FoldEvaluation, CombinerOutputModel> outputModels;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param evaluation
+		 * @param dataKey
+		 *            the key of the preprocessed data
+		 * @param race
+		 */
+		public RacingGroup(EvaluationAlgorithm evaluation, InstancesKey dataKey, Race race) {
+			this.evaluation = evaluation;
+			this.dataKey = dataKey;
+			this.race = race;
+			this.outputModels = new LinkedHashMap<FoldEvaluation, CombinerOutputModel>();
+		}
+
+		/**
+		 * Adds a classification system to the race.
+		 * 
+		 * @param foldEvaluation
+		 * @param outputModel
+		 */
+		public void add(FoldEvaluation foldEvaluation, CombinerOutputModel outputModel) {
+			race.addCandidate(foldEvaluation);
+			outputModels.put(foldEvaluation, outputModel);
+		}
+	}
+
 }
@@ -21,6 +21,9 @@ public class CombinerInputModel {
 
 	private String inputFile;
 	private boolean extractFeatures;
+	private boolean racing;
+	private double racingSignificanceLevel;
+	private boolean measureLatency;
 	private FeatureExtractionModel featureExtractionModel;
 	private List<FeatureExtractionAlgorithm> featureExtractionAlgorithms;
 	private List<PreprocessingAlgorithm> preprocessingAlgorithms;
@@ -37,6 +40,7 @@ public class CombinerInputModel {
 		featureSelectionAlgorithms = new LinkedList<FeatureSelectionAlgorithm>();
 		classificationAlgorithms = new LinkedList<ClassificationAlgorithm>();
 		evaluationAlgorithms = new LinkedList<EvaluationAlgorithm>();
+		racingSignificanceLevel = 0.05;
 	}
 
 	/**
@@ -57,6 +61,66 @@ public class CombinerInputModel {
 		this.extractFeatures = extractFeatures;
 	}
 
+	/**
+	 * Returns if the classification systems should be raced, i.e. if systems
+	 * that are significantly worse than the best system should be eliminated
+	 * before all folds are evaluated.
+	 * 
+	 * @return
+	 */
+	public boolean isRacing() {
+		return racing;
+	}
+
+	/**
+	 * Sets if the classification systems should be raced.
+	 * 
+	 * @param racing
+	 */
+	public void setRacing(boolean racing) {
+		this.racing = racing;
+	}
+
+	/**
+	 * Returns the significance level of the test that eliminates systems
+	 * during racing.
+	 * 
+	 * @return
+	 */
+	public double getRacingSignificanceLevel() {
+		return racingSignificanceLevel;
+	}
+
+	/**
+	 * Sets the significance level of the test that eliminates systems during
+	 * racing.
+	 * 
+	 * @param racingSignificanceLevel
+	 */
+	public void setRacingSignificanceLevel(double racingSignificanceLevel) {
+		this.racingSignificanceLevel = racingSignificanceLevel;
+	}
+
+	/**
+	 * Returns if the latency and the throughput of the trained classifiers
+	 * should be measured.
+	 * 
+	 * @return
+	 */
+	public boolean isMeasureLatency() {
+		return measureLatency;
+	}
+
+	/**
+	 * Sets if the latency and the throughput of the trained classifiers should
+	 * be measured.
+	 * 
+	 * @param measureLatency
+	 */
+	public void setMeasureLatency(boolean measureLatency) {
+		this.measureLatency = measureLatency;
+	}
+
 	/**
 	 * Returns the input file.
 	 * 
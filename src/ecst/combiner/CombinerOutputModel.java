@@ -3,6 +3,7 @@ package ecst.combiner;
 import java.util.LinkedList;
 import java.util.List;
 
+import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import ecst.algorithm.ClassificationAlgorithm;
 import ecst.algorithm.EvaluationAlgorithm;
@@ -12,6 +13,8 @@ import ecst.algorithm.PreprocessingAlgorithm;
 import ecst.algorithm.analysis.DynamicOperations;
 import ecst.algorithm.analysis.DynamicSpace;
 import ecst.featureextraction.FeatureExtractionModel;
+import ecst.scoring.CBenchmarkResult;
+import ecst.scoring.LatencyBenchmarkResult;
 
 /**
  * This class represents the trained pattern recognition pipeline. This class is
@@ -23,8 +26,10 @@ import ecst.featureextraction.FeatureExtractionModel;
 public class CombinerOutputModel implements Comparable<CombinerOutputModel> {
 
 	private long time;
+	private int eliminatedAfterFold;
 	private String filename;
 	private PipelineData data;
+	private Classifier classifier;
 	private Evaluation evaluationResult;
 	private List<DynamicSpace> preprocessingSpace;
 	private List<DynamicSpace> classificationSpace;
@@ -38,12 +43,16 @@ public class CombinerOutputModel implements Comparable<CombinerOutputModel> {
 	private EvaluationAlgorithm evaluationAlgorithm;
 	private List<FeatureExtractionAlgorithm> featureExtractionAlgorithms;
 	private FeatureExtractionModel featureExtractionModel;
+	private CBenchmarkResult benchmarkResult;
+	private LatencyBenchmarkResult latencyResult;
 
 	/**
 	 * Constructor.
 	 * 
 	 * @param filename
 	 * @param data
+	 * @param classifier
+	 *            the classifier trained on all data
 	 * @param evaluationResult
 	 * @param preprocessingAlgorithm
 	 * @param featureSelectionAlgorithm
@@ -52,7 +61,7 @@ public class CombinerOutputModel implements Comparable<CombinerOutputModel> {
 	 * @param featureExtractionAlgorithms
 	 * @param featureExtractionModel
 	 */
-	public CombinerOutputModel(String filename, PipelineData data, Evaluation evaluationResult, PreprocessingAlgorithm preprocessingAlgorithm,
+	public CombinerOutputModel(String filename, PipelineData data, Classifier classifier, Evaluation evaluationResult, PreprocessingAlgorithm preprocessingAlgorithm,
 			FeatureSelectionAlgorithm featureSelectionAlgorithm, ClassificationAlgorithm classificationAlgorithm, EvaluationAlgorithm evaluationAlgorithm,
 			List<FeatureExtractionAlgorithm> featureExtractionAlgorithms, FeatureExtractionModel featureExtractionModel, long time) {
 
@@ -63,6 +72,7 @@ public class CombinerOutputModel implements Comparable<CombinerOutputModel> {
 		this.evaluationAlgorithm = evaluationAlgorithm;
 		this.featureExtractionAlgorithms = featureExtractionAlgorithms;
 		this.data = data;
+		this.classifier = classifier;
 		this.time = time;
 		this.evaluationResult = evaluationResult;
 		this.featureExtractionModel = featureExtractionModel;
@@ -100,6 +110,30 @@ public class CombinerOutputModel implements Comparable<CombinerOutputModel> {
 		this.time = time;
 	}
 
+	/**
+	 * Returns true if this classification system was eliminated during racing,
+	 * i.e. its evaluation result contains only the first folds.
+	 * 
+	 * @return
+	 */
+	public boolean isEliminated() {
+		return eliminatedAfterFold > 0;
+	}
+
+	/**
+	 * Returns the number of the fold after which this classification system
+	 * was eliminated during racing or 0 if all folds were evaluated.
+	 * 
+	 * @return
+	 */
+	public int getEliminatedAfterFold() {
+		return eliminatedAfterFold;
+	}
+
+	public void setEliminatedAfterFold(int eliminatedAfterFold) {
+		this.eliminatedAfterFold = eliminatedAfterFold;
+	}
+
 	/**
 	 * Return the data object.
 	 * 
@@ -109,6 +143,16 @@ public class CombinerOutputModel implements Comparable<CombinerOutputModel> {
 		return data;
 	}
 
+	/**
+	 * Returns the classifier that was trained on all data (a grid search if
+	 * grid search was enabled).
+	 * 
+	 * @return
+	 */
+	public Classifier getClassifier() {
+		return classifier;
+	}
+
 	/**
 	 * Returns the name of the input file.
 	 * 
@@ -235,4 +279,41 @@ public class CombinerOutputModel implements Comparable<CombinerOutputModel> {
 		return featureExtractionOperations;
 	}
 
+	/**
+	 * Returns the result of the C benchmark or null if it was not run.
+	 * 
+	 * @return
+	 */
+	public CBenchmarkResult getBenchmarkResult() {
+		return benchmarkResult;
+	}
+
+	/**
+	 * Sets the result of the C benchmark.
+	 * 
+	 * @param benchmarkResult
+	 */
+	public void setBenchmarkResult(CBenchmarkResult benchmarkResult) {
+		this.benchmarkResult = benchmarkResult;
+	}
+
+	/**
+	 * Returns the measured latency and throughput of the trained classifier
+	 * or null if they were not measured.
+	 * 
+	 * @return
+	 */
+	public LatencyBenchmarkResult getLatencyResult() {
+		return latencyResult;
+	}
+
+	/**
+	 * Sets the measured latency and throughput of the trained classifier.
+	 * 
+	 * @param latencyResult
+	 */
+	public void setLatencyResult(LatencyBenchmarkResult latencyResult) {
+		this.latencyResult = latencyResult;
+	}
+
 }
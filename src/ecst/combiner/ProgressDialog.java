@@ -29,6 +29,7 @@ public class ProgressDialog extends JDialog implements ProgressListener {
 	private static final long serialVersionUID = 1L;
 
 	private JLabel infoLabel;
+	private JLabel detailsLabel;
 	private Combiner combiner;
 	private JButton cancelButton;
 	private JProgressBar progressBar;
@@ -74,6 +75,7 @@ public class ProgressDialog extends JDialog implements ProgressListener {
 		}
 		progressBar.setValue(event.getProgress());
 		infoLabel.setText(event.getDescription());
+		detailsLabel.setText(event.getDetails() != null ? event.getDetails() : " ");
 		pane.moveToFront(infoLabel);
 	}
 
@@ -110,6 +112,16 @@ public class ProgressDialog extends JDialog implements ProgressListener {
 		c.fill = GridBagConstraints.HORIZONTAL;
 		pane.add(infoLabel, c, 0);
 
+		detailsLabel = new JLabel(" ");
+		detailsLabel.setHorizontalAlignment(SwingConstants.CENTER);
+		c = new GridBagConstraints();
+		c.gridx = 0;
+		c.gridy = 1;
+		c.weightx = 1.0;
+		c.fill = GridBagConstraints.HORIZONTAL;
+		c.insets = new Insets(5, 0, 0, 0);
+		pane.add(detailsLabel, c);
+
 		cancelButton = new JButton("Cancel");
 		cancelButton.addActionListener(new ActionListener() {
 
@@ -125,7 +137,7 @@ public class ProgressDialog extends JDialog implements ProgressListener {
 		pane.add(cancelButton, c);
 
 		setTitle("Procressing pipeline combinations");
-		setSize(new Dimension(610, 105));
+		setSize(new Dimension(610, 130));
 		setModal(true);
 		setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
 		setLocationRelativeTo(ecst);
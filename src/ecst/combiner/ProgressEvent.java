@@ -15,14 +15,30 @@ public class ProgressEvent extends EventObject {
 
 	private int progress;
 	private String description;
+	private String details;
 
 	/**
 	 * Constructor.
 	 */
 	public ProgressEvent(Object source, int progress, String description) {
+		this(source, progress, description, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param source
+	 * @param progress
+	 * @param description
+	 * @param details
+	 *            progress of the current step, e.g. of the feature subset
+	 *            search, or null
+	 */
+	public ProgressEvent(Object source, int progress, String description, String details) {
 		super(source);
 		this.progress = progress;
 		this.description = description;
+		this.details = details;
 	}
 
 	/**
@@ -43,4 +59,13 @@ public class ProgressEvent extends EventObject {
 		return description;
 	}
 
+	/**
+	 * Returns a string describing the progress of the current step or null.
+	 * 
+	 * @return
+	 */
+	public String getDetails() {
+		return details;
+	}
+
 }
@@ -0,0 +1,301 @@
+package ecst.combiner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+import ecst.utilities.FoldEvaluation;
+import ecst.utilities.ThreadUtilities;
+
+/**
+ * This class races classification systems that are evaluated on the same
+ * folds (in the style of F-Race and Hoeffding races). In every round, the next
+ * fold of all remaining candidates is evaluated. After each round (starting
+ * with the round MINIMUM_FOLDS), every candidate is compared to the candidate
+ * with the best mean accuracy by a one-sided paired t-test over the evaluated
+ * folds; candidates that are significantly worse are eliminated and not
+ * evaluated any further. Since the tests are repeated for many candidates and
+ * rounds, the significance level is divided by the number of rounds with tests
+ * (Bonferroni) and the tests of a round are corrected by Holm's method, so that
+ * the probability of eliminating a candidate that is not worse than the best
+ * one is at most the significance level for the whole race.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class Race {
+
+	public static final int MINIMUM_FOLDS = 5;
+
+	private int numberOfThreads;
+	private double significanceLevel;
+	private List<FoldEvaluation> candidates;
+	private List<Integer> eliminatedAfterFold;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param significanceLevel
+	 *            significance level of the whole race
+	 * @param numberOfThreads
+	 *            the candidates of a round are evaluated in parallel
+	 */
+	public Race(double significanceLevel, int numberOfThreads) {
+		this.significanceLevel = significanceLevel;
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+		this.candidates = new ArrayList<FoldEvaluation>();
+		this.eliminatedAfterFold = new ArrayList<Integer>();
+	}
+
+	/**
+	 * Adds a candidate. All candidates must have the same folds.
+	 * 
+	 * @param candidate
+	 */
+	public void addCandidate(FoldEvaluation candidate) {
+		candidates.add(candidate);
+		eliminatedAfterFold.add(0);
+	}
+
+	/**
+	 * Returns true if a remaining candidate has folds that have not been
+	 * evaluated.
+	 * 
+	 * @return
+	 */
+	public boolean hasNextRound() {
+		return !getRemainingCandidates().isEmpty();
+	}
+
+	/**
+	 * Returns the number of candidates that have not been eliminated.
+	 * 
+	 * @return
+	 */
+	public int getNumberOfRemainingCandidates() {
+		int remaining = 0;
+
+		for (int i = 0; i < candidates.size(); i++) {
+			if (eliminatedAfterFold.get(i) == 0) {
+				remaining++;
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * Returns the number of candidates that were eliminated or whose folds
+	 * have all been evaluated.
+	 * 
+	 * @return
+	 */
+	public int getNumberOfFinishedCandidates() {
+		return candidates.size() - getRemainingCandidates().size();
+	}
+
+	public int getNumberOfCandidates() {
+		return candidates.size();
+	}
+
+	/**
+	 * Returns the number of the fold after which the given candidate was
+	 * eliminated or 0 if it was not eliminated.
+	 * 
+	 * @param candidate
+	 * @return
+	 */
+	public int getEliminatedAfterFold(FoldEvaluation candidate) {
+		return eliminatedAfterFold.get(candidates.indexOf(candidate));
+	}
+
+	/**
+	 * Evaluates the next fold of all remaining candidates and eliminates the
+	 * candidates that are significantly worse than the best candidate.
+	 * 
+	 * @throws Exception
+	 */
+	public void nextRound() throws Exception {
+		ExecutorService executor = null;
+		List<Future<Double>> futures = null;
+		List<FoldEvaluation> remaining = getRemainingCandidates();
+		int threads = Math.min(ThreadUtilities.getNumberOfThreads(numberOfThreads), remaining.size());
+
+		if (threads < 2) {
+			for (FoldEvaluation candidate : remaining) {
+				candidate.evaluateNextFold();
+			}
+		} else {
+			executor = ThreadUtilities.newFixedThreadPool(threads);
+			futures = new ArrayList<Future<Double>>(remaining.size());
+			try {
+				for (final FoldEvaluation candidate : remaining) {
+					futures.add(executor.submit(new Callable<Double>() {
+						@Override
+						public Double call() throws Exception {
+							return candidate.evaluateNextFold();
+						}
+					}));
+				}
+				for (Future<Double> future : futures) {
+					future.get();
+				}
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception) e.getCause();
+				}
+				throw new Exception(e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		eliminateCandidates();
+	}
+
+	/**
+	 * Internal method to return the candidates that are not eliminated and
+	 * have folds left.
+	 * 
+	 * @return
+	 */
+	private List<FoldEvaluation> getRemainingCandidates() {
+		List<FoldEvaluation> remaining = new ArrayList<FoldEvaluation>();
+
+		for (int i = 0; i < candidates.size(); i++) {
+			if (eliminatedAfterFold.get(i) == 0 && candidates.get(i).hasNextFold()) {
+				remaining.add(candidates.get(i));
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * Internal method to compare the candidates to the best candidate. Only
+	 * candidates with the same number of evaluated folds as the best one and
+	 * with folds left are compared.
+	 */
+	private void eliminateCandidates() {
+		int folds;
+		int best = -1;
+		int testingRounds;
+		double mean;
+		double bestMean = Double.NEGATIVE_INFINITY;
+		double roundSignificanceLevel;
+		double[] accuracies = null;
+		double[] bestAccuracies = null;
+		List<Integer> compared = new ArrayList<Integer>();
+		List<Double> pValues = new ArrayList<Double>();
+		Integer[] order = null;
+
+		for (int i = 0; i < candidates.size(); i++) {
+			if (eliminatedAfterFold.get(i) == 0) {
+				mean = mean(candidates.get(i).getAccuracies());
+				if (mean > bestMean) {
+					bestMean = mean;
+					best = i;
+				}
+			}
+		}
+		if (best < 0 || candidates.get(best).getAccuracies().length < MINIMUM_FOLDS) {
+			return;
+		}
+
+		bestAccuracies = candidates.get(best).getAccuracies();
+		folds = bestAccuracies.length;
+		for (int i = 0; i < candidates.size(); i++) {
+			accuracies = candidates.get(i).getAccuracies();
+			if (i == best || eliminatedAfterFold.get(i) != 0 || accuracies.length != folds || !candidates.get(i).hasNextFold()) {
+				continue;
+			}
+			compared.add(i);
+			pValues.add(pairedTTest(accuracies, bestAccuracies));
+		}
+
+		// tests take place after the rounds MINIMUM_FOLDS to numberOfFolds - 1
+		testingRounds = Math.max(1, candidates.get(best).getNumberOfFolds() - MINIMUM_FOLDS);
+		roundSignificanceLevel = significanceLevel / testingRounds;
+		order = sortByPValue(pValues);
+		for (int k = 0; k < order.length; k++) {
+			if (pValues.get(order[k]) > roundSignificanceLevel / (order.length - k)) {
+				break;
+			}
+			eliminatedAfterFold.set(compared.get(order[k]), folds);
+		}
+	}
+
+	/**
+	 * Internal method to compute the p-value of the one-sided paired t-test
+	 * whose alternative is that the mean of the given accuracies is lower than
+	 * the mean of the best accuracies.
+	 * 
+	 * @param accuracies
+	 * @param bestAccuracies
+	 * @return
+	 */
+	private double pairedTTest(double[] accuracies, double[] bestAccuracies) {
+		int n = accuracies.length;
+		double meanDifference = 0;
+		double variance = 0;
+		double[] differences = new double[n];
+
+		for (int j = 0; j < n; j++) {
+			differences[j] = accuracies[j] - bestAccuracies[j];
+			meanDifference += differences[j];
+		}
+		meanDifference /= n;
+		for (int j = 0; j < n; j++) {
+			variance += (differences[j] - meanDifference) * (differences[j] - meanDifference);
+		}
+		variance /= n - 1;
+
+		if (variance == 0) {
+			// the same difference in every fold
+			return meanDifference < 0 ? 0 : 1;
+		}
+		return new TDistribution(n - 1).cumulativeProbability(meanDifference / Math.sqrt(variance / n));
+	}
+
+	/**
+	 * Internal method to return the indices of the given p-values in
+	 * ascending order of the p-values.
+	 * 
+	 * @param pValues
+	 * @return
+	 */
+	private Integer[] sortByPValue(final List<Double> pValues) {
+		Integer[] order = new Integer[pValues.size()];
+
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				return Double.compare(pValues.get(first), pValues.get(second));
+			}
+		});
+		return order;
+	}
+
+	/**
+	 * Internal method to compute the mean of the given values.
+	 * 
+	 * @param values
+	 * @return
+	 */
+	private double mean(double[] values) {
+		double sum = 0;
+
+		for (double value : values) {
+			sum += value;
+		}
+		return values.length > 0 ? sum / values.length : Double.NEGATIVE_INFINITY;
+	}
+
+}
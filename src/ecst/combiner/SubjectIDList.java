@@ -38,12 +38,15 @@ public class SubjectIDList extends LinkedList<Integer> {
 	 * @return
 	 */
 	public List<Integer> getIndicesForID(Integer id) {
+		int i = 0;
 		List<Integer> result = new LinkedList<Integer>();
 
-		for (int i = 0; i < this.size(); i++) {
-			if (get(i).equals(id)) {
+		// iterate instead of get(i), which is linear in a linked list
+		for (Integer subjectID : this) {
+			if (subjectID.equals(id)) {
 				result.add(i);
 			}
+			i++;
 		}
 		return result;
 	}
@@ -10,6 +10,7 @@ import ecst.algorithm.definition.AlgorithmBox;
 import ecst.algorithm.definition.OperationDefinition;
 import ecst.combiner.CombinerOutputModel;
 import ecst.featureextraction.InputFile;
+import ecst.scoring.LatencyBenchmarkResult;
 import ecst.utilities.CommonUtilities;
 import ecst.utilities.FileUtilities;
 import ecst.utilities.MathUtilities;
@@ -110,6 +111,12 @@ public class AnalysisExport {
 		builder.append("Instances not correctly classified");
 		builder.append(FileUtilities.CSV_DELIMITER);
 		builder.append("Training and evaluation time (ms)");
+		builder.append(FileUtilities.CSV_DELIMITER);
+		builder.append("Latency p50 (ns)");
+		builder.append(FileUtilities.CSV_DELIMITER);
+		builder.append("Latency p99 (ns)");
+		builder.append(FileUtilities.CSV_DELIMITER);
+		builder.append("Throughput (instances/s)");
 		builder.append("\n");
 	}
 
@@ -136,6 +143,7 @@ public class AnalysisExport {
 		createSpaceXML(model, builder);
 		createOperationsXML(model, builder);
 		builder.append("</complexity>\n");
+		createLatencyXML(model, builder);
 		builder.append("</pipelineConfiguration>\n");
 	}
 
@@ -178,6 +186,7 @@ public class AnalysisExport {
 		createAttributesLatex(model, builder, numOperations);
 		createSpaceLatex(model, builder, numOperations);
 		createOperationsLatex(model, builder);
+		createLatencyLatex(model, builder, numOperations);
 
 		builder.append("\\bottomrule\n");
 		builder.append("\\end{tabularx}\n");
@@ -210,6 +219,72 @@ public class AnalysisExport {
 		builder.append(FileUtilities.CSV_DELIMITER);
 		
 		builder.append(FileUtilities.exportCSVString("" + model.getTime()));
+		builder.append(FileUtilities.CSV_DELIMITER);
+
+		createLatencyCSV(model, builder);
+	}
+
+	/**
+	 * Exports the measured latency and throughput (if they were measured).
+	 * 
+	 * @param model
+	 * @param builder
+	 */
+	private static void createLatencyXML(CombinerOutputModel model, StringBuilder builder) {
+		LatencyBenchmarkResult result = model.getLatencyResult();
+
+		if (result == null) {
+			return;
+		}
+		builder.append("<latency>\n");
+		builder.append("<p50>");
+		builder.append(FileUtilities.exportXMLString("" + result.getMedianLatency()));
+		builder.append("</p50>\n");
+		builder.append("<p99>");
+		builder.append(FileUtilities.exportXMLString("" + result.getHighLatency()));
+		builder.append("</p99>\n");
+		builder.append("<throughput>");
+		builder.append(FileUtilities.exportXMLString("" + result.getThroughput()));
+		builder.append("</throughput>\n");
+		if (result.isIncomplete()) {
+			builder.append("<incomplete>true</incomplete>\n");
+		}
+		builder.append("</latency>\n");
+	}
+
+	private static void createLatencyLatex(CombinerOutputModel model, StringBuilder builder, int numOperations) {
+		NumberFormat format = DecimalFormat.getInstance();
+		LatencyBenchmarkResult result = model.getLatencyResult();
+
+		if (result == null) {
+			return;
+		}
+		builder.append("Latency & \\multicolumn{");
+		builder.append(numOperations);
+		builder.append("}{L}{p50: ");
+		builder.append(format.format(result.getMedianLatency()));
+		builder.append(" ns, p99: ");
+		builder.append(format.format(result.getHighLatency()));
+		builder.append(" ns, ");
+		builder.append(format.format(Math.round(result.getThroughput())));
+		builder.append(" instances/s} \\\\\n");
+	}
+
+	private static void createLatencyCSV(CombinerOutputModel model, StringBuilder builder) {
+		NumberFormat decimalFormat = DecimalFormat.getInstance();
+		LatencyBenchmarkResult result = model.getLatencyResult();
+
+		if (result != null) {
+			builder.append(FileUtilities.exportCSVString(decimalFormat.format(result.getMedianLatency())));
+		}
+		builder.append(FileUtilities.CSV_DELIMITER);
+		if (result != null) {
+			builder.append(FileUtilities.exportCSVString(decimalFormat.format(result.getHighLatency())));
+		}
+		builder.append(FileUtilities.CSV_DELIMITER);
+		if (result != null) {
+			builder.append(FileUtilities.exportCSVString(decimalFormat.format(result.getThroughput())));
+		}
 	}
 
 	private static void createConfusionMatrixCSV(CombinerOutputModel model, StringBuilder builder) {
@@ -0,0 +1,916 @@
+package ecst.scoring;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import weka.classifiers.Classifier;
+import weka.classifiers.functions.LibSVM;
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.functions.Logistic;
+import weka.classifiers.meta.ClassificationViaRegression;
+import weka.classifiers.rules.PART;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.j48.ClassifierTree;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.Normalize;
+import ecst.scoring.ModelCompiler.Node;
+import ecst.scoring.PipelineFormat.Reader;
+import ecst.scoring.PipelineFormat.Writer;
+
+/**
+ * This class classifies instances by the parameters of a trained classifier
+ * that are stored in primitive arrays. It is the counterpart of the
+ * ModelCompiler for the PipelineFormat: the arrays are written to and read
+ * from a file, and the model is interpreted instead of compiled, so that
+ * loading a model does not start the Java compiler. The arithmetic is the
+ * same as in the classes that are generated by the ModelCompiler (and in
+ * WEKA); instances with missing values are left to the WEKA classifier.
+ * 
+ * The models of J48, PART, LinearRegression, ClassificationViaRegression with
+ * LinearRegression, Logistic and LibSVM (without probability estimates) are
+ * supported.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public abstract class ArrayModel implements CompiledModel {
+
+	static final int NONE = 0;
+	static final int TREE = 1;
+	static final int RULES = 2;
+	static final int LINEAR = 3;
+	static final int LOGISTIC = 4;
+	static final int SVM = 5;
+
+	/**
+	 * Returns the type of the model in the PipelineFormat.
+	 * 
+	 * @return
+	 */
+	abstract int getType();
+
+	/**
+	 * Writes the arrays of the model.
+	 * 
+	 * @param writer
+	 */
+	abstract void write(Writer writer);
+
+	/**
+	 * Returns the model of the classifier or null if the classifier is not
+	 * supported.
+	 * 
+	 * @param classifier
+	 *            the trained classifier
+	 * @param header
+	 *            the format of the training instances
+	 * @return
+	 */
+	public static ArrayModel create(Classifier classifier, Instances header) {
+		Class<?> type = classifier.getClass();
+
+		try {
+			if (type == J48.class) {
+				return new Tree((J48) classifier, header);
+			} else if (type == PART.class) {
+				return new Rules((PART) classifier, header);
+			} else if (type == LinearRegression.class || type == ClassificationViaRegression.class) {
+				return new Linear(classifier, header);
+			} else if (type == Logistic.class) {
+				return new LogisticModel((Logistic) classifier, header);
+			} else if (type == LibSVM.class) {
+				return new SVMModel((LibSVM) classifier, header);
+			}
+		} catch (Exception e) {
+			// the model is not supported
+		}
+		return null;
+	}
+
+	/**
+	 * Reads a model of the given type.
+	 * 
+	 * @param type
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 */
+	static ArrayModel read(int type, Reader reader) throws IOException {
+		switch (type) {
+		case TREE:
+			return new Tree(reader);
+		case RULES:
+			return new Rules(reader);
+		case LINEAR:
+			return new Linear(reader);
+		case LOGISTIC:
+			return new LogisticModel(reader);
+		case SVM:
+			return new SVMModel(reader);
+		default:
+			throw new IOException("Unknown model type " + type);
+		}
+	}
+
+	/**
+	 * Internal method to return the subset of a split of J48 or PART to which
+	 * a value is assigned, like the conditions of the ModelCompiler.
+	 * 
+	 * @param type
+	 * @param splitPoint
+	 * @param value
+	 * @return
+	 */
+	private static int getSubset(int type, double splitPoint, double value) {
+		if (type == ModelCompiler.NOMINAL) {
+			return (int) value;
+		}
+		if (type == ModelCompiler.BINARY_NOMINAL) {
+			return (int) value == (int) splitPoint ? 0 : 1;
+		}
+		// like Utils.smOrEq()
+		return value - splitPoint < Utils.SMALL ? 0 : 1;
+	}
+
+	/**
+	 * Internal method to check that all attributes except the class are
+	 * numeric.
+	 * 
+	 * @param header
+	 */
+	private static void checkNumeric(Instances header) {
+		for (int i = 0; i < header.numAttributes(); i++) {
+			if (i != header.classIndex() && !header.attribute(i).isNumeric()) {
+				throw new IllegalArgumentException("Nominal attribute " + header.attribute(i).name() + " is not supported");
+			}
+		}
+	}
+
+	/**
+	 * A J48 tree. The nodes are stored in preorder; a node without attribute
+	 * is a leaf.
+	 */
+	static class Tree extends ArrayModel {
+
+		private int numClasses;
+		private int[] attributes;
+		private int[] types;
+		private double[] splitPoints;
+		private int[] firstChildren;
+		private int[] childCounts;
+		private int[] children;
+		private int[] leaves;
+		private double[] distributions;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param j48
+		 * @param header
+		 * @throws Exception
+		 */
+		public Tree(J48 j48, Instances header) throws Exception {
+			int childCount = 0;
+			List<double[]> leafList = new ArrayList<double[]>();
+			List<Node> nodes = new ArrayList<Node>();
+			Map<Node, Integer> indices = new HashMap<Node, Integer>();
+			Node root = new ModelCompiler(j48, header).createTreeNode((ClassifierTree) ModelCompiler.getField(J48.class, j48, "m_root"),
+					j48.getUseLaplace(), leafList);
+
+			collect(root, nodes);
+			numClasses = header.numClasses();
+			attributes = new int[nodes.size()];
+			types = new int[nodes.size()];
+			splitPoints = new double[nodes.size()];
+			firstChildren = new int[nodes.size()];
+			childCounts = new int[nodes.size()];
+			leaves = new int[nodes.size()];
+			for (Node node : nodes) {
+				childCount += node.children == null ? 0 : node.children.length;
+			}
+			children = new int[childCount];
+			childCount = 0;
+			for (int i = 0; i < nodes.size(); i++) {
+				indices.put(nodes.get(i), i);
+			}
+			for (int i = 0; i < nodes.size(); i++) {
+				attributes[i] = nodes.get(i).children == null ? -1 : nodes.get(i).attribute;
+				types[i] = nodes.get(i).type;
+				splitPoints[i] = nodes.get(i).splitPoint;
+				leaves[i] = nodes.get(i).leaf;
+				firstChildren[i] = childCount;
+				if (nodes.get(i).children != null) {
+					childCounts[i] = nodes.get(i).children.length;
+					for (Node child : nodes.get(i).children) {
+						children[childCount++] = indices.get(child);
+					}
+				}
+			}
+			distributions = flatten(leafList, numClasses);
+		}
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param reader
+		 */
+		public Tree(Reader reader) {
+			numClasses = reader.getInt();
+			attributes = reader.getInts();
+			types = reader.getInts();
+			splitPoints = reader.getDoubles();
+			firstChildren = reader.getInts();
+			childCounts = reader.getInts();
+			children = reader.getInts();
+			leaves = reader.getInts();
+			distributions = reader.getDoubles();
+		}
+
+		@Override
+		int getType() {
+			return TREE;
+		}
+
+		@Override
+		void write(Writer writer) {
+			writer.putInt(numClasses);
+			writer.putInts(attributes);
+			writer.putInts(types);
+			writer.putDoubles(splitPoints);
+			writer.putInts(firstChildren);
+			writer.putInts(childCounts);
+			writer.putInts(children);
+			writer.putInts(leaves);
+			writer.putDoubles(distributions);
+		}
+
+		@Override
+		public double[] distribution(double[] v) {
+			int node = 0;
+			int subset;
+			double value;
+
+			while (attributes[node] >= 0) {
+				value = v[attributes[node]];
+				if (Double.isNaN(value)) {
+					return null;
+				}
+				subset = getSubset(types[node], splitPoints[node], value);
+				if (subset < 0 || subset >= childCounts[node]) {
+					return null;
+				}
+				node = children[firstChildren[node] + subset];
+			}
+			return copy(distributions, leaves[node], numClasses);
+		}
+
+		/**
+		 * Internal method to collect the nodes in preorder.
+		 * 
+		 * @param node
+		 * @param nodes
+		 */
+		private static void collect(Node node, List<Node> nodes) {
+			nodes.add(node);
+			if (node.children != null) {
+				for (Node child : node.children) {
+					collect(child, nodes);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The rules of PART. The conditions of rule i are the conditions from
+	 * starts[i] to starts[i + 1]; the first rule that covers an instance
+	 * returns its distribution.
+	 */
+	static class Rules extends ArrayModel {
+
+		private int numClasses;
+		private int[] starts;
+		private int[] attributes;
+		private int[] types;
+		private double[] splitPoints;
+		private int[] subsets;
+		private double[] distributions;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param part
+		 * @param header
+		 * @throws Exception
+		 */
+		public Rules(PART part, Instances header) throws Exception {
+			int count = 0;
+			List<double[]> leafList = new ArrayList<double[]>();
+			List<List<Node>> rules = new ModelCompiler(part, header).createRules(part, leafList);
+
+			numClasses = header.numClasses();
+			starts = new int[rules.size() + 1];
+			for (int i = 0; i < rules.size(); i++) {
+				count += rules.get(i).size();
+				starts[i + 1] = count;
+			}
+			attributes = new int[count];
+			types = new int[count];
+			splitPoints = new double[count];
+			subsets = new int[count];
+			count = 0;
+			for (List<Node> rule : rules) {
+				for (Node condition : rule) {
+					attributes[count] = condition.attribute;
+					types[count] = condition.type;
+					splitPoints[count] = condition.splitPoint;
+					subsets[count++] = condition.subset;
+				}
+			}
+			distributions = flatten(leafList, numClasses);
+		}
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param reader
+		 */
+		public Rules(Reader reader) {
+			numClasses = reader.getInt();
+			starts = reader.getInts();
+			attributes = reader.getInts();
+			types = reader.getInts();
+			splitPoints = reader.getDoubles();
+			subsets = reader.getInts();
+			distributions = reader.getDoubles();
+		}
+
+		@Override
+		int getType() {
+			return RULES;
+		}
+
+		@Override
+		void write(Writer writer) {
+			writer.putInt(numClasses);
+			writer.putInts(starts);
+			writer.putInts(attributes);
+			writer.putInts(types);
+			writer.putDoubles(splitPoints);
+			writer.putInts(subsets);
+			writer.putDoubles(distributions);
+		}
+
+		@Override
+		public double[] distribution(double[] v) {
+			int j;
+			double value;
+
+			for (int i = 0; i < starts.length - 1; i++) {
+				for (j = starts[i]; j < starts[i + 1]; j++) {
+					value = v[attributes[j]];
+					if (Double.isNaN(value)) {
+						return null;
+					}
+					if (getSubset(types[j], splitPoints[j], value) != subsets[j]) {
+						break;
+					}
+				}
+				if (j == starts[i + 1]) {
+					return copy(distributions, i, numClasses);
+				}
+			}
+			// WEKA fails if no rule covers the instance
+			return null;
+		}
+	}
+
+	/**
+	 * A LinearRegression (one regression for a numeric class) or a
+	 * ClassificationViaRegression with LinearRegressions (one regression per
+	 * class). The terms of regression r are the terms from starts[r] to
+	 * starts[r + 1].
+	 */
+	static class Linear extends ArrayModel {
+
+		private int classification;
+		private int[] starts;
+		private int[] columns;
+		private double[] coefficients;
+		private double[] intercepts;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param classifier
+		 * @param header
+		 * @throws Exception
+		 */
+		public Linear(Classifier classifier, Instances header) throws Exception {
+			int classIndex;
+			int column;
+			boolean[] selected = null;
+			double[] weights = null;
+			Classifier[] regressions = new Classifier[] { classifier };
+			List<Integer> columnList = new ArrayList<Integer>();
+			List<Double> coefficientList = new ArrayList<Double>();
+
+			checkNumeric(header);
+			if (classifier instanceof ClassificationViaRegression) {
+				classification = 1;
+				regressions = (Classifier[]) ModelCompiler.getField(ClassificationViaRegression.class, classifier, "m_Classifiers");
+			} else if (header.classAttribute().isNominal()) {
+				throw new IllegalArgumentException("Regression with a nominal class is not supported");
+			}
+			starts = new int[regressions.length + 1];
+			intercepts = new double[regressions.length];
+			for (int r = 0; r < regressions.length; r++) {
+				if (regressions[r].getClass() != LinearRegression.class) {
+					throw new IllegalArgumentException(regressions[r].getClass().getName() + " is not supported");
+				}
+				classIndex = (Integer) ModelCompiler.getField(LinearRegression.class, regressions[r], "m_ClassIndex");
+				selected = (boolean[]) ModelCompiler.getField(LinearRegression.class, regressions[r], "m_SelectedAttributes");
+				weights = (double[]) ModelCompiler.getField(LinearRegression.class, regressions[r], "m_Coefficients");
+				column = 0;
+				for (int j = 0; j < header.numAttributes(); j++) {
+					if (j != classIndex && selected[j]) {
+						columnList.add(j);
+						coefficientList.add(weights[column++]);
+					}
+				}
+				intercepts[r] = weights[column];
+				starts[r + 1] = columnList.size();
+			}
+			columns = new int[columnList.size()];
+			coefficients = new double[columnList.size()];
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = columnList.get(i);
+				coefficients[i] = coefficientList.get(i);
+			}
+		}
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param reader
+		 */
+		public Linear(Reader reader) {
+			classification = reader.getInt();
+			starts = reader.getInts();
+			columns = reader.getInts();
+			coefficients = reader.getDoubles();
+			intercepts = reader.getDoubles();
+		}
+
+		@Override
+		int getType() {
+			return LINEAR;
+		}
+
+		@Override
+		void write(Writer writer) {
+			writer.putInt(classification);
+			writer.putInts(starts);
+			writer.putInts(columns);
+			writer.putDoubles(coefficients);
+			writer.putDoubles(intercepts);
+		}
+
+		@Override
+		public double[] distribution(double[] v) {
+			double sum = 0;
+			double[] result = new double[intercepts.length];
+
+			for (int r = 0; r < intercepts.length; r++) {
+				for (int j = starts[r]; j < starts[r + 1]; j++) {
+					result[r] += coefficients[j] * v[columns[j]];
+				}
+				result[r] += intercepts[r];
+				// WEKA replaces missing values
+				if (Double.isNaN(result[r])) {
+					return null;
+				}
+			}
+			if (classification == 0) {
+				return result;
+			}
+			// like ClassificationViaRegression
+			for (int r = 0; r < result.length; r++) {
+				if (result[r] > 1) {
+					result[r] = 1;
+				}
+				if (result[r] < 0) {
+					result[r] = 0;
+				}
+				sum += result[r];
+			}
+			if (sum != 0) {
+				Utils.normalize(result, sum);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * A Logistic regression. The parameters of the predictor k and the class j
+	 * are stored at k * (numClasses - 1) + j; predictor 0 is the intercept.
+	 */
+	static class LogisticModel extends ArrayModel {
+
+		private int numClasses;
+		private int[] columns;
+		private double[] parameters;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param logistic
+		 * @param header
+		 * @throws Exception
+		 */
+		public LogisticModel(Logistic logistic, Instances header) throws Exception {
+			int numPredictors = (Integer) ModelCompiler.getField(Logistic.class, logistic, "m_NumPredictors");
+			int classIndex = (Integer) ModelCompiler.getField(Logistic.class, logistic, "m_ClassIndex");
+			double[][] par = (double[][]) ModelCompiler.getField(Logistic.class, logistic, "m_Par");
+			Instances format = ((Filter) ModelCompiler.getField(Logistic.class, logistic, "m_AttFilter")).getOutputFormat();
+			List<Integer> columnList = new ArrayList<Integer>();
+
+			checkNumeric(header);
+			numClasses = (Integer) ModelCompiler.getField(Logistic.class, logistic, "m_NumClasses");
+			// the attributes that are not removed as useless
+			for (int k = 0; k <= numPredictors; k++) {
+				if (k != classIndex) {
+					columnList.add(header.attribute(format.attribute(k).name()).index());
+				}
+			}
+			columns = new int[columnList.size()];
+			parameters = new double[(columns.length + 1) * (numClasses - 1)];
+			for (int k = 0; k <= columns.length; k++) {
+				if (k > 0) {
+					columns[k - 1] = columnList.get(k - 1);
+				}
+				for (int j = 0; j < numClasses - 1; j++) {
+					parameters[k * (numClasses - 1) + j] = par[k][j];
+				}
+			}
+		}
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param reader
+		 */
+		public LogisticModel(Reader reader) {
+			numClasses = reader.getInt();
+			columns = reader.getInts();
+			parameters = reader.getDoubles();
+		}
+
+		@Override
+		int getType() {
+			return LOGISTIC;
+		}
+
+		@Override
+		void write(Writer writer) {
+			writer.putInt(numClasses);
+			writer.putInts(columns);
+			writer.putDoubles(parameters);
+		}
+
+		@Override
+		public double[] distribution(double[] v) {
+			int stride = numClasses - 1;
+			double sum;
+			double[] s = new double[numClasses];
+			double[] result = new double[numClasses];
+
+			for (int j = 0; j < stride; j++) {
+				s[j] = 0;
+				s[j] += parameters[j] * 1.0;
+				for (int k = 1; k <= columns.length; k++) {
+					s[j] += parameters[k * stride + j] * v[columns[k - 1]];
+				}
+				// WEKA replaces missing values
+				if (Double.isNaN(s[j])) {
+					return null;
+				}
+			}
+			for (int m = 0; m < numClasses; m++) {
+				sum = 0;
+				for (int n = 0; n < stride; n++) {
+					sum += Math.exp(s[n] - s[m]);
+				}
+				result[m] = 1 / (sum + Math.exp(-s[m]));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * A LibSVM model. The support vectors are stored in one flat array; the
+	 * coefficients of the support vectors for the machines of class c are
+	 * stored at c * l.
+	 */
+	static class SVMModel extends ArrayModel {
+
+		private int numClasses;
+		private int svmType;
+		private int kernelType;
+		private int degree;
+		private double gamma;
+		private double coef0;
+		private int normalize;
+		private double scale;
+		private double translation;
+		private int[] columns;
+		private double[] minimum;
+		private double[] range;
+		private double[] vectors;
+		private double[] coefficients;
+		private double[] rho;
+		private int[] counts;
+		private int[] labels;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param libsvm
+		 * @param header
+		 * @throws Exception
+		 */
+		public SVMModel(LibSVM libsvm, Instances header) throws Exception {
+			int n = header.numAttributes() - 1;
+			int l;
+			int[] positions = new int[header.numAttributes()];
+			double[] minArray = null;
+			double[] maxArray = null;
+			svm_model model = (svm_model) ModelCompiler.getField(LibSVM.class, libsvm, "m_Model");
+			svm_parameter parameter = model.param;
+			Filter filter = (Filter) ModelCompiler.getField(LibSVM.class, libsvm, "m_Filter");
+			boolean classification = parameter.svm_type == svm_parameter.C_SVC || parameter.svm_type == svm_parameter.NU_SVC;
+
+			checkNumeric(header);
+			if (libsvm.getProbabilityEstimates() && classification) {
+				throw new IllegalArgumentException("Probability estimates are not supported");
+			}
+			if (!classification && parameter.svm_type != svm_parameter.ONE_CLASS && header.classAttribute().isNominal()) {
+				throw new IllegalArgumentException("Regression with a nominal class is not supported");
+			}
+			if (filter != null && !(filter instanceof Normalize)) {
+				throw new IllegalArgumentException("Filter " + filter.getClass().getName() + " is not supported");
+			}
+			if (parameter.kernel_type != svm_parameter.LINEAR && parameter.kernel_type != svm_parameter.POLY
+					&& parameter.kernel_type != svm_parameter.RBF && parameter.kernel_type != svm_parameter.SIGMOID) {
+				throw new IllegalArgumentException("Kernel type " + parameter.kernel_type + " is not supported");
+			}
+
+			numClasses = header.numClasses();
+			svmType = parameter.svm_type;
+			kernelType = parameter.kernel_type;
+			degree = parameter.degree;
+			gamma = parameter.gamma;
+			coef0 = parameter.coef0;
+			columns = new int[n];
+			minimum = new double[n];
+			range = new double[n];
+			for (int a = 0, p = 0; a < header.numAttributes(); a++) {
+				positions[a] = a == header.classIndex() ? -1 : p;
+				if (a != header.classIndex()) {
+					columns[p++] = a;
+				}
+			}
+			if (filter != null) {
+				normalize = 1;
+				scale = ((Normalize) filter).getScale();
+				translation = ((Normalize) filter).getTranslation();
+				minArray = ((Normalize) filter).getMinArray();
+				maxArray = ((Normalize) filter).getMaxArray();
+				for (int p = 0; p < n; p++) {
+					minimum[p] = minArray[columns[p]];
+					// zero marks the attributes that are set to zero
+					range[p] = Double.isNaN(minimum[p]) || maxArray[columns[p]] == minimum[p] ? 0 : maxArray[columns[p]] - minimum[p];
+				}
+			}
+
+			l = model.l;
+			vectors = new double[l * n];
+			for (int i = 0; i < l; i++) {
+				for (svm_node node : model.SV[i]) {
+					vectors[i * n + positions[node.index - 1]] = node.value;
+				}
+			}
+			coefficients = new double[model.sv_coef.length * l];
+			for (int c = 0; c < model.sv_coef.length; c++) {
+				System.arraycopy(model.sv_coef[c], 0, coefficients, c * l, l);
+			}
+			rho = model.rho.clone();
+			counts = classification ? model.nSV.clone() : new int[0];
+			labels = classification ? model.label.clone() : new int[0];
+		}
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param reader
+		 */
+		public SVMModel(Reader reader) {
+			numClasses = reader.getInt();
+			svmType = reader.getInt();
+			kernelType = reader.getInt();
+			degree = reader.getInt();
+			gamma = reader.getDouble();
+			coef0 = reader.getDouble();
+			normalize = reader.getInt();
+			scale = reader.getDouble();
+			translation = reader.getDouble();
+			columns = reader.getInts();
+			minimum = reader.getDoubles();
+			range = reader.getDoubles();
+			vectors = reader.getDoubles();
+			coefficients = reader.getDoubles();
+			rho = reader.getDoubles();
+			counts = reader.getInts();
+			labels = reader.getInts();
+		}
+
+		@Override
+		int getType() {
+			return SVM;
+		}
+
+		@Override
+		void write(Writer writer) {
+			writer.putInt(numClasses);
+			writer.putInt(svmType);
+			writer.putInt(kernelType);
+			writer.putInt(degree);
+			writer.putDouble(gamma);
+			writer.putDouble(coef0);
+			writer.putInt(normalize);
+			writer.putDouble(scale);
+			writer.putDouble(translation);
+			writer.putInts(columns);
+			writer.putDoubles(minimum);
+			writer.putDoubles(range);
+			writer.putDoubles(vectors);
+			writer.putDoubles(coefficients);
+			writer.putDoubles(rho);
+			writer.putInts(counts);
+			writer.putInts(labels);
+		}
+
+		@Override
+		public double[] distribution(double[] v) {
+			int n = columns.length;
+			int l = n == 0 ? 0 : vectors.length / n;
+			int p = 0;
+			int best = 0;
+			int start = 0;
+			int end;
+			double sum;
+			double value;
+			double[] x = new double[n];
+			double[] k = new double[l];
+			double[] result = new double[numClasses];
+			int[] starts = null;
+			int[] votes = null;
+
+			for (int j = 0; j < n; j++) {
+				value = v[columns[j]];
+				// WEKA replaces missing values
+				if (Double.isNaN(value)) {
+					return null;
+				}
+				x[j] = normalize == 0 ? value : range[j] == 0 ? 0 : (value - minimum[j]) / range[j] * scale + translation;
+			}
+			for (int i = 0, o = 0; i < l; i++, o += n) {
+				sum = 0;
+				for (int j = 0; j < n; j++) {
+					if (kernelType == svm_parameter.RBF) {
+						value = x[j] - vectors[o + j];
+						sum += value * value;
+					} else {
+						sum += x[j] * vectors[o + j];
+					}
+				}
+				k[i] = kernel(sum);
+			}
+
+			if (svmType != svm_parameter.C_SVC && svmType != svm_parameter.NU_SVC) {
+				sum = 0;
+				for (int i = 0; i < l; i++) {
+					sum += coefficients[i] * k[i];
+				}
+				sum -= rho[0];
+				result[0] = svmType == svm_parameter.ONE_CLASS ? (sum > 0 ? 1 : 0) : sum;
+				return result;
+			}
+
+			// one-against-one voting like svm_predict_values()
+			starts = new int[counts.length];
+			votes = new int[counts.length];
+			for (int i = 1; i < counts.length; i++) {
+				starts[i] = starts[i - 1] + counts[i - 1];
+			}
+			for (int i = 0; i < counts.length; i++) {
+				for (int j = i + 1; j < counts.length; j++) {
+					sum = 0;
+					start = starts[i];
+					end = start + counts[i];
+					for (int s = start; s < end; s++) {
+						sum += coefficients[(j - 1) * l + s] * k[s];
+					}
+					start = starts[j];
+					end = start + counts[j];
+					for (int s = start; s < end; s++) {
+						sum += coefficients[i * l + s] * k[s];
+					}
+					sum -= rho[p++];
+					if (sum > 0) {
+						votes[i]++;
+					} else {
+						votes[j]++;
+					}
+				}
+			}
+			for (int i = 1; i < counts.length; i++) {
+				if (votes[i] > votes[best]) {
+					best = i;
+				}
+			}
+			result[labels[best]] = 1;
+			return result;
+		}
+
+		/**
+		 * Internal method to apply the kernel function of libsvm to the dot
+		 * product or the squared distance.
+		 * 
+		 * @param sum
+		 * @return
+		 */
+		private double kernel(double sum) {
+			double base;
+			double result = 1.0;
+
+			switch (kernelType) {
+			case svm_parameter.POLY:
+				// like powi() of libsvm
+				base = gamma * sum + coef0;
+				for (int t = degree; t > 0; t /= 2) {
+					if (t % 2 == 1) {
+						result *= base;
+					}
+					base = base * base;
+				}
+				return result;
+			case svm_parameter.RBF:
+				return Math.exp(-gamma * sum);
+			case svm_parameter.SIGMOID:
+				return Math.tanh(gamma * sum + coef0);
+			default:
+				return sum;
+			}
+		}
+	}
+
+	/**
+	 * Internal method to flatten the distributions of the leaves.
+	 * 
+	 * @param leaves
+	 * @param numClasses
+	 * @return
+	 */
+	private static double[] flatten(List<double[]> leaves, int numClasses) {
+		double[] result = new double[leaves.size() * numClasses];
+
+		for (int i = 0; i < leaves.size(); i++) {
+			System.arraycopy(leaves.get(i), 0, result, i * numClasses, numClasses);
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to copy the distribution of a leaf.
+	 * 
+	 * @param distributions
+	 * @param leaf
+	 * @param numClasses
+	 * @return
+	 */
+	private static double[] copy(double[] distributions, int leaf, int numClasses) {
+		double[] result = new double[numClasses];
+
+		System.arraycopy(distributions, leaf * numClasses, result, 0, numClasses);
+		return result;
+	}
+
+}
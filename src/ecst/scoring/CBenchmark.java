@@ -0,0 +1,408 @@
+package ecst.scoring;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import weka.core.Instances;
+import ecst.algorithm.FeatureExtractionAlgorithm;
+import ecst.algorithm.analysis.Analysis;
+import ecst.algorithm.definition.AlgorithmBox;
+import ecst.algorithm.definition.OperationDefinition;
+import ecst.algorithm.evaluation.TrainingTestSetAdapter;
+import ecst.combiner.CombinerOutputModel;
+import ecst.utilities.FileUtilities;
+import ecst.utilities.InstanceUtilities;
+
+/**
+ * This class benchmarks the C code of the CCodeGenerator for a trained
+ * pipeline: the code is compiled with gcc (or a compatible compiler) once with
+ * counted operations and once without, and both programs are run on the test
+ * instances (the instances of the test file with a training-test-set
+ * evaluation, the training instances otherwise). The raw signals are not part
+ * of the model, so that the feature extraction is run on synthetic windows.
+ * 
+ * The counted operations are compared with the estimates of the Analysis, the
+ * predictions with the ScoringPipeline and the features with the Java
+ * implementations of the feature extraction algorithms.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class CBenchmark {
+
+	public static final String DEFAULT_COMPILER = "gcc";
+	public static final String[] COMPILER_OPTIONS = new String[] { "-std=c99", "-O2", "-ffp-contract=off" };
+	public static final int WINDOWS = 200;
+	public static final int MILLISECONDS = 500;
+	public static final long SEED = 1;
+
+	private CombinerOutputModel model;
+	private String compiler;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param model
+	 *            the trained pipeline
+	 */
+	public CBenchmark(CombinerOutputModel model) {
+		this.model = model;
+		this.compiler = DEFAULT_COMPILER;
+	}
+
+	/**
+	 * Sets the compiler command (default: gcc).
+	 * 
+	 * @param compiler
+	 */
+	public void setCompiler(String compiler) {
+		this.compiler = compiler;
+	}
+
+	/**
+	 * Generates, compiles and runs the C code.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public CBenchmarkResult run() throws Exception {
+		int agreements = 0;
+		double[] predictions = null;
+		double[] expected = null;
+		double[][] rows = null;
+		double[][][] windows = null;
+		double[][] measured = null;
+		double[] times = null;
+		int[][] estimated = null;
+		List<String> output = null;
+		List<OperationDefinition> definitions = AlgorithmBox.getInstance().getOperationDefinitions();
+		String[] operations = new String[definitions.size()];
+		CCodeGenerator generator = new CCodeGenerator(model);
+		String source = generator.getSource();
+		ScoringPipeline pipeline = new ScoringPipeline(model);
+		File directory = Files.createTempDirectory("ecst-c-").toFile();
+
+		try {
+			rows = pipeline.toRows(getTestInstances(model, pipeline));
+			if (rows.length == 0) {
+				throw new IllegalArgumentException("There are no test instances");
+			}
+			windows = createWindows(generator);
+			FileUtilities.saveString(source, new File(directory, "model.c"));
+			saveValues(rows, new File(directory, "rows.txt"));
+			if (windows != null) {
+				saveValues(flatten(windows), new File(directory, "windows.txt"));
+			}
+
+			// the program with counted operations checks the results
+			compile(directory, "count", true);
+			output = execute(directory, "count");
+			predictions = new double[rows.length];
+			measured = new double[3][CCodeGenerator.OPERATIONS.length];
+			for (String line : output) {
+				String[] parts = line.split(" ");
+				if ("prediction".equals(parts[0])) {
+					predictions[Integer.parseInt(parts[1])] = parseDouble(parts[2]);
+				} else if ("operations".equals(parts[0])) {
+					measured[Integer.parseInt(parts[1])][Integer.parseInt(parts[2])] = Double.parseDouble(parts[3]);
+				}
+			}
+			expected = pipeline.classifyRows(rows);
+			for (int i = 0; i < rows.length; i++) {
+				if (expected[i] == predictions[i] || (Double.isNaN(expected[i]) && Double.isNaN(predictions[i]))) {
+					agreements++;
+				}
+			}
+
+			// the program without counted operations measures the time
+			compile(directory, "time", false);
+			times = new double[] { Double.NaN, Double.NaN };
+			for (String line : execute(directory, "time")) {
+				String[] parts = line.split(" ");
+				if ("time".equals(parts[0])) {
+					times["extraction".equals(parts[1]) ? 0 : 1] = parseDouble(parts[2]);
+				}
+			}
+
+			estimated = new int[3][definitions.size()];
+			for (int i = 0; i < definitions.size(); i++) {
+				int[] current = new Analysis(model).getOperations(definitions.get(i));
+				for (int phase = 0; phase < 3; phase++) {
+					estimated[phase][i] = current[phase];
+				}
+				operations[i] = definitions.get(i).getName();
+			}
+
+			return new CBenchmarkResult(compiler, source, operations, getMeasuredOperations(measured, operations, windows == null ? 0
+					: windows.length, rows.length), estimated, times[0], times[1], windows == null ? 0 : windows.length, rows.length, agreements,
+					windows == null ? Double.NaN : getFeatureDeviation(generator, windows, output));
+		} finally {
+			FileUtilities.deleteDirectory(directory);
+			InstanceUtilities.closeClassifier(model.getClassifier());
+		}
+	}
+
+	/**
+	 * Internal method to return the test instances.
+	 * 
+	 * @param model
+	 * @param pipeline
+	 * @return
+	 * @throws Exception
+	 */
+	static Instances getTestInstances(CombinerOutputModel model, ScoringPipeline pipeline) throws Exception {
+		Instances test = null;
+
+		if (model.getEvaluationAlgorithm() instanceof TrainingTestSetAdapter) {
+			test = ((TrainingTestSetAdapter) model.getEvaluationAlgorithm()).loadTestInstances();
+			// the test file can contain the selected features only
+			for (String name : pipeline.getInputNames()) {
+				if (test.attribute(name) == null) {
+					test = null;
+					break;
+				}
+			}
+		}
+		return test == null ? model.getData().getInstances() : test;
+	}
+
+	/**
+	 * Internal method to create the synthetic windows [window][column][line]
+	 * (Gaussian noise) or null without feature extraction.
+	 * 
+	 * @param generator
+	 * @return
+	 * @throws Exception
+	 */
+	private double[][][] createWindows(CCodeGenerator generator) throws Exception {
+		double[][][] result = null;
+		Random random = new Random(SEED);
+
+		if (!generator.hasFeatureExtraction()) {
+			return null;
+		}
+		result = new double[WINDOWS][generator.getColumns()][generator.getLines()];
+		for (int w = 0; w < result.length; w++) {
+			for (int c = 0; c < result[w].length; c++) {
+				for (int l = 0; l < result[w][c].length; l++) {
+					result[w][c][l] = random.nextGaussian();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to compute the maximum relative deviation of the
+	 * features of the C program from the features of the feature extraction
+	 * algorithms.
+	 * 
+	 * @param generator
+	 * @param windows
+	 * @param output
+	 * @return
+	 * @throws Exception
+	 */
+	private double getFeatureDeviation(CCodeGenerator generator, double[][][] windows, List<String> output) throws Exception {
+		int window;
+		double value;
+		double deviation = 0;
+		double[][] expected = new double[windows.length][generator.getInputNames().length];
+		List<String> names = Arrays.asList(generator.getInputNames());
+		double[] features = null;
+		String[] parts = null;
+
+		for (int w = 0; w < windows.length; w++) {
+			for (FeatureExtractionAlgorithm algorithm : model.getFeatureExtractionAlgorithms()) {
+				// the unused features are not computed by the C program
+				if (generator.getExtractedPositions().contains(names.indexOf(algorithm.toString()))) {
+					features = algorithm.computeFeatures(windows[w]);
+					System.arraycopy(features, 0, expected[w], names.indexOf(algorithm.toString()), features.length);
+				}
+			}
+		}
+		for (String line : output) {
+			parts = line.split(" ");
+			if (!"features".equals(parts[0])) {
+				continue;
+			}
+			window = Integer.parseInt(parts[1]);
+			for (int position : generator.getExtractedPositions()) {
+				value = parseDouble(parts[position + 2]);
+				if (Double.isNaN(value) && Double.isNaN(expected[window][position])) {
+					continue;
+				}
+				deviation = Math.max(deviation, Math.abs(value - expected[window][position]) / Math.max(1, Math.abs(expected[window][position])));
+				if (Double.isNaN(value) || Double.isNaN(expected[window][position])) {
+					deviation = Double.POSITIVE_INFINITY;
+				}
+			}
+		}
+		return deviation;
+	}
+
+	/**
+	 * Internal method to map the counted operations to the operations of the
+	 * Analysis, per window (feature extraction) and per instance.
+	 * 
+	 * @param counts
+	 * @param operations
+	 * @param windows
+	 * @param instances
+	 * @return
+	 */
+	private double[][] getMeasuredOperations(double[][] counts, String[] operations, int windows, int instances) {
+		int index;
+		double[][] result = new double[3][operations.length];
+
+		for (int i = 0; i < operations.length; i++) {
+			index = Arrays.asList(CCodeGenerator.OPERATIONS).indexOf(operations[i]);
+			for (int phase = 0; phase < 3; phase++) {
+				if (index < 0) {
+					result[phase][i] = Double.NaN;
+				} else if (phase == CCodeGenerator.EXTRACTION) {
+					result[phase][i] = windows == 0 ? 0 : counts[phase][index] / windows;
+				} else {
+					result[phase][i] = counts[phase][index] / instances;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to compile the C code.
+	 * 
+	 * @param directory
+	 * @param program
+	 * @param count
+	 *            whether the operations are counted
+	 * @throws Exception
+	 */
+	private void compile(File directory, String program, boolean count) throws Exception {
+		List<String> command = new ArrayList<String>();
+		File log = new File(directory, program + ".log");
+		ProcessBuilder builder = null;
+
+		command.add(compiler);
+		command.addAll(Arrays.asList(COMPILER_OPTIONS));
+		command.add("-DECST_HARNESS");
+		if (count) {
+			command.add("-DECST_COUNT");
+		}
+		command.addAll(Arrays.asList("-o", program, "model.c", "-lm"));
+		builder = new ProcessBuilder(command);
+		builder.directory(directory);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(Redirect.to(log));
+
+		if (builder.start().waitFor() != 0) {
+			throw new Exception("The C code cannot be compiled with " + compiler + ":\n"
+					+ new String(Files.readAllBytes(log.toPath()), Charset.defaultCharset()));
+		}
+	}
+
+	/**
+	 * Internal method to run a compiled program and to return its output.
+	 * 
+	 * @param directory
+	 * @param program
+	 * @return
+	 * @throws Exception
+	 */
+	private List<String> execute(File directory, String program) throws Exception {
+		String line = null;
+		List<String> result = new ArrayList<String>();
+		File log = new File(directory, program + ".log");
+		File windows = new File(directory, "windows.txt");
+		ProcessBuilder builder = new ProcessBuilder(new File(directory, program).getAbsolutePath(), "rows.txt", windows.exists() ? windows.getName()
+				: "-", String.valueOf(MILLISECONDS));
+		Process process = null;
+		BufferedReader reader = null;
+
+		builder.directory(directory);
+		builder.redirectError(Redirect.to(log));
+		process = builder.start();
+		reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		try {
+			while ((line = reader.readLine()) != null) {
+				result.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		if (process.waitFor() != 0) {
+			throw new Exception("The C program failed:\n" + new String(Files.readAllBytes(log.toPath()), Charset.defaultCharset()));
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to save values in the format of the C program: the
+	 * number of rows and columns, then the values.
+	 * 
+	 * @param values
+	 * @param file
+	 * @throws Exception
+	 */
+	private void saveValues(double[][] values, File file) throws Exception {
+		StringBuilder text = new StringBuilder();
+
+		text.append(values.length).append(' ').append(values.length == 0 ? 0 : values[0].length).append('\n');
+		for (double[] row : values) {
+			for (int i = 0; i < row.length; i++) {
+				text.append(i == 0 ? "" : " ").append(row[i]);
+			}
+			text.append('\n');
+		}
+		FileUtilities.saveString(text.toString(), file);
+	}
+
+	/**
+	 * Internal method to flatten the windows to rows in the layout of
+	 * ecst_extract() (window[column * lines + line]).
+	 * 
+	 * @param windows
+	 * @return
+	 */
+	private double[][] flatten(double[][][] windows) {
+		int lines;
+		double[][] result = new double[windows.length][];
+
+		for (int w = 0; w < windows.length; w++) {
+			lines = windows[w][0].length;
+			result[w] = new double[windows[w].length * lines];
+			for (int c = 0; c < windows[w].length; c++) {
+				System.arraycopy(windows[w][c], 0, result[w], c * lines, lines);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to parse a double of the C program (e.g. nan, -inf).
+	 * 
+	 * @param text
+	 * @return
+	 */
+	private static double parseDouble(String text) {
+		String lower = text.toLowerCase();
+
+		if (lower.contains("nan")) {
+			return Double.NaN;
+		}
+		if (lower.contains("inf")) {
+			return lower.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		}
+		return Double.parseDouble(text);
+	}
+
+}
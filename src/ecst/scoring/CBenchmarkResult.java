@@ -0,0 +1,189 @@
+package ecst.scoring;
+
+import java.util.Locale;
+
+/**
+ * This class contains the result of a CBenchmark: the operations per window
+ * (feature extraction) and per instance (preprocessing and classification)
+ * that were counted in the generated C code and the corresponding estimates of
+ * the Analysis, the measured times, and the agreement of the C code with
+ * WEKA.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class CBenchmarkResult {
+
+	private static final String[] PHASES = new String[] { "Feature extraction", "Preprocessing", "Classification" };
+
+	private String compiler;
+	private String source;
+	private String[] operations;
+	private double[][] measuredOperations;
+	private int[][] estimatedOperations;
+	private double extractionTime;
+	private double pipelineTime;
+	private int windows;
+	private int instances;
+	private int agreements;
+	private double featureDeviation;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param compiler
+	 *            the compiler command
+	 * @param source
+	 *            the generated C code
+	 * @param operations
+	 *            the names of the operations
+	 * @param measuredOperations
+	 *            the counted operations [phase][operation] per window or
+	 *            instance (NaN if the operation is not counted)
+	 * @param estimatedOperations
+	 *            the estimated operations [phase][operation] of the Analysis
+	 * @param extractionTime
+	 *            the time per window in nanoseconds (NaN without feature
+	 *            extraction)
+	 * @param pipelineTime
+	 *            the time per instance in nanoseconds
+	 * @param windows
+	 *            the number of synthetic windows
+	 * @param instances
+	 *            the number of test instances
+	 * @param agreements
+	 *            the number of test instances for which C and WEKA predict
+	 *            the same class
+	 * @param featureDeviation
+	 *            the maximum relative deviation of the features of C from the
+	 *            features of Java
+	 */
+	public CBenchmarkResult(String compiler, String source, String[] operations, double[][] measuredOperations, int[][] estimatedOperations,
+			double extractionTime, double pipelineTime, int windows, int instances, int agreements, double featureDeviation) {
+		this.compiler = compiler;
+		this.source = source;
+		this.operations = operations;
+		this.measuredOperations = measuredOperations;
+		this.estimatedOperations = estimatedOperations;
+		this.extractionTime = extractionTime;
+		this.pipelineTime = pipelineTime;
+		this.windows = windows;
+		this.instances = instances;
+		this.agreements = agreements;
+		this.featureDeviation = featureDeviation;
+	}
+
+	/**
+	 * Returns the generated C code.
+	 * 
+	 * @return
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the names of the operations.
+	 * 
+	 * @return
+	 */
+	public String[] getOperations() {
+		return operations;
+	}
+
+	/**
+	 * Returns the counted operations [phase][operation].
+	 * 
+	 * @return
+	 */
+	public double[][] getMeasuredOperations() {
+		return measuredOperations;
+	}
+
+	/**
+	 * Returns the estimated operations [phase][operation].
+	 * 
+	 * @return
+	 */
+	public int[][] getEstimatedOperations() {
+		return estimatedOperations;
+	}
+
+	/**
+	 * Returns the time per window in nanoseconds.
+	 * 
+	 * @return
+	 */
+	public double getExtractionTime() {
+		return extractionTime;
+	}
+
+	/**
+	 * Returns the time per instance in nanoseconds.
+	 * 
+	 * @return
+	 */
+	public double getPipelineTime() {
+		return pipelineTime;
+	}
+
+	/**
+	 * Returns the number of test instances.
+	 * 
+	 * @return
+	 */
+	public int getInstances() {
+		return instances;
+	}
+
+	/**
+	 * Returns the number of test instances for which C and WEKA predict the
+	 * same class.
+	 * 
+	 * @return
+	 */
+	public int getAgreements() {
+		return agreements;
+	}
+
+	/**
+	 * Returns the maximum relative deviation of the features.
+	 * 
+	 * @return
+	 */
+	public double getFeatureDeviation() {
+		return featureDeviation;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+
+		result.append("Compiler: ").append(compiler).append("\n");
+		if (!Double.isNaN(extractionTime)) {
+			result.append(String.format(Locale.US, "Time per window (feature extraction): %.1f ns\n", extractionTime));
+		}
+		result.append(String.format(Locale.US, "Time per instance (preprocessing and classification): %.1f ns\n", pipelineTime));
+		result.append("Predictions equal to WEKA: ").append(agreements).append(" of ").append(instances).append("\n");
+		if (!Double.isNaN(extractionTime)) {
+			result.append("Maximum relative deviation of the features (").append(windows).append(" synthetic windows): ").append(featureDeviation)
+					.append("\n");
+		}
+		result.append("\n");
+
+		for (int phase = 0; phase < PHASES.length; phase++) {
+			if (phase == 0 && Double.isNaN(extractionTime)) {
+				continue;
+			}
+			result.append(PHASES[phase]).append(phase == 0 ? " (per window)" : " (per instance)").append("\n");
+			result.append(String.format(Locale.US, "  %-24s%12s%12s\n", "Operation", "Estimated", "Counted"));
+			for (int i = 0; i < operations.length; i++) {
+				result.append(String.format(Locale.US, "  %-24s%12d%12s\n", operations[i], estimatedOperations[phase][i],
+						Double.isNaN(measuredOperations[phase][i]) ? "-" : String.format(Locale.US, "%.1f", measuredOperations[phase][i])));
+			}
+			result.append("\n");
+		}
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,1321 @@
+package ecst.scoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import weka.classifiers.Classifier;
+import weka.classifiers.functions.LibSVM;
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.meta.ClassificationViaRegression;
+import weka.classifiers.meta.GridSearch;
+import weka.classifiers.rules.PART;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.j48.ClassifierTree;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.Normalize;
+import ecst.algorithm.FeatureExtractionAlgorithm;
+import ecst.algorithm.featureextraction.Energy;
+import ecst.algorithm.featureextraction.FFT;
+import ecst.algorithm.featureextraction.Kurtosis;
+import ecst.algorithm.featureextraction.Max;
+import ecst.algorithm.featureextraction.Mean;
+import ecst.algorithm.featureextraction.Median;
+import ecst.algorithm.featureextraction.Min;
+import ecst.algorithm.featureextraction.OneColumnFeatureExtraction;
+import ecst.algorithm.featureextraction.Skewness;
+import ecst.algorithm.featureextraction.StandardDeviation;
+import ecst.algorithm.featureextraction.Variance;
+import ecst.algorithm.preprocessing.NormalizationAdapter;
+import ecst.combiner.CombinerOutputModel;
+import ecst.combiner.PipelineData;
+import ecst.scoring.ModelCompiler.Node;
+
+/**
+ * This class generates portable C code for a trained pipeline: the feature
+ * extraction (if the features were extracted by ECST), the normalization of
+ * the preprocessing step and the classifier (C4.5, PART, the linear regression
+ * and the SVM). The normalization and the linear regression use the
+ * parameters that modelToXML() exports; the trees, rules and support vectors
+ * are read from the trained WEKA classifiers. Like in the Analysis, only the
+ * features and attributes that the classifier uses are computed.
+ * 
+ * The generated file defines three functions:
+ * 
+ * void ecst_extract(const double *window, double *row) computes the features
+ * of a window (window[column * ECST_LINES + line]) into a row (the attributes
+ * of the input instances without the class, like in the ScoringPipeline);
+ * void ecst_preprocess(const double *row, double *x) computes the attributes
+ * of the classifier; double ecst_classify(const double *x) returns the
+ * predicted class index (NaN if there is no prediction).
+ * 
+ * Every arithmetic operation, comparison and function is written as a macro
+ * that counts the operation per pipeline step (see OPERATIONS) if ECST_COUNT
+ * is defined, so that the operations can be compared with the estimates of
+ * the Analysis. If ECST_HARNESS is defined, the main function of the
+ * CBenchmark is added. Without these macros, the code only needs the C99 math
+ * library. Nominal attributes are not supported.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class CCodeGenerator {
+
+	/**
+	 * The names of the counted operations (like in the Algorithms.xml) in the
+	 * order of their indices in the generated code.
+	 */
+	public static final String[] OPERATIONS = new String[] { "additionsSubtractions", "multiplications", "divisions", "squareRoots",
+			"exponentialFunctions", "comparisons", "sin", "cos", "tanh" };
+	public static final int EXTRACTION = 0;
+	public static final int PREPROCESSING = 1;
+	public static final int CLASSIFICATION = 2;
+	public static final int VALUES_PER_LINE = 6;
+
+	// the macro, the operation and the expression
+	private static final String[][] MACROS = new String[][] { { "ADD(a, b)", "additionsSubtractions", "(a) + (b)" },
+			{ "SUB(a, b)", "additionsSubtractions", "(a) - (b)" }, { "MUL(a, b)", "multiplications", "(a) * (b)" },
+			{ "DIV(a, b)", "divisions", "(a) / (b)" }, { "SQRT(a)", "squareRoots", "sqrt(a)" }, { "EXP(a)", "exponentialFunctions", "exp(a)" },
+			{ "LT(a, b)", "comparisons", "(a) < (b)" }, { "LE(a, b)", "comparisons", "(a) <= (b)" }, { "GT(a, b)", "comparisons", "(a) > (b)" },
+			{ "EQ(a, b)", "comparisons", "(a) == (b)" }, { "SIN(a)", "sin", "sin(a)" }, { "COS(a)", "cos", "cos(a)" },
+			{ "TANH(a)", "tanh", "tanh(a)" } };
+
+	private CombinerOutputModel model;
+	private Classifier classifier;
+	private Instances header;
+	private String[] inputNames;
+	private boolean[] used;
+	private int lines;
+	private int columns;
+	private String source;
+	private StringBuilder constants;
+	private StringBuilder helpers;
+	private StringBuilder functions;
+	private Set<Class<?>> features;
+	private List<Integer> extractedPositions;
+	private boolean usesPowi;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param model
+	 *            the trained pipeline
+	 */
+	public CCodeGenerator(CombinerOutputModel model) {
+		this.model = model;
+		this.classifier = unwrap(model.getClassifier());
+	}
+
+	/**
+	 * Returns whether C code can be generated for the classifier of the
+	 * pipeline. The model itself can be unsupported nevertheless (e.g. nominal
+	 * attributes).
+	 * 
+	 * @param model
+	 * @return
+	 */
+	public static boolean isSupported(CombinerOutputModel model) {
+		Classifier classifier = unwrap(model.getClassifier());
+		Class<?> type = classifier == null ? null : classifier.getClass();
+
+		return type == J48.class || type == PART.class || type == ClassificationViaRegression.class || type == LibSVM.class;
+	}
+
+	/**
+	 * Returns the generated source code.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public String getSource() throws Exception {
+		if (source == null) {
+			generate();
+		}
+		return source;
+	}
+
+	/**
+	 * Returns whether the feature extraction is part of the generated code.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public boolean hasFeatureExtraction() throws Exception {
+		getSource();
+		return lines > 0;
+	}
+
+	/**
+	 * Returns the number of lines of a window (0 without feature extraction).
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public int getLines() throws Exception {
+		getSource();
+		return lines;
+	}
+
+	/**
+	 * Returns the number of columns of a window (0 without feature
+	 * extraction).
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public int getColumns() throws Exception {
+		getSource();
+		return columns;
+	}
+
+	/**
+	 * Returns the positions in the row of the features that ecst_extract()
+	 * computes.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public List<Integer> getExtractedPositions() throws Exception {
+		getSource();
+		return extractedPositions;
+	}
+
+	/**
+	 * Returns the names of the attributes of a row.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public String[] getInputNames() throws Exception {
+		getSource();
+		return inputNames;
+	}
+
+	/**
+	 * Internal method to generate the source code.
+	 * 
+	 * @throws Exception
+	 */
+	private void generate() throws Exception {
+		StringBuilder result = new StringBuilder();
+		PipelineData data = model.getData();
+		Instances input = data.getInstances();
+
+		header = data.getFeatureSelectedInstances();
+		used = new boolean[header.numAttributes()];
+		constants = new StringBuilder();
+		helpers = new StringBuilder();
+		functions = new StringBuilder();
+		features = new LinkedHashSet<Class<?>>();
+		extractedPositions = new ArrayList<Integer>();
+		usesPowi = false;
+		lines = 0;
+		columns = 0;
+
+		inputNames = new String[input.numAttributes() - (input.classIndex() < 0 ? 0 : 1)];
+		for (int i = 0, column = 0; i < input.numAttributes(); i++) {
+			if (i != input.classIndex()) {
+				inputNames[column++] = input.attribute(i).name();
+			}
+		}
+
+		// the classifier marks the attributes that it uses
+		generateClassifier();
+		generatePreprocessing();
+		if (model.getFeatureExtractionAlgorithms() != null && model.getFeatureExtractionModel() != null) {
+			generateExtraction();
+		}
+		if (usesPowi) {
+			appendPowi();
+		}
+
+		line(result, 0, "/*");
+		line(result, 0, " * Generated by ECST for the classification system:");
+		line(result, 0, " * " + describe());
+		line(result, 0, " */");
+		line(result, 0, "#if defined(ECST_HARNESS) && !defined(_POSIX_C_SOURCE)");
+		line(result, 0, "#define _POSIX_C_SOURCE 199309L");
+		line(result, 0, "#endif");
+		line(result, 0, "#include <math.h>");
+		line(result, 0, "");
+		if (lines > 0) {
+			line(result, 0, "#define ECST_LINES " + lines);
+			line(result, 0, "#define ECST_COLUMNS " + columns);
+		}
+		line(result, 0, "#define ECST_INPUTS " + inputNames.length);
+		line(result, 0, "#define ECST_ATTRIBUTES " + header.numAttributes());
+		line(result, 0, "");
+		line(result, 0, "#ifdef ECST_COUNT");
+		line(result, 0, "static unsigned long long ecst_operations[3][" + OPERATIONS.length + "];");
+		line(result, 0, "static int ecst_phase;");
+		line(result, 0, "#define ECST_OP(o, e) (ecst_operations[ecst_phase][o]++, (e))");
+		line(result, 0, "#else");
+		line(result, 0, "#define ECST_OP(o, e) (e)");
+		line(result, 0, "#endif");
+		for (String[] macro : MACROS) {
+			line(result, 0, "#define " + macro[0] + " ECST_OP(" + Arrays.asList(OPERATIONS).indexOf(macro[1]) + ", " + macro[2] + ")");
+		}
+		line(result, 0, "");
+		result.append(constants);
+		result.append(helpers);
+		result.append(functions);
+		appendHarness(result);
+		source = result.toString();
+	}
+
+	/**
+	 * Internal method to generate ecst_extract().
+	 * 
+	 * @throws Exception
+	 */
+	private void generateExtraction() throws Exception {
+		int count;
+		int position;
+		int column;
+		boolean required;
+		boolean[] usedInputs = getUsedInputs();
+		List<String> names = Arrays.asList(inputNames);
+		StringBuilder body = new StringBuilder();
+
+		lines = model.getFeatureExtractionModel().getInputLinesForOneFeature();
+		for (FeatureExtractionAlgorithm algorithm : model.getFeatureExtractionAlgorithms()) {
+			if (!(algorithm instanceof OneColumnFeatureExtraction)) {
+				throw new IllegalArgumentException("Feature extraction " + algorithm.getClass().getName() + " cannot be generated");
+			}
+			count = algorithm.getNumberOfFeatures(0, lines);
+			column = ((OneColumnFeatureExtraction) algorithm).getColumn();
+			position = names.indexOf(algorithm.toString());
+			if (position < 0) {
+				throw new IllegalArgumentException("Feature " + algorithm + " is not an input attribute");
+			}
+			required = false;
+			for (int i = position; i < position + count; i++) {
+				required |= usedInputs[i];
+			}
+			if (!required) {
+				continue;
+			}
+			columns = Math.max(columns, column + 1);
+			for (int i = position; i < position + count; i++) {
+				extractedPositions.add(i);
+			}
+			if (algorithm instanceof FFT) {
+				appendFFT(count / 2);
+				line(body, 1, "ecst_fft(window + " + column + " * ECST_LINES, row + " + position + ");");
+			} else {
+				line(body, 1, "row[" + position + "] = " + getFeatureFunction(algorithm) + "(window + " + column + " * ECST_LINES);");
+			}
+		}
+		appendStatistics();
+
+		line(functions, 0, "/* computes the features of a window (window[column * ECST_LINES + line]) */");
+		line(functions, 0, "void ecst_extract(const double *window, double *row)");
+		line(functions, 0, "{");
+		functions.append(body);
+		line(functions, 0, "}");
+		line(functions, 0, "");
+	}
+
+	/**
+	 * Internal method to return the function that computes a feature.
+	 * 
+	 * @param algorithm
+	 * @return
+	 */
+	private String getFeatureFunction(FeatureExtractionAlgorithm algorithm) {
+		Class<?>[] types = new Class<?>[] { Mean.class, Variance.class, StandardDeviation.class, Skewness.class, Kurtosis.class, Median.class,
+				Energy.class, Max.class, Min.class };
+		String[] names = new String[] { "ecst_mean", "ecst_variance", "ecst_standard_deviation", "ecst_skewness", "ecst_kurtosis",
+				"ecst_median", "ecst_energy", "ecst_max", "ecst_min" };
+
+		for (int i = 0; i < types.length; i++) {
+			if (algorithm.getClass() == types[i]) {
+				features.add(types[i]);
+				return names[i];
+			}
+		}
+		throw new IllegalArgumentException("Feature extraction " + algorithm.getClass().getName() + " cannot be generated");
+	}
+
+	/**
+	 * Internal method to append the functions of the statistical features
+	 * that are used. The operations are the ones of the Algorithms.xml.
+	 */
+	private void appendStatistics() {
+		boolean moments = features.contains(Variance.class) || features.contains(StandardDeviation.class) || features.contains(Skewness.class)
+				|| features.contains(Kurtosis.class);
+
+		if (moments || features.contains(Mean.class)) {
+			line(helpers, 0, "static double ecst_mean(const double *d)");
+			line(helpers, 0, "{");
+			line(helpers, 1, "double sum = d[0];");
+			line(helpers, 1, "int i;");
+			line(helpers, 0, "");
+			line(helpers, 1, "for (i = 1; i < ECST_LINES; i++)");
+			line(helpers, 2, "sum = ADD(sum, d[i]);");
+			line(helpers, 1, "return DIV(sum, ECST_LINES);");
+			line(helpers, 0, "}");
+			line(helpers, 0, "");
+		}
+		if (moments) {
+			// the sample variance (bias corrected) like in Commons Math
+			line(helpers, 0, "static double ecst_central_variance(const double *d, double mean)");
+			line(helpers, 0, "{");
+			line(helpers, 1, "double e = SUB(d[0], mean);");
+			line(helpers, 1, "double sum = MUL(e, e);");
+			line(helpers, 1, "int i;");
+			line(helpers, 0, "");
+			line(helpers, 1, "for (i = 1; i < ECST_LINES; i++) {");
+			line(helpers, 2, "e = SUB(d[i], mean);");
+			line(helpers, 2, "sum = ADD(sum, MUL(e, e));");
+			line(helpers, 1, "}");
+			line(helpers, 1, "return DIV(sum, ECST_LINES - 1);");
+			line(helpers, 0, "}");
+			line(helpers, 0, "");
+		}
+		if (features.contains(Variance.class)) {
+			line(helpers, 0, "static double ecst_variance(const double *d)");
+			line(helpers, 0, "{");
+			line(helpers, 1, "return ecst_central_variance(d, ecst_mean(d));");
+			line(helpers, 0, "}");
+			line(helpers, 0, "");
+		}
+		if (features.contains(StandardDeviation.class)) {
+			line(helpers, 0, "static double ecst_standard_deviation(const double *d)");
+			line(helpers, 0, "{");
+			line(helpers, 1, "return SQRT(ecst_central_variance(d, ecst_mean(d)));");
+			line(helpers, 0, "}");
+			line(helpers, 0, "");
+		}
+		if (features.contains(Skewness.class)) {
+			line(helpers, 0, "static double ecst_skewness(const double *d)");
+			line(helpers, 0, "{");
+			line(helpers, 1, "double mean = ecst_mean(d);");
+			line(helpers, 1, "double deviation = SQRT(ecst_central_variance(d, mean));");
+			line(helpers, 1, "double n = ECST_LINES;");
+			line(helpers, 1, "double sum = 0;");
+			line(helpers, 1, "double z;");
+			line(helpers, 1, "int i;");
+			line(helpers, 0, "");
+			line(helpers, 1, "for (i = 0; i < ECST_LINES; i++) {");
+			line(helpers, 2, "z = DIV(SUB(d[i], mean), deviation);");
+			line(helpers, 2, "sum = i == 0 ? MUL(MUL(z, z), z) : ADD(sum, MUL(MUL(z, z), z));");
+			line(helpers, 1, "}");
+			line(helpers, 1, "return MUL(DIV(n, MUL(SUB(n, 1), SUB(n, 2))), sum);");
+			line(helpers, 0, "}");
+			line(helpers, 0, "");
+		}
+		if (features.contains(Kurtosis.class)) {
+			line(helpers, 0, "static double ecst_kurtosis(const double *d)");
+			line(helpers, 0, "{");
+			line(helpers, 1, "double mean = ecst_mean(d);");
+			line(helpers, 1, "double deviation = SQRT(ecst_central_variance(d, mean));");
+			line(helpers, 1, "double n = ECST_LINES;");
+			line(helpers, 1, "double sum = 0;");
+			line(helpers, 1, "double z, n1, n2, n3, coefficient, term;");
+			line(helpers, 1, "int i;");
+			line(helpers, 0, "");
+			line(helpers, 1, "for (i = 0; i < ECST_LINES; i++) {");
+			line(helpers, 2, "z = DIV(SUB(d[i], mean), deviation);");
+			line(helpers, 2, "sum = i == 0 ? MUL(MUL(MUL(z, z), z), z) : ADD(sum, MUL(MUL(MUL(z, z), z), z));");
+			line(helpers, 1, "}");
+			line(helpers, 1, "n1 = SUB(n, 1);");
+			line(helpers, 1, "n2 = SUB(n, 2);");
+			line(helpers, 1, "n3 = SUB(n, 3);");
+			line(helpers, 1, "coefficient = DIV(MUL(n, ADD(n, 1)), MUL(MUL(n1, n2), n3));");
+			line(helpers, 1, "term = DIV(MUL(MUL(3, n1), n1), MUL(n2, n3));");
+			line(helpers, 1, "return SUB(MUL(coefficient, sum), term);");
+			line(helpers, 0, "}");
+			line(helpers, 0, "");
+		}
+		if (features.contains(Median.class)) {
+			// a selection sort needs the comparisons of the Algorithms.xml
+			line(helpers, 0, "static double ecst_median(const double *d)");
+			line(helpers, 0, "{");
+			line(helpers, 1, "double s[ECST_LINES];");
+			line(helpers, 1, "double t;");
+			line(helpers, 1, "int i, j, m;");
+			line(helpers, 0, "");
+			line(helpers, 1, "for (i = 0; i < ECST_LINES; i++)");
+			line(helpers, 2, "s[i] = d[i];");
+			line(helpers, 1, "for (i = 0; i < ECST_LINES - 1; i++) {");
+			line(helpers, 2, "m = i;");
+			line(helpers, 2, "for (j = i + 1; j < ECST_LINES; j++)");
+			line(helpers, 3, "if (LT(s[j], s[m]))");
+			line(helpers, 4, "m = j;");
+			line(helpers, 2, "t = s[i];");
+			line(helpers, 2, "s[i] = s[m];");
+			line(helpers, 2, "s[m] = t;");
+			line(helpers, 1, "}");
+			line(helpers, 0, "#if ECST_LINES % 2 == 0");
+			line(helpers, 1, "return DIV(ADD(s[ECST_LINES / 2 - 1], s[ECST_LINES / 2]), 2);");
+			line(helpers, 0, "#else");
+			line(helpers, 1, "return s[ECST_LINES / 2];");
+			line(helpers, 0, "#endif");
+			line(helpers, 0, "}");
+			line(helpers, 0, "");
+		}
+		if (features.contains(Energy.class)) {
+			line(helpers, 0, "static double ecst_energy(const double *d)");
+			line(helpers, 0, "{");
+			line(helpers, 1, "double sum = fabs(d[0]);");
+			line(helpers, 1, "int i;");
+			line(helpers, 0, "");
+			line(helpers, 1, "for (i = 1; i < ECST_LINES; i++)");
+			line(helpers, 2, "sum = ADD(sum, fabs(d[i]));");
+			line(helpers, 1, "return sum;");
+			line(helpers, 0, "}");
+			line(helpers, 0, "");
+		}
+		if (features.contains(Max.class) || features.contains(Min.class)) {
+			for (String name : new String[] { "max", "min" }) {
+				if (features.contains("max".equals(name) ? Max.class : Min.class)) {
+					line(helpers, 0, "static double ecst_" + name + "(const double *d)");
+					line(helpers, 0, "{");
+					line(helpers, 1, "double result = d[0];");
+					line(helpers, 1, "int i;");
+					line(helpers, 0, "");
+					line(helpers, 1, "for (i = 1; i < ECST_LINES; i++)");
+					line(helpers, 2, "if (" + ("max".equals(name) ? "GT" : "LT") + "(d[i], result))");
+					line(helpers, 3, "result = d[i];");
+					line(helpers, 1, "return result;");
+					line(helpers, 0, "}");
+					line(helpers, 0, "");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Internal method to append the radix-2 FFT of the zero padded column.
+	 * The twiddle factors (the unit roots) are constants. The features are
+	 * stored in the same order as in FFT.computeFeaturesOnColumn().
+	 * 
+	 * @param size
+	 *            the padded size (a power of two)
+	 */
+	private void appendFFT(int size) {
+		double[] cosine = new double[size / 2];
+		double[] sine = new double[size / 2];
+
+		if (features.contains(FFT.class)) {
+			return;
+		}
+		features.add(FFT.class);
+		for (int k = 0; k < size / 2; k++) {
+			cosine[k] = Math.cos(2 * Math.PI * k / size);
+			sine[k] = Math.sin(2 * Math.PI * k / size);
+		}
+		line(constants, 0, "#define ECST_FFT_SIZE " + size);
+		appendArray("ecst_fft_cos", cosine);
+		appendArray("ecst_fft_sin", sine);
+
+		line(helpers, 0, "static void ecst_fft(const double *d, double *features)");
+		line(helpers, 0, "{");
+		line(helpers, 1, "double re[ECST_FFT_SIZE], im[ECST_FFT_SIZE];");
+		line(helpers, 1, "double tr, ti, c, s;");
+		line(helpers, 1, "int i, j, k, bit, size, step;");
+		line(helpers, 0, "");
+		line(helpers, 1, "for (i = 0; i < ECST_FFT_SIZE; i++) {");
+		line(helpers, 2, "re[i] = i < ECST_LINES ? d[i] : 0;");
+		line(helpers, 2, "im[i] = 0;");
+		line(helpers, 1, "}");
+		line(helpers, 1, "for (i = 1, j = 0; i < ECST_FFT_SIZE; i++) {");
+		line(helpers, 2, "for (bit = ECST_FFT_SIZE >> 1; j & bit; bit >>= 1)");
+		line(helpers, 3, "j ^= bit;");
+		line(helpers, 2, "j ^= bit;");
+		line(helpers, 2, "if (i < j) {");
+		line(helpers, 3, "tr = re[i];");
+		line(helpers, 3, "re[i] = re[j];");
+		line(helpers, 3, "re[j] = tr;");
+		line(helpers, 2, "}");
+		line(helpers, 1, "}");
+		line(helpers, 1, "for (size = 2; size <= ECST_FFT_SIZE; size <<= 1) {");
+		line(helpers, 2, "step = ECST_FFT_SIZE / size;");
+		line(helpers, 2, "for (i = 0; i < ECST_FFT_SIZE; i += size) {");
+		line(helpers, 3, "for (k = 0; k < size / 2; k++) {");
+		line(helpers, 4, "j = i + k + size / 2;");
+		line(helpers, 4, "c = ecst_fft_cos[k * step];");
+		line(helpers, 4, "s = ecst_fft_sin[k * step];");
+		// multiplication with exp(-2 pi i k / size)
+		line(helpers, 4, "tr = ADD(MUL(re[j], c), MUL(im[j], s));");
+		line(helpers, 4, "ti = SUB(MUL(im[j], c), MUL(re[j], s));");
+		line(helpers, 4, "re[j] = SUB(re[i + k], tr);");
+		line(helpers, 4, "im[j] = SUB(im[i + k], ti);");
+		line(helpers, 4, "re[i + k] = ADD(re[i + k], tr);");
+		line(helpers, 4, "im[i + k] = ADD(im[i + k], ti);");
+		line(helpers, 3, "}");
+		line(helpers, 2, "}");
+		line(helpers, 1, "}");
+		line(helpers, 1, "for (i = 0; i < 2 * ECST_FFT_SIZE; i++)");
+		line(helpers, 2, "features[i] = 0;");
+		line(helpers, 1, "for (i = 0; i < ECST_FFT_SIZE; i++) {");
+		line(helpers, 2, "features[i * 2] = re[i];");
+		line(helpers, 2, "features[i] = im[i];");
+		line(helpers, 1, "}");
+		line(helpers, 0, "}");
+		line(helpers, 0, "");
+	}
+
+	/**
+	 * Internal method to generate ecst_preprocess(): the attributes that the
+	 * classifier uses are copied from the row and normalized with the minimum
+	 * and maximum of the NormalizationAdapter.
+	 */
+	private void generatePreprocessing() {
+		Integer index = null;
+		String value = null;
+		double minimum;
+		double maximum;
+		Instances input = model.getData().getInstances();
+		NormalizationAdapter normalization = ScoringPipeline.getNormalization(model.getPreprocessingAlgorithm());
+		Map<String, Integer> inputColumns = new HashMap<String, Integer>();
+
+		for (int i = 0; i < inputNames.length; i++) {
+			inputColumns.put(inputNames[i], i);
+		}
+
+		line(functions, 0, "/* computes the attributes of the classifier from a row */");
+		line(functions, 0, "void ecst_preprocess(const double *row, double *x)");
+		line(functions, 0, "{");
+		for (int i = 0; i < header.numAttributes(); i++) {
+			if (!used[i]) {
+				continue;
+			}
+			index = inputColumns.get(header.attribute(i).name());
+			if (index == null) {
+				throw new IllegalArgumentException("Attribute " + header.attribute(i).name() + " is not an input attribute");
+			}
+			value = "row[" + index + "]";
+			if (normalization == null) {
+				line(functions, 1, "x[" + i + "] = " + value + ";");
+				continue;
+			}
+			// like WEKA's normalization
+			minimum = normalization.getMinimum()[input.attribute(header.attribute(i).name()).index()];
+			maximum = normalization.getMaximum()[input.attribute(header.attribute(i).name()).index()];
+			if (Double.isNaN(minimum) || maximum == minimum) {
+				line(functions, 1, "x[" + i + "] = 0;");
+			} else {
+				line(functions, 1, "x[" + i + "] = ADD(MUL(DIV(SUB(" + value + ", " + literal(minimum) + "), SUB(" + literal(maximum) + ", "
+						+ literal(minimum) + ")), " + literal(normalization.getScale()) + "), " + literal(normalization.getTranslation()) + ");");
+			}
+		}
+		line(functions, 0, "}");
+		line(functions, 0, "");
+	}
+
+	/**
+	 * Internal method to generate ecst_classify().
+	 * 
+	 * @throws Exception
+	 */
+	private void generateClassifier() throws Exception {
+		StringBuilder body = new StringBuilder();
+
+		if (classifier == null) {
+			throw new IllegalArgumentException("The model does not contain a trained classifier");
+		}
+		if (classifier.getClass() == J48.class) {
+			generateTree((J48) classifier, body);
+		} else if (classifier.getClass() == PART.class) {
+			generateRules((PART) classifier, body);
+		} else if (classifier.getClass() == ClassificationViaRegression.class) {
+			generateRegression((ClassificationViaRegression) classifier, body);
+		} else if (classifier.getClass() == LibSVM.class) {
+			generateSVM((LibSVM) classifier, body);
+		} else {
+			throw new IllegalArgumentException(classifier.getClass().getName() + " cannot be generated");
+		}
+
+		line(functions, 0, "/* returns the predicted class index */");
+		line(functions, 0, "double ecst_classify(const double *x)");
+		line(functions, 0, "{");
+		functions.append(body);
+		line(functions, 0, "}");
+		line(functions, 0, "");
+	}
+
+	/**
+	 * Internal method to generate a J48 tree as nested ifs. Each leaf returns
+	 * the class with the highest probability.
+	 * 
+	 * @param j48
+	 * @param body
+	 * @throws Exception
+	 */
+	private void generateTree(J48 j48, StringBuilder body) throws Exception {
+		List<double[]> leaves = new ArrayList<double[]>();
+		ModelCompiler compiler = new ModelCompiler(j48, header);
+		Node root = compiler.createTreeNode((ClassifierTree) ModelCompiler.getField(J48.class, j48, "m_root"), j48.getUseLaplace(), leaves);
+
+		appendTreeNode(root, 1, leaves, body);
+	}
+
+	/**
+	 * Internal method to append a node of a tree.
+	 * 
+	 * @param node
+	 * @param indent
+	 * @param leaves
+	 * @param body
+	 */
+	private void appendTreeNode(Node node, int indent, List<double[]> leaves, StringBuilder body) {
+		if (node.children == null) {
+			line(body, indent, "return " + Utils.maxIndex(leaves.get(node.leaf)) + ";");
+			return;
+		}
+		line(body, indent, "if (" + getCondition(node, 0) + ") {");
+		appendTreeNode(node.children[0], indent + 1, leaves, body);
+		line(body, indent, "} else {");
+		appendTreeNode(node.children[1], indent + 1, leaves, body);
+		line(body, indent, "}");
+	}
+
+	/**
+	 * Internal method to generate the rules of PART as a sequence of ifs.
+	 * 
+	 * @param part
+	 * @param body
+	 * @throws Exception
+	 */
+	private void generateRules(PART part, StringBuilder body) throws Exception {
+		int indent;
+		List<double[]> leaves = new ArrayList<double[]>();
+		List<List<Node>> conditions = new ModelCompiler(part, header).createRules(part, leaves);
+
+		for (int i = 0; i < conditions.size(); i++) {
+			indent = 1;
+			for (Node condition : conditions.get(i)) {
+				line(body, indent++, "if (" + getCondition(condition, condition.subset) + ") {");
+			}
+			line(body, indent, "return " + Utils.maxIndex(leaves.get(i)) + ";");
+			while (indent > 1) {
+				line(body, --indent, "}");
+			}
+			// the rules after a rule without conditions are never used
+			if (conditions.get(i).isEmpty()) {
+				return;
+			}
+		}
+		// WEKA fails if no rule covers the instance
+		line(body, 1, "return NAN;");
+	}
+
+	/**
+	 * Internal method to return the condition that an instance is assigned to
+	 * the given subset of a binary split of a numeric attribute.
+	 * 
+	 * @param node
+	 * @param subset
+	 * @return
+	 */
+	private String getCondition(Node node, int subset) {
+		if (node.type != ModelCompiler.NUMERIC) {
+			throw new IllegalArgumentException("Nominal attribute " + header.attribute(node.attribute).name() + " cannot be generated");
+		}
+		used[node.attribute] = true;
+		return (subset == 0 ? "LE" : "GT") + "(x[" + node.attribute + "], " + literal(node.splitPoint) + ")";
+	}
+
+	/**
+	 * Internal method to generate the classification via linear regression
+	 * with the coefficients of modelToXML(): the prediction of each class is
+	 * clipped to [0, 1] and the predictions are normalized, like in WEKA.
+	 * 
+	 * @param regression
+	 * @param body
+	 * @throws Exception
+	 */
+	private void generateRegression(ClassificationViaRegression regression, StringBuilder body) throws Exception {
+		int column;
+		int classIndex;
+		boolean first;
+		boolean[] selected = null;
+		double[] coefficients = null;
+		String term = null;
+		String variable = null;
+		Classifier[] classifiers = (Classifier[]) ModelCompiler.getField(ClassificationViaRegression.class, regression, "m_Classifiers");
+
+		checkNumeric();
+		line(body, 1, "double p[" + classifiers.length + "];");
+		line(body, 1, "double sum;");
+		line(body, 1, "int i;");
+		line(body, 1, "int best = 0;");
+		line(body, 0, "");
+		for (int k = 0; k < classifiers.length; k++) {
+			if (classifiers[k].getClass() != LinearRegression.class) {
+				throw new IllegalArgumentException(classifiers[k].getClass().getName() + " cannot be generated");
+			}
+			classIndex = (Integer) ModelCompiler.getField(LinearRegression.class, classifiers[k], "m_ClassIndex");
+			selected = (boolean[]) ModelCompiler.getField(LinearRegression.class, classifiers[k], "m_SelectedAttributes");
+			coefficients = (double[]) ModelCompiler.getField(LinearRegression.class, classifiers[k], "m_Coefficients");
+			variable = "p[" + k + "]";
+			column = 0;
+			first = true;
+			for (int j = 0; j < header.numAttributes(); j++) {
+				if (j != classIndex && selected[j]) {
+					used[j] = true;
+					term = "MUL(" + literal(coefficients[column++]) + ", x[" + j + "])";
+					line(body, 1, variable + " = " + (first ? term : "ADD(" + variable + ", " + term + ")") + ";");
+					first = false;
+				}
+			}
+			term = literal(coefficients[column]);
+			line(body, 1, variable + " = " + (first ? term : "ADD(" + variable + ", " + term + ")") + ";");
+		}
+		line(body, 1, "for (i = 0; i < " + classifiers.length + "; i++) {");
+		line(body, 2, "if (GT(p[i], 1))");
+		line(body, 3, "p[i] = 1;");
+		line(body, 2, "if (LT(p[i], 0))");
+		line(body, 3, "p[i] = 0;");
+		line(body, 1, "}");
+		line(body, 1, "sum = p[0];");
+		line(body, 1, "for (i = 1; i < " + classifiers.length + "; i++)");
+		line(body, 2, "sum = ADD(sum, p[i]);");
+		line(body, 1, "if (EQ(sum, 0))");
+		line(body, 2, "return NAN;");
+		line(body, 1, "for (i = 0; i < " + classifiers.length + "; i++)");
+		line(body, 2, "p[i] = DIV(p[i], sum);");
+		line(body, 1, "for (i = 1; i < " + classifiers.length + "; i++)");
+		line(body, 2, "if (GT(p[i], p[best]))");
+		line(body, 3, "best = i;");
+		line(body, 1, "return best;");
+	}
+
+	/**
+	 * Internal method to generate LibSVM: each binary machine of the
+	 * one-against-one scheme votes, like in libsvm.
+	 * 
+	 * @param libsvm
+	 * @param body
+	 * @throws Exception
+	 */
+	private void generateSVM(LibSVM libsvm, StringBuilder body) throws Exception {
+		int l;
+		int n = header.numAttributes() - 1;
+		int[] start = null;
+		int[] positions = new int[header.numAttributes()];
+		int[] columns = new int[n];
+		double[] vectors = null;
+		double[] coefficients = null;
+		svm_model svm = (svm_model) ModelCompiler.getField(LibSVM.class, libsvm, "m_Model");
+		svm_parameter parameter = svm.param;
+		Filter filter = (Filter) ModelCompiler.getField(LibSVM.class, libsvm, "m_Filter");
+
+		checkNumeric();
+		if (parameter.svm_type != svm_parameter.C_SVC && parameter.svm_type != svm_parameter.NU_SVC) {
+			throw new IllegalArgumentException("SVM type " + parameter.svm_type + " cannot be generated");
+		}
+		if (libsvm.getProbabilityEstimates()) {
+			throw new IllegalArgumentException("Probability estimates cannot be generated");
+		}
+		if (filter != null && !(filter instanceof Normalize)) {
+			throw new IllegalArgumentException("Filter " + filter.getClass().getName() + " cannot be generated");
+		}
+
+		// the positions of the attributes without the class
+		for (int a = 0, position = 0; a < header.numAttributes(); a++) {
+			positions[a] = a == header.classIndex() ? -1 : position++;
+			if (a != header.classIndex()) {
+				columns[positions[a]] = a;
+				used[a] = true;
+			}
+		}
+		l = svm.l;
+		vectors = new double[l * n];
+		coefficients = new double[(svm.nr_class - 1) * l];
+		for (int i = 0; i < l; i++) {
+			for (svm_node node : svm.SV[i]) {
+				vectors[i * n + positions[node.index - 1]] = node.value;
+			}
+			for (int j = 0; j < svm.nr_class - 1; j++) {
+				coefficients[j * l + i] = svm.sv_coef[j][i];
+			}
+		}
+		start = new int[svm.nr_class];
+		for (int i = 1; i < svm.nr_class; i++) {
+			start[i] = start[i - 1] + svm.nSV[i - 1];
+		}
+		line(constants, 0, "#define ECST_DIMENSIONS " + n);
+
+		line(body, 1, "double v[ECST_DIMENSIONS];");
+		if (parameter.kernel_type == svm_parameter.LINEAR) {
+			line(body, 1, "const double *w;");
+		} else {
+			line(body, 1, "double k[ECST_VECTORS];");
+			if (parameter.kernel_type == svm_parameter.RBF) {
+				line(body, 1, "double d;");
+			}
+			line(body, 1, "const double *s;");
+		}
+		line(body, 1, "double sum;");
+		line(body, 1, "int i, j;");
+		line(body, 1, "int votes[" + svm.nr_class + "] = { 0 };");
+		line(body, 1, "int best = 0;");
+		line(body, 0, "");
+		appendSVMInput(columns, (Normalize) filter, body);
+		if (parameter.kernel_type == svm_parameter.LINEAR) {
+			appendLinearMachines(svm, vectors, coefficients, start, body);
+		} else {
+			appendKernelMachines(svm, vectors, coefficients, start, body);
+		}
+		line(body, 1, "for (i = 1; i < " + svm.nr_class + "; i++)");
+		line(body, 2, "if (GT(votes[i], votes[best]))");
+		line(body, 3, "best = i;");
+		line(body, 0, "");
+		appendLabels(svm.label, body);
+	}
+
+	/**
+	 * Internal method to append the binary machines of a linear SVM. The
+	 * support vectors of each machine are summed up to one weight vector, so
+	 * that a machine needs one dot product only.
+	 * 
+	 * @param svm
+	 * @param vectors
+	 * @param coefficients
+	 * @param start
+	 * @param body
+	 */
+	private void appendLinearMachines(svm_model svm, double[] vectors, double[] coefficients, int[] start, StringBuilder body) {
+		int p = 0;
+		int l = svm.l;
+		int n = vectors.length / Math.max(1, l);
+		int machines = svm.nr_class * (svm.nr_class - 1) / 2;
+		double[] weights = new double[machines * n];
+
+		for (int i = 0; i < svm.nr_class; i++) {
+			for (int j = i + 1; j < svm.nr_class; j++) {
+				for (int k = start[i]; k < start[i] + svm.nSV[i]; k++) {
+					for (int d = 0; d < n; d++) {
+						weights[p * n + d] += coefficients[(j - 1) * l + k] * vectors[k * n + d];
+					}
+				}
+				for (int k = start[j]; k < start[j] + svm.nSV[j]; k++) {
+					for (int d = 0; d < n; d++) {
+						weights[p * n + d] += coefficients[i * l + k] * vectors[k * n + d];
+					}
+				}
+				p++;
+			}
+		}
+		appendArray("ecst_weights", weights);
+
+		p = 0;
+		for (int i = 0; i < svm.nr_class; i++) {
+			for (int j = i + 1; j < svm.nr_class; j++) {
+				line(body, 1, "w = ecst_weights + " + (p * n) + ";");
+				line(body, 1, "sum = MUL(w[0], v[0]);");
+				line(body, 1, "for (j = 1; j < ECST_DIMENSIONS; j++)");
+				line(body, 2, "sum = ADD(sum, MUL(w[j], v[j]));");
+				line(body, 1, "sum = SUB(sum, " + literal(svm.rho[p++]) + ");");
+				line(body, 1, "votes[GT(sum, 0) ? " + i + " : " + j + "]++;");
+			}
+		}
+	}
+
+	/**
+	 * Internal method to append the binary machines of an SVM with a
+	 * nonlinear kernel: the kernel values of all support vectors are computed
+	 * once and then weighted by each machine, like in svm_predict_values().
+	 * 
+	 * @param svm
+	 * @param vectors
+	 * @param coefficients
+	 * @param start
+	 * @param body
+	 */
+	private void appendKernelMachines(svm_model svm, double[] vectors, double[] coefficients, int[] start, StringBuilder body) {
+		int p = 0;
+		int l = svm.l;
+
+		line(constants, 0, "#define ECST_VECTORS " + l);
+		appendArray("ecst_vectors", vectors);
+		appendArray("ecst_coefficients", coefficients);
+
+		line(body, 1, "for (i = 0; i < ECST_VECTORS; i++) {");
+		line(body, 2, "s = ecst_vectors + i * ECST_DIMENSIONS;");
+		if (svm.param.kernel_type == svm_parameter.RBF) {
+			line(body, 2, "d = SUB(v[0], s[0]);");
+			line(body, 2, "sum = MUL(d, d);");
+			line(body, 2, "for (j = 1; j < ECST_DIMENSIONS; j++) {");
+			line(body, 3, "d = SUB(v[j], s[j]);");
+			line(body, 3, "sum = ADD(sum, MUL(d, d));");
+			line(body, 2, "}");
+		} else {
+			line(body, 2, "sum = MUL(v[0], s[0]);");
+			line(body, 2, "for (j = 1; j < ECST_DIMENSIONS; j++)");
+			line(body, 3, "sum = ADD(sum, MUL(v[j], s[j]));");
+		}
+		line(body, 2, "k[i] = " + getKernel(svm.param) + ";");
+		line(body, 1, "}");
+
+		for (int i = 0; i < svm.nr_class; i++) {
+			for (int j = i + 1; j < svm.nr_class; j++) {
+				line(body, 1, "sum = 0;");
+				line(body, 1, "for (i = " + start[i] + "; i < " + (start[i] + svm.nSV[i]) + "; i++)");
+				line(body, 2, "sum = ADD(sum, MUL(ecst_coefficients[" + ((j - 1) * l) + " + i], k[i]));");
+				line(body, 1, "for (i = " + start[j] + "; i < " + (start[j] + svm.nSV[j]) + "; i++)");
+				line(body, 2, "sum = ADD(sum, MUL(ecst_coefficients[" + (i * l) + " + i], k[i]));");
+				line(body, 1, "sum = SUB(sum, " + literal(svm.rho[p++]) + ");");
+				line(body, 1, "votes[GT(sum, 0) ? " + i + " : " + j + "]++;");
+			}
+		}
+	}
+
+	/**
+	 * Internal method to append the copy of the attributes to the input
+	 * vector of the SVM, normalized if LibSVM normalizes the data.
+	 * 
+	 * @param columns
+	 * @param normalize
+	 * @param body
+	 */
+	private void appendSVMInput(int[] columns, Normalize normalize, StringBuilder body) {
+		double minimum;
+		double maximum;
+		String value = null;
+
+		for (int j = 0; j < columns.length; j++) {
+			value = "x[" + columns[j] + "]";
+			if (normalize == null) {
+				line(body, 1, "v[" + j + "] = " + value + ";");
+				continue;
+			}
+			minimum = normalize.getMinArray()[columns[j]];
+			maximum = normalize.getMaxArray()[columns[j]];
+			if (Double.isNaN(minimum) || maximum == minimum) {
+				line(body, 1, "v[" + j + "] = 0;");
+			} else {
+				line(body, 1, "v[" + j + "] = ADD(MUL(DIV(SUB(" + value + ", " + literal(minimum) + "), SUB(" + literal(maximum) + ", "
+						+ literal(minimum) + ")), " + literal(normalize.getScale()) + "), " + literal(normalize.getTranslation()) + ");");
+			}
+		}
+	}
+
+	/**
+	 * Internal method to append the return of the class label of the best
+	 * class.
+	 * 
+	 * @param labels
+	 * @param body
+	 */
+	private void appendLabels(int[] labels, StringBuilder body) {
+		StringBuilder text = new StringBuilder();
+
+		for (int i = 0; i < labels.length; i++) {
+			text.append(i == 0 ? "" : ", ").append(labels[i]);
+		}
+		line(body, 1, "{");
+		line(body, 2, "static const int labels[" + labels.length + "] = { " + text + " };");
+		line(body, 0, "");
+		line(body, 2, "return labels[best];");
+		line(body, 1, "}");
+	}
+
+	/**
+	 * Internal method to return the kernel function of libsvm applied to the
+	 * variable sum (the dot product or the squared distance).
+	 * 
+	 * @param parameter
+	 * @return
+	 */
+	private String getKernel(svm_parameter parameter) {
+		switch (parameter.kernel_type) {
+		case svm_parameter.LINEAR:
+			return "sum";
+		case svm_parameter.POLY:
+			usesPowi = true;
+			return "ecst_powi(ADD(MUL(" + literal(parameter.gamma) + ", sum), " + literal(parameter.coef0) + "), " + parameter.degree + ")";
+		case svm_parameter.RBF:
+			return "EXP(MUL(" + literal(-parameter.gamma) + ", sum))";
+		case svm_parameter.SIGMOID:
+			return "TANH(ADD(MUL(" + literal(parameter.gamma) + ", sum), " + literal(parameter.coef0) + "))";
+		default:
+			throw new IllegalArgumentException("Kernel type " + parameter.kernel_type + " cannot be generated");
+		}
+	}
+
+	/**
+	 * Internal method to append the power function of libsvm (square and
+	 * multiply).
+	 */
+	private void appendPowi() {
+		line(helpers, 0, "static double ecst_powi(double base, int times)");
+		line(helpers, 0, "{");
+		line(helpers, 1, "double tmp = base;");
+		line(helpers, 1, "double ret = 1.0;");
+		line(helpers, 1, "int t;");
+		line(helpers, 0, "");
+		line(helpers, 1, "for (t = times; t > 0; t /= 2) {");
+		line(helpers, 2, "if (t % 2 == 1)");
+		line(helpers, 3, "ret = MUL(ret, tmp);");
+		line(helpers, 2, "tmp = MUL(tmp, tmp);");
+		line(helpers, 1, "}");
+		line(helpers, 1, "return ret;");
+		line(helpers, 0, "}");
+		line(helpers, 0, "");
+	}
+
+	/**
+	 * Internal method to append the main function of the CBenchmark. It is
+	 * called with the file of the rows, the file of the windows ("-" without
+	 * feature extraction) and the minimum time of a measurement in
+	 * milliseconds. With ECST_COUNT, it prints the features of the windows,
+	 * the predictions of the rows and the counted operations; otherwise, it
+	 * prints the average time per window and per row in nanoseconds.
+	 * 
+	 * @param result
+	 */
+	private void appendHarness(StringBuilder result) {
+		line(result, 0, "#ifdef ECST_HARNESS");
+		line(result, 0, "#include <stdio.h>");
+		line(result, 0, "#include <stdlib.h>");
+		line(result, 0, "#include <time.h>");
+		line(result, 0, "");
+		line(result, 0, "static volatile double ecst_sink;");
+		line(result, 0, "");
+		line(result, 0, "static double *ecst_read(const char *name, int *count, int size)");
+		line(result, 0, "{");
+		line(result, 1, "FILE *file = fopen(name, \"r\");");
+		line(result, 1, "double *values;");
+		line(result, 1, "int columns, i;");
+		line(result, 0, "");
+		line(result, 1, "if (file == NULL || fscanf(file, \"%d %d\", count, &columns) != 2 || columns != size) {");
+		line(result, 2, "fprintf(stderr, \"Cannot read %s\\n\", name);");
+		line(result, 2, "exit(1);");
+		line(result, 1, "}");
+		line(result, 1, "values = malloc(sizeof(double) * (*count * size + 1));");
+		line(result, 1, "for (i = 0; i < *count * size; i++) {");
+		line(result, 2, "if (fscanf(file, \"%lf\", &values[i]) != 1) {");
+		line(result, 3, "fprintf(stderr, \"Cannot read %s\\n\", name);");
+		line(result, 3, "exit(1);");
+		line(result, 2, "}");
+		line(result, 1, "}");
+		line(result, 1, "fclose(file);");
+		line(result, 1, "return values;");
+		line(result, 0, "}");
+		line(result, 0, "");
+		line(result, 0, "#ifndef ECST_COUNT");
+		line(result, 0, "static double ecst_seconds(void)");
+		line(result, 0, "{");
+		line(result, 1, "struct timespec time;");
+		line(result, 0, "");
+		line(result, 1, "clock_gettime(CLOCK_MONOTONIC, &time);");
+		line(result, 1, "return time.tv_sec + time.tv_nsec * 1e-9;");
+		line(result, 0, "}");
+		line(result, 0, "#endif");
+		line(result, 0, "");
+		line(result, 0, "int main(int argc, char **argv)");
+		line(result, 0, "{");
+		line(result, 1, "double x[ECST_ATTRIBUTES] = { 0 };");
+		line(result, 1, "double *rows;");
+		line(result, 1, "int count, i;");
+		line(result, 0, "#ifdef ECST_LINES");
+		line(result, 1, "double row[ECST_INPUTS + 1] = { 0 };");
+		line(result, 1, "double *windows;");
+		line(result, 1, "int windowCount;");
+		line(result, 0, "#endif");
+		line(result, 0, "#ifdef ECST_COUNT");
+		line(result, 1, "int j;");
+		line(result, 0, "#else");
+		line(result, 1, "double limit, start, elapsed;");
+		line(result, 1, "long repetitions;");
+		line(result, 0, "#endif");
+		line(result, 0, "");
+		line(result, 1, "if (argc != 4) {");
+		line(result, 2, "fprintf(stderr, \"Usage: %s rows windows milliseconds\\n\", argv[0]);");
+		line(result, 2, "return 1;");
+		line(result, 1, "}");
+		line(result, 1, "rows = ecst_read(argv[1], &count, ECST_INPUTS);");
+		line(result, 0, "#ifdef ECST_LINES");
+		line(result, 1, "windows = ecst_read(argv[2], &windowCount, ECST_COLUMNS * ECST_LINES);");
+		line(result, 0, "#endif");
+		line(result, 0, "#ifdef ECST_COUNT");
+		line(result, 0, "#ifdef ECST_LINES");
+		line(result, 1, "ecst_phase = " + EXTRACTION + ";");
+		line(result, 1, "for (i = 0; i < windowCount; i++) {");
+		line(result, 2, "ecst_extract(windows + i * ECST_COLUMNS * ECST_LINES, row);");
+		line(result, 2, "printf(\"features %d\", i);");
+		line(result, 2, "for (j = 0; j < ECST_INPUTS; j++)");
+		line(result, 3, "printf(\" %.17g\", row[j]);");
+		line(result, 2, "printf(\"\\n\");");
+		line(result, 1, "}");
+		line(result, 0, "#endif");
+		line(result, 1, "for (i = 0; i < count; i++) {");
+		line(result, 2, "ecst_phase = " + PREPROCESSING + ";");
+		line(result, 2, "ecst_preprocess(rows + i * ECST_INPUTS, x);");
+		line(result, 2, "ecst_phase = " + CLASSIFICATION + ";");
+		line(result, 2, "printf(\"prediction %d %.17g\\n\", i, ecst_classify(x));");
+		line(result, 1, "}");
+		line(result, 1, "for (i = 0; i < 3; i++)");
+		line(result, 2, "for (j = 0; j < " + OPERATIONS.length + "; j++)");
+		line(result, 3, "printf(\"operations %d %d %llu\\n\", i, j, ecst_operations[i][j]);");
+		line(result, 0, "#else");
+		line(result, 1, "limit = atof(argv[3]) / 1000;");
+		line(result, 0, "#ifdef ECST_LINES");
+		line(result, 1, "for (i = 0; i < windowCount; i++) {");
+		line(result, 2, "ecst_extract(windows + i * ECST_COLUMNS * ECST_LINES, row);");
+		line(result, 2, "ecst_sink += row[" + (extractedPositions.isEmpty() ? 0 : extractedPositions.get(0)) + "];");
+		line(result, 1, "}");
+		line(result, 1, "repetitions = 0;");
+		line(result, 1, "start = ecst_seconds();");
+		line(result, 1, "do {");
+		line(result, 2, "for (i = 0; i < windowCount; i++) {");
+		line(result, 3, "ecst_extract(windows + i * ECST_COLUMNS * ECST_LINES, row);");
+		line(result, 3, "ecst_sink += row[" + (extractedPositions.isEmpty() ? 0 : extractedPositions.get(0)) + "];");
+		line(result, 2, "}");
+		line(result, 2, "repetitions++;");
+		line(result, 2, "elapsed = ecst_seconds() - start;");
+		line(result, 1, "} while (elapsed < limit);");
+		line(result, 1, "printf(\"time extraction %.17g\\n\", elapsed / ((double) repetitions * windowCount) * 1e9);");
+		line(result, 0, "#endif");
+		line(result, 1, "for (i = 0; i < count; i++) {");
+		line(result, 2, "ecst_preprocess(rows + i * ECST_INPUTS, x);");
+		line(result, 2, "ecst_sink += ecst_classify(x);");
+		line(result, 1, "}");
+		line(result, 1, "repetitions = 0;");
+		line(result, 1, "start = ecst_seconds();");
+		line(result, 1, "do {");
+		line(result, 2, "for (i = 0; i < count; i++) {");
+		line(result, 3, "ecst_preprocess(rows + i * ECST_INPUTS, x);");
+		line(result, 3, "ecst_sink += ecst_classify(x);");
+		line(result, 2, "}");
+		line(result, 2, "repetitions++;");
+		line(result, 2, "elapsed = ecst_seconds() - start;");
+		line(result, 1, "} while (elapsed < limit);");
+		line(result, 1, "printf(\"time pipeline %.17g\\n\", elapsed / ((double) repetitions * count) * 1e9);");
+		line(result, 0, "#endif");
+		line(result, 1, "return 0;");
+		line(result, 0, "}");
+		line(result, 0, "#endif");
+	}
+
+	/**
+	 * Internal method to return the input attributes (the positions in a row)
+	 * that the classifier uses.
+	 * 
+	 * @return
+	 */
+	private boolean[] getUsedInputs() {
+		boolean[] result = new boolean[inputNames.length];
+		List<String> names = Arrays.asList(inputNames);
+
+		for (int i = 0; i < header.numAttributes(); i++) {
+			if (used[i]) {
+				result[names.indexOf(header.attribute(i).name())] = true;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to check that all attributes except the class are
+	 * numeric.
+	 */
+	private void checkNumeric() {
+		for (int i = 0; i < header.numAttributes(); i++) {
+			if (i != header.classIndex() && !header.attribute(i).isNumeric()) {
+				throw new IllegalArgumentException("Nominal attribute " + header.attribute(i).name() + " cannot be generated");
+			}
+		}
+	}
+
+	/**
+	 * Internal method to append a constant array.
+	 * 
+	 * @param name
+	 * @param values
+	 */
+	private void appendArray(String name, double[] values) {
+		StringBuilder text = new StringBuilder();
+
+		line(constants, 0, "static const double " + name + "[" + Math.max(1, values.length) + "] = {");
+		for (int i = 0; i < values.length; i++) {
+			text.append(literal(values[i])).append(i < values.length - 1 ? "," : "");
+			if (i % VALUES_PER_LINE == VALUES_PER_LINE - 1 || i == values.length - 1) {
+				line(constants, 1, text.toString());
+				text.setLength(0);
+			} else {
+				text.append(' ');
+			}
+		}
+		line(constants, 0, "};");
+		line(constants, 0, "");
+	}
+
+	/**
+	 * Internal method to describe the pipeline in the header comment.
+	 * 
+	 * @return
+	 */
+	private String describe() {
+		StringBuilder result = new StringBuilder();
+
+		if (model.getPreprocessingAlgorithm() != null) {
+			result.append(model.getPreprocessingAlgorithm().getDefinition().getName()).append(", ");
+		}
+		if (model.getFeatureSelectionAlgorithm() != null) {
+			result.append(model.getFeatureSelectionAlgorithm().getDefinition().getName()).append(", ");
+		}
+		result.append(model.getClassificationAlgorithm().getDefinition().getName());
+		return result.toString().replace("*/", "* /");
+	}
+
+	/**
+	 * Internal method to return the classifier that was trained on all data.
+	 * 
+	 * @param classifier
+	 * @return
+	 */
+	private static Classifier unwrap(Classifier classifier) {
+		if (classifier instanceof GridSearch) {
+			return ((GridSearch) classifier).getBestClassifier();
+		}
+		return classifier;
+	}
+
+	/**
+	 * Internal method to append an indented line.
+	 * 
+	 * @param builder
+	 * @param indent
+	 * @param text
+	 */
+	private static void line(StringBuilder builder, int indent, String text) {
+		for (int i = 0; i < indent && !text.isEmpty(); i++) {
+			builder.append('\t');
+		}
+		builder.append(text).append('\n');
+	}
+
+	/**
+	 * Internal method to return the C literal of a double.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static String literal(double value) {
+		if (Double.isNaN(value)) {
+			return "NAN";
+		}
+		if (Double.isInfinite(value)) {
+			return value > 0 ? "INFINITY" : "(-INFINITY)";
+		}
+		if (value < 0 || 1 / value < 0) {
+			return "(" + Double.toString(value) + ")";
+		}
+		return Double.toString(value);
+	}
+
+}
@@ -0,0 +1,24 @@
+package ecst.scoring;
+
+/**
+ * This interface is implemented by the classes that are generated by the
+ * ModelCompiler. The values of an instance are given in the attribute order
+ * of the feature selected training instances (like in a ScoringModel).
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public interface CompiledModel {
+
+	/**
+	 * Returns the class distribution of one instance (the predicted value for
+	 * a numeric class) or null if the compiled model cannot classify the
+	 * instance (e.g. because of a missing value), so that the WEKA classifier
+	 * has to be used.
+	 * 
+	 * @param values
+	 * @return
+	 */
+	public double[] distribution(double[] values);
+
+}
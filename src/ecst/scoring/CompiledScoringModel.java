@@ -0,0 +1,90 @@
+package ecst.scoring;
+
+/**
+ * This class classifies instances by a model that was generated by the
+ * ModelCompiler (or by an ArrayModel). Instances that the compiled model
+ * cannot classify (e.g. because of missing values) are classified by the WEKA
+ * classifier. Without a WEKA classifier, such instances cannot be classified.
+ * 
+ * This class is not thread-safe.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class CompiledScoringModel implements ScoringModel {
+
+	private CompiledModel model;
+	private ScoringModel fallback;
+	private String source;
+	private long fallbacks;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param model
+	 *            the compiled model
+	 * @param fallback
+	 *            the WEKA classifier or null
+	 * @param source
+	 *            the source code of the compiled model (null if the model
+	 *            was not generated)
+	 */
+	public CompiledScoringModel(CompiledModel model, ScoringModel fallback, String source) {
+		this.model = model;
+		this.fallback = fallback;
+		this.source = source;
+	}
+
+	@Override
+	public double[] distributionForValues(double[] values) throws Exception {
+		double[] result = model.distribution(values);
+
+		if (result == null) {
+			if (fallback == null) {
+				throw new IllegalArgumentException("The instance cannot be classified without the WEKA classifier (missing value?)");
+			}
+			fallbacks++;
+			result = fallback.distributionForValues(values);
+		}
+		return result;
+	}
+
+	@Override
+	public double[][] distributionsForValues(double[][] values) throws Exception {
+		double[][] result = new double[values.length][];
+
+		for (int i = 0; i < values.length; i++) {
+			result[i] = distributionForValues(values[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the compiled model.
+	 * 
+	 * @return
+	 */
+	public CompiledModel getCompiledModel() {
+		return model;
+	}
+
+	/**
+	 * Returns the source code of the compiled model or null.
+	 * 
+	 * @return
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the number of instances that were classified by the WEKA
+	 * classifier.
+	 * 
+	 * @return
+	 */
+	public long getNumberOfFallbacks() {
+		return fallbacks;
+	}
+
+}
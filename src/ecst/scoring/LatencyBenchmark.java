@@ -0,0 +1,109 @@
+package ecst.scoring;
+
+import java.util.Arrays;
+
+import ecst.combiner.CombinerOutputModel;
+import ecst.utilities.InstanceUtilities;
+
+/**
+ * This class measures how fast the trained WEKA classifier of a pipeline
+ * classifies instances in this JVM: the latency of single instances (median
+ * and 99th percentile) and the throughput of batches. The preprocessing and
+ * the classification are measured (the phases of the Analysis without the
+ * feature extraction) by a ScoringPipeline on the test instances (the
+ * instances of the test file with a training-test-set evaluation, the training
+ * instances otherwise).
+ * 
+ * The instances are classified for some time before the measurement, so that
+ * the JIT compiler has compiled the classifier. Every phase is bounded by
+ * time: slow classifiers are measured on fewer instances, and a classifier
+ * that needs more than MILLISECONDS for one instance is only measured once
+ * (see LatencyBenchmarkResult.isIncomplete()).
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class LatencyBenchmark {
+
+	public static final int WARMUP_MILLISECONDS = 200;
+	public static final int MILLISECONDS = 500;
+	public static final int SAMPLES = 2000;
+
+	private CombinerOutputModel model;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param model
+	 *            the trained pipeline
+	 */
+	public LatencyBenchmark(CombinerOutputModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * Measures the latency and the throughput.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public LatencyBenchmarkResult run() throws Exception {
+		int count = 0;
+		long start;
+		long sample;
+		long first;
+		long[] latencies = new long[SAMPLES];
+		double[][] rows = null;
+		double throughput;
+		ScoringPipeline pipeline = new ScoringPipeline(model);
+
+		try {
+			rows = pipeline.toRows(CBenchmark.getTestInstances(model, pipeline));
+			if (rows.length == 0) {
+				throw new IllegalArgumentException("There are no test instances");
+			}
+
+			start = System.nanoTime();
+			pipeline.classifyRow(rows[0]);
+			first = System.nanoTime() - start;
+			if (first > MILLISECONDS * 1000000L) {
+				// the classifier is too slow for the other phases
+				return new LatencyBenchmarkResult(first, first, 1e9 / first, rows.length, 1, true);
+			}
+
+			count = 1;
+			while (System.nanoTime() - start < WARMUP_MILLISECONDS * 1000000L) {
+				pipeline.classifyRow(rows[count++ % rows.length]);
+			}
+
+			// slow classifiers are measured on fewer instances
+			start = System.nanoTime();
+			count = 0;
+			do {
+				sample = System.nanoTime();
+				pipeline.classifyRow(rows[count % rows.length]);
+				latencies[count++] = System.nanoTime() - sample;
+			} while (count < SAMPLES && System.nanoTime() - start < MILLISECONDS * 1000000L);
+			latencies = Arrays.copyOf(latencies, count);
+			Arrays.sort(latencies);
+
+			throughput = pipeline.measureThroughput(rows, MILLISECONDS);
+		} finally {
+			InstanceUtilities.closeClassifier(model.getClassifier());
+		}
+
+		return new LatencyBenchmarkResult(getPercentile(latencies, 0.5), getPercentile(latencies, 0.99), throughput, rows.length, count, false);
+	}
+
+	/**
+	 * Internal method to return a percentile (nearest rank) of sorted values.
+	 * 
+	 * @param values
+	 * @param percentile
+	 * @return
+	 */
+	private static double getPercentile(long[] values, double percentile) {
+		return values[Math.max(0, (int) Math.ceil(percentile * values.length) - 1)];
+	}
+
+}
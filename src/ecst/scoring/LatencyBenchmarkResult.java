@@ -0,0 +1,117 @@
+package ecst.scoring;
+
+import java.util.Locale;
+
+/**
+ * This class contains the result of a LatencyBenchmark.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class LatencyBenchmarkResult {
+
+	private double medianLatency;
+	private double highLatency;
+	private double throughput;
+	private int instances;
+	private int samples;
+	private boolean incomplete;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param medianLatency
+	 *            the median latency per instance in nanoseconds
+	 * @param highLatency
+	 *            the 99th percentile of the latency per instance in
+	 *            nanoseconds
+	 * @param throughput
+	 *            the instances per second that are classified in batches
+	 * @param instances
+	 *            the number of test instances
+	 * @param samples
+	 *            the number of measured latencies
+	 * @param incomplete
+	 *            true if the classifier was too slow for the warmup and the
+	 *            throughput measurement
+	 */
+	public LatencyBenchmarkResult(double medianLatency, double highLatency, double throughput, int instances, int samples, boolean incomplete) {
+		this.medianLatency = medianLatency;
+		this.highLatency = highLatency;
+		this.throughput = throughput;
+		this.instances = instances;
+		this.samples = samples;
+		this.incomplete = incomplete;
+	}
+
+	/**
+	 * Returns the median latency per instance in nanoseconds.
+	 * 
+	 * @return
+	 */
+	public double getMedianLatency() {
+		return medianLatency;
+	}
+
+	/**
+	 * Returns the 99th percentile of the latency per instance in nanoseconds.
+	 * 
+	 * @return
+	 */
+	public double getHighLatency() {
+		return highLatency;
+	}
+
+	/**
+	 * Returns the instances per second that are classified in batches.
+	 * 
+	 * @return
+	 */
+	public double getThroughput() {
+		return throughput;
+	}
+
+	/**
+	 * Returns the number of test instances.
+	 * 
+	 * @return
+	 */
+	public int getInstances() {
+		return instances;
+	}
+
+	/**
+	 * Returns the number of measured latencies.
+	 * 
+	 * @return
+	 */
+	public int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Returns true if the classifier was too slow for the warmup and the
+	 * throughput measurement. The latencies and the throughput are then
+	 * derived from the classification of one instance without warmup.
+	 * 
+	 * @return
+	 */
+	public boolean isIncomplete() {
+		return incomplete;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+
+		result.append(String.format(Locale.US, "Latency per instance (p50): %.1f ns\n", medianLatency));
+		result.append(String.format(Locale.US, "Latency per instance (p99): %.1f ns\n", highLatency));
+		result.append(String.format(Locale.US, "Throughput in batches: %.0f instances/s\n", throughput));
+		result.append("Test instances: ").append(instances).append(" (").append(samples).append(" measured latencies)\n");
+		if (incomplete) {
+			result.append("The classifier is too slow for a complete measurement: one instance without warmup\n");
+		}
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,1203 @@
+package ecst.scoring;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+import org.apache.commons.math3.util.FastMath;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.functions.LibSVM;
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.functions.Logistic;
+import weka.classifiers.functions.SMO;
+import weka.classifiers.functions.supportVector.Kernel;
+import weka.classifiers.functions.supportVector.PolyKernel;
+import weka.classifiers.functions.supportVector.SMOset;
+import weka.classifiers.rules.PART;
+import weka.classifiers.rules.part.ClassifierDecList;
+import weka.classifiers.rules.part.MakeDecList;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.j48.BinC45Split;
+import weka.classifiers.trees.j48.C45Split;
+import weka.classifiers.trees.j48.ClassifierSplitModel;
+import weka.classifiers.trees.j48.ClassifierTree;
+import weka.classifiers.trees.j48.NoSplit;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.Normalize;
+import ecst.algorithm.classification.kernel.MercerSigmoidKernel;
+
+/**
+ * This class compiles a trained WEKA classifier to a generated Java class
+ * whose code is specialized to the model: trees (J48) become nested ifs,
+ * rules (PART) a sequence of ifs, linear models (LinearRegression, Logistic)
+ * unrolled dot products with the coefficients as literals, and support vector
+ * machines (LibSVM, SMO) loops over flat arrays of the support vectors. The
+ * generated source is compiled in memory by the Java compiler of the running
+ * JVM and loaded by a class loader of its own, so that the class is not
+ * visible to the rest of the application and is unloaded with the model.
+ * 
+ * The generated code performs the same floating-point operations in the same
+ * order as WEKA, so that the predictions are identical. Instances that the
+ * generated code does not handle (missing values, which WEKA replaces or
+ * distributes) are classified by the WEKA classifier. Models that cannot be
+ * compiled (e.g. nominal attributes for the linear models and SVMs, other
+ * kernels, probability estimates of the SVMs) are rejected with an
+ * IllegalArgumentException.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class ModelCompiler {
+
+	public static final String PACKAGE = "ecst.scoring.generated";
+	public static final int METHOD_NODES = 128;
+	public static final int METHOD_RULES = 32;
+	public static final int METHOD_TERMS = 256;
+
+	static final int NUMERIC = 0;
+	static final int NOMINAL = 1;
+	static final int BINARY_NOMINAL = 2;
+
+	private Classifier classifier;
+	private Instances header;
+	private String className;
+	private String source;
+	private List<Object> constants;
+	private StringBuilder methods;
+	private StringBuilder helpers;
+	private int helperCount;
+	private boolean usesPowi;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param classifier
+	 *            the trained classifier
+	 * @param header
+	 *            the format of the training instances
+	 */
+	public ModelCompiler(Classifier classifier, Instances header) {
+		this.classifier = classifier;
+		this.header = new Instances(header, 0);
+		this.className = "Compiled" + classifier.getClass().getSimpleName();
+	}
+
+	/**
+	 * Returns whether the ModelCompiler supports the class of the classifier.
+	 * The model itself can be unsupported nevertheless (see the class
+	 * comment).
+	 * 
+	 * @param classifier
+	 * @return
+	 */
+	public static boolean isSupported(Classifier classifier) {
+		Class<?> type = classifier.getClass();
+
+		return type == J48.class || type == PART.class || type == LinearRegression.class || type == Logistic.class || type == LibSVM.class
+				|| type == SMO.class;
+	}
+
+	/**
+	 * Returns a compiled model of the classifier if possible and the WEKA
+	 * classifier otherwise.
+	 * 
+	 * @param classifier
+	 *            the trained classifier
+	 * @param header
+	 *            the format of the training instances
+	 * @return
+	 */
+	public static ScoringModel createScoringModel(Classifier classifier, Instances header) {
+		if (isSupported(classifier) && ToolProvider.getSystemJavaCompiler() != null) {
+			try {
+				return new ModelCompiler(classifier, header).compile();
+			} catch (Exception e) {
+				// the model is not supported
+			}
+		}
+		return new WekaScoringModel(classifier, header);
+	}
+
+	/**
+	 * Returns the generated source code.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public String getSource() throws Exception {
+		if (source == null) {
+			generate();
+		}
+		return source;
+	}
+
+	/**
+	 * Generates, compiles and loads the specialized class.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public CompiledScoringModel compile() throws Exception {
+		String name = PACKAGE + "." + className;
+		Map<String, byte[]> classes = compileSource(name, getSource());
+		ModelClassLoader loader = new ModelClassLoader(classes, CompiledModel.class.getClassLoader());
+		Class<?> type = loader.loadClass(name);
+		CompiledModel model = (CompiledModel) type.getConstructor(Object[].class).newInstance(new Object[] { constants.toArray() });
+
+		return new CompiledScoringModel(model, new WekaScoringModel(classifier, header), source);
+	}
+
+	/**
+	 * Internal method to generate the source code.
+	 * 
+	 * @throws Exception
+	 */
+	private void generate() throws Exception {
+		StringBuilder result = new StringBuilder();
+
+		constants = new ArrayList<Object>();
+		methods = new StringBuilder();
+		helpers = new StringBuilder();
+		helperCount = 0;
+		usesPowi = false;
+
+		if (!isSupported(classifier)) {
+			throw new IllegalArgumentException(classifier.getClass().getName() + " cannot be compiled");
+		}
+		if (classifier instanceof J48) {
+			generateTree((J48) classifier);
+		} else if (classifier instanceof PART) {
+			generateRules((PART) classifier);
+		} else if (classifier instanceof LinearRegression) {
+			generateLinearRegression((LinearRegression) classifier);
+		} else if (classifier instanceof Logistic) {
+			generateLogistic((Logistic) classifier);
+		} else if (classifier instanceof LibSVM) {
+			generateLibSVM((LibSVM) classifier);
+		} else if (classifier instanceof SMO) {
+			generateSMO((SMO) classifier);
+		}
+		if (usesPowi) {
+			appendPowi();
+		}
+
+		result.append("package " + PACKAGE + ";\n\n");
+		result.append("public final class " + className + " implements " + CompiledModel.class.getName() + " {\n\n");
+		for (int i = 0; i < constants.size(); i++) {
+			result.append("\tprivate final " + constants.get(i).getClass().getSimpleName() + " c" + i + ";\n");
+		}
+		result.append("\n\tpublic " + className + "(Object[] constants) {\n");
+		for (int i = 0; i < constants.size(); i++) {
+			result.append("\t\tc" + i + " = (" + constants.get(i).getClass().getSimpleName() + ") constants[" + i + "];\n");
+		}
+		result.append("\t}\n\n");
+		result.append(methods);
+		result.append(helpers);
+		result.append("}\n");
+		source = result.toString();
+	}
+
+	/**
+	 * Internal method to generate a J48 tree as nested ifs. Large subtrees
+	 * are moved to methods of their own, so that the JIT compiler compiles all
+	 * methods.
+	 * 
+	 * @param j48
+	 * @throws Exception
+	 */
+	private void generateTree(J48 j48) throws Exception {
+		int methodCount = 1;
+		int[] budget = new int[1];
+		Node node = null;
+		LinkedList<Node> pending = new LinkedList<Node>();
+		List<double[]> leaves = new ArrayList<double[]>();
+		String leavesName = null;
+
+		node = createTreeNode((ClassifierTree) getField(J48.class, j48, "m_root"), j48.getUseLaplace(), leaves);
+		leavesName = addConstant(leaves.toArray(new double[leaves.size()][]));
+
+		line(methods, 1, "public double[] distribution(double[] v) {");
+		line(methods, 2, "return node0(v);");
+		line(methods, 1, "}");
+		node.method = 0;
+		pending.add(node);
+		while (!pending.isEmpty()) {
+			node = pending.removeFirst();
+			line(methods, 0, "");
+			line(methods, 1, "private double[] node" + node.method + "(double[] v) {");
+			budget[0] = METHOD_NODES;
+			methodCount = appendTreeNode(node, 2, true, budget, pending, methodCount, leavesName);
+			line(methods, 1, "}");
+		}
+	}
+
+	/**
+	 * Internal method to append a node of a tree.
+	 * 
+	 * @param node
+	 * @param indent
+	 * @param methodRoot
+	 *            whether the node is the first node of a method
+	 * @param budget
+	 *            the number of nodes that can still be added to the method
+	 * @param pending
+	 *            the nodes whose methods are appended later
+	 * @param methodCount
+	 * @param leavesName
+	 * @return the new number of methods
+	 */
+	private int appendTreeNode(Node node, int indent, boolean methodRoot, int[] budget, List<Node> pending, int methodCount, String leavesName) {
+		String value = null;
+
+		if (!methodRoot && node.size > 1 && node.size > budget[0]) {
+			node.method = methodCount++;
+			pending.add(node);
+			line(methods, indent, "return node" + node.method + "(v);");
+			return methodCount;
+		}
+		budget[0]--;
+
+		if (node.children == null) {
+			line(methods, indent, "return " + leavesName + "[" + node.leaf + "].clone();");
+			return methodCount;
+		}
+		value = "v[" + node.attribute + "]";
+		line(methods, indent, "if (Double.isNaN(" + value + ")) return null;");
+		if (node.type == NOMINAL) {
+			line(methods, indent, "switch ((int) " + value + ") {");
+			for (int i = 0; i < node.children.length; i++) {
+				line(methods, indent, "case " + i + ":");
+				methodCount = appendTreeNode(node.children[i], indent + 1, false, budget, pending, methodCount, leavesName);
+			}
+			line(methods, indent, "default:");
+			line(methods, indent + 1, "return null;");
+			line(methods, indent, "}");
+		} else {
+			line(methods, indent, "if (" + getCondition(node, 0) + ") {");
+			methodCount = appendTreeNode(node.children[0], indent + 1, false, budget, pending, methodCount, leavesName);
+			line(methods, indent, "} else {");
+			methodCount = appendTreeNode(node.children[1], indent + 1, false, budget, pending, methodCount, leavesName);
+			line(methods, indent, "}");
+		}
+		return methodCount;
+	}
+
+	/**
+	 * Internal method to convert a node of a J48 tree. An empty son is
+	 * replaced by a leaf with the distribution of the parent, like in WEKA.
+	 * 
+	 * @param tree
+	 * @param laplace
+	 * @param leaves
+	 *            the distributions of the leaves
+	 * @return
+	 * @throws Exception
+	 */
+	Node createTreeNode(ClassifierTree tree, boolean laplace, List<double[]> leaves) throws Exception {
+		Node result = null;
+		ClassifierTree son = null;
+		ClassifierTree[] sons = null;
+		ClassifierSplitModel model = (ClassifierSplitModel) getField(ClassifierTree.class, tree, "m_localModel");
+
+		if ((Boolean) getField(ClassifierTree.class, tree, "m_isLeaf")) {
+			return createLeaf(model, -1, laplace, leaves);
+		}
+		sons = (ClassifierTree[]) getField(ClassifierTree.class, tree, "m_sons");
+		result = createSplit(model, sons.length);
+		result.children = new Node[sons.length];
+		for (int i = 0; i < sons.length; i++) {
+			son = sons[i];
+			if ((Boolean) getField(ClassifierTree.class, son, "m_isEmpty")) {
+				result.children[i] = createLeaf(model, i, laplace, leaves);
+			} else {
+				result.children[i] = createTreeNode(son, laplace, leaves);
+			}
+			result.size += result.children[i].size;
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to generate the rules of PART as a sequence of ifs. The
+	 * first rule that covers an instance returns its distribution.
+	 * 
+	 * @param part
+	 * @throws Exception
+	 */
+	private void generateRules(PART part) throws Exception {
+		int indent;
+		List<double[]> leaves = new ArrayList<double[]>();
+		List<List<Node>> conditions = createRules(part, leaves);
+		String leavesName = null;
+
+		leavesName = addConstant(leaves.toArray(new double[leaves.size()][]));
+
+		line(methods, 1, "public double[] distribution(double[] v) {");
+		line(methods, 2, "return rules0(v);");
+		line(methods, 1, "}");
+		for (int i = 0; i < conditions.size(); i++) {
+			// the rules after a rule without conditions are never used
+			if (i > 0 && conditions.get(i - 1).isEmpty()) {
+				break;
+			}
+			if (i % METHOD_RULES == 0) {
+				line(methods, 0, "");
+				line(methods, 1, "private double[] rules" + (i / METHOD_RULES) + "(double[] v) {");
+			}
+			indent = 2;
+			for (Node rule : conditions.get(i)) {
+				line(methods, indent, "if (Double.isNaN(v[" + rule.attribute + "])) return null;");
+				line(methods, indent++, "if (" + getCondition(rule, rule.subset) + ") {");
+			}
+			line(methods, indent, "return " + leavesName + "[" + i + "].clone();");
+			while (indent > 2) {
+				line(methods, --indent, "}");
+			}
+			if (conditions.get(i).isEmpty()) {
+				line(methods, 1, "}");
+			} else if (i == conditions.size() - 1) {
+				// WEKA fails if no rule covers the instance
+				line(methods, 2, "return null;");
+				line(methods, 1, "}");
+			} else if (i % METHOD_RULES == METHOD_RULES - 1) {
+				line(methods, 2, "return rules" + (i / METHOD_RULES + 1) + "(v);");
+				line(methods, 1, "}");
+			}
+		}
+	}
+
+	/**
+	 * Internal method to convert the rules of PART to the lists of their
+	 * conditions (the subset of each condition is the subset that the rule
+	 * requires).
+	 * 
+	 * @param part
+	 * @param leaves
+	 *            the distributions of the rules
+	 * @return
+	 * @throws Exception
+	 */
+	List<List<Node>> createRules(PART part, List<double[]> leaves) throws Exception {
+		ClassifierDecList node = null;
+		ClassifierSplitModel model = null;
+		Node condition = null;
+		Vector<?> rules = null;
+		List<List<Node>> result = new ArrayList<List<Node>>();
+
+		rules = (Vector<?>) getField(MakeDecList.class, getField(PART.class, part, "m_root"), "theRules");
+		for (Object rule : rules) {
+			node = (ClassifierDecList) rule;
+			result.add(new ArrayList<Node>());
+			while (!(Boolean) getField(ClassifierDecList.class, node, "m_isLeaf")) {
+				model = (ClassifierSplitModel) getField(ClassifierDecList.class, node, "m_localModel");
+				condition = createSplit(model, model.numSubsets());
+				condition.subset = (Integer) getField(ClassifierDecList.class, node, "indeX");
+				result.get(result.size() - 1).add(condition);
+				node = ((ClassifierDecList[]) getField(ClassifierDecList.class, node, "m_sons"))[condition.subset];
+			}
+			createLeaf((ClassifierSplitModel) getField(ClassifierDecList.class, node, "m_localModel"), -1, false, leaves);
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to create a node for a split of J48 or PART.
+	 * 
+	 * @param model
+	 * @param subsets
+	 * @return
+	 * @throws Exception
+	 */
+	private Node createSplit(ClassifierSplitModel model, int subsets) throws Exception {
+		Node result = new Node();
+
+		if (model instanceof C45Split) {
+			result.attribute = ((C45Split) model).attIndex();
+			result.splitPoint = (Double) getField(C45Split.class, model, "m_splitPoint");
+			result.type = header.attribute(result.attribute).isNominal() ? NOMINAL : NUMERIC;
+		} else if (model instanceof BinC45Split) {
+			result.attribute = ((BinC45Split) model).attIndex();
+			result.splitPoint = (Double) getField(BinC45Split.class, model, "m_splitPoint");
+			result.type = header.attribute(result.attribute).isNominal() ? BINARY_NOMINAL : NUMERIC;
+		} else {
+			throw new IllegalArgumentException("Split model " + model.getClass().getName() + " cannot be compiled");
+		}
+		if (result.type != NOMINAL && subsets != 2) {
+			throw new IllegalArgumentException("Binary split with " + subsets + " subsets");
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to create a leaf. Its distribution is computed by the
+	 * split model of WEKA.
+	 * 
+	 * @param model
+	 * @param subset
+	 *            the subset of the split model or -1 for the model of a leaf
+	 * @param laplace
+	 * @param leaves
+	 *            the distributions of the leaves
+	 * @return
+	 * @throws Exception
+	 */
+	private Node createLeaf(ClassifierSplitModel model, int subset, boolean laplace, List<double[]> leaves) throws Exception {
+		Node result = new Node();
+		double[] distribution = new double[header.numClasses()];
+
+		// the distribution of other models depends on the instance
+		if (subset < 0 && !(model instanceof NoSplit)) {
+			throw new IllegalArgumentException("Leaf model " + model.getClass().getName() + " cannot be compiled");
+		}
+		for (int i = 0; i < distribution.length; i++) {
+			distribution[i] = laplace ? model.classProbLaplace(i, null, subset) : model.classProb(i, null, subset);
+		}
+		result.leaf = leaves.size();
+		leaves.add(distribution);
+		return result;
+	}
+
+	/**
+	 * Internal method to return the condition that an instance is assigned to
+	 * the given subset of a split (the value must not be missing).
+	 * 
+	 * @param node
+	 * @param subset
+	 * @return
+	 */
+	private String getCondition(Node node, int subset) {
+		String value = "v[" + node.attribute + "]";
+
+		if (node.type == NOMINAL) {
+			return "(int) " + value + " == " + subset;
+		}
+		if (node.type == BINARY_NOMINAL) {
+			return "(int) " + value + (subset == 0 ? " == " : " != ") + (int) node.splitPoint;
+		}
+		// like Utils.smOrEq()
+		if (subset == 0) {
+			return value + " - " + literal(node.splitPoint) + " < " + literal(Utils.SMALL);
+		}
+		return "!(" + value + " - " + literal(node.splitPoint) + " < " + literal(Utils.SMALL) + ")";
+	}
+
+	/**
+	 * Internal method to generate the linear regression as an unrolled dot
+	 * product.
+	 * 
+	 * @param regression
+	 * @throws Exception
+	 */
+	private void generateLinearRegression(LinearRegression regression) throws Exception {
+		int column = 0;
+		int classIndex = (Integer) getField(LinearRegression.class, regression, "m_ClassIndex");
+		boolean[] selected = (boolean[]) getField(LinearRegression.class, regression, "m_SelectedAttributes");
+		double[] coefficients = (double[]) getField(LinearRegression.class, regression, "m_Coefficients");
+		List<String> terms = new ArrayList<String>();
+
+		checkNumeric();
+		for (int j = 0; j < header.numAttributes(); j++) {
+			if (j != classIndex && selected[j]) {
+				terms.add(literal(coefficients[column++]) + " * v[" + j + "]");
+			}
+		}
+
+		line(methods, 1, "public double[] distribution(double[] v) {");
+		line(methods, 2, "double result = 0;");
+		appendSum(2, "result", "v", terms);
+		line(methods, 2, "result += " + literal(coefficients[column]) + ";");
+		// WEKA replaces missing values
+		line(methods, 2, "if (Double.isNaN(result)) return null;");
+		line(methods, 2, "return new double[] { result };");
+		line(methods, 1, "}");
+	}
+
+	/**
+	 * Internal method to generate the logistic regression as unrolled dot
+	 * products.
+	 * 
+	 * @param logistic
+	 * @throws Exception
+	 */
+	private void generateLogistic(Logistic logistic) throws Exception {
+		int numPredictors = (Integer) getField(Logistic.class, logistic, "m_NumPredictors");
+		int classIndex = (Integer) getField(Logistic.class, logistic, "m_ClassIndex");
+		int numClasses = (Integer) getField(Logistic.class, logistic, "m_NumClasses");
+		double[][] parameters = (double[][]) getField(Logistic.class, logistic, "m_Par");
+		Instances format = ((Filter) getField(Logistic.class, logistic, "m_AttFilter")).getOutputFormat();
+		List<Integer> columns = new ArrayList<Integer>();
+		List<String> terms = null;
+
+		checkNumeric();
+		// the attributes that are not removed as useless
+		for (int k = 0; k <= numPredictors; k++) {
+			if (k != classIndex) {
+				columns.add(header.attribute(format.attribute(k).name()).index());
+			}
+		}
+
+		line(methods, 1, "public double[] distribution(double[] v) {");
+		line(methods, 2, "double[] s = new double[" + numClasses + "];");
+		line(methods, 2, "double[] result = new double[" + numClasses + "];");
+		line(methods, 2, "double sum;");
+		for (int j = 0; j < numClasses - 1; j++) {
+			terms = new ArrayList<String>();
+			terms.add(literal(parameters[0][j]) + " * 1.0");
+			for (int k = 1; k <= columns.size(); k++) {
+				terms.add(literal(parameters[k][j]) + " * v[" + columns.get(k - 1) + "]");
+			}
+			line(methods, 2, "s[" + j + "] = 0;");
+			appendSum(2, "s[" + j + "]", "v", terms);
+			// WEKA replaces missing values
+			line(methods, 2, "if (Double.isNaN(s[" + j + "])) return null;");
+		}
+		line(methods, 2, "for (int m = 0; m < " + numClasses + "; m++) {");
+		line(methods, 3, "sum = 0;");
+		line(methods, 3, "for (int n = 0; n < " + (numClasses - 1) + "; n++) {");
+		line(methods, 4, "sum += Math.exp(s[n] - s[m]);");
+		line(methods, 3, "}");
+		line(methods, 3, "result[m] = 1 / (sum + Math.exp(-s[m]));");
+		line(methods, 2, "}");
+		line(methods, 2, "return result;");
+		line(methods, 1, "}");
+	}
+
+	/**
+	 * Internal method to generate LibSVM. The support vectors are stored in
+	 * one flat array; the kernel values are summed in the order of libsvm.
+	 * 
+	 * @param libsvm
+	 * @throws Exception
+	 */
+	private void generateLibSVM(LibSVM libsvm) throws Exception {
+		int l;
+		int p = 0;
+		int[] start = null;
+		int[] positions = null;
+		double[] vectors = null;
+		String vectorsName = null;
+		String[] coefficientNames = null;
+		svm_model model = (svm_model) getField(LibSVM.class, libsvm, "m_Model");
+		svm_parameter parameter = model.param;
+		boolean classification = parameter.svm_type == svm_parameter.C_SVC || parameter.svm_type == svm_parameter.NU_SVC;
+
+		checkNumeric();
+		if (libsvm.getProbabilityEstimates() && classification) {
+			throw new IllegalArgumentException("Probability estimates cannot be compiled");
+		}
+		if (!classification && parameter.svm_type != svm_parameter.ONE_CLASS && header.classAttribute().isNominal()) {
+			throw new IllegalArgumentException("Regression with a nominal class cannot be compiled");
+		}
+
+		l = model.l;
+		positions = getPositions();
+		vectors = new double[l * (header.numAttributes() - 1)];
+		for (int i = 0; i < l; i++) {
+			for (svm_node node : model.SV[i]) {
+				vectors[i * (header.numAttributes() - 1) + positions[node.index - 1]] = node.value;
+			}
+		}
+		vectorsName = addConstant(vectors);
+		coefficientNames = new String[model.sv_coef.length];
+		for (int i = 0; i < coefficientNames.length; i++) {
+			coefficientNames[i] = addConstant(model.sv_coef[i]);
+		}
+
+		line(methods, 1, "public double[] distribution(double[] v) {");
+		line(methods, 2, "double[] result = new double[" + header.numClasses() + "];");
+		line(methods, 2, "double[] k = new double[" + l + "];");
+		line(methods, 2, "double sum;");
+		appendInput(2, (Filter) getField(LibSVM.class, libsvm, "m_Filter"));
+		line(methods, 2, "for (int i = 0, o = 0; i < " + l + "; i++, o += " + (header.numAttributes() - 1) + ") {");
+		appendKernelSum(3, "x", vectorsName, parameter.kernel_type == svm_parameter.RBF);
+		line(methods, 3, "k[i] = " + getLibSVMKernel(parameter) + ";");
+		line(methods, 2, "}");
+
+		if (!classification) {
+			line(methods, 2, "sum = 0;");
+			line(methods, 2, "for (int i = 0; i < " + l + "; i++) {");
+			line(methods, 3, "sum += " + coefficientNames[0] + "[i] * k[i];");
+			line(methods, 2, "}");
+			line(methods, 2, "sum -= " + literal(model.rho[0]) + ";");
+			line(methods, 2, parameter.svm_type == svm_parameter.ONE_CLASS ? "result[0] = sum > 0 ? 1 : 0;" : "result[0] = sum;");
+			line(methods, 2, "return result;");
+			line(methods, 1, "}");
+			return;
+		}
+
+		// one-against-one voting like svm_predict_values()
+		start = new int[model.nr_class];
+		for (int i = 1; i < model.nr_class; i++) {
+			start[i] = start[i - 1] + model.nSV[i - 1];
+		}
+		line(methods, 2, "int[] votes = new int[" + model.nr_class + "];");
+		line(methods, 2, "int best = 0;");
+		for (int i = 0; i < model.nr_class; i++) {
+			for (int j = i + 1; j < model.nr_class; j++) {
+				line(methods, 2, "sum = 0;");
+				line(methods, 2, "for (int n = " + start[i] + "; n < " + (start[i] + model.nSV[i]) + "; n++) {");
+				line(methods, 3, "sum += " + coefficientNames[j - 1] + "[n] * k[n];");
+				line(methods, 2, "}");
+				line(methods, 2, "for (int n = " + start[j] + "; n < " + (start[j] + model.nSV[j]) + "; n++) {");
+				line(methods, 3, "sum += " + coefficientNames[i] + "[n] * k[n];");
+				line(methods, 2, "}");
+				line(methods, 2, "sum -= " + literal(model.rho[p++]) + ";");
+				line(methods, 2, "if (sum > 0) votes[" + i + "]++; else votes[" + j + "]++;");
+			}
+		}
+		line(methods, 2, "for (int i = 1; i < " + model.nr_class + "; i++) {");
+		line(methods, 3, "if (votes[i] > votes[best]) best = i;");
+		line(methods, 2, "}");
+		line(methods, 2, "result[" + addConstant(model.label.clone()) + "[best]] = 1;");
+		line(methods, 2, "return result;");
+		line(methods, 1, "}");
+	}
+
+	/**
+	 * Internal method to return the kernel function of libsvm applied to the
+	 * variable sum (the dot product or the squared distance).
+	 * 
+	 * @param parameter
+	 * @return
+	 */
+	private String getLibSVMKernel(svm_parameter parameter) {
+		switch (parameter.kernel_type) {
+		case svm_parameter.LINEAR:
+			return "sum";
+		case svm_parameter.POLY:
+			usesPowi = true;
+			return "powi(" + literal(parameter.gamma) + " * sum + " + literal(parameter.coef0) + ", " + parameter.degree + ")";
+		case svm_parameter.RBF:
+			return "Math.exp(-" + literal(parameter.gamma) + " * sum)";
+		case svm_parameter.SIGMOID:
+			return "Math.tanh(" + literal(parameter.gamma) + " * sum + " + literal(parameter.coef0) + ")";
+		default:
+			throw new IllegalArgumentException("Kernel type " + parameter.kernel_type + " cannot be compiled");
+		}
+	}
+
+	/**
+	 * Internal method to generate SMO. Each binary machine with a linear
+	 * kernel is an unrolled dot product with its weights; the support vectors
+	 * of the other machines are stored in flat arrays.
+	 * 
+	 * @param smo
+	 * @throws Exception
+	 */
+	private void generateSMO(SMO smo) throws Exception {
+		int n = header.numAttributes() - 1;
+		int classIndex = header.classIndex();
+		int index;
+		int[] positions = getPositions();
+		int[] indices = null;
+		double[] weights = null;
+		double[] alpha = null;
+		double[] classes = null;
+		double[] vectors = null;
+		double[] coefficients = null;
+		boolean linear = (Boolean) getField(SMO.class, smo, "m_KernelIsLinear");
+		boolean mercer = false;
+		Object machine = null;
+		Object[][] machines = (Object[][]) getField(SMO.class, smo, "m_classifiers");
+		Class<?> machineClass = Class.forName(SMO.class.getName() + "$BinarySMO");
+		Kernel kernel = null;
+		Instances data = null;
+		SMOset supportVectors = null;
+		List<String> terms = null;
+		List<Integer> order = null;
+
+		checkNumeric();
+		if (smo.getBuildLogisticModels()) {
+			throw new IllegalArgumentException("Logistic models cannot be compiled");
+		}
+		// the features of the Mercer sigmoid kernel are the first attributes
+		mercer = smo.getKernel().getClass() == MercerSigmoidKernel.class;
+		if (!linear && smo.getKernel().getClass() != PolyKernel.class && !(mercer && classIndex == n)) {
+			throw new IllegalArgumentException("Kernel " + smo.getKernel().getClass().getName() + " cannot be compiled");
+		}
+
+		line(methods, 1, "public double[] distribution(double[] v) {");
+		line(methods, 2, "double[] result = new double[" + header.numClasses() + "];");
+		line(methods, 2, "double total = 0;");
+		line(methods, 2, "double sum;");
+		line(methods, 2, "double output;");
+		appendInput(2, (Filter) getField(SMO.class, smo, "m_Filter"));
+		if (mercer) {
+			line(methods, 2, "double[] f = new double[" + n + "];");
+			line(methods, 2, "for (int j = 0; j < " + n + "; j++) {");
+			line(methods, 3, "f[j] = " + FastMath.class.getName() + ".tanh((x[j] - " + literal(((MercerSigmoidKernel) smo.getKernel()).getD()) + ") / "
+					+ literal(((MercerSigmoidKernel) smo.getKernel()).getB()) + ");");
+			line(methods, 2, "}");
+		}
+		for (int i = 0; i < header.numClasses(); i++) {
+			for (int j = i + 1; j < header.numClasses(); j++) {
+				machine = machines[i][j];
+				weights = (double[]) getField(machineClass, machine, "m_sparseWeights");
+				alpha = (double[]) getField(machineClass, machine, "m_alpha");
+				if (alpha == null && weights == null) {
+					continue;
+				}
+				line(methods, 2, "output = 0;");
+				if (linear) {
+					terms = new ArrayList<String>();
+					indices = (int[]) getField(machineClass, machine, "m_sparseIndices");
+					if (weights == null) {
+						weights = (double[]) getField(machineClass, machine, "m_weights");
+						indices = null;
+					}
+					for (int p = 0; p < weights.length; p++) {
+						index = indices == null ? p : indices[p];
+						if (index != classIndex) {
+							terms.add("x[" + positions[index] + "] * " + literal(weights[p]));
+						}
+					}
+					appendSum(2, "output", "x", terms);
+				} else {
+					kernel = (Kernel) getField(machineClass, machine, "m_kernel");
+					data = (Instances) getField(machineClass, machine, "m_data");
+					classes = (double[]) getField(machineClass, machine, "m_class");
+					supportVectors = (SMOset) getField(machineClass, machine, "m_supportVectors");
+					order = new ArrayList<Integer>();
+					for (int s = supportVectors.getNext(-1); s != -1; s = supportVectors.getNext(s)) {
+						order.add(s);
+					}
+					vectors = new double[order.size() * n];
+					coefficients = new double[order.size()];
+					for (int s = 0; s < order.size(); s++) {
+						for (int a = 0; a < header.numAttributes(); a++) {
+							if (a != classIndex) {
+								vectors[s * n + positions[a]] = mercer ? FastMath.tanh((data.instance(order.get(s)).value(a) - ((MercerSigmoidKernel) kernel)
+										.getD()) / ((MercerSigmoidKernel) kernel).getB()) : data.instance(order.get(s)).value(a);
+							}
+						}
+						coefficients[s] = classes[order.get(s)] * alpha[order.get(s)];
+					}
+					line(methods, 2, "for (int i = 0, o = 0; i < " + order.size() + "; i++, o += " + n + ") {");
+					appendKernelSum(3, mercer ? "f" : "x", addConstant(vectors), false);
+					if (mercer) {
+						line(methods, 3, "sum = sum / " + n + ";");
+					} else {
+						if (((PolyKernel) kernel).getUseLowerOrder()) {
+							line(methods, 3, "sum += 1.0;");
+						}
+						if (((PolyKernel) kernel).getExponent() != 1.0) {
+							line(methods, 3, "sum = Math.pow(sum, " + literal(((PolyKernel) kernel).getExponent()) + ");");
+						}
+					}
+					line(methods, 3, "output += " + addConstant(coefficients) + "[i] * sum;");
+					line(methods, 2, "}");
+				}
+				line(methods, 2, "output -= " + literal((Double) getField(machineClass, machine, "m_b")) + ";");
+				line(methods, 2, "if (output > 0) result[" + j + "] += 1; else result[" + i + "] += 1;");
+			}
+		}
+		// like Utils.normalize()
+		line(methods, 2, "for (int i = 0; i < result.length; i++) {");
+		line(methods, 3, "total += result[i];");
+		line(methods, 2, "}");
+		line(methods, 2, "if (total == 0) return null;");
+		line(methods, 2, "for (int i = 0; i < result.length; i++) {");
+		line(methods, 3, "result[i] /= total;");
+		line(methods, 2, "}");
+		line(methods, 2, "return result;");
+		line(methods, 1, "}");
+	}
+
+	/**
+	 * Internal method to append the statements that copy the values of the
+	 * attributes (without the class) to the array x and normalize them like
+	 * WEKA's normalization filter.
+	 * 
+	 * @param indent
+	 * @param filter
+	 *            null or the normalization of the classifier
+	 * @throws Exception
+	 */
+	private void appendInput(int indent, Filter filter) throws Exception {
+		int n = header.numAttributes() - 1;
+		int[] columns = new int[n];
+		double[] minimum = new double[n];
+		double[] range = new double[n];
+		double[] minArray = null;
+		double[] maxArray = null;
+		Normalize normalize = null;
+		String rangeName = null;
+
+		for (int a = 0, p = 0; a < header.numAttributes(); a++) {
+			if (a != header.classIndex()) {
+				columns[p++] = a;
+			}
+		}
+		if (filter != null && !(filter instanceof Normalize)) {
+			throw new IllegalArgumentException("Filter " + filter.getClass().getName() + " cannot be compiled");
+		}
+
+		line(methods, indent, "double[] x = new double[" + n + "];");
+		line(methods, indent, "double value;");
+		line(methods, indent, "for (int j = 0; j < " + n + "; j++) {");
+		line(methods, indent + 1, "value = v[" + addConstant(columns) + "[j]];");
+		// WEKA replaces missing values
+		line(methods, indent + 1, "if (Double.isNaN(value)) return null;");
+		if (filter == null) {
+			line(methods, indent + 1, "x[j] = value;");
+		} else {
+			normalize = (Normalize) filter;
+			minArray = normalize.getMinArray();
+			maxArray = normalize.getMaxArray();
+			for (int p = 0; p < n; p++) {
+				minimum[p] = minArray[columns[p]];
+				// zero marks the attributes that are set to zero
+				range[p] = Double.isNaN(minimum[p]) || maxArray[columns[p]] == minimum[p] ? 0 : maxArray[columns[p]] - minimum[p];
+			}
+			rangeName = addConstant(range);
+			line(methods, indent + 1, "x[j] = " + rangeName + "[j] == 0 ? 0 : (value - " + addConstant(minimum) + "[j]) / " + rangeName + "[j] * "
+					+ literal(normalize.getScale()) + " + " + literal(normalize.getTranslation()) + ";");
+		}
+		line(methods, indent, "}");
+	}
+
+	/**
+	 * Internal method to append the loop that computes the dot product (or
+	 * the squared distance) of a vector with the support vector at offset o
+	 * of a flat array. The products are summed in the order of the
+	 * attributes.
+	 * 
+	 * @param indent
+	 * @param vector
+	 * @param vectors
+	 * @param distance
+	 */
+	private void appendKernelSum(int indent, String vector, String vectors, boolean distance) {
+		line(methods, indent, "sum = 0;");
+		line(methods, indent, "for (int j = 0; j < " + (header.numAttributes() - 1) + "; j++) {");
+		if (distance) {
+			line(methods, indent + 1, "value = " + vector + "[j] - " + vectors + "[o + j];");
+			line(methods, indent + 1, "sum += value * value;");
+		} else {
+			line(methods, indent + 1, "sum += " + vector + "[j] * " + vectors + "[o + j];");
+		}
+		line(methods, indent, "}");
+	}
+
+	/**
+	 * Internal method to append the statements that add the terms to a
+	 * variable in their order. Long sums are split into helper methods.
+	 * 
+	 * @param indent
+	 * @param variable
+	 * @param array
+	 *            the array that is used by the terms
+	 * @param terms
+	 */
+	private void appendSum(int indent, String variable, String array, List<String> terms) {
+		String name = null;
+
+		if (terms.size() <= METHOD_TERMS) {
+			for (String term : terms) {
+				line(methods, indent, variable + " += " + term + ";");
+			}
+			return;
+		}
+		for (int i = 0; i < terms.size(); i += METHOD_TERMS) {
+			name = "sum" + helperCount++;
+			line(methods, indent, variable + " = " + name + "(" + array + ", " + variable + ");");
+			line(helpers, 0, "");
+			line(helpers, 1, "private static double " + name + "(double[] " + array + ", double s) {");
+			for (String term : terms.subList(i, Math.min(i + METHOD_TERMS, terms.size()))) {
+				line(helpers, 2, "s += " + term + ";");
+			}
+			line(helpers, 2, "return s;");
+			line(helpers, 1, "}");
+		}
+	}
+
+	/**
+	 * Internal method to append the power function of libsvm.
+	 */
+	private void appendPowi() {
+		line(helpers, 0, "");
+		line(helpers, 1, "private static double powi(double base, int times) {");
+		line(helpers, 2, "double tmp = base;");
+		line(helpers, 2, "double ret = 1.0;");
+		line(helpers, 2, "for (int t = times; t > 0; t /= 2) {");
+		line(helpers, 3, "if (t % 2 == 1) ret *= tmp;");
+		line(helpers, 3, "tmp = tmp * tmp;");
+		line(helpers, 2, "}");
+		line(helpers, 2, "return ret;");
+		line(helpers, 1, "}");
+	}
+
+	/**
+	 * Internal method to return the positions of the attributes in the array
+	 * x (the attributes without the class).
+	 * 
+	 * @return
+	 */
+	private int[] getPositions() {
+		int[] result = new int[header.numAttributes()];
+
+		for (int a = 0, p = 0; a < header.numAttributes(); a++) {
+			result[a] = a == header.classIndex() ? -1 : p++;
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to check that all attributes except the class are
+	 * numeric (WEKA converts nominal attributes to binary attributes for the
+	 * linear models and SVMs).
+	 */
+	private void checkNumeric() {
+		for (int i = 0; i < header.numAttributes(); i++) {
+			if (i != header.classIndex() && !header.attribute(i).isNumeric()) {
+				throw new IllegalArgumentException("Nominal attribute " + header.attribute(i).name() + " cannot be compiled");
+			}
+		}
+	}
+
+	/**
+	 * Internal method to add a constant array to the generated class.
+	 * 
+	 * @param array
+	 * @return the name of the field
+	 */
+	private String addConstant(Object array) {
+		constants.add(array);
+		return "c" + (constants.size() - 1);
+	}
+
+	/**
+	 * Internal method to append an indented line.
+	 * 
+	 * @param builder
+	 * @param indent
+	 * @param text
+	 */
+	private static void line(StringBuilder builder, int indent, String text) {
+		for (int i = 0; i < indent && !text.isEmpty(); i++) {
+			builder.append('\t');
+		}
+		builder.append(text).append('\n');
+	}
+
+	/**
+	 * Internal method to return the Java literal of a double that is parsed
+	 * to exactly the same value.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static String literal(double value) {
+		if (Double.isNaN(value)) {
+			return "Double.NaN";
+		}
+		if (Double.isInfinite(value)) {
+			return value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+		}
+		if (value < 0 || 1 / value < 0) {
+			return "(" + Double.toString(value) + ")";
+		}
+		return Double.toString(value);
+	}
+
+	/**
+	 * Internal method to read a field of a WEKA object.
+	 * 
+	 * @param type
+	 *            the class that declares the field
+	 * @param object
+	 * @param name
+	 * @return
+	 * @throws Exception
+	 */
+	static Object getField(Class<?> type, Object object, String name) throws Exception {
+		Field field = type.getDeclaredField(name);
+
+		field.setAccessible(true);
+		return field.get(object);
+	}
+
+	/**
+	 * Internal method to compile the source code in memory.
+	 * 
+	 * @param name
+	 * @param code
+	 * @return the bytecode of the classes by their names
+	 * @throws Exception
+	 */
+	private static Map<String, byte[]> compileSource(String name, final String code) throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager standardManager = null;
+		MemoryFileManager manager = null;
+		JavaFileObject file = null;
+		StringBuilder message = null;
+		boolean success;
+
+		if (compiler == null) {
+			throw new IllegalStateException("No Java compiler available (a JDK is required)");
+		}
+		standardManager = compiler.getStandardFileManager(diagnostics, null, null);
+		manager = new MemoryFileManager(standardManager);
+		file = new SimpleJavaFileObject(URI.create("string:///" + name.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return code;
+			}
+		};
+		try {
+			success = compiler.getTask(null, manager, diagnostics, Arrays.asList("-classpath", getClassPath(), "-g:none", "-nowarn", "-proc:none"), null,
+					Arrays.asList(file)).call();
+		} finally {
+			manager.close();
+		}
+		if (!success) {
+			message = new StringBuilder("Compilation of the model failed:");
+			for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+				message.append("\n").append(diagnostic.getMessage(null));
+			}
+			throw new IllegalStateException(message.toString());
+		}
+		return manager.getClasses();
+	}
+
+	/**
+	 * Internal method to return the class path of the generated classes:
+	 * the class path of the JVM and the locations of the referenced classes
+	 * (if they are loaded differently, e.g. in an IDE).
+	 * 
+	 * @return
+	 */
+	private static String getClassPath() {
+		StringBuilder result = new StringBuilder(System.getProperty("java.class.path"));
+
+		for (Class<?> type : new Class<?>[] { CompiledModel.class, FastMath.class }) {
+			try {
+				result.append(File.pathSeparator).append(new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+			} catch (Exception e) {
+				// the location is unknown
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * A node of a tree or a condition of a rule.
+	 */
+	static class Node {
+
+		int attribute = -1;
+		int type;
+		double splitPoint;
+		int subset;
+		int leaf;
+		int size = 1;
+		int method;
+		Node[] children;
+	}
+
+	/**
+	 * The file manager that keeps the compiled classes in memory.
+	 */
+	private static class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+		private Map<String, ByteArrayOutputStream> outputs;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param manager
+		 */
+		public MemoryFileManager(JavaFileManager manager) {
+			super(manager);
+
+			this.outputs = new HashMap<String, ByteArrayOutputStream>();
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, final String name, JavaFileObject.Kind kind, FileObject sibling) {
+			return new SimpleJavaFileObject(URI.create("memory:///" + name.replace('.', '/') + kind.extension), kind) {
+				@Override
+				public OutputStream openOutputStream() {
+					ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+					outputs.put(name, stream);
+					return stream;
+				}
+			};
+		}
+
+		/**
+		 * Returns the bytecode of the compiled classes by their names.
+		 * 
+		 * @return
+		 */
+		public Map<String, byte[]> getClasses() {
+			Map<String, byte[]> result = new HashMap<String, byte[]>();
+
+			for (Map.Entry<String, ByteArrayOutputStream> entry : outputs.entrySet()) {
+				result.put(entry.getKey(), entry.getValue().toByteArray());
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The class loader of one compiled model. It defines only the generated
+	 * classes; all other classes are loaded by the parent.
+	 */
+	private static class ModelClassLoader extends ClassLoader {
+
+		private Map<String, byte[]> classes;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param classes
+		 * @param parent
+		 */
+		public ModelClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+			super(parent);
+
+			this.classes = classes;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] bytecode = classes.remove(name);
+
+			if (bytecode == null) {
+				throw new ClassNotFoundException(name);
+			}
+			return defineClass(name, bytecode, 0, bytecode.length);
+		}
+	}
+
+}
@@ -0,0 +1,527 @@
+package ecst.scoring;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.meta.GridSearch;
+import weka.core.Instances;
+import ecst.combiner.CombinerOutputModel;
+
+/**
+ * This class saves trained pipelines in a versioned binary format and loads
+ * them as ScoringPipelines. A file contains any number of pipelines; each one
+ * consists of the classification step and the preprocessing step of its
+ * ScoringPipeline (the normalization arrays and the index map of the feature
+ * selection). The classifiers that the ArrayModel supports are stored as
+ * primitive arrays. Other classifiers are stored with Java serialization and
+ * are deserialized when the first instance is classified. By default, the
+ * supported classifiers are serialized in addition, so that instances that
+ * the ArrayModel cannot classify (missing values) are classified by the WEKA
+ * classifier; if they are left out on request, such instances cannot be
+ * classified.
+ * 
+ * The file is memory-mapped for loading: all numbers are stored in little
+ * endian byte order and all arrays start at a multiple of eight bytes, so that
+ * loading a pipeline copies its arrays with bulk transfers and nothing else.
+ * The loaded pipelines do not reference the mapping.
+ * 
+ * Layout (version 2, version 1 files always contain the serialized
+ * classifier):
+ * 
+ * <pre>
+ * magic "ECSTPIPE", int version, int count, long[count] offsets
+ * per pipeline: string description, int model type, model arrays,
+ *               byte[] serialized WEKA classifier (empty if not stored),
+ *               pipeline arrays
+ * array: int length, padding to a multiple of eight, elements
+ * string: byte[] in UTF-8
+ * </pre>
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class PipelineFormat {
+
+	public static final int VERSION = 2;
+	private static final byte[] MAGIC = "ECSTPIPE".getBytes(Charset.forName("US-ASCII"));
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Saves the given pipelines into the given file. All classifiers are
+	 * serialized, so that every instance that the WEKA classifier can classify
+	 * can be classified by the loaded pipeline.
+	 * 
+	 * @param models
+	 * @param file
+	 * @throws Exception
+	 */
+	public static void save(List<CombinerOutputModel> models, File file) throws Exception {
+		save(models, file, true);
+	}
+
+	/**
+	 * Saves the given pipelines into the given file.
+	 * 
+	 * @param models
+	 * @param file
+	 * @param serializeClassifiers
+	 *            true to serialize the classifiers that the ArrayModel
+	 *            supports, too, so that instances with missing values can be
+	 *            classified; false for smaller files whose pipelines cannot
+	 *            classify such instances
+	 * @throws Exception
+	 */
+	public static void save(List<CombinerOutputModel> models, File file, boolean serializeClassifiers) throws Exception {
+		long[] offsets = new long[models.size()];
+		Writer writer = new Writer();
+		OutputStream output = null;
+
+		writer.put(MAGIC);
+		writer.putInt(VERSION);
+		writer.putInt(models.size());
+		writer.align();
+		int offsetsPosition = writer.position();
+		for (int i = 0; i < models.size(); i++) {
+			writer.putLong(0);
+		}
+		for (int i = 0; i < models.size(); i++) {
+			writer.align();
+			offsets[i] = writer.position();
+			writePipeline(models.get(i), writer, serializeClassifiers);
+		}
+		for (int i = 0; i < offsets.length; i++) {
+			writer.putLong(offsetsPosition + i * 8, offsets[i]);
+		}
+
+		output = new FileOutputStream(file);
+		try {
+			output.write(writer.toByteArray());
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Loads all pipelines of the given file.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<ScoringPipeline> load(File file) throws IOException {
+		ByteBuffer buffer = map(file);
+		int count = readCount(buffer);
+		List<ScoringPipeline> result = new ArrayList<ScoringPipeline>(count);
+
+		for (int i = 0; i < count; i++) {
+			result.add(readPipeline(buffer, i));
+		}
+		return result;
+	}
+
+	/**
+	 * Loads the pipeline with the given index of the given file. The other
+	 * pipelines are skipped.
+	 * 
+	 * @param file
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	public static ScoringPipeline load(File file, int index) throws IOException {
+		ByteBuffer buffer = map(file);
+
+		if (index < 0 || index >= readCount(buffer)) {
+			throw new IndexOutOfBoundsException("The file contains no pipeline " + index);
+		}
+		return readPipeline(buffer, index);
+	}
+
+	/**
+	 * Returns the descriptions of the pipelines of the given file (the
+	 * algorithms of the classification systems).
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<String> loadDescriptions(File file) throws IOException {
+		ByteBuffer buffer = map(file);
+		int count = readCount(buffer);
+		List<String> result = new ArrayList<String>(count);
+
+		for (int i = 0; i < count; i++) {
+			result.add(new Reader(buffer, getOffset(buffer, i)).getString());
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to write one pipeline.
+	 * 
+	 * @param model
+	 * @param writer
+	 * @param serializeClassifier
+	 * @throws Exception
+	 */
+	private static void writePipeline(CombinerOutputModel model, Writer writer, boolean serializeClassifier) throws Exception {
+		Classifier classifier = model.getClassifier();
+		Instances header = null;
+		ArrayModel arrayModel = null;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream output = null;
+
+		if (classifier == null) {
+			throw new IllegalArgumentException("The model does not contain a trained classifier");
+		}
+		// the best classifier was trained on all data, too
+		if (classifier instanceof GridSearch) {
+			classifier = ((GridSearch) classifier).getBestClassifier();
+		}
+		header = new Instances(model.getData().getFeatureSelectedInstances(), 0);
+
+		writer.putString(describe(model));
+		arrayModel = ArrayModel.create(classifier, header);
+		if (arrayModel == null) {
+			writer.putInt(ArrayModel.NONE);
+		} else {
+			writer.putInt(arrayModel.getType());
+			arrayModel.write(writer);
+		}
+		if (arrayModel == null || serializeClassifier) {
+			output = new ObjectOutputStream(bytes);
+			output.writeObject(header);
+			output.writeObject(classifier);
+			output.close();
+		}
+		writer.putBytes(bytes.toByteArray());
+		new ScoringPipeline(model, (ScoringModel) null).write(writer);
+	}
+
+	/**
+	 * Internal method to read one pipeline.
+	 * 
+	 * @param buffer
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	private static ScoringPipeline readPipeline(ByteBuffer buffer, int index) throws IOException {
+		int type;
+		byte[] serialized = null;
+		ArrayModel arrayModel = null;
+		ScoringModel model = null;
+		Reader reader = new Reader(buffer, getOffset(buffer, index));
+
+		reader.getString();
+		type = reader.getInt();
+		if (type != ArrayModel.NONE) {
+			arrayModel = ArrayModel.read(type, reader);
+		}
+		serialized = reader.getBytes();
+		if (serialized.length > 0) {
+			model = new SerializedScoringModel(serialized);
+		}
+		if (arrayModel != null) {
+			model = new CompiledScoringModel(arrayModel, model, null);
+		} else if (model == null) {
+			throw new IOException("The pipeline " + index + " contains no classifier");
+		}
+		return new ScoringPipeline(reader, model);
+	}
+
+	/**
+	 * Internal method to map a file and to check its header.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	private static ByteBuffer map(File file) throws IOException {
+		int version;
+		byte[] magic = new byte[MAGIC.length];
+		MappedByteBuffer buffer = null;
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		// the mapping stays valid after the channel is closed
+		try {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.remaining() < MAGIC.length + 8) {
+			throw new IOException(file + " is not a pipeline file");
+		}
+		buffer.get(magic);
+		if (!Arrays.equals(magic, MAGIC)) {
+			throw new IOException(file + " is not a pipeline file");
+		}
+		version = buffer.getInt();
+		if (version != 1 && version != VERSION) {
+			throw new IOException(file + " has an unsupported version");
+		}
+		return buffer;
+	}
+
+	/**
+	 * Internal method to return the number of pipelines.
+	 * 
+	 * @param buffer
+	 * @return
+	 */
+	private static int readCount(ByteBuffer buffer) {
+		return buffer.getInt(MAGIC.length + 4);
+	}
+
+	/**
+	 * Internal method to return the offset of a pipeline.
+	 * 
+	 * @param buffer
+	 * @param index
+	 * @return
+	 */
+	private static int getOffset(ByteBuffer buffer, int index) {
+		return (int) buffer.getLong(MAGIC.length + 8 + index * 8);
+	}
+
+	/**
+	 * Internal method to describe a pipeline.
+	 * 
+	 * @param model
+	 * @return
+	 */
+	private static String describe(CombinerOutputModel model) {
+		StringBuilder result = new StringBuilder();
+
+		if (model.getPreprocessingAlgorithm() != null) {
+			result.append(model.getPreprocessingAlgorithm().getDefinition().getName()).append(", ");
+		}
+		if (model.getFeatureSelectionAlgorithm() != null) {
+			result.append(model.getFeatureSelectionAlgorithm().getDefinition().getName()).append(", ");
+		}
+		result.append(model.getClassificationAlgorithm().getDefinition().getName());
+		return result.toString();
+	}
+
+	/**
+	 * This class writes the values of the format into a growing buffer.
+	 */
+	static class Writer {
+
+		private ByteBuffer buffer;
+
+		/**
+		 * Constructor.
+		 */
+		public Writer() {
+			buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		public void putInt(int value) {
+			ensureCapacity(4);
+			buffer.putInt(value);
+		}
+
+		public void putLong(long value) {
+			ensureCapacity(8);
+			buffer.putLong(value);
+		}
+
+		public void putLong(int position, long value) {
+			buffer.putLong(position, value);
+		}
+
+		public void putDouble(double value) {
+			ensureCapacity(8);
+			buffer.putDouble(value);
+		}
+
+		public void putInts(int[] values) {
+			putLength(values.length);
+			ensureCapacity(values.length * 4);
+			buffer.asIntBuffer().put(values);
+			buffer.position(buffer.position() + values.length * 4);
+		}
+
+		public void putDoubles(double[] values) {
+			putLength(values.length);
+			ensureCapacity(values.length * 8);
+			buffer.asDoubleBuffer().put(values);
+			buffer.position(buffer.position() + values.length * 8);
+		}
+
+		public void putBytes(byte[] values) {
+			putLength(values.length);
+			put(values);
+		}
+
+		/**
+		 * Writes the bytes without their length.
+		 * 
+		 * @param values
+		 */
+		public void put(byte[] values) {
+			ensureCapacity(values.length);
+			buffer.put(values);
+		}
+
+		public void putString(String value) {
+			putBytes(value.getBytes(UTF8));
+		}
+
+		public void putStrings(String[] values) {
+			putInt(values.length);
+			for (String value : values) {
+				putString(value);
+			}
+		}
+
+		/**
+		 * Pads the buffer to a multiple of eight bytes.
+		 */
+		public void align() {
+			while (buffer.position() % 8 != 0) {
+				ensureCapacity(1);
+				buffer.put((byte) 0);
+			}
+		}
+
+		public int position() {
+			return buffer.position();
+		}
+
+		public byte[] toByteArray() {
+			return Arrays.copyOf(buffer.array(), buffer.position());
+		}
+
+		/**
+		 * Internal method to write the length of an array and the padding.
+		 * 
+		 * @param length
+		 */
+		private void putLength(int length) {
+			putInt(length);
+			align();
+		}
+
+		/**
+		 * Internal method to grow the buffer.
+		 * 
+		 * @param bytes
+		 */
+		private void ensureCapacity(int bytes) {
+			ByteBuffer grown = null;
+
+			if (buffer.remaining() < bytes) {
+				grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes)).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.flip();
+				grown.put(buffer);
+				buffer = grown;
+			}
+		}
+	}
+
+	/**
+	 * This class reads the values of the format from a (mapped) buffer.
+	 */
+	static class Reader {
+
+		private ByteBuffer buffer;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param buffer
+		 * @param offset
+		 *            the position of the first value
+		 */
+		public Reader(ByteBuffer buffer, int offset) {
+			this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			this.buffer.position(offset);
+		}
+
+		public int getInt() {
+			return buffer.getInt();
+		}
+
+		public double getDouble() {
+			return buffer.getDouble();
+		}
+
+		public int[] getInts() {
+			int[] result = new int[getLength()];
+
+			buffer.asIntBuffer().get(result);
+			buffer.position(buffer.position() + result.length * 4);
+			return result;
+		}
+
+		public double[] getDoubles() {
+			double[] result = new double[getLength()];
+
+			buffer.asDoubleBuffer().get(result);
+			buffer.position(buffer.position() + result.length * 8);
+			return result;
+		}
+
+		/**
+		 * Returns a byte array (copied out of the buffer, so that it does
+		 * not reference a mapped file).
+		 * 
+		 * @return
+		 */
+		public byte[] getBytes() {
+			byte[] result = new byte[getLength()];
+
+			buffer.get(result);
+			return result;
+		}
+
+		public String getString() {
+			byte[] result = new byte[getLength()];
+
+			buffer.get(result);
+			return new String(result, UTF8);
+		}
+
+		public String[] getStrings() {
+			String[] result = new String[getInt()];
+
+			for (int i = 0; i < result.length; i++) {
+				result[i] = getString();
+			}
+			return result;
+		}
+
+		/**
+		 * Internal method to read the length of an array and to skip the
+		 * padding.
+		 * 
+		 * @return
+		 */
+		private int getLength() {
+			int length = buffer.getInt();
+
+			while (buffer.position() % 8 != 0) {
+				buffer.get();
+			}
+			return length;
+		}
+	}
+
+}
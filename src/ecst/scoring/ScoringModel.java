@@ -0,0 +1,33 @@
+package ecst.scoring;
+
+/**
+ * This interface has to be implemented by the classification step of a
+ * ScoringPipeline. The values of an instance are given in the attribute order
+ * of the feature selected training instances; the value of the class
+ * attribute is missing (NaN).
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public interface ScoringModel {
+
+	/**
+	 * Returns the class distribution of one instance (the predicted value for
+	 * a numeric class).
+	 * 
+	 * @param values
+	 * @return
+	 * @throws Exception
+	 */
+	public double[] distributionForValues(double[] values) throws Exception;
+
+	/**
+	 * Returns the class distributions of several instances.
+	 * 
+	 * @param values
+	 * @return
+	 * @throws Exception
+	 */
+	public double[][] distributionsForValues(double[][] values) throws Exception;
+
+}
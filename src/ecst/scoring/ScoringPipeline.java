@@ -0,0 +1,405 @@
+package ecst.scoring;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.meta.GridSearch;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+import ecst.algorithm.PreprocessingAlgorithm;
+import ecst.algorithm.preprocessing.InterquartileRangeAndNormalizationAdapter;
+import ecst.algorithm.preprocessing.NormalizationAdapter;
+import ecst.combiner.CombinerOutputModel;
+import ecst.combiner.PipelineData;
+
+/**
+ * This class applies a trained pipeline to batches of primitive arrays. It is
+ * built once from a CombinerOutputModel: the normalization of the
+ * preprocessing step is reduced to arrays, the attributes of the feature
+ * selection are reduced to an index map, and the classification step is a
+ * ScoringModel. Each row of a batch contains the values of the attributes of
+ * the input instances (after the feature extraction) in their order, without
+ * the class attribute; missing values are NaN and nominal values are given by
+ * their index.
+ * 
+ * The preprocessing steps that only remove training instances (e.g. the
+ * InterquartileRange) are not applied, like in the evaluation with a test set.
+ * This class is not thread-safe.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class ScoringPipeline {
+
+	private static final int COPY = 0;
+	private static final int NORMALIZE = 1;
+	private static final int ZERO = 2;
+
+	private int classIndex;
+	private boolean nominalClass;
+	private String[] inputNames;
+	private String[] classNames;
+	private int[] columns;
+	private int[] operations;
+	private double[] minimum;
+	private double[] range;
+	private double scale;
+	private double translation;
+	private ScoringModel model;
+
+	/**
+	 * Constructor. The classification step is the trained WEKA classifier of
+	 * the model.
+	 * 
+	 * @param outputModel
+	 * @throws Exception
+	 */
+	public ScoringPipeline(CombinerOutputModel outputModel) throws Exception {
+		this(outputModel, false);
+	}
+
+	/**
+	 * Constructor. The classification step is the trained WEKA classifier of
+	 * the model or, if requested and possible, the classifier compiled by the
+	 * ModelCompiler.
+	 * 
+	 * @param outputModel
+	 * @param compile
+	 *            whether the classifier is compiled
+	 * @throws Exception
+	 */
+	public ScoringPipeline(CombinerOutputModel outputModel, boolean compile) throws Exception {
+		this(outputModel, createModel(outputModel, compile));
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param outputModel
+	 * @param model
+	 *            the classification step
+	 * @throws Exception
+	 */
+	public ScoringPipeline(CombinerOutputModel outputModel, ScoringModel model) throws Exception {
+		int column = 0;
+		Integer index = null;
+		PipelineData data = outputModel.getData();
+		Instances input = data.getInstances();
+		Instances selected = data.getFeatureSelectedInstances();
+		NormalizationAdapter normalization = getNormalization(outputModel.getPreprocessingAlgorithm());
+		Map<String, Integer> inputColumns = new HashMap<String, Integer>();
+		Map<String, Integer> inputIndices = new HashMap<String, Integer>();
+
+		this.model = model;
+
+		inputNames = new String[input.numAttributes() - (input.classIndex() < 0 ? 0 : 1)];
+		for (int i = 0; i < input.numAttributes(); i++) {
+			if (i != input.classIndex()) {
+				inputNames[column] = input.attribute(i).name();
+				inputColumns.put(inputNames[column], column);
+				inputIndices.put(inputNames[column], i);
+				column++;
+			}
+		}
+
+		classIndex = selected.classIndex();
+		nominalClass = selected.classAttribute().isNominal();
+		classNames = new String[nominalClass ? selected.numClasses() : 0];
+		for (int i = 0; i < classNames.length; i++) {
+			classNames[i] = selected.classAttribute().value(i);
+		}
+
+		columns = new int[selected.numAttributes()];
+		operations = new int[selected.numAttributes()];
+		minimum = new double[selected.numAttributes()];
+		range = new double[selected.numAttributes()];
+		for (int i = 0; i < selected.numAttributes(); i++) {
+			if (i == classIndex) {
+				columns[i] = -1;
+				continue;
+			}
+			index = inputColumns.get(selected.attribute(i).name());
+			if (index == null) {
+				throw new IllegalArgumentException("Attribute " + selected.attribute(i).name() + " is not an input attribute");
+			}
+			columns[i] = index;
+			operations[i] = COPY;
+			if (normalization != null && selected.attribute(i).isNumeric()) {
+				// like WEKA's normalization
+				index = inputIndices.get(selected.attribute(i).name());
+				minimum[i] = normalization.getMinimum()[index];
+				range[i] = normalization.getMaximum()[index] - minimum[i];
+				operations[i] = Double.isNaN(minimum[i]) || range[i] == 0 ? ZERO : NORMALIZE;
+			}
+		}
+		if (normalization != null) {
+			scale = normalization.getScale();
+			translation = normalization.getTranslation();
+		}
+	}
+
+	/**
+	 * Constructor. Reads the preprocessing and the feature selection of a
+	 * pipeline that was written by write().
+	 * 
+	 * @param reader
+	 * @param model
+	 *            the classification step
+	 */
+	ScoringPipeline(PipelineFormat.Reader reader, ScoringModel model) {
+		this.model = model;
+		classIndex = reader.getInt();
+		nominalClass = reader.getInt() != 0;
+		inputNames = reader.getStrings();
+		classNames = reader.getStrings();
+		columns = reader.getInts();
+		operations = reader.getInts();
+		minimum = reader.getDoubles();
+		range = reader.getDoubles();
+		scale = reader.getDouble();
+		translation = reader.getDouble();
+	}
+
+	/**
+	 * Returns the names of the attributes of the rows.
+	 * 
+	 * @return
+	 */
+	public String[] getInputNames() {
+		return inputNames;
+	}
+
+	/**
+	 * Returns the names of the classes (empty for a numeric class).
+	 * 
+	 * @return
+	 */
+	public String[] getClassNames() {
+		return classNames;
+	}
+
+	/**
+	 * Returns the classification step.
+	 * 
+	 * @return
+	 */
+	public ScoringModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Returns the class distributions of the rows (the predicted values for a
+	 * numeric class).
+	 * 
+	 * @param rows
+	 * @return
+	 * @throws Exception
+	 */
+	public double[][] distributionsForRows(double[][] rows) throws Exception {
+		double[][] values = new double[rows.length][];
+
+		for (int i = 0; i < rows.length; i++) {
+			values[i] = transform(rows[i]);
+		}
+		return model.distributionsForValues(values);
+	}
+
+	/**
+	 * Returns the predicted class indices of the rows (the predicted values
+	 * for a numeric class). The prediction is missing (NaN) if the
+	 * distribution is zero, like in WEKA.
+	 * 
+	 * @param rows
+	 * @return
+	 * @throws Exception
+	 */
+	public double[] classifyRows(double[][] rows) throws Exception {
+		double[] result = new double[rows.length];
+		double[][] distributions = distributionsForRows(rows);
+
+		for (int i = 0; i < rows.length; i++) {
+			result[i] = toPrediction(distributions[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the predicted class index of one row (the predicted value for a
+	 * numeric class).
+	 * 
+	 * @param row
+	 * @return
+	 * @throws Exception
+	 */
+	public double classifyRow(double[] row) throws Exception {
+		return toPrediction(model.distributionForValues(transform(row)));
+	}
+
+	/**
+	 * Converts instances (e.g. a test set) to rows. The attributes are
+	 * matched by name.
+	 * 
+	 * @param instances
+	 * @return
+	 */
+	public double[][] toRows(Instances instances) {
+		int[] indices = new int[inputNames.length];
+		double[][] result = new double[instances.numInstances()][inputNames.length];
+		Instance instance = null;
+
+		for (int i = 0; i < inputNames.length; i++) {
+			if (instances.attribute(inputNames[i]) == null) {
+				throw new IllegalArgumentException("Attribute " + inputNames[i] + " is missing");
+			}
+			indices[i] = instances.attribute(inputNames[i]).index();
+		}
+		for (int i = 0; i < instances.numInstances(); i++) {
+			instance = instances.instance(i);
+			for (int j = 0; j < indices.length; j++) {
+				result[i][j] = instance.value(indices[j]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Measures the throughput (instances per second) of the classification of
+	 * the rows in batches. The first batch contains one row and every further
+	 * batch twice as many rows (at most all rows), until the given time has
+	 * elapsed. The measurement therefore takes at most about twice the given
+	 * time (or the time of one row), even if the rows cannot be classified
+	 * once in the given time.
+	 * 
+	 * @param rows
+	 * @param milliseconds
+	 * @return
+	 * @throws Exception
+	 */
+	public double measureThroughput(double[][] rows, long milliseconds) throws Exception {
+		long start;
+		long elapsed;
+		long count = 0;
+		int offset = 0;
+		double[][] batch = new double[1][];
+
+		start = System.nanoTime();
+		do {
+			for (int i = 0; i < batch.length; i++) {
+				batch[i] = rows[(offset + i) % rows.length];
+			}
+			classifyRows(batch);
+			count += batch.length;
+			offset = (offset + batch.length) % rows.length;
+			if (batch.length < rows.length) {
+				batch = new double[Math.min(2 * batch.length, rows.length)][];
+			}
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < milliseconds * 1000000L);
+
+		return count / (elapsed / 1e9);
+	}
+
+	/**
+	 * Writes the preprocessing and the feature selection (without the
+	 * classification step) in the PipelineFormat.
+	 * 
+	 * @param writer
+	 */
+	void write(PipelineFormat.Writer writer) {
+		writer.putInt(classIndex);
+		writer.putInt(nominalClass ? 1 : 0);
+		writer.putStrings(inputNames);
+		writer.putStrings(classNames);
+		writer.putInts(columns);
+		writer.putInts(operations);
+		writer.putDoubles(minimum);
+		writer.putDoubles(range);
+		writer.putDouble(scale);
+		writer.putDouble(translation);
+	}
+
+	/**
+	 * Internal method to apply the preprocessing and the feature selection to
+	 * one row.
+	 * 
+	 * @param row
+	 * @return the values in the attribute order of the training instances
+	 */
+	private double[] transform(double[] row) {
+		double value;
+		double[] result = new double[columns.length];
+
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i] < 0) {
+				result[i] = Double.NaN;
+				continue;
+			}
+			value = row[columns[i]];
+			if (operations[i] != COPY && !Double.isNaN(value)) {
+				value = operations[i] == ZERO ? 0 : (value - minimum[i]) / range[i] * scale + translation;
+			}
+			result[i] = value;
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method to convert a distribution to a prediction.
+	 * 
+	 * @param distribution
+	 * @return
+	 */
+	private double toPrediction(double[] distribution) {
+		if (!nominalClass) {
+			return distribution[0];
+		}
+		if (Utils.sum(distribution) == 0) {
+			return Double.NaN;
+		}
+		return Utils.maxIndex(distribution);
+	}
+
+	/**
+	 * Internal method to return the normalization of the preprocessing step or
+	 * null if the data are not normalized.
+	 * 
+	 * @param preprocessing
+	 * @return
+	 */
+	static NormalizationAdapter getNormalization(PreprocessingAlgorithm preprocessing) {
+		if (preprocessing instanceof NormalizationAdapter) {
+			return (NormalizationAdapter) preprocessing;
+		}
+		if (preprocessing instanceof InterquartileRangeAndNormalizationAdapter) {
+			return ((InterquartileRangeAndNormalizationAdapter) preprocessing).getNormalizationAdapter();
+		}
+		return null;
+	}
+
+	/**
+	 * Internal method to create the classification step from the trained
+	 * WEKA classifier.
+	 * 
+	 * @param outputModel
+	 * @param compile
+	 * @return
+	 */
+	private static ScoringModel createModel(CombinerOutputModel outputModel, boolean compile) {
+		Classifier classifier = outputModel.getClassifier();
+
+		if (classifier == null) {
+			throw new IllegalArgumentException("The model does not contain a trained classifier");
+		}
+		// the best classifier was trained on all data, too
+		if (classifier instanceof GridSearch) {
+			classifier = ((GridSearch) classifier).getBestClassifier();
+		}
+		if (compile) {
+			return ModelCompiler.createScoringModel(classifier, outputModel.getData().getFeatureSelectedInstances());
+		}
+		return new WekaScoringModel(classifier, outputModel.getData().getFeatureSelectedInstances());
+	}
+
+}
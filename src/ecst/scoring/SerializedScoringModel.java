@@ -0,0 +1,81 @@
+package ecst.scoring;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+/**
+ * This class classifies instances by a WEKA classifier that is stored with
+ * Java serialization in a PipelineFormat file. The classifier is deserialized
+ * when the first instance is classified, so that loading a pipeline whose
+ * ArrayModel classifies all instances does not deserialize it at all.
+ * 
+ * This class is not thread-safe.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class SerializedScoringModel implements ScoringModel {
+
+	private byte[] bytes;
+	private WekaScoringModel model;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param bytes
+	 *            the serialized header of the training instances and the
+	 *            serialized classifier
+	 */
+	public SerializedScoringModel(byte[] bytes) {
+		this.bytes = bytes;
+	}
+
+	@Override
+	public double[] distributionForValues(double[] values) throws Exception {
+		return getModel().distributionForValues(values);
+	}
+
+	@Override
+	public double[][] distributionsForValues(double[][] values) throws Exception {
+		return getModel().distributionsForValues(values);
+	}
+
+	/**
+	 * Returns the trained classifier.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public Classifier getClassifier() throws Exception {
+		return getModel().getClassifier();
+	}
+
+	/**
+	 * Internal method to deserialize the classifier.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private WekaScoringModel getModel() throws Exception {
+		ObjectInputStream input = null;
+		Instances header = null;
+		Classifier classifier = null;
+
+		if (model == null) {
+			input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			try {
+				header = (Instances) input.readObject();
+				classifier = (Classifier) input.readObject();
+			} finally {
+				input.close();
+			}
+			model = new WekaScoringModel(classifier, header);
+			bytes = null;
+		}
+		return model;
+	}
+
+}
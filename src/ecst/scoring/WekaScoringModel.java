@@ -0,0 +1,103 @@
+package ecst.scoring;
+
+import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
+import ecst.algorithm.classification.BatchClassifier;
+
+/**
+ * This class applies a trained WEKA classifier to primitive arrays. All
+ * instances are classified through one instance object whose value array is
+ * replaced, so that no WEKA objects are created per instance (except by the
+ * classifier itself). A BatchClassifier classifies all instances at once.
+ * 
+ * This class is not thread-safe.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class WekaScoringModel implements ScoringModel {
+
+	private Classifier classifier;
+	private Instances header;
+	private ReusableInstance instance;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param classifier
+	 *            the trained classifier
+	 * @param header
+	 *            the format of the training instances
+	 */
+	public WekaScoringModel(Classifier classifier, Instances header) {
+		this.classifier = classifier;
+		this.header = new Instances(header, 0);
+		this.instance = new ReusableInstance(this.header);
+	}
+
+	@Override
+	public double[] distributionForValues(double[] values) throws Exception {
+		instance.setValues(values);
+		return classifier.distributionForInstance(instance);
+	}
+
+	@Override
+	public double[][] distributionsForValues(double[][] values) throws Exception {
+		double[][] result = null;
+		Instances batch = null;
+
+		if (classifier instanceof BatchClassifier) {
+			batch = new Instances(header, values.length);
+			for (double[] row : values) {
+				batch.add(new Instance(1.0, row));
+			}
+			return ((BatchClassifier) classifier).distributionsForInstances(batch);
+		}
+
+		result = new double[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = distributionForValues(values[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the trained classifier.
+	 * 
+	 * @return
+	 */
+	public Classifier getClassifier() {
+		return classifier;
+	}
+
+	/**
+	 * An instance whose values can be replaced without a copy (WEKA copies the
+	 * value array on each change).
+	 */
+	private static class ReusableInstance extends Instance {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param dataset
+		 */
+		public ReusableInstance(Instances dataset) {
+			super(dataset.numAttributes());
+			setDataset(dataset);
+		}
+
+		/**
+		 * Replaces the values of this instance by the given array (without a
+		 * copy).
+		 * 
+		 * @param values
+		 */
+		public void setValues(double[] values) {
+			m_AttValues = values;
+		}
+	}
+
+}
@@ -39,10 +39,12 @@ public class FileUtilities {
 	private static final String ARFF_SUFFIX = ".arff";
 	private static final String LATEX_SUFFIX = ".tex";
 	private static final String CSV_SUFFIX = ".csv";
+	private static final String PIPELINE_SUFFIX = ".ecstp";
 	private static final String XML_DESCRIPTION = "XML - Extensible Markup Language";
 	private static final String ARFF_DESCRIPTION = "ARFF - Attribute Relation File Format";
 	private static final String LATEX_DESCRIPTION = "Latex Table";
 	private static final String CSV_DESCRIPTION = "Comma Separated Values";
+	private static final String PIPELINE_DESCRIPTION = "Binary Pipelines";
 
 	/**
 	 * Reads the file into a Properties object.
@@ -144,6 +146,28 @@ public class FileUtilities {
 		out.close();
 	}
 
+	/**
+	 * Deletes the given directory with all files and subdirectories.
+	 * 
+	 * @param directory
+	 * @return true if everything was deleted
+	 */
+	public static boolean deleteDirectory(File directory) {
+		boolean deleted = true;
+		File[] files = directory.listFiles();
+
+		if (files != null) {
+			for (File file : files) {
+				if (file.isDirectory()) {
+					deleted &= deleteDirectory(file);
+				} else {
+					deleted &= file.delete();
+				}
+			}
+		}
+		return directory.delete() && deleted;
+	}
+
 	/**
 	 * Saves the given instances into the given file.
 	 * 
@@ -248,6 +272,10 @@ public class FileUtilities {
 		return saveFileChooser(parent, ARFF_DESCRIPTION, ARFF_SUFFIX, startingFile);
 	}
 
+	public static File showSaveFileChooserPipeline(JComponent parent, String startingFile) {
+		return saveFileChooser(parent, PIPELINE_DESCRIPTION, PIPELINE_SUFFIX, startingFile);
+	}
+
 	/**
 	 * Shows a JFileChoser for opening with the given configuration.
 	 * 
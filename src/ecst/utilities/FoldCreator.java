@@ -0,0 +1,26 @@
+package ecst.utilities;
+
+import weka.core.Instances;
+
+/**
+ * This interface creates the training and test sets of the folds of a
+ * validation when they are needed, so that a ParallelFoldEvaluator does not
+ * keep the sets of all folds in memory at the same time.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public interface FoldCreator {
+
+	/**
+	 * Returns the training set (index 0) and the test set (index 1) of the
+	 * given fold. The method is called by several threads at the same time if
+	 * the folds are trained in parallel.
+	 * 
+	 * @param fold
+	 * @return
+	 * @throws Exception
+	 */
+	public Instances[] createFold(int fold) throws Exception;
+
+}
@@ -0,0 +1,190 @@
+package ecst.utilities;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instances;
+import ecst.combiner.SubjectIDList;
+
+/**
+ * This class evaluates the folds of a validation one after another, so that
+ * the evaluation can be stopped after any fold (e.g. by the racing mode of
+ * the Combiner). The folds are created when they are evaluated. After all
+ * folds, the Evaluation object is the same as after a complete validation.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public abstract class FoldEvaluation {
+
+	private int numberOfFolds;
+	private int evaluatedFolds;
+	private long time;
+	private boolean setPriors;
+	private double[] accuracies;
+	private Classifier classifier;
+	private Evaluation evaluation;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param classifier
+	 *            the untrained classifier
+	 * @param evaluation
+	 * @param numberOfFolds
+	 * @param setPriors
+	 *            true to set the priors of the evaluation to the training set
+	 *            of each fold (like in WEKA's cross-validation)
+	 */
+	public FoldEvaluation(Classifier classifier, Evaluation evaluation, int numberOfFolds, boolean setPriors) {
+		this.classifier = classifier;
+		this.evaluation = evaluation;
+		this.numberOfFolds = numberOfFolds;
+		this.setPriors = setPriors;
+		this.accuracies = new double[numberOfFolds];
+	}
+
+	/**
+	 * Creates a cross-validation whose folds are the same as in WEKA's
+	 * Evaluation.crossValidateModel for the same random number generator.
+	 * 
+	 * @param classifier
+	 * @param data
+	 * @param numFolds
+	 * @param random
+	 * @return
+	 * @throws Exception
+	 */
+	public static FoldEvaluation createCrossValidation(Classifier classifier, Instances data, final int numFolds, final Random random)
+			throws Exception {
+		final Instances folds = new Instances(data);
+
+		folds.randomize(random);
+		if (folds.classAttribute().isNominal()) {
+			folds.stratify(numFolds);
+		}
+		return new FoldEvaluation(classifier, new Evaluation(data), numFolds, true) {
+
+			@Override
+			protected Instances[] createFold(int fold) {
+				// the training set has to be created first (random numbers)
+				Instances training = folds.trainCV(numFolds, fold, random);
+				return new Instances[] { training, folds.testCV(numFolds, fold) };
+			}
+		};
+	}
+
+	/**
+	 * Creates a leave-subject-out cross-validation.
+	 * 
+	 * @param classifier
+	 * @param data
+	 * @param subjectIDs
+	 * @param subjectsPerHoldOut
+	 * @return
+	 * @throws Exception
+	 */
+	public static FoldEvaluation createLeaveSubjectOut(Classifier classifier, final Instances data, SubjectIDList subjectIDs, int subjectsPerHoldOut)
+			throws Exception {
+		final List<List<Integer>> folds = InstanceUtilities.getLeaveSubjectOutFolds(subjectIDs, subjectsPerHoldOut);
+
+		return new FoldEvaluation(classifier, new Evaluation(data), folds.size(), false) {
+
+			@Override
+			protected Instances[] createFold(int fold) {
+				Instances test = new Instances(data);
+				Instances training = new Instances(data);
+
+				InstanceUtilities.prepareTrainingAndTestSet(data, training, test, folds.get(fold));
+				return new Instances[] { training, test };
+			}
+		};
+	}
+
+	/**
+	 * This method has to create the training set (index 0) and the test set
+	 * (index 1) of the given fold. The folds are created in increasing order.
+	 * 
+	 * @param fold
+	 * @return
+	 * @throws Exception
+	 */
+	protected abstract Instances[] createFold(int fold) throws Exception;
+
+	/**
+	 * Returns true if not all folds have been evaluated.
+	 * 
+	 * @return
+	 */
+	public boolean hasNextFold() {
+		return evaluatedFolds < numberOfFolds;
+	}
+
+	/**
+	 * Trains a copy of the classifier on the next fold, adds the predictions
+	 * for the test set to the evaluation and returns the accuracy of this fold
+	 * (in percent).
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public double evaluateNextFold() throws Exception {
+		double correct;
+		double numInstances;
+		long timeStart = System.currentTimeMillis();
+		Instances[] fold = createFold(evaluatedFolds);
+		Classifier copy = Classifier.makeCopy(classifier);
+
+		copy.buildClassifier(fold[0]);
+		if (setPriors) {
+			evaluation.setPriors(fold[0]);
+		}
+		correct = evaluation.correct();
+		numInstances = evaluation.numInstances();
+		InstanceUtilities.evaluateModel(copy, fold[1], evaluation);
+
+		numInstances = evaluation.numInstances() - numInstances;
+		accuracies[evaluatedFolds] = numInstances > 0 ? 100.0 * (evaluation.correct() - correct) / numInstances : 0;
+		time += System.currentTimeMillis() - timeStart;
+		return accuracies[evaluatedFolds++];
+	}
+
+	/**
+	 * Returns the accuracies (in percent) of the evaluated folds.
+	 * 
+	 * @return
+	 */
+	public double[] getAccuracies() {
+		return Arrays.copyOf(accuracies, evaluatedFolds);
+	}
+
+	public int getNumberOfFolds() {
+		return numberOfFolds;
+	}
+
+	public int getNumberOfEvaluatedFolds() {
+		return evaluatedFolds;
+	}
+
+	/**
+	 * Returns the time (in milliseconds) spent on the evaluated folds.
+	 * 
+	 * @return
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the evaluation of the evaluated folds.
+	 * 
+	 * @return
+	 */
+	public Evaluation getEvaluation() {
+		return evaluation;
+	}
+
+}
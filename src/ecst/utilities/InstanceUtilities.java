@@ -1,8 +1,12 @@
 package ecst.utilities;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -10,12 +14,15 @@ import java.util.Set;
 
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
+import weka.classifiers.MultipleClassifiersCombiner;
+import weka.classifiers.SingleClassifierEnhancer;
 import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.InstanceComparator;
 import weka.core.Instances;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Remove;
+import ecst.algorithm.classification.BatchClassifier;
 import ecst.combiner.SubjectIDList;
 
 /**
@@ -38,53 +45,77 @@ public class InstanceUtilities {
 	 */
 	public static Evaluation evaluateLeaveSubjectOut(Classifier classifier, Instances instances, SubjectIDList subjectIDs, int subjectsPerHoldOut)
 			throws Exception {
-		int numberOfFolds;
+		return evaluateLeaveSubjectOut(classifier, instances, subjectIDs, subjectsPerHoldOut, 1);
+	}
+
+	/**
+	 * Evaluates the given classifier with a leave-subject-out cross-validation.
+	 * The folds are trained in parallel with the given number of threads; the
+	 * training and test sets of a fold are created when it is trained.
+	 * 
+	 * @param classifier
+	 * @param instances
+	 * @param subjectIDs
+	 * @param subjectsPerHoldOut
+	 * @param numberOfThreads
+	 * @return
+	 * @throws Exception
+	 */
+	public static Evaluation evaluateLeaveSubjectOut(Classifier classifier, final Instances instances, SubjectIDList subjectIDs,
+			int subjectsPerHoldOut, int numberOfThreads) throws Exception {
 		Evaluation evaluation = null;
+		final List<List<Integer>> folds = getLeaveSubjectOutFolds(subjectIDs, subjectsPerHoldOut);
+
+		evaluation = new Evaluation(instances);
+		new ParallelFoldEvaluator(numberOfThreads).evaluate(classifier, folds.size(), new FoldCreator() {
+
+			@Override
+			public Instances[] createFold(int fold) {
+				Instances test = new Instances(instances);
+				Instances training = new Instances(instances);
+
+				prepareTrainingAndTestSet(instances, training, test, folds.get(fold));
+				return new Instances[] { training, test };
+			}
+		}, evaluation);
+
+		return evaluation;
+	}
+
+	/**
+	 * Returns the sorted indices of the test instances of every fold of a
+	 * leave-subject-out cross-validation.
+	 * 
+	 * @param subjectIDs
+	 * @param subjectsPerHoldOut
+	 * @return
+	 */
+	public static List<List<Integer>> getLeaveSubjectOutFolds(SubjectIDList subjectIDs, int subjectsPerHoldOut) {
+		int numberOfFolds;
 		Set<Integer> uniqueIDs = null;
 		List<Integer> testIndices = null;
 		Iterator<Integer> iterator = null;
+		List<List<Integer>> folds = new ArrayList<List<Integer>>();
 
-		evaluation = new Evaluation(instances);
 		uniqueIDs = subjectIDs.getUniqueIDs();
 		numberOfFolds = uniqueIDs.size() / subjectsPerHoldOut;
 
 		iterator = uniqueIDs.iterator();
 		for (int fold = 0; fold < numberOfFolds; fold++) {
-			evaluateFold(fold, classifier, instances, getTestInstanceIndices(subjectIDs, subjectsPerHoldOut, iterator), evaluation);
+			folds.add(getTestInstanceIndices(subjectIDs, subjectsPerHoldOut, iterator));
 		}
 
 		// if uniqueIDs.size() % subjectsPerHoldOut != 0
 		if (iterator.hasNext()) {
-			testIndices = new LinkedList<Integer>();
+			testIndices = new ArrayList<Integer>();
 			while (iterator.hasNext()) {
 				testIndices.addAll(subjectIDs.getIndicesForID(iterator.next()));
 			}
 			Collections.sort(testIndices);
-			evaluateFold(numberOfFolds, classifier, instances, testIndices, evaluation);
+			folds.add(testIndices);
 		}
 
-		return evaluation;
-	}
-
-	/**
-	 * Internal method for leave-subject-out cross-validation. Performs one fold
-	 * of the cross-validation.
-	 * 
-	 * @param fold
-	 * @param classifier
-	 * @param instances
-	 * @param testInstanceIndices
-	 * @param evaluation
-	 * @throws Exception
-	 */
-	private static void evaluateFold(int fold, Classifier classifier, Instances instances, List<Integer> testInstanceIndices, Evaluation evaluation)
-			throws Exception {
-		Instances test = new Instances(instances);
-		Instances training = new Instances(instances);
-
-		prepareTrainingAndTestSet(instances, training, test, testInstanceIndices);
-		classifier.buildClassifier(training);
-		evaluation.evaluateModel(classifier, test);
+		return folds;
 	}
 
 	/**
@@ -99,7 +130,7 @@ public class InstanceUtilities {
 	private static List<Integer> getTestInstanceIndices(SubjectIDList subjectIDs, int subjectsPerHoldOut, Iterator<Integer> iterator) {
 		List<Integer> testIndices = null;
 
-		testIndices = new LinkedList<Integer>();
+		testIndices = new ArrayList<Integer>();
 		for (int subjectIndex = 0; subjectIndex < subjectsPerHoldOut; subjectIndex++) {
 			testIndices.addAll(subjectIDs.getIndicesForID(iterator.next()));
 		}
@@ -109,17 +140,22 @@ public class InstanceUtilities {
 	}
 
 	/**
-	 * Internal method for leave-subject-out cross-validation. Prepares the two
-	 * sets: training and testing set.
+	 * Prepares the two sets of a leave-subject-out fold: training and testing
+	 * set. Both sets have to be copies of the instances.
 	 * 
 	 * @param instances
 	 * @param training
 	 * @param test
 	 * @param testInstanceIndices
 	 */
-	private static void prepareTrainingAndTestSet(Instances instances, Instances training, Instances test, List<Integer> testInstanceIndices) {
+	public static void prepareTrainingAndTestSet(Instances instances, Instances training, Instances test, List<Integer> testInstanceIndices) {
+		boolean[] isTestInstance = new boolean[instances.numInstances()];
+
+		for (Integer instanceIndex : testInstanceIndices) {
+			isTestInstance[instanceIndex] = true;
+		}
 		for (int instanceIndex = instances.numInstances() - 1; instanceIndex >= 0; instanceIndex--) {
-			if (testInstanceIndices.contains(instanceIndex)) {
+			if (isTestInstance[instanceIndex]) {
 				training.delete(instanceIndex);
 			} else {
 				test.delete(instanceIndex);
@@ -244,8 +280,8 @@ public class InstanceUtilities {
 	 */
 	public static void evaluateWithTestInstances(Instances trainingInstances, Instances testInstances, Classifier trainedClassifier, Evaluation evaluation)
 			throws Exception {
-		boolean found;
 		List<Integer> removeIndicies = new LinkedList<Integer>();
+		Set<String> trainingNames = new HashSet<String>();
 		Remove removeFilter = new Remove();
 
 		if (testInstances.classIndex() == -1) {
@@ -254,14 +290,11 @@ public class InstanceUtilities {
 
 		// feature selection may has removed some attributes
 		// remove them from the test instances, too
+		for (int j = 0; j < trainingInstances.numAttributes(); j++) {
+			trainingNames.add(trainingInstances.attribute(j).name());
+		}
 		for (int i = 0; i < testInstances.numAttributes(); i++) {
-			found = false;
-			for (int j = 0; j < trainingInstances.numAttributes(); j++) {
-				if (testInstances.attribute(i).name().equals(trainingInstances.attribute(j).name())) {
-					found = true;
-				}
-			}
-			if (!found) {
+			if (!trainingNames.contains(testInstances.attribute(i).name())) {
 				removeIndicies.add(i);
 			}
 		}
@@ -269,7 +302,57 @@ public class InstanceUtilities {
 		removeFilter.setInputFormat(testInstances);
 		testInstances = Filter.useFilter(testInstances, removeFilter);
 
-		evaluation.evaluateModel(trainedClassifier, testInstances);
+		evaluateModel(trainedClassifier, testInstances, evaluation);
+	}
+
+	/**
+	 * Adds the predictions of the trained classifier for the test instances to
+	 * the evaluation (like Evaluation.evaluateModel). A BatchClassifier
+	 * classifies all test instances at once. The classifier is closed
+	 * afterwards (see closeClassifier()).
+	 * 
+	 * @param trainedClassifier
+	 * @param testInstances
+	 * @param evaluation
+	 * @throws Exception
+	 */
+	public static void evaluateModel(Classifier trainedClassifier, Instances testInstances, Evaluation evaluation) throws Exception {
+		double[][] distributions = null;
+
+		try {
+			if (!(trainedClassifier instanceof BatchClassifier)) {
+				evaluation.evaluateModel(trainedClassifier, testInstances);
+				return;
+			}
+
+			distributions = ((BatchClassifier) trainedClassifier).distributionsForInstances(testInstances);
+			for (int i = 0; i < testInstances.numInstances(); i++) {
+				evaluation.evaluateModelOnceAndRecordPrediction(distributions[i], testInstances.instance(i));
+			}
+		} finally {
+			closeClassifier(trainedClassifier);
+		}
+	}
+
+	/**
+	 * Releases the resources of the given classifier and of the classifiers
+	 * it wraps (e.g. the worker process of an ExternalClassifier), if they
+	 * implement Closeable. The classifier can still be used afterwards.
+	 * 
+	 * @param classifier
+	 * @throws IOException
+	 */
+	public static void closeClassifier(Classifier classifier) throws IOException {
+		if (classifier instanceof Closeable) {
+			((Closeable) classifier).close();
+		}
+		if (classifier instanceof SingleClassifierEnhancer) {
+			closeClassifier(((SingleClassifierEnhancer) classifier).getClassifier());
+		} else if (classifier instanceof MultipleClassifiersCombiner) {
+			for (Classifier member : ((MultipleClassifiersCombiner) classifier).getClassifiers()) {
+				closeClassifier(member);
+			}
+		}
 	}
 
 }
@@ -0,0 +1,87 @@
+package ecst.utilities;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * This class is a key for caches of results that depend on a configuration
+ * and on the content of a data set (e.g. a selection of attributes of a
+ * training set). The key stores a SHA-256 digest of the attributes, the class
+ * index and all values and weights of the data set instead of the data set
+ * itself, so that a cache does not keep the data sets of its keys in memory.
+ * Data sets with the same digest are considered equal; a collision of
+ * SHA-256 digests is practically impossible.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class InstancesKey {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private int hashCode;
+	private String configuration;
+	private byte[] digest;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param configuration
+	 * @param instances
+	 */
+	public InstancesKey(String configuration, Instances instances) {
+		MessageDigest messageDigest = null;
+		ByteBuffer buffer = ByteBuffer.allocate(8 * (instances.numAttributes() + 1));
+		Instance instance = null;
+
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+
+		buffer.putInt(instances.numInstances()).putInt(instances.classIndex());
+		messageDigest.update(buffer.array(), 0, buffer.position());
+		for (int j = 0; j < instances.numAttributes(); j++) {
+			messageDigest.update(instances.attribute(j).toString().getBytes(UTF8));
+			messageDigest.update((byte) '\n');
+		}
+		for (int i = 0; i < instances.numInstances(); i++) {
+			instance = instances.instance(i);
+			buffer.clear();
+			buffer.putLong(Double.doubleToLongBits(instance.weight()));
+			for (int j = 0; j < instances.numAttributes(); j++) {
+				buffer.putLong(Double.doubleToLongBits(instance.value(j)));
+			}
+			messageDigest.update(buffer.array(), 0, buffer.position());
+		}
+
+		this.configuration = configuration;
+		this.digest = messageDigest.digest();
+		hashCode = configuration.hashCode() * 31 + Arrays.hashCode(digest);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		InstancesKey other = null;
+
+		if (!(object instanceof InstancesKey)) {
+			return false;
+		}
+		other = (InstancesKey) object;
+		return hashCode == other.hashCode && configuration.equals(other.configuration) && Arrays.equals(digest, other.digest);
+	}
+
+}
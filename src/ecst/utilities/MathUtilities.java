@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
@@ -11,6 +12,7 @@ import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import weka.classifiers.functions.supportVector.CachedKernel;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.matrix.EigenvalueDecomposition;
 import weka.core.matrix.Matrix;
 
 /**
@@ -392,6 +394,293 @@ public class MathUtilities {
 		return sortedDiagonalEigenvalueMatrix;
 	}
 
+	/**
+	 * Multiplies the centring matrix J = (I - 1 * 1' / n) / sqrt(n) with the
+	 * given matrix without building J, i.e. subtracts the column means and
+	 * scales by 1 / sqrt(n).
+	 * 
+	 * @param m
+	 * @return
+	 */
+	public static Matrix centeringMatrixTimes(Matrix m) {
+		int rows = m.getRowDimension();
+		int columns = m.getColumnDimension();
+		double mean;
+		double scale = 1.0 / Math.sqrt(rows);
+		double[][] source = m.getArray();
+		double[][] result = new double[rows][columns];
+
+		for (int j = 0; j < columns; j++) {
+			mean = 0.0;
+			for (int i = 0; i < rows; i++) {
+				mean += source[i][j];
+			}
+			mean /= rows;
+			for (int i = 0; i < rows; i++) {
+				result[i][j] = (source[i][j] - mean) * scale;
+			}
+		}
+
+		return new Matrix(result);
+	}
+
+	/**
+	 * Computes the leading eigenpairs of J' * K * J with the centring matrix J
+	 * = (I - 1 * 1' / n) / sqrt(n). The symmetric Lanczos method with full
+	 * reorthogonalization is used, so only matrix-vector products with K are
+	 * required and J is applied implicitly. The Krylov subspace grows until
+	 * the residuals of the requested Ritz pairs are negligible.
+	 * 
+	 * Returns the eigenvectors (n x count) and the diagonal matrix of
+	 * eigenvalues (count x count), both sorted in decreasing order.
+	 * 
+	 * @param K
+	 *            symmetric matrix
+	 * @param count
+	 *            number of eigenpairs
+	 * @return
+	 */
+	public static Matrix[] leadingEigenpairsOfCenteredMatrix(Matrix K, int count) {
+		int n = K.getRowDimension();
+		int steps = 0;
+		double norm;
+		double dot;
+		double tolerance;
+		boolean converged = false;
+		double[] w = null;
+		double[] alpha = new double[n];
+		double[] beta = new double[n];
+		double[][] basis = new double[n][];
+		double[][] k = K.getArray();
+		Matrix ritzVectors = null;
+		Matrix ritzValues = null;
+		Matrix eigenvectors = null;
+		EigenvalueDecomposition decomposition = null;
+		Random random = new Random(1);
+
+		if (count > n) {
+			throw new IllegalArgumentException("Cannot compute " + count + " eigenpairs of a " + n + "x" + n + " matrix");
+		}
+		// the centred vectors span only n - 1 dimensions
+		if (count >= n - 1) {
+			return denseEigenpairsOfCenteredMatrix(K, count);
+		}
+
+		basis[0] = randomCenteredUnitVector(n, random, basis, 0);
+		while (!converged) {
+			// w = J' * K * J * q
+			w = centerVector(basis[steps]);
+			w = centerVector(matrixTimesVector(k, w));
+			alpha[steps] = dotProduct(basis[steps], w);
+
+			// full reorthogonalization, applied twice for numerical stability
+			for (int pass = 0; pass < 2; pass++) {
+				for (int j = 0; j <= steps; j++) {
+					dot = dotProduct(basis[j], w);
+					for (int i = 0; i < n; i++) {
+						w[i] -= dot * basis[j][i];
+					}
+				}
+			}
+			norm = Math.sqrt(dotProduct(w, w));
+			steps++;
+
+			if (steps >= count) {
+				decomposition = new EigenvalueDecomposition(tridiagonalMatrix(alpha, beta, steps));
+				ritzVectors = getSortedEigenvectors(decomposition.getV(), decomposition.getD());
+				ritzValues = getSortedEigenvalues(decomposition.getD());
+				tolerance = 1e-10 * Math.max(Math.abs(ritzValues.get(0, 0)), Math.abs(ritzValues.get(steps - 1, steps - 1)));
+				converged = steps == n;
+				if (!converged) {
+					converged = true;
+					for (int i = 0; i < count; i++) {
+						if (Math.abs(norm * ritzVectors.get(steps - 1, i)) > tolerance) {
+							converged = false;
+							break;
+						}
+					}
+				}
+			}
+
+			if (!converged) {
+				if (norm > 1e-12 * Math.max(1.0, Math.abs(alpha[steps - 1]))) {
+					beta[steps - 1] = norm;
+					for (int i = 0; i < n; i++) {
+						w[i] /= norm;
+					}
+					basis[steps] = w;
+				} else {
+					// invariant subspace found, continue with a new direction
+					beta[steps - 1] = 0.0;
+					basis[steps] = randomCenteredUnitVector(n, random, basis, steps);
+					if (basis[steps] == null) {
+						decomposition = new EigenvalueDecomposition(tridiagonalMatrix(alpha, beta, steps));
+						ritzVectors = getSortedEigenvectors(decomposition.getV(), decomposition.getD());
+						ritzValues = getSortedEigenvalues(decomposition.getD());
+						converged = true;
+					}
+				}
+			}
+		}
+
+		// the basis was exhausted before count Ritz pairs were found
+		if (steps < count) {
+			return denseEigenpairsOfCenteredMatrix(K, count);
+		}
+
+		eigenvectors = new Matrix(n, count);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < count; j++) {
+				dot = 0.0;
+				for (int l = 0; l < steps; l++) {
+					dot += basis[l][i] * ritzVectors.get(l, j);
+				}
+				eigenvectors.set(i, j, dot);
+			}
+		}
+
+		return new Matrix[] { eigenvectors, ritzValues.getMatrix(0, count - 1, 0, count - 1) };
+	}
+
+	/**
+	 * Internal method to compute the leading eigenpairs of J' * K * J with a
+	 * full eigenvalue decomposition. The result has the same form as the
+	 * result of leadingEigenpairsOfCenteredMatrix().
+	 * 
+	 * @param K
+	 *            symmetric matrix
+	 * @param count
+	 *            number of eigenpairs
+	 * @return
+	 */
+	private static Matrix[] denseEigenpairsOfCenteredMatrix(Matrix K, int count) {
+		int n = K.getRowDimension();
+		// J is symmetric, so J' * K * J = J * (J * K)'
+		Matrix centered = centeringMatrixTimes(centeringMatrixTimes(K).transpose());
+		EigenvalueDecomposition decomposition = new EigenvalueDecomposition(centered);
+		Matrix eigenvectors = getSortedEigenvectors(decomposition.getV(), decomposition.getD());
+		Matrix eigenvalues = getSortedEigenvalues(decomposition.getD());
+
+		return new Matrix[] { eigenvectors.getMatrix(0, n - 1, 0, count - 1), eigenvalues.getMatrix(0, count - 1, 0, count - 1) };
+	}
+
+	/**
+	 * Internal method for the Lanczos method. Returns a random unit vector with
+	 * zero mean that is orthogonal to the given basis vectors, or null if the
+	 * basis already spans the space of centred vectors.
+	 * 
+	 * @param n
+	 * @param random
+	 * @param basis
+	 * @param size
+	 * @return
+	 */
+	private static double[] randomCenteredUnitVector(int n, Random random, double[][] basis, int size) {
+		double dot;
+		double norm;
+		double[] v = null;
+
+		for (int attempt = 0; attempt < 3; attempt++) {
+			v = new double[n];
+			for (int i = 0; i < n; i++) {
+				v[i] = random.nextGaussian();
+			}
+			v = centerVector(v);
+			for (int pass = 0; pass < 2; pass++) {
+				for (int j = 0; j < size; j++) {
+					dot = dotProduct(basis[j], v);
+					for (int i = 0; i < n; i++) {
+						v[i] -= dot * basis[j][i];
+					}
+				}
+			}
+			norm = Math.sqrt(dotProduct(v, v));
+			if (norm > 1e-8) {
+				for (int i = 0; i < n; i++) {
+					v[i] /= norm;
+				}
+				return v;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Internal method for the Lanczos method. Computes J * v.
+	 * 
+	 * @param v
+	 * @return
+	 */
+	private static double[] centerVector(double[] v) {
+		double mean = 0.0;
+		double scale = 1.0 / Math.sqrt(v.length);
+		double[] result = new double[v.length];
+
+		for (int i = 0; i < v.length; i++) {
+			mean += v[i];
+		}
+		mean /= v.length;
+		for (int i = 0; i < v.length; i++) {
+			result[i] = (v[i] - mean) * scale;
+		}
+		return result;
+	}
+
+	/**
+	 * Internal method for the Lanczos method. Computes the product of a dense
+	 * matrix and a vector.
+	 * 
+	 * @param m
+	 * @param v
+	 * @return
+	 */
+	private static double[] matrixTimesVector(double[][] m, double[] v) {
+		double[] result = new double[m.length];
+
+		for (int i = 0; i < m.length; i++) {
+			result[i] = dotProduct(m[i], v);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the dot product of two vectors.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static double dotProduct(double[] a, double[] b) {
+		double sum = 0.0;
+
+		for (int i = 0; i < a.length; i++) {
+			sum += a[i] * b[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Internal method for the Lanczos method. Builds the symmetric tridiagonal
+	 * matrix of the given size.
+	 * 
+	 * @param alpha
+	 * @param beta
+	 * @param size
+	 * @return
+	 */
+	private static Matrix tridiagonalMatrix(double[] alpha, double[] beta, int size) {
+		Matrix t = new Matrix(size, size, 0.0);
+
+		for (int i = 0; i < size; i++) {
+			t.set(i, i, alpha[i]);
+			if (i < size - 1) {
+				t.set(i, i + 1, beta[i]);
+				t.set(i + 1, i, beta[i]);
+			}
+		}
+		return t;
+	}
+
 	public static double sumAllMatrixElements(Matrix m) {
 		double sum = 0.0;
 
@@ -0,0 +1,258 @@
+package ecst.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instances;
+
+/**
+ * This class trains the classifiers of the folds of a validation on several
+ * threads. Every fold trains its own copy of the classifier. The trained
+ * classifiers are evaluated on the calling thread in the order of the folds,
+ * so that the statistics of the Evaluation object are the same as in a serial
+ * validation. If the folds are given by a FoldCreator, at most one fold per
+ * thread is created before it is evaluated.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class ParallelFoldEvaluator {
+
+	private int numberOfThreads;
+	private boolean updatePriors;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param numberOfThreads
+	 *            with one thread the folds are trained serially; inside
+	 *            another parallel evaluation, one thread is used (see
+	 *            ThreadUtilities)
+	 */
+	public ParallelFoldEvaluator(int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	/**
+	 * If true, the priors of the evaluation are set to the training set of
+	 * each fold before the fold is evaluated (like in WEKA's
+	 * cross-validation).
+	 * 
+	 * @param updatePriors
+	 */
+	public void setUpdatePriors(boolean updatePriors) {
+		this.updatePriors = updatePriors;
+	}
+
+	/**
+	 * Trains a copy of the classifier with every training set and evaluates it
+	 * with the corresponding test set.
+	 * 
+	 * @param classifier
+	 *            the untrained classifier
+	 * @param trainingSets
+	 * @param testSets
+	 * @param evaluation
+	 * @throws Exception
+	 */
+	public void evaluate(Classifier classifier, List<Instances> trainingSets, List<Instances> testSets, Evaluation evaluation) throws Exception {
+		evaluate(classifier, trainingSets, testSets, evaluation, updatePriors);
+	}
+
+	/**
+	 * Trains a copy of the classifier with the training set of every fold and
+	 * evaluates it with the corresponding test set. The sets of a fold are
+	 * created when the fold is trained.
+	 * 
+	 * @param classifier
+	 *            the untrained classifier
+	 * @param numberOfFolds
+	 * @param folds
+	 * @param evaluation
+	 * @throws Exception
+	 */
+	public void evaluate(Classifier classifier, int numberOfFolds, FoldCreator folds, Evaluation evaluation) throws Exception {
+		evaluate(classifier, numberOfFolds, folds, evaluation, updatePriors);
+	}
+
+	/**
+	 * Performs a (stratified if the class is nominal) cross-validation like
+	 * WEKA's Evaluation.crossValidateModel. The folds are built in the same
+	 * way from the random number generator, so that the result is the same as
+	 * WEKA's for the same seed.
+	 * 
+	 * @param classifier
+	 *            the untrained classifier
+	 * @param data
+	 * @param numFolds
+	 * @param random
+	 * @param evaluation
+	 * @throws Exception
+	 */
+	public void crossValidateModel(Classifier classifier, Instances data, int numFolds, Random random, Evaluation evaluation) throws Exception {
+		List<Instances> trainingSets = new ArrayList<Instances>(numFolds);
+		List<Instances> testSets = new ArrayList<Instances>(numFolds);
+
+		createCrossValidationFolds(data, numFolds, random, trainingSets, testSets);
+		evaluate(classifier, trainingSets, testSets, evaluation, true);
+	}
+
+	/**
+	 * Creates the training and test sets of a (stratified if the class is
+	 * nominal) cross-validation in the same way as WEKA's
+	 * Evaluation.crossValidateModel. The sets can be evaluated several times
+	 * (e.g. for several classifiers) with evaluate() and updated priors.
+	 * 
+	 * @param data
+	 * @param numFolds
+	 * @param random
+	 * @param trainingSets
+	 *            the training sets are added to this list
+	 * @param testSets
+	 *            the test sets are added to this list
+	 */
+	public static void createCrossValidationFolds(Instances data, int numFolds, Random random, List<Instances> trainingSets, List<Instances> testSets) {
+		data = new Instances(data);
+		data.randomize(random);
+		if (data.classAttribute().isNominal()) {
+			data.stratify(numFolds);
+		}
+		for (int fold = 0; fold < numFolds; fold++) {
+			trainingSets.add(data.trainCV(numFolds, fold, random));
+			testSets.add(data.testCV(numFolds, fold));
+		}
+	}
+
+	/**
+	 * Internal method to train and evaluate the given folds.
+	 * 
+	 * @param classifier
+	 * @param trainingSets
+	 * @param testSets
+	 * @param evaluation
+	 * @param setPriors
+	 * @throws Exception
+	 */
+	private void evaluate(Classifier classifier, final List<Instances> trainingSets, final List<Instances> testSets, Evaluation evaluation,
+			boolean setPriors) throws Exception {
+		evaluate(classifier, trainingSets.size(), new FoldCreator() {
+
+			@Override
+			public Instances[] createFold(int fold) {
+				return new Instances[] { trainingSets.get(fold), testSets.get(fold) };
+			}
+		}, evaluation, setPriors);
+	}
+
+	/**
+	 * Internal method to create, train and evaluate the folds. With several
+	 * threads, the next fold is submitted when a fold is evaluated, so that
+	 * at most one fold per thread is waiting for its evaluation.
+	 * 
+	 * @param classifier
+	 * @param numberOfFolds
+	 * @param folds
+	 * @param evaluation
+	 * @param setPriors
+	 * @throws Exception
+	 */
+	private void evaluate(Classifier classifier, int numberOfFolds, FoldCreator folds, Evaluation evaluation, boolean setPriors) throws Exception {
+		int threads = Math.min(ThreadUtilities.getNumberOfThreads(numberOfThreads), numberOfFolds);
+		Instances[] sets = null;
+		Classifier copy = null;
+		ExecutorService executor = null;
+		List<Future<Instances[]>> futures = null;
+		List<Classifier> copies = null;
+
+		if (threads < 2) {
+			for (int fold = 0; fold < numberOfFolds; fold++) {
+				sets = folds.createFold(fold);
+				copy = Classifier.makeCopy(classifier);
+				copy.buildClassifier(sets[0]);
+				evaluateFold(copy, sets[0], sets[1], evaluation, setPriors);
+			}
+			return;
+		}
+
+		executor = ThreadUtilities.newFixedThreadPool(threads);
+		futures = new ArrayList<Future<Instances[]>>(numberOfFolds);
+		copies = new ArrayList<Classifier>(numberOfFolds);
+		try {
+			for (int fold = 0; fold < threads; fold++) {
+				submitFold(executor, classifier, folds, fold, futures, copies);
+			}
+			for (int fold = 0; fold < numberOfFolds; fold++) {
+				sets = futures.get(fold).get();
+				copy = copies.get(fold);
+				futures.set(fold, null);
+				copies.set(fold, null);
+				if (fold + threads < numberOfFolds) {
+					submitFold(executor, classifier, folds, fold + threads, futures, copies);
+				}
+				evaluateFold(copy, sets[0], sets[1], evaluation, setPriors);
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw new Exception(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Internal method to submit the creation of a fold and the training of a
+	 * copy of the classifier. The copy is made by the calling thread.
+	 * 
+	 * @param executor
+	 * @param classifier
+	 * @param folds
+	 * @param fold
+	 * @param futures
+	 *            the future of the created sets is added to this list
+	 * @param copies
+	 *            the copy of the classifier is added to this list
+	 * @throws Exception
+	 */
+	private void submitFold(ExecutorService executor, Classifier classifier, final FoldCreator folds, final int fold,
+			List<Future<Instances[]>> futures, List<Classifier> copies) throws Exception {
+		final Classifier copy = Classifier.makeCopy(classifier);
+
+		copies.add(copy);
+		futures.add(executor.submit(new Callable<Instances[]>() {
+			@Override
+			public Instances[] call() throws Exception {
+				Instances[] sets = folds.createFold(fold);
+
+				copy.buildClassifier(sets[0]);
+				return sets;
+			}
+		}));
+	}
+
+	/**
+	 * Internal method to evaluate a trained classifier.
+	 * 
+	 * @param classifier
+	 * @param training
+	 * @param test
+	 * @param evaluation
+	 * @param setPriors
+	 * @throws Exception
+	 */
+	private void evaluateFold(Classifier classifier, Instances training, Instances test, Evaluation evaluation, boolean setPriors) throws Exception {
+		if (setPriors) {
+			evaluation.setPriors(training);
+		}
+		InstanceUtilities.evaluateModel(classifier, test, evaluation);
+	}
+
+}
@@ -0,0 +1,78 @@
+package ecst.utilities;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class creates the thread pools of the parallel evaluations. The
+ * threads of these pools are marked, so that a parallel evaluation that runs
+ * inside another one (e.g. a parallel grid search in a fold of a parallel
+ * cross-validation or of a race) uses one thread instead of multiplying the
+ * number of threads.
+ * 
+ * @author Matthias Ring
+ * 
+ */
+public class ThreadUtilities {
+
+	private static final ThreadLocal<Boolean> isWorker = new ThreadLocal<Boolean>() {
+		@Override
+		protected Boolean initialValue() {
+			return Boolean.FALSE;
+		}
+	};
+
+	private static final ThreadFactory workerFactory = new ThreadFactory() {
+		private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			return defaultFactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					isWorker.set(Boolean.TRUE);
+					runnable.run();
+				}
+			});
+		}
+	};
+
+	/**
+	 * Returns the number of threads that a parallel evaluation should use: the
+	 * given number, or one if the calling thread is a thread of another
+	 * parallel evaluation.
+	 * 
+	 * @param numberOfThreads
+	 * @return
+	 */
+	public static int getNumberOfThreads(int numberOfThreads) {
+		if (isWorkerThread()) {
+			return 1;
+		}
+		return Math.max(1, numberOfThreads);
+	}
+
+	/**
+	 * Returns true if the calling thread belongs to a thread pool of a
+	 * parallel evaluation.
+	 * 
+	 * @return
+	 */
+	public static boolean isWorkerThread() {
+		return isWorker.get();
+	}
+
+	/**
+	 * Creates a thread pool with a fixed number of threads for a parallel
+	 * evaluation. Parallel evaluations called by these threads use one
+	 * thread.
+	 * 
+	 * @param numberOfThreads
+	 * @return
+	 */
+	public static ExecutorService newFixedThreadPool(int numberOfThreads) {
+		return Executors.newFixedThreadPool(numberOfThreads, workerFactory);
+	}
+
+}
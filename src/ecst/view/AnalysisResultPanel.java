@@ -12,6 +12,7 @@ import java.io.File;
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
@@ -32,6 +33,7 @@ import ecst.io.AnalysisExport;
 import ecst.io.ClassificationSystemExport;
 import ecst.io.ConfigurationExport;
 import ecst.io.ConfigurationImport;
+import ecst.scoring.PipelineFormat;
 import ecst.utilities.CommonUtilities;
 import ecst.utilities.FileUtilities;
 import ecst.view.result.FilterDialog;
@@ -50,6 +52,8 @@ public class AnalysisResultPanel extends JPanel {
 	private ECST ecst;
 	private ResultList listPanel;
 	private JMenuItem startMenuItem;
+	private JCheckBoxMenuItem racingMenuItem;
+	private JCheckBoxMenuItem latencyMenuItem;
 	private JMenuItem filterMenuItem;
 	private JMenuItem saveXMLMenuItem;
 	private JMenuItem saveCSVMenuItem;
@@ -57,6 +61,7 @@ public class AnalysisResultPanel extends JPanel {
 	private JMenuItem saveConfigurationMenuItem;
 	private JMenuItem loadConfigurationMenuItem;
 	private JMenuItem exportModelMenuItem;
+	private JMenuItem exportPipelinesMenuItem;
 	private PipelineStepPanel preprocessingPanel;
 	private PipelineStepPanel featureSelectionPanel;
 	private PipelineStepPanel classificationPanel;
@@ -164,6 +169,7 @@ public class AnalysisResultPanel extends JPanel {
 		saveLatexMenuItem.setEnabled(true);
 		saveCSVMenuItem.setEnabled(true);
 		exportModelMenuItem.setEnabled(true);
+		exportPipelinesMenuItem.setEnabled(true);
 	}
 
 	/**
@@ -303,6 +309,26 @@ public class AnalysisResultPanel extends JPanel {
 		}
 	}
 
+	/**
+	 * Shows a JFileChooser to export the trained pipelines in the binary
+	 * format.
+	 * 
+	 * @param event
+	 */
+	public void exportPipelinesButtonActionPerformed(ActionEvent event) {
+		File file = FileUtilities.showSaveFileChooserPipeline(ecst.getRootPane(), lastUsedPath);
+		if (file != null) {
+			updateLastUsedPath(file.getAbsolutePath());
+			try {
+				PipelineFormat.save(listPanel.getModel(), file);
+			} catch (Exception e) {
+				e.printStackTrace();
+				JOptionPane.showMessageDialog(ecst, "File could not be saved!", ECST.PROGRAMM_NAME,
+						JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
+
 	/**
 	 * Internal method that combines the user settings into one object.
 	 * 
@@ -336,6 +362,8 @@ public class AnalysisResultPanel extends JPanel {
 			model.setInputFile(featureExtractionPanel.getFilename());
 			model.setExtractFeatures(false);
 		}
+		model.setRacing(racingMenuItem.isSelected());
+		model.setMeasureLatency(latencyMenuItem.isSelected());
 
 		for (Algorithm algorithm : preprocessingPanel.getSelectedAlgorithms()) {
 			if (algorithm == null) {
@@ -404,8 +432,18 @@ public class AnalysisResultPanel extends JPanel {
 		});
 		button = new JButton("Classification system \u25BE");
 		button.setMargin(new Insets(3, 1, 3, 1));
+		exportPipelinesMenuItem = new JMenuItem(new AbstractAction("Export pipelines as binary...") {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				exportPipelinesButtonActionPerformed(event);
+			}
+		});
 		exportModelMenuItem.setEnabled(false);
+		exportPipelinesMenuItem.setEnabled(false);
 		classificationSystemButtonPopup.add(exportModelMenuItem);
+		classificationSystemButtonPopup.add(exportPipelinesMenuItem);
 		button.addMouseListener(new MouseAdapter() {
 			public void mousePressed(MouseEvent e) {
 				classificationSystemButtonPopup.show(e.getComponent(), 0, e.getComponent().getHeight());
@@ -454,6 +492,8 @@ public class AnalysisResultPanel extends JPanel {
 				startButtonActionPerformed(event);
 			}
 		});
+		racingMenuItem = new JCheckBoxMenuItem("Racing (stop evaluating significantly worse systems)");
+		latencyMenuItem = new JCheckBoxMenuItem("Measure latency and throughput of the classifiers");
 		filterMenuItem = new JMenuItem(new AbstractAction("Filter analysis...") {
 			private static final long serialVersionUID = 1L;
 
@@ -495,6 +535,8 @@ public class AnalysisResultPanel extends JPanel {
 		button = new JButton("Complexity analysis \u25BE");
 		button.setMargin(new Insets(3, 1, 3, 1));
 		startButtonPopup.add(startMenuItem);
+		startButtonPopup.add(racingMenuItem);
+		startButtonPopup.add(latencyMenuItem);
 		startButtonPopup.addSeparator();
 		startButtonPopup.add(filterMenuItem);
 		startButtonPopup.addSeparator();
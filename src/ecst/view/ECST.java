@@ -28,6 +28,7 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 
+import ecst.algorithm.classification.ExternalProcessPool;
 import ecst.algorithm.definition.AlgorithmBox;
 import ecst.io.ConfigurationImport;
 import ecst.utilities.FileUtilities;
@@ -75,6 +76,7 @@ public class ECST extends JFrame {
 	public ECST() throws Exception {
 		properties = FileUtilities.loadPropertiesFile(
 				System.getProperty("user.home") + System.getProperty("file.separator") + "ecst.properties");
+		ExternalProcessPool.getSharedPool().loadSettings(properties);
 
 		setupPosition();
 		setupFrame();
@@ -11,11 +11,19 @@ import java.awt.event.ActionListener;
 import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JEditorPane;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.text.html.HTMLDocument;
 
 import ecst.combiner.CombinerOutputModel;
+import ecst.scoring.CBenchmark;
+import ecst.scoring.CBenchmarkResult;
+import ecst.scoring.CCodeGenerator;
+import ecst.scoring.LatencyBenchmark;
+import ecst.scoring.LatencyBenchmarkResult;
 import ecst.view.ECST;
 
 /**
@@ -29,8 +37,11 @@ public class DetailsDialog extends JDialog {
 	private static final long serialVersionUID = 1L;
 
 	private JButton okButton;
+	private JButton benchmarkButton;
+	private JButton latencyButton;
 	private JScrollPane scrollPane;
 	private JEditorPane editorPane;
+	private CombinerOutputModel model;
 
 	/**
 	 * Constructor.
@@ -39,6 +50,7 @@ public class DetailsDialog extends JDialog {
 	 * @param model
 	 */
 	public DetailsDialog(ECST ecst, CombinerOutputModel model) {
+		this.model = model;
 		setupDialog(ecst);
 		fillDialog(model);
 	}
@@ -52,6 +64,121 @@ public class DetailsDialog extends JDialog {
 		dispose();
 	}
 
+	/**
+	 * Generates C code for the classification system, compiles it and
+	 * measures it in a background thread.
+	 * 
+	 * @param event
+	 */
+	public void benchmarkButtonActionPerformed(ActionEvent event) {
+		// both benchmarks use the same trained classifier
+		setBenchmarkButtonsEnabled(false);
+		benchmarkButton.setText("Running C benchmark...");
+		new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				CBenchmarkResult result = null;
+				Exception error = null;
+
+				try {
+					result = new CBenchmark(model).run();
+				} catch (Exception e) {
+					error = e;
+				}
+				finishBenchmark(result, error);
+			}
+		}).start();
+	}
+
+	/**
+	 * Internal method to show the result of the C benchmark in the event
+	 * dispatch thread.
+	 * 
+	 * @param result
+	 * @param error
+	 */
+	private void finishBenchmark(final CBenchmarkResult result, final Exception error) {
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				benchmarkButton.setText("Run C benchmark");
+				setBenchmarkButtonsEnabled(true);
+				if (error != null) {
+					JOptionPane.showMessageDialog(DetailsDialog.this, "The C benchmark failed: " + error.getMessage(), ECST.PROGRAMM_NAME,
+							JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				model.setBenchmarkResult(result);
+				fillDialog(model);
+			}
+		});
+	}
+
+	/**
+	 * Measures the latency and the throughput of the trained classifier in a
+	 * background thread.
+	 * 
+	 * @param event
+	 */
+	public void latencyButtonActionPerformed(ActionEvent event) {
+		setBenchmarkButtonsEnabled(false);
+		latencyButton.setText("Measuring latency...");
+		new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				LatencyBenchmarkResult result = null;
+				Exception error = null;
+
+				try {
+					result = new LatencyBenchmark(model).run();
+				} catch (Exception e) {
+					error = e;
+				}
+				finishLatency(result, error);
+			}
+		}).start();
+	}
+
+	/**
+	 * Internal method to show the measured latency in the event dispatch
+	 * thread.
+	 * 
+	 * @param result
+	 * @param error
+	 */
+	private void finishLatency(final LatencyBenchmarkResult result, final Exception error) {
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				latencyButton.setText("Measure latency");
+				setBenchmarkButtonsEnabled(true);
+				if (error != null) {
+					JOptionPane.showMessageDialog(DetailsDialog.this, "The measurement failed: " + error.getMessage(), ECST.PROGRAMM_NAME,
+							JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				model.setLatencyResult(result);
+				fillDialog(model);
+			}
+		});
+	}
+
+	/**
+	 * Internal method to enable or disable the buttons of the C benchmark and
+	 * the latency measurement. While one of them runs, the other one is
+	 * disabled.
+	 * 
+	 * @param enabled
+	 */
+	private void setBenchmarkButtonsEnabled(boolean enabled) {
+		benchmarkButton.setEnabled(enabled && CCodeGenerator.isSupported(model));
+		latencyButton.setEnabled(enabled && model.getClassifier() != null);
+	}
+
 	/**
 	 * Fills the GUI.
 	 * 
@@ -94,6 +221,24 @@ public class DetailsDialog extends JDialog {
 		text.append("<br><br><pre><font face=\"monospace\">");
 		text.append(("Training and evaluation time: " + model.getTime() + "ms").replaceAll("\n", "<br>"));
 		text.append("</font></pre>");
+		text.append("<br><br><u><font size=\"+1\">JVM latency</font></u>");
+		text.append("<br><br><pre><font face=\"monospace\">");
+		if (model.getLatencyResult() != null) {
+			text.append(model.getLatencyResult().toString().replaceAll("\n", "<br>"));
+		} else {
+			text.append("Not measured. The measurement classifies the test<br>instances with the trained classifier in this JVM.");
+		}
+		text.append("</font></pre>");
+		text.append("<br><br><u><font size=\"+1\">C benchmark</font></u>");
+		text.append("<br><br><pre><font face=\"monospace\">");
+		if (model.getBenchmarkResult() != null) {
+			text.append(model.getBenchmarkResult().toString().replaceAll("\n", "<br>"));
+		} else if (CCodeGenerator.isSupported(model)) {
+			text.append("Not run. The C benchmark generates C code for this<br>classification system, compiles it with gcc and<br>compares the counted operations with the estimates.");
+		} else {
+			text.append("C code cannot be generated for this classifier.");
+		}
+		text.append("</font></pre>");
 		text.append("</html>");
 
 		editorPane.setText(text.toString());
@@ -107,6 +252,7 @@ public class DetailsDialog extends JDialog {
 	 */
 	private void setupDialog(ECST ecst) {
 		Font font = null;
+		JPanel buttonPanel = null;
 		GridBagConstraints c = null;
 
 		setLayout(new GridBagLayout());
@@ -136,11 +282,32 @@ public class DetailsDialog extends JDialog {
 				okButtonActionPerformed(event);
 			}
 		});
+		benchmarkButton = new JButton("Run C benchmark");
+		benchmarkButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				benchmarkButtonActionPerformed(event);
+			}
+		});
+		latencyButton = new JButton("Measure latency");
+		latencyButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				latencyButtonActionPerformed(event);
+			}
+		});
+		setBenchmarkButtonsEnabled(true);
+		buttonPanel = new JPanel();
+		buttonPanel.add(latencyButton);
+		buttonPanel.add(benchmarkButton);
+		buttonPanel.add(okButton);
 		c = new GridBagConstraints();
 		c.gridx = 0;
 		c.gridy = 1;
 		c.insets = new Insets(0, 10, 10, 10);
-		add(okButton, c);
+		add(buttonPanel, c);
 
 		setTitle("Details");
 		setModal(true);
@@ -16,6 +16,8 @@ public class Filter {
 	private Integer totalSpace;
 	private Integer numberOfDoubles;
 	private Integer numberOfIntegers;
+	private Integer maximumLatency;
+	private Integer minimumThroughput;
 	private Map<OperationDefinition, Integer> maximumOperations;
 
 	/**
@@ -26,14 +28,20 @@ public class Filter {
 	 * @param numberOfDoubles
 	 * @param numberOfIntegers
 	 * @param maximumOperations
+	 * @param maximumLatency
+	 *            the maximal 99th percentile of the latency in microseconds
+	 * @param minimumThroughput
+	 *            the minimal throughput in instances per second
 	 */
 	public Filter(Integer totalOperations, Integer totalSpace, Integer numberOfDoubles, Integer numberOfIntegers,
-			Map<OperationDefinition, Integer> maximumOperations) {
+			Map<OperationDefinition, Integer> maximumOperations, Integer maximumLatency, Integer minimumThroughput) {
 		this.totalOperations = totalOperations;
 		this.totalSpace = totalSpace;
 		this.numberOfDoubles = numberOfDoubles;
 		this.numberOfIntegers = numberOfIntegers;
 		this.maximumOperations = maximumOperations;
+		this.maximumLatency = maximumLatency;
+		this.minimumThroughput = minimumThroughput;
 	}
 
 	/**
@@ -81,4 +89,22 @@ public class Filter {
 		return maximumOperations;
 	}
 
+	/**
+	 * Returns the maximal 99th percentile of the latency in microseconds.
+	 * 
+	 * @return
+	 */
+	public Integer getMaximumLatency() {
+		return maximumLatency;
+	}
+
+	/**
+	 * Returns the minimal throughput in instances per second.
+	 * 
+	 * @return
+	 */
+	public Integer getMinimumThroughput() {
+		return minimumThroughput;
+	}
+
 }
@@ -24,7 +24,8 @@ import javax.swing.text.NumberFormatter;
 import ecst.view.ECST;
 
 /**
- * A JDialog to enter upper bound on the complexity analysis.
+ * A JDialog to enter upper bound on the complexity analysis and bounds on the
+ * measured latency and throughput.
  * 
  * @author Matthias Ring
  * 
@@ -40,6 +41,8 @@ public class FilterDialog extends JDialog {
 	private JFormattedTextField doubleTextField;
 	private JFormattedTextField integerTextField;
 	private JFormattedTextField totalSpaceTextField;
+	private JFormattedTextField latencyTextField;
+	private JFormattedTextField throughputTextField;
 
 	/**
 	 * Constructor.
@@ -63,6 +66,8 @@ public class FilterDialog extends JDialog {
 		totalSpaceTextField.setValue(filter.getTotalSpace());
 		doubleTextField.setValue(filter.getNumberOfDoubles());
 		integerTextField.setValue(filter.getNumberOfIntegers());
+		latencyTextField.setValue(filter.getMaximumLatency());
+		throughputTextField.setValue(filter.getMinimumThroughput());
 		tableModel.init(filter.getMaximumOperations(), filter.getTotalOperations());
 	}
 
@@ -73,7 +78,8 @@ public class FilterDialog extends JDialog {
 	 */
 	public void okButtonActionPerformed(ActionEvent event) {
 		result = new Filter(tableModel.getTotalOperations(), (Integer) totalSpaceTextField.getValue(), (Integer) doubleTextField.getValue(),
-				(Integer) integerTextField.getValue(), tableModel.getMaximumOperations());
+				(Integer) integerTextField.getValue(), tableModel.getMaximumOperations(), (Integer) latencyTextField.getValue(),
+				(Integer) throughputTextField.getValue());
 		dispose();
 	}
 
@@ -198,6 +204,38 @@ public class FilterDialog extends JDialog {
 		c.anchor = GridBagConstraints.LINE_START;
 		panel.add(doubleTextField, c);
 
+		label = new JLabel("Maximal latency p99 (\u00B5s): ");
+		c = new GridBagConstraints();
+		c.gridx = 0;
+		c.gridy = 1;
+		c.insets = new Insets(0, 0, 5, 5);
+		c.anchor = GridBagConstraints.LINE_START;
+		panel.add(label, c);
+
+		latencyTextField = createDoubleTextField();
+		c = new GridBagConstraints();
+		c.gridx = 1;
+		c.gridy = 1;
+		c.insets = new Insets(0, 0, 5, 10);
+		c.anchor = GridBagConstraints.LINE_START;
+		panel.add(latencyTextField, c);
+
+		label = new JLabel("Minimal throughput (1/s): ");
+		c = new GridBagConstraints();
+		c.gridx = 2;
+		c.gridy = 1;
+		c.insets = new Insets(0, 0, 5, 5);
+		c.anchor = GridBagConstraints.LINE_START;
+		panel.add(label, c);
+
+		throughputTextField = createDoubleTextField();
+		c = new GridBagConstraints();
+		c.gridx = 3;
+		c.gridy = 1;
+		c.insets = new Insets(0, 0, 5, 10);
+		c.anchor = GridBagConstraints.LINE_START;
+		panel.add(throughputTextField, c);
+
 		table = new JTable();
 		pane = new JScrollPane(table);
 		tableModel = new FilterTableModel(this);
@@ -207,7 +245,7 @@ public class FilterDialog extends JDialog {
 		pane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_NEVER);
 		c = new GridBagConstraints();
 		c.gridx = 0;
-		c.gridy = 1;
+		c.gridy = 2;
 		c.gridwidth = 6;
 		c.weightx = 1.0;
 		c.insets = new Insets(10, 0, 5, 0);
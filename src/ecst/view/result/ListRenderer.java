@@ -9,6 +9,7 @@ import java.awt.Insets;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.BorderFactory;
 import javax.swing.JLabel;
@@ -71,6 +72,10 @@ public class ListRenderer extends JPanel implements ListCellRenderer {
 
 		descriptionLabel.setText(buildPipelineDescription(outputModel));
 		classificationLabel.setText(format.format(outputModel.getEvaluationResult().pctCorrect()) + "%");
+		if (outputModel.isEliminated()) {
+			classificationLabel.setText(classificationLabel.getText() + " (eliminated by racing after fold " + outputModel.getEliminatedAfterFold()
+					+ ")");
+		}
 		tpLabel.setText(CommonUtilities.createTPRateString(outputModel, format, true));
 		spaceLabel.setText("<html>" + analysis.getTotalSpace() + " parameters: "
 				+ CommonUtilities.createComplexityDetailsStringHTML(analysis.getNumberOfFloats())
@@ -89,6 +94,11 @@ public class ListRenderer extends JPanel implements ListCellRenderer {
 			tmp += ": " + classificationAlgorithm.getGridSearchXValue();
 			tmp += ", " + classificationAlgorithm.getGridSearchYName();
 			tmp += ": " + classificationAlgorithm.getGridSearchYValue();
+			if (classificationAlgorithm.getGridSearchDimensionValues() != null) {
+				for (Map.Entry<String, Object> entry : classificationAlgorithm.getGridSearchDimensionValues().entrySet()) {
+					tmp += ", " + entry.getKey() + ": " + entry.getValue();
+				}
+			}
 			gridSearchLabel.setText("<html>" + tmp + "</html>");
 			gridSearchDescLabel.setVisible(true);
 			gridSearchLabel.setVisible(true);
@@ -127,6 +127,18 @@ public class ResultList extends JPanel {
 			}
 		}
 
+		// systems without measurements do not fulfill the criterions
+		if (filter.getMaximumLatency() != null) {
+			if (outputModel.getLatencyResult() == null || outputModel.getLatencyResult().getHighLatency() > filter.getMaximumLatency() * 1000.0) {
+				return false;
+			}
+		}
+		if (filter.getMinimumThroughput() != null) {
+			if (outputModel.getLatencyResult() == null || outputModel.getLatencyResult().getThroughput() < filter.getMinimumThroughput()) {
+				return false;
+			}
+		}
+
 		for (OperationDefinition definition : filter.getMaximumOperations().keySet()) {
 			value = filter.getMaximumOperations().get(definition);
 			if (value != null) {